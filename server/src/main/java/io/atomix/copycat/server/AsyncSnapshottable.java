@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server;
+
+import io.atomix.copycat.server.storage.snapshot.SnapshotWriter;
+
+/**
+ * Support for writing {@link StateMachine} snapshots without blocking the application of commands.
+ * <p>
+ * State machines that implement {@link Snapshottable} write their entire state to the {@link SnapshotWriter}
+ * in the state machine thread, so no commands can be applied while a snapshot is being written. For state
+ * machines with large state, this can stall writes for the duration of each snapshot. State machines that
+ * implement this interface instead capture a point-in-time {@link View} of their state in the state machine
+ * thread, and the view is written to the snapshot in a separate thread while the state machine continues to
+ * apply commits.
+ * <p>
+ * Capturing a view must be cheap relative to writing the state, and the view must not be affected by commands
+ * applied after it was captured. Typically, state machines achieve this with persistent or copy-on-write data
+ * structures, by copying a reference to immutable state, or by recording a version from which state can be read.
+ * <p>
+ * <pre>
+ *   {@code
+ *   public class MyStateMachine extends StateMachine implements AsyncSnapshottable {
+ *     private volatile Map<String, String> map = Collections.emptyMap();
+ *
+ *     public View snapshotView() {
+ *       Map<String, String> map = this.map;
+ *       return writer -> {
+ *         writer.writeInt(map.size());
+ *         map.forEach((key, value) -> {
+ *           writer.writeString(key).writeString(value);
+ *         });
+ *       };
+ *     }
+ *
+ *     public void put(Commit<Put> commit) {
+ *       Map<String, String> map = new HashMap<>(this.map);
+ *       map.put(commit.operation().key(), commit.operation().value());
+ *       this.map = Collections.unmodifiableMap(map);
+ *       commit.close();
+ *     }
+ *   }
+ *   }
+ * </pre>
+ * Snapshots are installed in the state machine thread via {@link #install(io.atomix.copycat.server.storage.snapshot.SnapshotReader)}
+ * as with any other {@link Snapshottable} state machine.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface AsyncSnapshottable extends Snapshottable {
+
+  /**
+   * Captures a point-in-time view of the state machine state.
+   * <p>
+   * This method is called in the state machine thread at the index at which the snapshot is taken. The returned
+   * view will be {@link View#write(SnapshotWriter) written} to the snapshot in a separate thread and
+   * {@link View#close() closed} once it has been written.
+   *
+   * @return A view of the state machine state.
+   */
+  View snapshotView();
+
+  /**
+   * Takes a snapshot of the state machine state by writing a view of the state in the calling thread.
+   *
+   * @param writer The snapshot writer.
+   */
+  @Override
+  default void snapshot(SnapshotWriter writer) {
+    try (View view = snapshotView()) {
+      view.write(writer);
+    }
+  }
+
+  /**
+   * A point-in-time view of the state machine state.
+   */
+  @FunctionalInterface
+  interface View extends AutoCloseable {
+
+    /**
+     * Writes the viewed state to the snapshot.
+     * <p>
+     * This method is called in a snapshot thread concurrently with the application of commands to the
+     * state machine.
+     *
+     * @param writer The snapshot writer.
+     */
+    void write(SnapshotWriter writer);
+
+    /**
+     * Releases any resources held by the view.
+     */
+    @Override
+    default void close() {
+    }
+  }
+
+}
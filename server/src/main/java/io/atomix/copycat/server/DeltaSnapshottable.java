@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server;
+
+import io.atomix.copycat.server.storage.snapshot.SnapshotReader;
+import io.atomix.copycat.server.storage.snapshot.SnapshotWriter;
+
+/**
+ * Support for writing {@link StateMachine} snapshots as deltas of the previous snapshot.
+ * <p>
+ * State machines that implement {@link Snapshottable} rewrite their entire state on each snapshot. For large state
+ * that changes slowly, state machines that implement this interface can instead write only the state changed since
+ * the previous snapshot. State is written to snapshots as keyed {@link SnapshotWriter#writeRecord(Object, Object) records}:
+ * {@link #snapshot(SnapshotWriter)} writes a record for each key in the state machine, and {@link #snapshotDelta(SnapshotWriter)}
+ * writes records changed and {@link SnapshotWriter#removeRecord(Object) removes} records deleted since the previous
+ * snapshot. Records must be written in ascending key order or via {@link SnapshotWriter#writeRecords(java.util.Map)}.
+ * <p>
+ * <pre>
+ *   {@code
+ *   public class MyStateMachine extends StateMachine implements DeltaSnapshottable {
+ *     private final Map<String, String> map = new HashMap<>();
+ *     private final Map<String, String> changes = new HashMap<>();
+ *
+ *     public void snapshot(SnapshotWriter writer) {
+ *       writer.writeRecords(map);
+ *       changes.clear();
+ *     }
+ *
+ *     public void snapshotDelta(SnapshotWriter writer) {
+ *       writer.writeRecords(changes);
+ *       changes.clear();
+ *     }
+ *
+ *     public void install(SnapshotReader reader) {
+ *       map.clear();
+ *       changes.clear();
+ *       reader.<String, String>readRecords(map::put);
+ *     }
+ *
+ *     public void put(Commit<Put> commit) {
+ *       map.put(commit.operation().key(), commit.operation().value());
+ *       changes.put(commit.operation().key(), commit.operation().value());
+ *       commit.close();
+ *     }
+ *   }
+ *   }
+ * </pre>
+ * The server only takes a delta snapshot when the previous snapshot written or installed by the state machine is
+ * the current snapshot in the {@link io.atomix.copycat.server.storage.snapshot.SnapshotStore}. If a snapshot fails
+ * or is discarded, the next snapshot is a full snapshot. Snapshots installed via {@link #install(SnapshotReader)}
+ * present the merged records of the installed snapshot's chain of deltas.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface DeltaSnapshottable extends Snapshottable {
+
+  /**
+   * Takes a full snapshot of the state machine state.
+   * <p>
+   * The snapshot must be written entirely as {@link SnapshotWriter#writeRecord(Object, Object) records}. Changes
+   * tracked for delta snapshots should be reset once the full snapshot has been written.
+   *
+   * @param writer The snapshot writer.
+   */
+  @Override
+  void snapshot(SnapshotWriter writer);
+
+  /**
+   * Takes a delta snapshot of the state changed since the previous snapshot.
+   * <p>
+   * The delta must be written entirely as {@link SnapshotWriter#writeRecord(Object, Object) records}, writing a
+   * record for each key changed and {@link SnapshotWriter#removeRecord(Object) removing} each key deleted since the
+   * previous call to {@link #snapshot(SnapshotWriter)}, {@link #snapshotDelta(SnapshotWriter)}, or
+   * {@link #install(SnapshotReader)}. Changes tracked for delta snapshots should be reset once the delta has been
+   * written.
+   *
+   * @param writer The snapshot writer.
+   */
+  void snapshotDelta(SnapshotWriter writer);
+
+}
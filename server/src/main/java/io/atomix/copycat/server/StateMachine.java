@@ -205,6 +205,10 @@ import java.util.function.Function;
  * marked with the {@link Command.CompactionMode#SNAPSHOT SNAPSHOT} compaction mode. Note that
  * state machines should still ensure that snapshottable commits are {@link Commit#close() closed} once they've been
  * applied to the state machine, but state machines are free to immediately close all snapshottable commits.
+ * <p>
+ * Snapshots are written in the state machine thread, so commands cannot be applied while a snapshot is written.
+ * State machines with large state can implement {@link AsyncSnapshottable} to capture a point-in-time view of their
+ * state that is written to the snapshot in a separate thread.
  *
  * @see Commit
  * @see Command
@@ -20,6 +20,7 @@ import io.atomix.catalyst.util.Assert;
 import io.atomix.copycat.protocol.Response;
 import io.atomix.copycat.server.CopycatServer;
 import io.atomix.copycat.server.protocol.*;
+import io.atomix.copycat.server.storage.LogReader;
 import io.atomix.copycat.server.storage.entry.Entry;
 import io.atomix.copycat.server.storage.snapshot.Snapshot;
 import io.atomix.copycat.server.storage.snapshot.SnapshotReader;
@@ -122,14 +123,18 @@ abstract class AbstractAppender implements AutoCloseable {
     // entry will be sent in a batch of size one
     int size = 0;
 
-    // Iterate through remaining entries in the log up to the last index.
-    for (long i = index; i <= lastIndex; i++) {
-      // Get the entry from the log and append it if it's not null. Entries in the log can be null
+    // Iterate through remaining entries in the log up to the last index. The member's reader is retained
+    // between requests, so entries prefetched beyond this batch are sent in the next request without being
+    // read from the log again.
+    LogReader reader = member.getLogReader(context.getLog(), index, MAX_BATCH_SIZE);
+    while (reader.nextIndex() <= lastIndex) {
+      // Read the entry from the log and append it if it's not null. Entries in the log can be null
       // if they've been cleaned or compacted from the log. Each entry sent in the append request
       // has a unique index to handle gaps in the log.
-      Entry entry = context.getLog().get(i);
+      Entry entry = reader.next();
       if (entry != null) {
         if (!entries.isEmpty() && size + entry.size() > MAX_BATCH_SIZE) {
+          reader.unread(entry);
           break;
         }
         size += entry.size();
@@ -625,6 +630,7 @@ abstract class AbstractAppender implements AutoCloseable {
   @Override
   public void close() {
     open = false;
+    context.getClusterState().getRemoteMemberStates().forEach(MemberState::closeLogReader);
   }
 
 }
@@ -44,7 +44,7 @@ abstract class ActiveState extends PassiveState {
     // assign that term and leader to the current context and transition to follower.
     boolean transition = updateTermAndLeader(request.term(), request.leader());
 
-    CompletableFuture<AppendResponse> future = CompletableFuture.completedFuture(logResponse(handleAppend(request)));
+    CompletableFuture<AppendResponse> future = awaitDurable(logResponse(handleAppend(request)));
 
     // If a transition is required then transition back to the follower state.
     // If the node is already a follower then the transition will be ignored.
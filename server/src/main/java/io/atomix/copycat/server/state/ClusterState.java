@@ -686,6 +686,7 @@ final class ClusterState implements Cluster, AutoCloseable {
         }
         membersMap.remove(member.getMember().id());
         addressMap.remove(member.getMember().address());
+        member.closeLogReader();
         leaveListeners.accept(member.getMember());
       } else {
         i++;
@@ -142,6 +142,13 @@ final class LeaderAppender extends AbstractAppender {
     if (index <= context.getCommitIndex())
       return CompletableFuture.completedFuture(index);
 
+    // The leader's log counts towards the quorum for an entry only once the entry is durable. If there are no other
+    // active members in the cluster, the leader's log is the quorum, so defer the commit until the entry is durable.
+    boolean durable = index <= context.getLog().durableIndex();
+    if (!durable && context.getClusterState().getActiveMemberStates().isEmpty()) {
+      return context.getLog().sync(index).thenCompose(durableIndex -> appendEntries(index));
+    }
+
     // If there are no other stateful servers in the cluster, immediately commit the index.
     if (context.getClusterState().getActiveMemberStates().isEmpty() && context.getClusterState().getPassiveMemberStates().isEmpty()) {
       long previousCommitIndex = context.getCommitIndex();
@@ -159,6 +166,16 @@ final class LeaderAppender extends AbstractAppender {
       return CompletableFuture.completedFuture(index);
     }
 
+    // If the log is still writing or flushing the entry, replicate the entry concurrently with the local write.
+    // The commit index is capped at the durable index, so recompute it once the entry is durable in the leader's log.
+    if (!durable) {
+      context.getLog().sync(index).thenRun(() -> {
+        if (open) {
+          commitEntries();
+        }
+      });
+    }
+
     // Only send entry-specific AppendRequests to active members of the cluster.
     return appendFutures.computeIfAbsent(index, i -> {
       for (MemberState member : context.getClusterState().getActiveMemberStates()) {
@@ -321,14 +338,17 @@ final class LeaderAppender extends AbstractAppender {
     // ensure all commit futures are completed and cleared.
     if (members.isEmpty()) {
       long previousCommitIndex = context.getCommitIndex();
-      long commitIndex = context.getLog().lastIndex();
-      context.setCommitIndex(commitIndex);
-      completeCommits(previousCommitIndex, commitIndex);
+      long commitIndex = context.getLog().durableIndex();
+      if (commitIndex > previousCommitIndex) {
+        context.setCommitIndex(commitIndex);
+        completeCommits(previousCommitIndex, commitIndex);
+      }
       return;
     }
 
-    // Calculate the current commit index as the median matchIndex.
-    long commitIndex = members.get(quorumIndex()).getMatchIndex();
+    // Calculate the current commit index as the median matchIndex. The leader's own log is counted in the quorum,
+    // so entries can't be committed until they're durable in the leader's log.
+    long commitIndex = Math.min(members.get(quorumIndex()).getMatchIndex(), context.getLog().durableIndex());
 
     // If the commit index has increased then update the commit index. Note that in order to ensure
     // the leader completeness property holds, we verify that the commit index is greater than or equal to
@@ -17,6 +17,7 @@ package io.atomix.copycat.server.state;
 
 import io.atomix.catalyst.util.Assert;
 import io.atomix.copycat.server.storage.Log;
+import io.atomix.copycat.server.storage.LogReader;
 
 /**
  * Cluster member state.
@@ -41,6 +42,7 @@ final class MemberState {
   private boolean configuring;
   private boolean installing;
   private int failures;
+  private LogReader reader;
   private final TimeBuffer timeBuffer = new TimeBuffer(8);
 
   public MemberState(ServerMember member, ClusterState cluster) {
@@ -63,6 +65,7 @@ final class MemberState {
     installing = false;
     appendSucceeded = false;
     failures = 0;
+    closeLogReader();
   }
 
   /**
@@ -342,6 +345,39 @@ final class MemberState {
     return this;
   }
 
+  /**
+   * Returns the reader from which to read entries to send to the member, positioned at the given index.
+   * <p>
+   * The reader is retained between append requests so that entries prefetched for one request are sent in the
+   * next without being read again. The reader is only reset if it's not positioned at the given index.
+   *
+   * @param log The log from which to read entries.
+   * @param index The index of the next entry to send to the member.
+   * @param prefetchSize The maximum number of bytes to prefetch from the log.
+   * @return The member's log reader.
+   */
+  LogReader getLogReader(Log log, long index, int prefetchSize) {
+    if (reader == null || !reader.isOpen()) {
+      reader = log.reader(index, prefetchSize);
+    } else if (reader.nextIndex() != index) {
+      reader.reset(index);
+    }
+    return reader;
+  }
+
+  /**
+   * Closes the member's log reader, releasing any prefetched entries.
+   *
+   * @return The member state.
+   */
+  MemberState closeLogReader() {
+    if (reader != null) {
+      reader.close();
+      reader = null;
+    }
+    return this;
+  }
+
   /**
    * Returns the member heartbeat time.
    *
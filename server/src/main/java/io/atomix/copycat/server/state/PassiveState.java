@@ -111,7 +111,20 @@ class PassiveState extends ReserveState {
     logRequest(request);
     updateTermAndLeader(request.term(), request.leader());
 
-    return CompletableFuture.completedFuture(logResponse(handleAppend(request)));
+    return awaitDurable(logResponse(handleAppend(request)));
+  }
+
+  /**
+   * Returns a future to be completed with the given response once the entries it acknowledges are durable.
+   * <p>
+   * A successful response acknowledges all entries up to the response's log index. If the log is still writing or
+   * flushing those entries, the response is deferred until the log has made them durable.
+   */
+  protected CompletableFuture<AppendResponse> awaitDurable(AppendResponse response) {
+    if (response.succeeded() && response.logIndex() > context.getLog().durableIndex()) {
+      return context.getLog().sync(response.logIndex()).thenApply(index -> response);
+    }
+    return CompletableFuture.completedFuture(response);
   }
 
   /**
@@ -15,16 +15,20 @@
  */
 package io.atomix.copycat.server.state;
 
+import io.atomix.catalyst.concurrent.CatalystThreadFactory;
 import io.atomix.catalyst.concurrent.ComposableFuture;
 import io.atomix.catalyst.concurrent.Futures;
 import io.atomix.catalyst.concurrent.ThreadContext;
 import io.atomix.catalyst.util.Assert;
 import io.atomix.copycat.error.InternalException;
 import io.atomix.copycat.error.UnknownSessionException;
+import io.atomix.copycat.server.AsyncSnapshottable;
+import io.atomix.copycat.server.DeltaSnapshottable;
 import io.atomix.copycat.server.Snapshottable;
 import io.atomix.copycat.server.StateMachine;
 import io.atomix.copycat.server.session.SessionListener;
 import io.atomix.copycat.server.storage.Log;
+import io.atomix.copycat.server.storage.LogReader;
 import io.atomix.copycat.server.storage.entry.*;
 import io.atomix.copycat.server.storage.snapshot.Snapshot;
 import io.atomix.copycat.server.storage.snapshot.SnapshotReader;
@@ -34,12 +38,21 @@ import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /**
  * Internal server state machine.
  * <p>
  * The internal state machine handles application of commands to the user provided {@link StateMachine}
  * and keeps track of internal state like sessions and the various indexes relevant to log compaction.
+ * <p>
+ * Snapshots of {@link Snapshottable} state machines are written in the state machine thread. If the state machine
+ * is {@link AsyncSnapshottable}, only a view of its state is captured in the state machine thread, and the view is
+ * written to the snapshot in a separate snapshot thread while the state machine continues to apply commits.
+ * If the state machine is {@link DeltaSnapshottable}, snapshots following a snapshot the state machine wrote or
+ * installed are written as deltas of that snapshot.
  *
  * @author <a href="http://github.com/kuujo>Jordan Halterman</a>
  */
@@ -50,9 +63,13 @@ final class ServerStateMachine implements AutoCloseable {
   private final Log log;
   private final ServerStateMachineExecutor executor;
   private final ServerCommitPool commits;
+  private final ExecutorService snapshotExecutor;
+  private LogReader reader;
   private volatile long lastApplied;
   private long lastCompleted;
   private volatile Snapshot pendingSnapshot;
+  private volatile CompletableFuture<Void> pendingSnapshotWrite;
+  private long deltaBaseIndex;
 
   ServerStateMachine(StateMachine stateMachine, ServerContext state, ThreadContext executor) {
     this.stateMachine = Assert.notNull(stateMachine, "stateMachine");
@@ -60,6 +77,7 @@ final class ServerStateMachine implements AutoCloseable {
     this.log = state.getLog();
     this.executor = new ServerStateMachineExecutor(new ServerStateMachineContext(state.getConnections(), new ServerSessionManager(state)), executor);
     this.commits = new ServerCommitPool(log, this.executor.context().sessions());
+    this.snapshotExecutor = stateMachine instanceof AsyncSnapshottable ? Executors.newSingleThreadExecutor(new CatalystThreadFactory("copycat-snapshot-%d")) : null;
     init();
   }
 
@@ -88,21 +106,67 @@ final class ServerStateMachine implements AutoCloseable {
     Snapshot currentSnapshot = state.getSnapshotStore().currentSnapshot();
     if (pendingSnapshot == null && stateMachine instanceof Snapshottable
       && (currentSnapshot == null || (log.compactor().compactIndex() > currentSnapshot.index() && lastApplied > currentSnapshot.index()))) {
-      pendingSnapshot = state.getSnapshotStore().createSnapshot(lastApplied);
+      // Delta snapshots can only be taken if the state machine is tracking changes since the current snapshot.
+      boolean delta = stateMachine instanceof DeltaSnapshottable && currentSnapshot != null && currentSnapshot.index() == deltaBaseIndex;
+      Snapshot snapshot = delta ? state.getSnapshotStore().createDeltaSnapshot(lastApplied) : state.getSnapshotStore().createSnapshot(lastApplied);
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      pendingSnapshot = snapshot;
+      pendingSnapshotWrite = future;
 
       // Write the snapshot data. Note that we don't complete the snapshot here since the completion
       // of a snapshot is predicated on session events being received by clients up to the snapshot index.
-      LOGGER.info("{} - Taking snapshot {}", state.getCluster().member().address(), pendingSnapshot.index());
-      executor.executor().execute(() -> {
-        synchronized (pendingSnapshot) {
-          try (SnapshotWriter writer = pendingSnapshot.writer()) {
-            ((Snapshottable) stateMachine).snapshot(writer);
+      LOGGER.info("{} - Taking {}snapshot {}", state.getCluster().member().address(), delta ? "delta " : "", snapshot.index());
+      if (delta) {
+        executor.executor().execute(() -> writeSnapshot(snapshot, ((DeltaSnapshottable) stateMachine)::snapshotDelta, future));
+      } else if (snapshotExecutor != null) {
+        // Capture a view of the state in the state machine thread so the view reflects the state at the snapshot
+        // index, and write the view in the snapshot thread while the state machine continues to apply commits.
+        executor.executor().execute(() -> {
+          AsyncSnapshottable.View view;
+          try {
+            view = ((AsyncSnapshottable) stateMachine).snapshotView();
+          } catch (Exception e) {
+            future.completeExceptionally(e);
+            return;
           }
+          snapshotExecutor.execute(() -> {
+            try (AsyncSnapshottable.View v = view) {
+              writeSnapshot(snapshot, v::write, future);
+            }
+          });
+        });
+      } else {
+        executor.executor().execute(() -> writeSnapshot(snapshot, ((Snapshottable) stateMachine)::snapshot, future));
+      }
+
+      // Once the snapshot has been written, attempt to complete it in the server thread.
+      future.whenComplete((result, error) -> {
+        if (error != null) {
+          LOGGER.warn("{} - Failed to write snapshot {}", state.getCluster().member().address(), snapshot.index(), error);
         }
+        state.getThreadContext().execute(() -> {
+          if (log.isOpen()) {
+            completeSnapshot();
+          }
+        });
       });
     }
   }
 
+  /**
+   * Writes a snapshot using the given snapshot function.
+   */
+  private void writeSnapshot(Snapshot snapshot, Consumer<SnapshotWriter> function, CompletableFuture<Void> future) {
+    synchronized (snapshot) {
+      try (SnapshotWriter writer = snapshot.writer()) {
+        function.accept(writer);
+        future.complete(null);
+      } catch (Exception e) {
+        future.completeExceptionally(e);
+      }
+    }
+  }
+
   /**
    * Installs a snapshot of the state machine state if necessary.
    * <p>
@@ -133,6 +197,7 @@ final class ServerStateMachine implements AutoCloseable {
 
       // Once a snapshot has been applied, snapshot dependent entries can be cleaned from the log.
       log.compactor().snapshotIndex(currentSnapshot.index());
+      deltaBaseIndex = currentSnapshot.index();
     }
   }
 
@@ -148,17 +213,34 @@ final class ServerStateMachine implements AutoCloseable {
   private void completeSnapshot() {
     state.checkThread();
 
+    // If the pending snapshot has not yet been written, it will be completed once the write is complete.
+    if (pendingSnapshot == null || !pendingSnapshotWrite.isDone()) {
+      return;
+    }
+
+    // If the pending snapshot could not be written, discard it so that a new snapshot can be taken.
+    if (pendingSnapshotWrite.isCompletedExceptionally()) {
+      Snapshot snapshot = pendingSnapshot;
+      pendingSnapshot = null;
+      deltaBaseIndex = 0;
+      snapshot.close();
+      snapshot.delete();
+      return;
+    }
+
     // If a snapshot is pending to be persisted and the last completed index is greater than the
     // waiting snapshot index and no current or newer snapshot exists,
     // persist the snapshot and update the last snapshot index.
-    if (pendingSnapshot != null && lastCompleted > pendingSnapshot.index()) {
+    if (lastCompleted > pendingSnapshot.index()) {
       long snapshotIndex = pendingSnapshot.index();
       LOGGER.debug("{} - Completing snapshot {}", state.getCluster().member().address(), snapshotIndex);
       synchronized (pendingSnapshot) {
         Snapshot currentSnapshot = state.getSnapshotStore().currentSnapshot();
         if (currentSnapshot == null || snapshotIndex > currentSnapshot.index()) {
           pendingSnapshot.complete();
+          deltaBaseIndex = snapshotIndex;
         } else {
+          deltaBaseIndex = 0;
           LOGGER.debug("{} - Discarding pending snapshot at index {} since the current snapshot is at index {}", state.getCluster().member().address(), pendingSnapshot.index(), currentSnapshot.index());
         }
         pendingSnapshot = null;
@@ -274,8 +356,10 @@ final class ServerStateMachine implements AutoCloseable {
     // If the effective commit index is greater than the last index applied to the state machine then apply remaining entries.
     long lastIndex = Math.min(index, log.lastIndex());
     if (lastIndex > lastApplied) {
-      for (long i = lastApplied + 1; i <= lastIndex; i++) {
-        Entry entry = log.get(i);
+      LogReader reader = reader(lastApplied + 1);
+      while (reader.nextIndex() <= lastIndex) {
+        long i = reader.nextIndex();
+        Entry entry = reader.next();
         if (entry != null) {
           apply(entry).whenComplete((result, error) -> entry.release());
         }
@@ -284,6 +368,21 @@ final class ServerStateMachine implements AutoCloseable {
     }
   }
 
+  /**
+   * Returns the state machine's log reader positioned at the given index.
+   * <p>
+   * The reader is retained between calls to {@link #applyAll(long)} so that entries prefetched from the log are
+   * applied without being read again. The reader is only reset if it's not positioned at the given index.
+   */
+  private LogReader reader(long index) {
+    if (reader == null || !reader.isOpen()) {
+      reader = log.reader(index);
+    } else if (reader.nextIndex() != index) {
+      reader.reset(index);
+    }
+    return reader;
+  }
+
   /**
    * Applies the entry at the given index to the state machine.
    * <p>
@@ -983,7 +1082,14 @@ final class ServerStateMachine implements AutoCloseable {
 
   @Override
   public void close() {
+    if (reader != null) {
+      reader.close();
+      reader = null;
+    }
     executor.close();
+    if (snapshotExecutor != null) {
+      snapshotExecutor.shutdown();
+    }
   }
 
   /**
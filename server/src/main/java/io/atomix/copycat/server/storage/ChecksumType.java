@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.storage;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * {@link Segment} record checksum algorithms.
+ * <p>
+ * Each entry written to a segment is stored with a 32-bit checksum of the serialized entry bytes. The algorithm
+ * used to compute record checksums is configured via {@link Storage.Builder#withChecksumType(ChecksumType)} and
+ * recorded in the {@link SegmentDescriptor} of each new segment, so segments written with different algorithms can
+ * be read by the same log. Segments written before the checksum type was recorded in the descriptor use {@link #CRC32}.
+ * <p>
+ * Checksums are reused rather than allocated for each record. {@link #checksum(byte[], int, int)} and
+ * {@link #checksum(ByteBuffer)} compute checksums using an instance local to the calling thread.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public enum ChecksumType {
+
+  /**
+   * Computes record checksums using {@link java.util.zip.CRC32}.
+   */
+  CRC32(0) {
+    @Override
+    public Checksum newChecksum() {
+      return new java.util.zip.CRC32();
+    }
+  },
+
+  /**
+   * Computes record checksums using the CRC-32C (Castagnoli) polynomial.
+   * <p>
+   * When running on Java 9 or later, checksums are computed by {@code java.util.zip.CRC32C} which uses hardware
+   * instructions where available. On earlier Java versions, a table-based software implementation is used.
+   */
+  CRC32C(1) {
+    @Override
+    public Checksum newChecksum() {
+      return Crc32c.create();
+    }
+  };
+
+  private static final int BUFFER_SIZE = 1024 * 8;
+  private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+  /**
+   * Returns the checksum type for the given identifier.
+   *
+   * @param id The checksum type identifier.
+   * @return The checksum type.
+   * @throws DescriptorException if the identifier is unknown
+   */
+  public static ChecksumType forId(int id) {
+    for (ChecksumType type : values()) {
+      if (type.id == id) {
+        return type;
+      }
+    }
+    throw new DescriptorException("unknown checksum type: %d", id);
+  }
+
+  private final int id;
+  private final ThreadLocal<Checksum> checksums = ThreadLocal.withInitial(this::newChecksum);
+
+  ChecksumType(int id) {
+    this.id = id;
+  }
+
+  /**
+   * Returns the checksum type identifier stored in the segment descriptor.
+   *
+   * @return The checksum type identifier.
+   */
+  public int id() {
+    return id;
+  }
+
+  /**
+   * Returns a new checksum instance.
+   *
+   * @return A new checksum instance.
+   */
+  public abstract Checksum newChecksum();
+
+  /**
+   * Computes the checksum of the given bytes.
+   *
+   * @param bytes The bytes for which to compute the checksum.
+   * @param offset The offset of the first byte.
+   * @param length The number of bytes.
+   * @return The computed checksum.
+   */
+  public long checksum(byte[] bytes, int offset, int length) {
+    Checksum checksum = checksums.get();
+    checksum.reset();
+    checksum.update(bytes, offset, length);
+    return checksum.getValue();
+  }
+
+  /**
+   * Computes the checksum of the remaining bytes in the given buffer.
+   * <p>
+   * The buffer's position is advanced to its limit.
+   *
+   * @param buffer The buffer for which to compute the checksum.
+   * @return The computed checksum.
+   */
+  public long checksum(ByteBuffer buffer) {
+    Checksum checksum = checksums.get();
+    checksum.reset();
+    if (checksum instanceof java.util.zip.CRC32) {
+      ((java.util.zip.CRC32) checksum).update(buffer);
+    } else if (checksum instanceof Crc32c) {
+      ((Crc32c) checksum).update(buffer);
+    } else if (buffer.hasArray()) {
+      checksum.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      ((java.nio.Buffer) buffer).position(buffer.limit());
+    } else {
+      byte[] bytes = BUFFER.get();
+      while (buffer.hasRemaining()) {
+        int length = Math.min(buffer.remaining(), bytes.length);
+        buffer.get(bytes, 0, length);
+        checksum.update(bytes, 0, length);
+      }
+    }
+    return checksum.getValue();
+  }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.storage;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@link Segment} record compression codecs.
+ * <p>
+ * When compression is enabled via {@link Storage.Builder#withCompressionType(CompressionType)}, segments buffer
+ * consecutive records in memory and write them to the segment as a single compressed block once the block reaches
+ * the configured {@link Storage.Builder#withCompressionBlockSize(int) block size} or the segment is flushed. The codec
+ * is recorded in the {@link SegmentDescriptor} of each new segment, so segments written with different codecs can be
+ * read by the same log. Segments written before the codec was recorded in the descriptor use {@link #NONE}.
+ * <p>
+ * Codecs reuse compressors rather than allocating one for each block. {@link #compress(byte[], int, int)} and
+ * {@link #decompress(byte[], int, int, byte[])} use a compressor local to the calling thread.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public enum CompressionType {
+
+  /**
+   * Stores records uncompressed.
+   */
+  NONE(0) {
+    @Override
+    public byte[] compress(byte[] bytes, int offset, int length) {
+      return Arrays.copyOfRange(bytes, offset, offset + length);
+    }
+
+    @Override
+    public boolean decompress(byte[] bytes, int offset, int length, byte[] output) {
+      if (length != output.length) {
+        return false;
+      }
+      System.arraycopy(bytes, offset, output, 0, length);
+      return true;
+    }
+  },
+
+  /**
+   * Compresses blocks of records using {@link Deflater} at {@link Deflater#BEST_SPEED}.
+   * <p>
+   * Compressed blocks include an Adler-32 checksum which is verified when the block is decompressed.
+   */
+  DEFLATE(1) {
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    @Override
+    public byte[] compress(byte[] bytes, int offset, int length) {
+      Deflater deflater = deflaters.get();
+      deflater.reset();
+      deflater.setInput(bytes, offset, length);
+      deflater.finish();
+
+      byte[] output = new byte[length + (length >> 12) + 64];
+      int position = 0;
+      while (!deflater.finished()) {
+        if (position == output.length) {
+          output = Arrays.copyOf(output, output.length * 2);
+        }
+        position += deflater.deflate(output, position, output.length - position);
+      }
+      return Arrays.copyOf(output, position);
+    }
+
+    @Override
+    public boolean decompress(byte[] bytes, int offset, int length, byte[] output) {
+      Inflater inflater = inflaters.get();
+      inflater.reset();
+      inflater.setInput(bytes, offset, length);
+      try {
+        int position = 0;
+        while (!inflater.finished()) {
+          int read = inflater.inflate(output, position, output.length - position);
+          if (read == 0 && (inflater.needsInput() || inflater.needsDictionary() || position == output.length)) {
+            return false;
+          }
+          position += read;
+        }
+        return position == output.length;
+      } catch (DataFormatException e) {
+        return false;
+      }
+    }
+  };
+
+  /**
+   * Returns the compression type for the given identifier.
+   *
+   * @param id The compression type identifier.
+   * @return The compression type.
+   * @throws DescriptorException if the identifier is unknown
+   */
+  public static CompressionType forId(int id) {
+    for (CompressionType type : values()) {
+      if (type.id == id) {
+        return type;
+      }
+    }
+    throw new DescriptorException("unknown compression type: %d", id);
+  }
+
+  private final int id;
+
+  CompressionType(int id) {
+    this.id = id;
+  }
+
+  /**
+   * Returns the compression type identifier stored in the segment descriptor.
+   *
+   * @return The compression type identifier.
+   */
+  public int id() {
+    return id;
+  }
+
+  /**
+   * Compresses the given bytes.
+   *
+   * @param bytes The bytes to compress.
+   * @param offset The offset of the first byte to compress.
+   * @param length The number of bytes to compress.
+   * @return The compressed bytes.
+   */
+  public abstract byte[] compress(byte[] bytes, int offset, int length);
+
+  /**
+   * Decompresses the given bytes into the given output array.
+   * <p>
+   * The output array must be exactly the length of the decompressed bytes.
+   *
+   * @param bytes The compressed bytes.
+   * @param offset The offset of the first compressed byte.
+   * @param length The number of compressed bytes.
+   * @param output The array into which to decompress the bytes.
+   * @return Indicates whether the bytes were successfully decompressed to exactly fill the output array.
+   */
+  public abstract boolean decompress(byte[] bytes, int offset, int length, byte[] output);
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.storage;
+
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * Software CRC-32C (Castagnoli) checksum.
+ * <p>
+ * This implementation uses the slicing-by-8 algorithm to process eight bytes per iteration. It is used only when
+ * {@code java.util.zip.CRC32C}, which is available as of Java 9, cannot be loaded. See {@link #create()}.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+final class Crc32c implements Checksum {
+  private static final int POLYNOMIAL = 0x82F63B78;
+  private static final int[] TABLE = new int[8 * 256];
+  private static final Constructor<? extends Checksum> JDK_CONSTRUCTOR = jdkConstructor();
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      int crc = i;
+      for (int j = 0; j < 8; j++) {
+        crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+      }
+      TABLE[i] = crc;
+    }
+    for (int i = 0; i < 256; i++) {
+      for (int j = 1; j < 8; j++) {
+        int crc = TABLE[(j - 1) * 256 + i];
+        TABLE[j * 256 + i] = (crc >>> 8) ^ TABLE[crc & 0xff];
+      }
+    }
+  }
+
+  /**
+   * Looks up the JDK CRC-32C constructor if available.
+   */
+  @SuppressWarnings("unchecked")
+  private static Constructor<? extends Checksum> jdkConstructor() {
+    try {
+      return (Constructor<? extends Checksum>) Class.forName("java.util.zip.CRC32C").getConstructor();
+    } catch (ClassNotFoundException | NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns a new CRC-32C checksum, preferring the JDK implementation when available.
+   *
+   * @return A new CRC-32C checksum.
+   */
+  static Checksum create() {
+    if (JDK_CONSTRUCTOR != null) {
+      try {
+        return JDK_CONSTRUCTOR.newInstance();
+      } catch (ReflectiveOperationException e) {
+      }
+    }
+    return new Crc32c();
+  }
+
+  private int crc = 0xffffffff;
+
+  @Override
+  public void update(int b) {
+    crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xff];
+  }
+
+  @Override
+  public void update(byte[] bytes, int offset, int length) {
+    int crc = this.crc;
+    while (length >= 8) {
+      crc ^= (bytes[offset] & 0xff)
+        | (bytes[offset + 1] & 0xff) << 8
+        | (bytes[offset + 2] & 0xff) << 16
+        | (bytes[offset + 3] & 0xff) << 24;
+      crc = TABLE[7 * 256 + (crc & 0xff)]
+        ^ TABLE[6 * 256 + ((crc >>> 8) & 0xff)]
+        ^ TABLE[5 * 256 + ((crc >>> 16) & 0xff)]
+        ^ TABLE[4 * 256 + (crc >>> 24)]
+        ^ TABLE[3 * 256 + (bytes[offset + 4] & 0xff)]
+        ^ TABLE[2 * 256 + (bytes[offset + 5] & 0xff)]
+        ^ TABLE[256 + (bytes[offset + 6] & 0xff)]
+        ^ TABLE[bytes[offset + 7] & 0xff];
+      offset += 8;
+      length -= 8;
+    }
+    while (length-- > 0) {
+      crc = (crc >>> 8) ^ TABLE[(crc ^ bytes[offset++]) & 0xff];
+    }
+    this.crc = crc;
+  }
+
+  /**
+   * Updates the checksum with the remaining bytes in the given buffer, advancing the buffer's position to its limit.
+   */
+  public void update(ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      ((java.nio.Buffer) buffer).position(buffer.limit());
+    } else {
+      int crc = this.crc;
+      while (buffer.hasRemaining()) {
+        crc = (crc >>> 8) ^ TABLE[(crc ^ buffer.get()) & 0xff];
+      }
+      this.crc = crc;
+    }
+  }
+
+  @Override
+  public long getValue() {
+    return ~crc & 0xffffffffL;
+  }
+
+  @Override
+  public void reset() {
+    crc = 0xffffffff;
+  }
+
+}
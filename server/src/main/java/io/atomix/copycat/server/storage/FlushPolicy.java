@@ -0,0 +1,218 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.storage;
+
+import io.atomix.catalyst.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * Immutable policy dictating when {@link Log} segments are flushed to disk.
+ * <p>
+ * The flush policy controls the durability guarantees of the {@link Log}. Three modes are supported:
+ * <ul>
+ *   <li>{@link Mode#NEVER} - segments are only flushed when the log rolls over to a new segment or is closed</li>
+ *   <li>{@link Mode#COMMIT} - the current segment is flushed synchronously each time entries are
+ *   {@link Log#commit(long) committed}</li>
+ *   <li>{@link Mode#GROUP} - appended entries are flushed in batches by a background thread once the configured
+ *   {@link #interval()}, {@link #maxBytes()}, or {@link #maxEntries()} threshold is crossed</li>
+ * </ul>
+ * Group commit policies are created via the {@link #builder()}:
+ * <pre>
+ *   {@code
+ *   Storage storage = Storage.builder()
+ *     .withFlushPolicy(FlushPolicy.builder()
+ *       .withInterval(Duration.ofMillis(10))
+ *       .withMaxBytes(1024 * 1024)
+ *       .build())
+ *     .build();
+ *   }
+ * </pre>
+ * When the group mode is used, callers can await durability of a given index via {@link Log#sync(long)}.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public final class FlushPolicy {
+  private static final Duration DEFAULT_INTERVAL = Duration.ofMillis(10);
+  private static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+  private static final int DEFAULT_MAX_ENTRIES = 1024;
+
+  private static final FlushPolicy NEVER = new FlushPolicy(Mode.NEVER, DEFAULT_INTERVAL, DEFAULT_MAX_BYTES, DEFAULT_MAX_ENTRIES);
+  private static final FlushPolicy COMMIT = new FlushPolicy(Mode.COMMIT, DEFAULT_INTERVAL, DEFAULT_MAX_BYTES, DEFAULT_MAX_ENTRIES);
+
+  /**
+   * Returns a policy that never explicitly flushes the log.
+   *
+   * @return A policy that never explicitly flushes the log.
+   */
+  public static FlushPolicy never() {
+    return NEVER;
+  }
+
+  /**
+   * Returns a policy that flushes the current segment synchronously on every commit.
+   *
+   * @return A policy that flushes the current segment synchronously on every commit.
+   */
+  public static FlushPolicy onCommit() {
+    return COMMIT;
+  }
+
+  /**
+   * Returns a new group commit policy builder.
+   *
+   * @return A new group commit policy builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  private final Mode mode;
+  private final Duration interval;
+  private final long maxBytes;
+  private final int maxEntries;
+
+  private FlushPolicy(Mode mode, Duration interval, long maxBytes, int maxEntries) {
+    this.mode = mode;
+    this.interval = interval;
+    this.maxBytes = maxBytes;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Returns the flush mode.
+   *
+   * @return The flush mode.
+   */
+  public Mode mode() {
+    return mode;
+  }
+
+  /**
+   * Returns the maximum amount of time an appended entry may remain unflushed in {@link Mode#GROUP} mode.
+   *
+   * @return The maximum amount of time an appended entry may remain unflushed.
+   */
+  public Duration interval() {
+    return interval;
+  }
+
+  /**
+   * Returns the number of appended bytes after which a group flush is triggered.
+   *
+   * @return The number of appended bytes after which a group flush is triggered.
+   */
+  public long maxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * Returns the number of appended entries after which a group flush is triggered.
+   *
+   * @return The number of appended entries after which a group flush is triggered.
+   */
+  public int maxEntries() {
+    return maxEntries;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s[mode=%s, interval=%s, maxBytes=%d, maxEntries=%d]", getClass().getSimpleName(), mode, interval, maxBytes, maxEntries);
+  }
+
+  /**
+   * Log flush modes.
+   */
+  public enum Mode {
+
+    /**
+     * Segments are flushed only on segment rollover and when the log is closed.
+     */
+    NEVER,
+
+    /**
+     * The current segment is flushed synchronously each time entries are committed.
+     */
+    COMMIT,
+
+    /**
+     * Appended entries are flushed in batches by a background flusher.
+     */
+    GROUP,
+
+  }
+
+  /**
+   * Group commit flush policy builder.
+   */
+  public static class Builder implements io.atomix.catalyst.util.Builder<FlushPolicy> {
+    private Duration interval = DEFAULT_INTERVAL;
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the maximum amount of time an appended entry may remain unflushed, returning the builder for method chaining.
+     *
+     * @param interval The group flush interval.
+     * @return The flush policy builder.
+     * @throws NullPointerException if the interval is {@code null}
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public Builder withInterval(Duration interval) {
+      Assert.notNull(interval, "interval");
+      this.interval = Assert.arg(interval, !interval.isNegative() && !interval.isZero(), "interval must be positive");
+      return this;
+    }
+
+    /**
+     * Sets the number of appended bytes after which a flush is triggered, returning the builder for method chaining.
+     *
+     * @param maxBytes The number of appended bytes after which a flush is triggered.
+     * @return The flush policy builder.
+     * @throws IllegalArgumentException if {@code maxBytes} is not positive
+     */
+    public Builder withMaxBytes(long maxBytes) {
+      this.maxBytes = Assert.arg(maxBytes, maxBytes > 0, "maxBytes must be positive");
+      return this;
+    }
+
+    /**
+     * Sets the number of appended entries after which a flush is triggered, returning the builder for method chaining.
+     *
+     * @param maxEntries The number of appended entries after which a flush is triggered.
+     * @return The flush policy builder.
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     */
+    public Builder withMaxEntries(int maxEntries) {
+      this.maxEntries = Assert.arg(maxEntries, maxEntries > 0, "maxEntries must be positive");
+      return this;
+    }
+
+    /**
+     * Builds the group commit flush policy.
+     *
+     * @return The group commit flush policy.
+     */
+    @Override
+    public FlushPolicy build() {
+      return new FlushPolicy(Mode.GROUP, interval, maxBytes, maxEntries);
+    }
+  }
+
+}
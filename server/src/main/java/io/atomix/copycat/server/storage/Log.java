@@ -22,8 +22,10 @@ import io.atomix.copycat.server.storage.compaction.Compaction;
 import io.atomix.copycat.server.storage.compaction.Compactor;
 import io.atomix.copycat.server.storage.entry.Entry;
 import io.atomix.copycat.server.storage.entry.TypedEntryPool;
-import io.atomix.copycat.server.storage.util.EntryBuffer;
+import io.atomix.copycat.server.storage.util.EntryCache;
 
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 
 /**
@@ -111,15 +113,27 @@ import java.util.concurrent.Executors;
  * live entries, it combines multiple segments up to the configured segment capacity. When a segment becomes full during
  * major compaction, the compaction process rolls over to a new segment and continues compaction. This results in a
  * significantly smaller number of files.
+ * <p>
+ * If {@link Storage#asyncAppend() asynchronous appends} are enabled, appended entries are serialized on the appending
+ * thread and written to segments by a dedicated I/O thread. The {@link #lastIndex()} reflects entries as soon as
+ * they're appended, and reads of entries that have not yet been written block until the I/O thread has written them.
+ * The {@link #durableIndex()} is the index up to which entries have been written and flushed according to the
+ * {@link Storage#flushPolicy()}, and servers wait for entries to become durable via {@link #sync(long)} before they
+ * acknowledge or commit them. If appends outpace the I/O thread, compaction is briefly paused to free up disk
+ * bandwidth for the writer.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public class Log implements AutoCloseable {
+  private static final Duration BACK_PRESSURE_PAUSE = Duration.ofMillis(100);
   private final Storage storage;
   final SegmentManager segments;
   private final Compactor compactor;
-  private final EntryBuffer entryBuffer;
+  private final EntryCache entryCache;
+  private final LogFlusher flusher;
+  private final LogWriter writer;
   private final TypedEntryPool entryPool = new TypedEntryPool();
+  private volatile long truncations;
   private boolean open = true;
 
   /**
@@ -129,7 +143,13 @@ public class Log implements AutoCloseable {
     this.storage = Assert.notNull(storage, "storage");
     this.segments = new SegmentManager(name, storage, serializer);
     this.compactor = new Compactor(storage, segments, Executors.newScheduledThreadPool(storage.compactionThreads(), new CatalystThreadFactory("copycat-compactor-%d")));
-    this.entryBuffer = new EntryBuffer(storage.entryBufferSize());
+    this.entryCache = new EntryCache(storage.entryCacheSize());
+    this.writer = storage.asyncAppend() ? new LogWriter(segments, storage, segmentsLastIndex(), () -> compactor.pause(BACK_PRESSURE_PAUSE)) : null;
+    this.flusher = writer == null && storage.flushPolicy().mode() == FlushPolicy.Mode.GROUP ? new LogFlusher(segments, storage.flushPolicy()) : null;
+    if (storage.jmxEnabled()) {
+      segments.metrics().planner(compactor::plan);
+      segments.metrics().register(name);
+    }
   }
 
   /**
@@ -141,6 +161,30 @@ public class Log implements AutoCloseable {
     return compactor;
   }
 
+  /**
+   * Returns the log metrics.
+   * <p>
+   * Metrics are maintained incrementally as the log is written and compacted and can be read at any time without
+   * scanning the log. If {@link Storage#jmxEnabled() JMX} is enabled, the same metrics are exposed via the JMX
+   * MBean named by {@link LogMetrics#objectName()}.
+   *
+   * @return The log metrics.
+   */
+  public LogMetrics metrics() {
+    return segments.metrics();
+  }
+
+  /**
+   * Returns the cache of entries at the tail of the log.
+   * <p>
+   * The entry cache exposes hit, miss, and eviction counters for monitoring.
+   *
+   * @return The log entry cache.
+   */
+  public EntryCache entryCache() {
+    return entryCache;
+  }
+
   /**
    * Returns the log entry serializer.
    *
@@ -185,18 +229,23 @@ public class Log implements AutoCloseable {
    */
   public boolean isEmpty() {
     assertIsOpen();
+    if (writer != null && writer.isPending()) {
+      return false;
+    }
     return segments.firstSegment().isEmpty();
   }
 
   /**
    * Returns the total size of all {@link Segment segments} of the log on disk in bytes.
+   * <p>
+   * The size of sealed segments is cached, so this method does not scan all segments in the log.
    *
    * @return The total size of all {@link Segment segments} of the log in bytes.
    * @throws IllegalStateException If the log is not open.
    */
   public long size() {
     assertIsOpen();
-    return segments.segments().stream().mapToLong(Segment::size).sum();
+    return segments.size();
   }
 
   /**
@@ -204,13 +253,14 @@ public class Log implements AutoCloseable {
    * <p>
    * The length is the total number of {@link Entry entries} represented by the log on disk. This includes entries
    * that have been compacted from the log. So, in that sense, the length represents the total range of indexes.
+   * The length is computed from the bounds of the first and last segments in constant time.
    *
    * @return The number of entries in the log.
    * @throws IllegalStateException If the log is not open.
    */
   public long length() {
     assertIsOpen();
-    return segments.segments().stream().mapToLong(Segment::length).sum();
+    return segments.length();
   }
 
   /**
@@ -235,7 +285,49 @@ public class Log implements AutoCloseable {
    * @throws IllegalStateException If the log is not open.
    */
   public long lastIndex() {
-    return !isEmpty() ? segments.lastSegment().lastIndex() : 0;
+    assertIsOpen();
+    return writer != null ? writer.lastIndex() : segmentsLastIndex();
+  }
+
+  /**
+   * Returns the index of the last entry written to segments.
+   */
+  private long segmentsLastIndex() {
+    return !segments.firstSegment().isEmpty() ? segments.lastSegment().lastIndex() : 0;
+  }
+
+  /**
+   * Returns the index up to which entries are durable.
+   * <p>
+   * If {@link Storage#asyncAppend() asynchronous appends} are enabled, the durable index is the index up to which
+   * entries have been written to segments by the I/O thread and flushed according to the {@link Storage#flushPolicy()}.
+   * If a {@link FlushPolicy.Mode#GROUP group commit} policy is used, the durable index is the index up to which
+   * entries have been flushed by the background flusher. Otherwise, entries are durable once they're appended and the
+   * durable index is the {@link #lastIndex()}, unless entries are buffered in the pending block of a
+   * {@link Storage#compressionType() compressed} segment, in which case the durable index precedes the first buffered
+   * entry until the block is written by a {@link #sync(long) sync}.
+   *
+   * @return The index up to which entries are durable.
+   * @throws IllegalStateException If the log is not open.
+   */
+  public long durableIndex() {
+    assertIsOpen();
+    if (writer != null) {
+      return writer.durableIndex();
+    } else if (flusher != null) {
+      return flusher.flushIndex();
+    }
+    long pendingIndex = segments.currentSegment().pendingIndex();
+    return pendingIndex > 0 ? pendingIndex - 1 : lastIndex();
+  }
+
+  /**
+   * Blocks until the entry at the given index has been written to segments by the I/O thread.
+   */
+  void awaitWrite(long index) {
+    if (writer != null) {
+      writer.awaitWrite(index);
+    }
   }
 
   /**
@@ -249,11 +341,12 @@ public class Log implements AutoCloseable {
 
   /**
    * Checks whether we need to roll over to a new segment.
+   * <p>
+   * The full segment is flushed asynchronously by the segment manager once the log has rolled over.
    */
   private Segment currentSegment() {
     Segment segment = segments.currentSegment();
     if (segment.isFull()) {
-      segments.currentSegment().flush();
       segment = segments.nextSegment();
     }
     return segment;
@@ -274,7 +367,7 @@ public class Log implements AutoCloseable {
   public <T extends Entry<T>> T create(Class<T> type) {
     Assert.notNull(type, "type");
     assertIsOpen();
-    return entryPool.acquire(type, currentSegment().nextIndex());
+    return entryPool.acquire(type, writer != null ? writer.lastIndex() + 1 : currentSegment().nextIndex());
   }
 
   /**
@@ -290,9 +383,21 @@ public class Log implements AutoCloseable {
     Assert.notNull(entry, "entry");
     assertIsOpen();
 
-    // Append the entry to the appropriate segment.
-    long index = currentSegment().append(entry);
-    entryBuffer.append(entry);
+    // If appends are asynchronous, hand the entry to the I/O thread, otherwise append it to the appropriate segment.
+    // Asynchronously appended entries are recorded in the log's metrics by the I/O thread once their size is known.
+    long index;
+    if (writer != null) {
+      index = writer.append(entry);
+    } else {
+      index = currentSegment().append(entry);
+      segments.metrics().recordAppend(entry.size());
+    }
+    entryCache.append(entry);
+
+    // If group commit is enabled, notify the flusher of the append.
+    if (flusher != null) {
+      flusher.append(index, entry.size());
+    }
     return index;
   }
 
@@ -312,6 +417,7 @@ public class Log implements AutoCloseable {
   public long term(long index) {
     assertIsOpen();
     assertValidIndex(index);
+    awaitWrite(index);
 
     Segment segment = segments.segment(index);
     Assert.index(segment != null, "invalid index: " + index);
@@ -343,23 +449,105 @@ public class Log implements AutoCloseable {
   public <T extends Entry> T get(long index) {
     assertIsOpen();
     assertValidIndex(index);
+    awaitWrite(index);
 
     Segment segment = segments.segment(index);
     Assert.index(segment != null, "invalid index: " + index);
 
     // Get the entry from the segment. If the entry hasn't already been compacted from the segment,
     // it will be non-null.
-    T entry = entryBuffer.get(index);
+    T entry = entryCache.get(index);
     if (entry == null) {
       entry = segment.get(index);
     }
+    return filter(segment, index, entry, lastIndex());
+  }
 
+  /**
+   * Returns a cursor that reads entries sequentially from the given index.
+   * <p>
+   * Readers are intended for hot sequential read loops such as replication and state machine application. Rather
+   * than looking up the segment and validating the index for each entry, the reader retains its position in the
+   * current segment between reads and prefetches blocks of consecutive entries from disk. Entries returned by the
+   * reader are subject to the same compaction visibility rules as entries read via {@link #get(long)}.
+   * <pre>
+   *   {@code
+   *   try (LogReader reader = log.reader(index)) {
+   *     while (reader.hasNext()) {
+   *       try (Entry entry = reader.next()) {
+   *         // Do some stuff...
+   *       }
+   *     }
+   *   }
+   *   }
+   * </pre>
+   *
+   * @param index The index of the first entry to read.
+   * @return A reader positioned at the given index.
+   * @throws IllegalStateException If the log is not open.
+   * @throws IndexOutOfBoundsException If the given index is not within the bounds of the log.
+   */
+  public LogReader reader(long index) {
+    return reader(index, LogReader.DEFAULT_PREFETCH_SIZE);
+  }
+
+  /**
+   * Returns a cursor that reads entries sequentially from the given index, prefetching at most the given number
+   * of bytes from disk at a time.
+   * <p>
+   * Callers that read entries in bounded batches should limit the prefetch size to the size of a batch to avoid
+   * reading and parsing entries that won't be consumed.
+   *
+   * @param index The index of the first entry to read.
+   * @param prefetchSize The maximum number of bytes to prefetch from disk in a single read.
+   * @return A reader positioned at the given index.
+   * @throws IllegalStateException If the log is not open.
+   * @throws IndexOutOfBoundsException If the given index is not within the bounds of the log.
+   * @throws IllegalArgumentException If the prefetch size is not positive.
+   */
+  public LogReader reader(long index, int prefetchSize) {
+    assertIsOpen();
+    assertValidIndex(index);
+    return new LogReader(this, index, prefetchSize);
+  }
+
+  /**
+   * Looks up an entry in the entry cache.
+   *
+   * @param index The index of the entry to look up.
+   * @return The cached entry or {@code null} if the entry is not cached.
+   */
+  <T extends Entry> T getCached(long index) {
+    return entryCache.get(index);
+  }
+
+  /**
+   * Returns the number of times the log has been truncated.
+   * <p>
+   * Readers use the truncation count to discard prefetched entries that were removed from the log.
+   */
+  long truncations() {
+    return truncations;
+  }
+
+  /**
+   * Filters the given entry according to its compaction mode.
+   * <p>
+   * Entries that should no longer be exposed to the Raft algorithm are released and {@code null} is returned.
+   *
+   * @param segment The segment from which the entry was read.
+   * @param index The index of the entry.
+   * @param entry The entry to filter.
+   * @param lastIndex The last index in the log.
+   * @return The entry if it's visible, otherwise {@code null}.
+   */
+  <T extends Entry> T filter(Segment segment, long index, T entry, long lastIndex) {
     // For non-null entries, we determine whether the entry should be exposed to the Raft algorithm
     // based on the type of entry and whether it has been released.
     if (entry != null) {
       // The last entry in the log is always visible. This is necessary to ensure that candidates
       // can properly read the last entry term for the voting protocol.
-      if (index == lastIndex()) {
+      if (index == lastIndex) {
         return entry;
       }
 
@@ -397,6 +585,7 @@ public class Log implements AutoCloseable {
         default:
           break;
       }
+      entry.release();
     }
     return null;
   }
@@ -427,6 +616,7 @@ public class Log implements AutoCloseable {
   public boolean contains(long index) {
     if (!validIndex(index))
       return false;
+    awaitWrite(index);
 
     Segment segment = segments.segment(index);
     return segment != null && segment.contains(index);
@@ -443,15 +633,22 @@ public class Log implements AutoCloseable {
   public Log release(long index) {
     assertIsOpen();
     assertValidIndex(index);
+    awaitWrite(index);
 
     Segment segment = segments.segment(index);
     Assert.index(segment != null, "invalid index: " + index);
-    segment.release(index);
+    if (segment.release(index)) {
+      segments.metrics().recordRelease();
+    }
     return this;
   }
 
   /**
    * Commits entries up to the given index to the log.
+   * <p>
+   * When the {@link Storage#flushPolicy()} is a {@link FlushPolicy.Mode#GROUP group commit} policy, committing entries
+   * does not flush the log. Committed entries need not be durable in the local log before they're applied, since
+   * servers only acknowledge entries once they've been made durable by the background flusher.
    *
    * @param index The index up to which to commit entries.
    * @return The log.
@@ -462,7 +659,8 @@ public class Log implements AutoCloseable {
     if (index > 0) {
       assertValidIndex(index);
       segments.commitIndex(index);
-      if (storage.flushOnCommit()) {
+      if (storage.flushOnCommit() && writer == null) {
+        segments.awaitSealed();
         segments.currentSegment().flush();
       }
     }
@@ -485,8 +683,18 @@ public class Log implements AutoCloseable {
    */
   public Log skip(long entries) {
     assertIsOpen();
+    if (writer != null) {
+      if (entries == 0) {
+        return this;
+      }
+      writer.drain();
+    }
+
     Segment segment = segments.currentSegment();
     segment.skip(entries);
+    if (writer != null) {
+      writer.skip(segmentsLastIndex());
+    }
     return this;
   }
 
@@ -517,15 +725,33 @@ public class Log implements AutoCloseable {
     if (lastIndex() == index)
       return this;
 
+    // Ensure all appended entries have been written before truncating segments.
+    if (writer != null) {
+      writer.drain();
+    }
+
+    // Ensure segments being sealed in the background are not modified concurrently.
+    segments.awaitSealed();
+
     for (Segment segment : segments.reverseSegments()) {
       if (segment.validIndex(index)) {
+        long entries = segment.count();
+        long released = segment.releaseCount();
         segment.truncate(index);
+        segments.metrics().recordChange(segment.count() - entries, segment.releaseCount() - released);
         break;
       } else if (segment.index() > index) {
         segments.removeSegment(segment);
       }
     }
-    entryBuffer.clear();
+    entryCache.truncate(index);
+    truncations++;
+    if (flusher != null) {
+      flusher.truncate(index);
+    }
+    if (writer != null) {
+      writer.truncate(index);
+    }
     return this;
   }
 
@@ -536,7 +762,43 @@ public class Log implements AutoCloseable {
    */
   public void flush() {
     assertIsOpen();
+    if (writer != null) {
+      writer.drain();
+    }
+    segments.awaitSealed();
     segments.currentSegment().flush();
+    if (flusher != null) {
+      flusher.flushed(lastIndex());
+    }
+    if (writer != null) {
+      writer.flushed(lastIndex());
+    }
+  }
+
+  /**
+   * Returns a future to be completed once entries up to the given index have been flushed to disk.
+   * <p>
+   * When the {@link Storage#flushPolicy()} is a {@link FlushPolicy.Mode#GROUP group commit} policy, the returned
+   * future will be completed once a background flush covering the given index has completed. Multiple appends are
+   * acknowledged by a single flush. When {@link Storage#asyncAppend() asynchronous appends} are enabled, the returned
+   * future will be completed once the I/O thread has written the given index and flushed it according to the flush
+   * policy. For other configurations, the log is flushed synchronously and a completed future is returned. If the
+   * future is completed asynchronously, it will be completed in the calling thread's
+   * {@link io.atomix.catalyst.concurrent.ThreadContext} if one exists.
+   *
+   * @param index The index up to which to await durability.
+   * @return A future to be completed with the flushed index once the given index is durable.
+   * @throws IllegalStateException If the log is not open.
+   */
+  public CompletableFuture<Long> sync(long index) {
+    assertIsOpen();
+    if (writer != null) {
+      return writer.sync(index);
+    } else if (flusher != null) {
+      return flusher.sync(index);
+    }
+    flush();
+    return CompletableFuture.completedFuture(lastIndex());
   }
 
   /**
@@ -548,8 +810,16 @@ public class Log implements AutoCloseable {
   public void close() {
     assertIsOpen();
     flush();
+    if (writer != null) {
+      writer.close();
+    }
+    if (flusher != null) {
+      flusher.close();
+    }
     compactor.close();
+    entryCache.clear();
     segments.close();
+    segments.metrics().unregister();
     open = false;
   }
 
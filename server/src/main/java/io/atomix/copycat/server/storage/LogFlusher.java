@@ -0,0 +1,256 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.storage;
+
+import io.atomix.catalyst.concurrent.CatalystThreadFactory;
+import io.atomix.catalyst.concurrent.ThreadContext;
+import io.atomix.catalyst.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flushes {@link Log} segments to disk in batches according to a {@link FlushPolicy.Mode#GROUP group} flush policy.
+ * <p>
+ * The flusher tracks the last index appended to the log along with the number of bytes and entries appended
+ * since the last flush. Once the {@link FlushPolicy#maxBytes()} or {@link FlushPolicy#maxEntries()} threshold
+ * has been crossed, a flush of the current segment is submitted to a background thread. Additionally, the
+ * background thread periodically flushes any unflushed entries according to the {@link FlushPolicy#interval()}.
+ * Because multiple appends are covered by a single flush, the cost of the flush is amortized across the batch.
+ * <p>
+ * Flushes are never performed while holding the flusher's lock, so appends on the log thread are not blocked
+ * by a flush in progress. Callers can {@link #sync(long) await} the durability of a given index. Futures
+ * are completed in the calling {@link ThreadContext} once an index has been flushed.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+final class LogFlusher implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LogFlusher.class);
+  private final SegmentManager segments;
+  private final FlushPolicy policy;
+  private final ScheduledExecutorService executor;
+  private final ScheduledFuture<?> timer;
+  private final NavigableMap<Long, CompletableFuture<Long>> futures = new TreeMap<>();
+  private volatile long appendIndex;
+  private volatile long flushIndex;
+  private long pendingBytes;
+  private int pendingEntries;
+  private boolean flushPending;
+  private long epoch;
+  private volatile Throwable error;
+
+  /**
+   * @throws NullPointerException if {@code segments} or {@code policy} is null
+   */
+  LogFlusher(SegmentManager segments, FlushPolicy policy) {
+    this.segments = Assert.notNull(segments, "segments");
+    this.policy = Assert.notNull(policy, "policy");
+    this.executor = Executors.newSingleThreadScheduledExecutor(new CatalystThreadFactory("copycat-flusher-%d"));
+    long interval = policy.interval().toNanos();
+    this.timer = executor.scheduleAtFixedRate(this::flush, interval, interval, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the highest index known to have been flushed to disk.
+   *
+   * @return The highest index known to have been flushed to disk.
+   */
+  long flushIndex() {
+    return flushIndex;
+  }
+
+  /**
+   * Records an append to the log, triggering a flush if the policy's thresholds have been crossed.
+   *
+   * @param index The index of the appended entry.
+   * @param size The size of the appended entry in bytes.
+   */
+  synchronized void append(long index, long size) {
+    appendIndex = index;
+    pendingBytes += size;
+    pendingEntries++;
+    if (!flushPending && (pendingBytes >= policy.maxBytes() || pendingEntries >= policy.maxEntries())) {
+      flushPending = true;
+      executor.execute(this::flush);
+    }
+  }
+
+  /**
+   * Records a synchronous flush of the log up to the given index.
+   *
+   * @param index The index up to which the log was flushed.
+   */
+  synchronized void flushed(long index) {
+    pendingBytes = 0;
+    pendingEntries = 0;
+    complete(index, epoch);
+  }
+
+  /**
+   * Resets the flusher after the log has been truncated to the given index.
+   *
+   * @param index The index to which the log was truncated.
+   */
+  synchronized void truncate(long index) {
+    epoch++;
+    appendIndex = Math.min(appendIndex, index);
+    flushIndex = Math.min(flushIndex, index);
+  }
+
+  /**
+   * Returns a future to be completed once the given index has been flushed to disk.
+   *
+   * @param index The index for which to await durability.
+   * @return A future to be completed with the flushed index once the given index is durable.
+   */
+  CompletableFuture<Long> sync(long index) {
+    CompletableFuture<Long> future;
+    synchronized (this) {
+      if (error != null) {
+        return failedFuture(error);
+      }
+      if (index <= flushIndex) {
+        return CompletableFuture.completedFuture(flushIndex);
+      }
+      future = futures.computeIfAbsent(index, i -> new CompletableFuture<>());
+    }
+
+    ThreadContext context = ThreadContext.currentContext();
+    if (context == null) {
+      return future;
+    }
+
+    CompletableFuture<Long> contextFuture = new CompletableFuture<>();
+    future.whenComplete((result, error) -> context.executor().execute(() -> {
+      if (error == null) {
+        contextFuture.complete(result);
+      } else {
+        contextFuture.completeExceptionally(error);
+      }
+    }));
+    return contextFuture;
+  }
+
+  /**
+   * Flushes the segment containing the last appended index if any appended entries have not yet been flushed.
+   */
+  private void flush() {
+    long index;
+    long epoch;
+    Segment segment;
+    synchronized (this) {
+      flushPending = false;
+      index = appendIndex;
+      epoch = this.epoch;
+      if (index <= flushIndex || error != null) {
+        return;
+      }
+      pendingBytes = 0;
+      pendingEntries = 0;
+
+      // The segment is read along with the append index so that a concurrent rollover can't cause the flusher to
+      // flush a segment other than the one to which the index was appended.
+      segment = segments.segment(index);
+    }
+
+    // Entries in prior segments are flushed in the background when the log rolls over, so once those flushes have
+    // completed only the segment containing the index needs to be flushed. If the segment has since been closed,
+    // it was either compacted, in which case the compacted segment was sealed, or truncated.
+    try {
+      segments.awaitSealed();
+      if (segment != null && segment.isOpen()) {
+        segment.flush();
+      }
+    } catch (Exception e) {
+      LOGGER.error("Failed to flush segment", e);
+      fail(e);
+      return;
+    }
+
+    synchronized (this) {
+      complete(index, epoch);
+    }
+  }
+
+  /**
+   * Fails the flusher, failing futures awaiting durability.
+   */
+  private synchronized void fail(Throwable e) {
+    error = e;
+    for (CompletableFuture<Long> future : futures.values()) {
+      future.completeExceptionally(new StorageException("failed to flush entries to the log", e));
+    }
+    futures.clear();
+  }
+
+  /**
+   * Returns a future failed with the given error.
+   */
+  private static CompletableFuture<Long> failedFuture(Throwable error) {
+    CompletableFuture<Long> future = new CompletableFuture<>();
+    future.completeExceptionally(new StorageException("failed to flush entries to the log", error));
+    return future;
+  }
+
+  /**
+   * Updates the flush index and completes futures up to the given index.
+   */
+  private void complete(long index, long epoch) {
+    // If the log was truncated while the flush was in progress, the flushed entries may no longer be in the log.
+    if (epoch != this.epoch || index <= flushIndex) {
+      return;
+    }
+
+    flushIndex = index;
+    Iterator<Map.Entry<Long, CompletableFuture<Long>>> iterator = futures.headMap(index, true).entrySet().iterator();
+    while (iterator.hasNext()) {
+      iterator.next().getValue().complete(index);
+      iterator.remove();
+    }
+  }
+
+  @Override
+  public void close() {
+    timer.cancel(false);
+    executor.shutdown();
+    try {
+      executor.awaitTermination(30, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+    }
+
+    synchronized (this) {
+      for (CompletableFuture<Long> future : futures.values()) {
+        future.completeExceptionally(new IllegalStateException("log closed"));
+      }
+      futures.clear();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s[policy=%s, flushIndex=%d]", getClass().getSimpleName(), policy, flushIndex);
+  }
+
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package io.atomix.copycat.server.storage;
+
+import io.atomix.catalyst.util.Assert;
+import io.atomix.copycat.server.storage.compaction.Compaction;
+import io.atomix.copycat.server.storage.compaction.CompactionPlan;
+import io.atomix.copycat.server.storage.compaction.CompactionTaskMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.function.Function;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics describing the state of a {@link Log}.
+ * <p>
+ * Log metrics are maintained incrementally as entries are appended, released, truncated, flushed, and compacted,
+ * so reading metrics never requires scanning the log's segments. Metrics can be read via {@link Log#metrics()} or,
+ * if {@link Storage#jmxEnabled() enabled}, via the JMX MBean registered for the log under the
+ * {@code io.atomix.copycat.server.storage:type=Log} domain.
+ * <p>
+ * The {@link #getReleasedEntryCount() released entry count} is the compaction backlog: entries that have been
+ * released by the state machine but have not yet been removed from disk by compaction. A backlog that grows while
+ * the log is written indicates that compaction is falling behind.
+ * <p>
+ * Via JMX, the {@link #getLastCompactionPlan() last compaction plan} reports the segments selected by the most recent
+ * compaction along with the bytes read and written and the entries dropped by each of its tasks, and
+ * {@link #planCompaction(String)} reports the segments that a compaction would select without compacting the log.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class LogMetrics implements LogMetricsMBean {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LogMetrics.class);
+  private static final String DOMAIN = "io.atomix.copycat.server.storage";
+  private final SegmentManager segments;
+  private final AtomicLong entryCount = new AtomicLong();
+  private final AtomicLong releasedEntryCount = new AtomicLong();
+  private final LongAdder appendedEntries = new LongAdder();
+  private final LongAdder appendedBytes = new LongAdder();
+  private final LongAdder flushCount = new LongAdder();
+  private final LongAdder flushTime = new LongAdder();
+  private final AtomicLong minorCompactionCount = new AtomicLong();
+  private final AtomicLong majorCompactionCount = new AtomicLong();
+  private final AtomicLong compactedEntries = new AtomicLong();
+  private final LongAdder compactionBytesRead = new LongAdder();
+  private final LongAdder compactionBytesWritten = new LongAdder();
+  private volatile long lastFlushTime;
+  private volatile long lastCompactionTime;
+  private volatile CompactionPlan lastCompactionPlan;
+  private volatile Function<Compaction, CompactionPlan> planner;
+  private long rateSecond;
+  private long rateBytes;
+  private long lastRateBytes;
+  private ObjectName objectName;
+
+  LogMetrics(SegmentManager segments) {
+    this.segments = Assert.notNull(segments, "segments");
+  }
+
+  /**
+   * Records an entry appended to the log.
+   */
+  void recordAppend(int size) {
+    appendedEntries.increment();
+    appendedBytes.add(size);
+    entryCount.incrementAndGet();
+
+    synchronized (this) {
+      long second = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+      if (second != rateSecond) {
+        lastRateBytes = second == rateSecond + 1 ? rateBytes : 0;
+        rateSecond = second;
+        rateBytes = 0;
+      }
+      rateBytes += size;
+    }
+  }
+
+  /**
+   * Records an entry newly released from the log.
+   */
+  void recordRelease() {
+    releasedEntryCount.incrementAndGet();
+  }
+
+  /**
+   * Records a change in the number of entries stored in the log.
+   *
+   * @param entries The change in the number of stored entries.
+   * @param released The change in the number of stored entries that have been released.
+   */
+  void recordChange(long entries, long released) {
+    entryCount.addAndGet(entries);
+    releasedEntryCount.addAndGet(released);
+  }
+
+  /**
+   * Records a segment flush.
+   */
+  void recordFlush(long nanos) {
+    flushCount.increment();
+    flushTime.add(nanos);
+    lastFlushTime = nanos;
+  }
+
+  /**
+   * Records segments replaced by compaction.
+   *
+   * @param entries The change in the number of stored entries.
+   * @param released The change in the number of stored entries that have been released.
+   */
+  void recordCompaction(long entries, long released) {
+    recordChange(entries, released);
+    compactedEntries.addAndGet(-entries);
+  }
+
+  /**
+   * Records a completed compaction.
+   * <p>
+   * This method is called by the {@link io.atomix.copycat.server.storage.compaction.Compactor} once all the tasks
+   * for a compaction that compacted at least one segment have completed.
+   *
+   * @param plan The executed compaction plan.
+   * @param nanos The duration of the compaction in nanoseconds.
+   */
+  public void recordCompaction(CompactionPlan plan, long nanos) {
+    if (plan.compaction() == Compaction.MAJOR) {
+      majorCompactionCount.incrementAndGet();
+    } else {
+      minorCompactionCount.incrementAndGet();
+    }
+    for (CompactionTaskMetrics task : plan.tasks()) {
+      compactionBytesRead.add(task.bytesRead());
+      compactionBytesWritten.add(task.bytesWritten());
+    }
+    lastCompactionTime = TimeUnit.NANOSECONDS.toMillis(nanos);
+    lastCompactionPlan = plan;
+  }
+
+  /**
+   * Sets the function with which to plan compactions requested via JMX.
+   */
+  void planner(Function<Compaction, CompactionPlan> planner) {
+    this.planner = planner;
+  }
+
+  /**
+   * Resets the entry counts.
+   */
+  void reset(long entries, long released) {
+    entryCount.set(entries);
+    releasedEntryCount.set(released);
+  }
+
+  @Override
+  public long getSize() {
+    return segments.size();
+  }
+
+  @Override
+  public long getLength() {
+    return segments.length();
+  }
+
+  @Override
+  public int getSegmentCount() {
+    return segments.segments().size();
+  }
+
+  @Override
+  public long getEntryCount() {
+    return entryCount.get();
+  }
+
+  @Override
+  public long getLiveEntryCount() {
+    return entryCount.get() - releasedEntryCount.get();
+  }
+
+  @Override
+  public long getReleasedEntryCount() {
+    return releasedEntryCount.get();
+  }
+
+  @Override
+  public double getReleasedRatio() {
+    long entries = entryCount.get();
+    return entries > 0 ? releasedEntryCount.get() / (double) entries : 0;
+  }
+
+  @Override
+  public long getAppendedEntries() {
+    return appendedEntries.sum();
+  }
+
+  @Override
+  public long getAppendedBytes() {
+    return appendedBytes.sum();
+  }
+
+  @Override
+  public synchronized long getAppendRate() {
+    long second = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    if (second == rateSecond) {
+      return lastRateBytes;
+    } else if (second == rateSecond + 1) {
+      return rateBytes;
+    }
+    return 0;
+  }
+
+  @Override
+  public long getFlushCount() {
+    return flushCount.sum();
+  }
+
+  @Override
+  public double getAverageFlushLatency() {
+    long flushes = flushCount.sum();
+    return flushes > 0 ? flushTime.sum() / (double) flushes / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+  }
+
+  @Override
+  public double getLastFlushLatency() {
+    return lastFlushTime / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @Override
+  public long getMinorCompactionCount() {
+    return minorCompactionCount.get();
+  }
+
+  @Override
+  public long getMajorCompactionCount() {
+    return majorCompactionCount.get();
+  }
+
+  @Override
+  public long getCompactedEntries() {
+    return compactedEntries.get();
+  }
+
+  @Override
+  public long getLastCompactionDuration() {
+    return lastCompactionTime;
+  }
+
+  @Override
+  public long getCompactionBytesRead() {
+    return compactionBytesRead.sum();
+  }
+
+  @Override
+  public long getCompactionBytesWritten() {
+    return compactionBytesWritten.sum();
+  }
+
+  @Override
+  public String getLastCompactionPlan() {
+    CompactionPlan plan = lastCompactionPlan;
+    return plan != null ? plan.report() : null;
+  }
+
+  @Override
+  public String planCompaction(String compaction) {
+    Function<Compaction, CompactionPlan> planner = this.planner;
+    if (planner == null) {
+      throw new IllegalStateException("compaction planning is not available");
+    }
+    return planner.apply(Compaction.valueOf(Assert.notNull(compaction, "compaction").toUpperCase())).report();
+  }
+
+  /**
+   * Registers the metrics with the platform MBean server.
+   * <p>
+   * If the metrics cannot be registered, e.g. because a log with the same name in the same directory is already
+   * registered, a warning is logged and the log continues without JMX metrics.
+   */
+  synchronized void register(String name) {
+    try {
+      ObjectName objectName = new ObjectName(String.format("%s:type=Log,name=%s,directory=%s", DOMAIN, ObjectName.quote(name), ObjectName.quote(segments.storage().directory().getAbsolutePath())));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+      this.objectName = objectName;
+    } catch (JMException e) {
+      LOGGER.warn("Failed to register log metrics MBean for log: {}", name, e);
+    }
+  }
+
+  /**
+   * Unregisters the metrics from the platform MBean server if they were registered.
+   */
+  synchronized void unregister() {
+    if (objectName != null) {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      try {
+        server.unregisterMBean(objectName);
+      } catch (JMException e) {
+        LOGGER.debug("Failed to unregister log metrics MBean: {}", objectName, e);
+      }
+      objectName = null;
+    }
+  }
+
+  /**
+   * Returns the name under which the metrics are registered with the platform MBean server.
+   *
+   * @return The JMX object name or {@code null} if the metrics are not registered.
+   */
+  public synchronized ObjectName objectName() {
+    return objectName;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s[size=%d, entries=%d, released=%d, appended=%d, flushes=%d, compacted=%d]", getClass().getSimpleName(), getSize(), getEntryCount(), getReleasedEntryCount(), getAppendedEntries(), getFlushCount(), getCompactedEntries());
+  }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package io.atomix.copycat.server.storage;
+
+/**
+ * JMX management interface for {@link LogMetrics}.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public interface LogMetricsMBean {
+
+  /**
+   * Returns the total size of the log's segments in bytes.
+   *
+   * @return The total size of the log in bytes.
+   */
+  long getSize();
+
+  /**
+   * Returns the number of indexes in the log, including entries that have been compacted from the log.
+   *
+   * @return The number of indexes in the log.
+   */
+  long getLength();
+
+  /**
+   * Returns the number of segments in the log.
+   *
+   * @return The number of segments in the log.
+   */
+  int getSegmentCount();
+
+  /**
+   * Returns the number of entries physically stored in the log.
+   *
+   * @return The number of entries stored in the log.
+   */
+  long getEntryCount();
+
+  /**
+   * Returns the number of stored entries that have not been released.
+   *
+   * @return The number of live entries in the log.
+   */
+  long getLiveEntryCount();
+
+  /**
+   * Returns the number of stored entries that have been released but not yet compacted from the log.
+   * <p>
+   * This is the compaction backlog. A backlog that grows over time indicates that compaction is not keeping up
+   * with the rate at which entries are released.
+   *
+   * @return The number of released entries awaiting compaction.
+   */
+  long getReleasedEntryCount();
+
+  /**
+   * Returns the ratio of stored entries that have been released but not yet compacted from the log.
+   *
+   * @return The ratio of released entries to stored entries.
+   */
+  double getReleasedRatio();
+
+  /**
+   * Returns the total number of entries appended to the log since it was opened.
+   *
+   * @return The number of entries appended to the log.
+   */
+  long getAppendedEntries();
+
+  /**
+   * Returns the total number of bytes appended to the log since it was opened.
+   *
+   * @return The number of bytes appended to the log.
+   */
+  long getAppendedBytes();
+
+  /**
+   * Returns the number of bytes appended to the log during the last full second.
+   *
+   * @return The number of bytes appended per second.
+   */
+  long getAppendRate();
+
+  /**
+   * Returns the number of segment flushes since the log was opened.
+   *
+   * @return The number of segment flushes.
+   */
+  long getFlushCount();
+
+  /**
+   * Returns the average latency of segment flushes in milliseconds.
+   *
+   * @return The average flush latency in milliseconds.
+   */
+  double getAverageFlushLatency();
+
+  /**
+   * Returns the latency of the most recent segment flush in milliseconds.
+   *
+   * @return The latency of the last flush in milliseconds.
+   */
+  double getLastFlushLatency();
+
+  /**
+   * Returns the number of minor compactions that have compacted segments since the log was opened.
+   *
+   * @return The number of minor compactions.
+   */
+  long getMinorCompactionCount();
+
+  /**
+   * Returns the number of major compactions that have compacted segments since the log was opened.
+   *
+   * @return The number of major compactions.
+   */
+  long getMajorCompactionCount();
+
+  /**
+   * Returns the number of entries removed from the log by compaction since the log was opened.
+   *
+   * @return The number of compacted entries.
+   */
+  long getCompactedEntries();
+
+  /**
+   * Returns the duration of the most recent compaction in milliseconds.
+   *
+   * @return The duration of the last compaction in milliseconds.
+   */
+  long getLastCompactionDuration();
+
+  /**
+   * Returns the number of entry bytes read by compaction since the log was opened.
+   *
+   * @return The number of bytes read by compaction.
+   */
+  long getCompactionBytesRead();
+
+  /**
+   * Returns the number of entry bytes rewritten by compaction since the log was opened.
+   *
+   * @return The number of bytes written by compaction.
+   */
+  long getCompactionBytesWritten();
+
+  /**
+   * Returns a report of the most recent compaction plan and the tasks that executed it.
+   *
+   * @return A report of the last compaction or {@code null} if the log has not been compacted.
+   */
+  String getLastCompactionPlan();
+
+  /**
+   * Plans a compaction of the log without compacting it.
+   *
+   * @param compaction The compaction type, either {@code MINOR} or {@code MAJOR}.
+   * @return A report of the segments the compaction would select.
+   */
+  String planCompaction(String compaction);
+
+}
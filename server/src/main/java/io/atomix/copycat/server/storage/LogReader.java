@@ -0,0 +1,249 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.storage;
+
+import io.atomix.catalyst.buffer.HeapBuffer;
+import io.atomix.catalyst.util.Assert;
+import io.atomix.copycat.server.storage.entry.Entry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sequential {@link Log} reader.
+ * <p>
+ * The log reader is a cursor that reads entries in index order starting at a given index. Unlike {@link Log#get(long)},
+ * which looks up the segment containing the entry and validates the index on each read, the reader retains the
+ * segment it's reading between reads and only consults the log when it crosses a segment boundary or passes the
+ * last index it has seen. For segments stored on disk, the reader prefetches blocks of consecutive entries with a
+ * single read and parses entries from the block in order. The prefetch block is allocated the first time the reader
+ * reads from a disk segment and is bounded by the reader's prefetch size. Entries in the log's entry cache are read
+ * from memory.
+ * <p>
+ * Entries returned by the reader are subject to the same compaction visibility rules as {@link Log#get(long)}, so
+ * {@link #next()} may return {@code null} for entries that have been compacted from the log. Each non-null entry
+ * returned by the reader must be released by the caller. Prefetched entries that were never returned are released
+ * when the reader is {@link #close() closed}.
+ * <p>
+ * Readers are not thread safe and should be confined to the thread that reads entries from the log.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class LogReader implements AutoCloseable {
+  static final int DEFAULT_PREFETCH_SIZE = 1024 * 64;
+  private final Log log;
+  private final int prefetchSize;
+  private HeapBuffer block;
+  private final List<Entry> entries = new ArrayList<>();
+  private int position;
+  private Segment segment;
+  private long nextIndex;
+  private long lastIndex;
+  private long truncations;
+  private boolean open = true;
+
+  LogReader(Log log, long index, int prefetchSize) {
+    this.log = Assert.notNull(log, "log");
+    this.prefetchSize = Assert.arg(prefetchSize, prefetchSize > 0, "prefetchSize must be positive");
+    reset(index);
+  }
+
+  /**
+   * Returns a boolean indicating whether the reader can be read.
+   * <p>
+   * The reader can no longer be read once it has been {@link #close() closed} or its log has been closed.
+   *
+   * @return Indicates whether the reader is open.
+   */
+  public boolean isOpen() {
+    return open && log.isOpen();
+  }
+
+  /**
+   * Returns the index of the next entry to be read.
+   *
+   * @return The index of the next entry to be read.
+   */
+  public long nextIndex() {
+    return nextIndex;
+  }
+
+  /**
+   * Returns a boolean value indicating whether the log contains an entry at the {@link #nextIndex() next index}.
+   *
+   * @return Indicates whether another entry can be read from the log.
+   * @throws IllegalStateException if the reader or the log is not open
+   */
+  public boolean hasNext() {
+    assertIsOpen();
+    checkTruncated();
+    if (nextIndex > lastIndex) {
+      lastIndex = log.lastIndex();
+    }
+    return nextIndex <= lastIndex;
+  }
+
+  /**
+   * Reads the entry at the {@link #nextIndex() next index} and advances the reader.
+   *
+   * @param <T> The entry type.
+   * @return The entry at the next index or {@code null} if the entry has been compacted from the log.
+   * @throws IllegalStateException if the reader or the log is not open
+   * @throws IndexOutOfBoundsException if the log does not contain an entry at the next index
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Entry> T next() {
+    Assert.index(hasNext(), "invalid log index: %d", nextIndex);
+
+    long index = nextIndex;
+    if (position == entries.size()) {
+      prefetch(index);
+    }
+
+    T entry = (T) entries.set(position++, null);
+    nextIndex++;
+
+    // The last entry in the log is always visible, so ensure the last index is current before filtering the entry.
+    long lastIndex = index == this.lastIndex ? log.lastIndex() : this.lastIndex;
+    return log.filter(segment, index, entry, lastIndex);
+  }
+
+  /**
+   * Returns the last entry read from the reader to the reader.
+   * <p>
+   * The entry will be returned again by the next call to {@link #next()}. This allows readers that read entries in
+   * bounded batches to stop at an entry that doesn't fit in the batch without discarding the entries prefetched
+   * after it. Ownership of the entry is transferred back to the reader.
+   *
+   * @param entry The last entry returned by {@link #next()}.
+   * @return The reader.
+   * @throws IllegalStateException if the reader or the log is not open or the entry was not the last entry read
+   */
+  public LogReader unread(Entry entry) {
+    assertIsOpen();
+    Assert.notNull(entry, "entry");
+    Assert.state(position > 0 && entry.getIndex() == nextIndex - 1, "entry %d is not the last entry read", entry.getIndex());
+    entries.set(--position, entry);
+    nextIndex--;
+    return this;
+  }
+
+  /**
+   * Resets the reader to the given index.
+   * <p>
+   * Any prefetched entries are released.
+   *
+   * @param index The index of the next entry to read.
+   * @return The reader.
+   * @throws IllegalStateException if the reader or the log is not open
+   */
+  public LogReader reset(long index) {
+    assertIsOpen();
+    clear();
+    this.nextIndex = index;
+    this.lastIndex = log.lastIndex();
+    this.truncations = log.truncations();
+    return this;
+  }
+
+  /**
+   * Reads the next entries from the log into the prefetch list.
+   */
+  private void prefetch(long index) {
+    clear();
+
+    // Prefer entries that are already cached in memory at the tail of the log.
+    Entry entry = log.getCached(index);
+    if (entry != null) {
+      entries.add(entry);
+    }
+
+    // Wait for the entry to be written to its segment if it's being written asynchronously.
+    log.awaitWrite(index);
+
+    // Only look up the segment when the index is outside the current segment.
+    if (segment == null || !segment.isOpen() || index < segment.firstIndex() || index > segment.lastIndex()) {
+      segment = log.segments.segment(index);
+      Assert.index(segment != null, "invalid index: " + index);
+    }
+
+    if (entry == null) {
+      segment.read(index, lastIndex, segment.isBlockRead() ? block() : null, entries);
+    }
+  }
+
+  /**
+   * Returns the prefetch block, allocating it if necessary.
+   */
+  private HeapBuffer block() {
+    if (block == null) {
+      block = HeapBuffer.allocate(prefetchSize);
+    }
+    return block;
+  }
+
+  /**
+   * Discards prefetched entries if the log has been truncated since they were read.
+   */
+  private void checkTruncated() {
+    long truncations = log.truncations();
+    if (truncations != this.truncations) {
+      clear();
+      this.lastIndex = log.lastIndex();
+      this.truncations = truncations;
+    }
+  }
+
+  /**
+   * Releases any prefetched entries that have not been read.
+   */
+  private void clear() {
+    for (int i = position; i < entries.size(); i++) {
+      Entry entry = entries.get(i);
+      if (entry != null) {
+        entry.release();
+      }
+    }
+    entries.clear();
+    position = 0;
+  }
+
+  /**
+   * Asserts that the reader and the log are open.
+   */
+  private void assertIsOpen() {
+    Assert.state(open, "reader is closed");
+    Assert.state(log.isOpen(), "log is not open");
+  }
+
+  @Override
+  public void close() {
+    if (open) {
+      clear();
+      if (block != null) {
+        block.close();
+        block = null;
+      }
+      open = false;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s[nextIndex=%d]", getClass().getSimpleName(), nextIndex);
+  }
+
+}
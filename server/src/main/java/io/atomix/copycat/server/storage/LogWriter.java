@@ -0,0 +1,498 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.storage;
+
+import io.atomix.catalyst.buffer.HeapBuffer;
+import io.atomix.catalyst.buffer.util.Memory;
+import io.atomix.catalyst.concurrent.CatalystThreadFactory;
+import io.atomix.catalyst.concurrent.ThreadContext;
+import io.atomix.catalyst.serializer.Serializer;
+import io.atomix.catalyst.util.Assert;
+import io.atomix.copycat.server.storage.entry.Entry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static io.atomix.catalyst.buffer.Bytes.BOOLEAN;
+import static io.atomix.catalyst.buffer.Bytes.INTEGER;
+import static io.atomix.catalyst.buffer.Bytes.LONG;
+
+/**
+ * Writes entries appended to a {@link Log} to disk on a dedicated I/O thread.
+ * <p>
+ * Entries are validated, serialized, and checksummed on the appending thread and handed to the I/O thread over a
+ * fixed-size single-producer, single-consumer ring buffer. The I/O thread drains the ring in batches, writing each
+ * entry to the current {@link Segment} and rolling over to new segments as they fill up. Once a batch has been
+ * written, the I/O thread flushes the current segment unless the {@link FlushPolicy} is {@link FlushPolicy.Mode#NEVER},
+ * in which case only the pending block of a compressed segment is written, and publishes the
+ * {@link #durableIndex() durable index}. Because all entries written since the last flush are
+ * covered by a single flush, the flush is amortized across the batch.
+ * <p>
+ * The writer tracks the {@link #lastIndex() last index} appended to the log, which may be greater than the
+ * {@link #writeIndex() index} of the last entry written to segments. Operations that read or modify segments must
+ * first {@link #awaitWrite(long) await} the entries they depend on or {@link #drain() drain} the ring. If the ring is
+ * full, appends block until the I/O thread has written enough entries to make room, and the writer's back-pressure
+ * callback is invoked to allow background work competing for the disk, such as compaction, to back off.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+final class LogWriter implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LogWriter.class);
+  private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private final SegmentManager segments;
+  private final Serializer serializer;
+  private final ChecksumType checksumType;
+  private final boolean flush;
+  private final Record[] ring;
+  private final int mask;
+  private final HeapBuffer memory = HeapBuffer.allocate();
+  private final Thread thread;
+  private final Runnable backPressure;
+  private final NavigableMap<Long, CompletableFuture<Long>> futures = new TreeMap<>();
+  private final Object lock = new Object();
+  private volatile long head;
+  private volatile long tail;
+  private volatile long lastIndex;
+  private volatile long writeIndex;
+  private volatile long durableIndex;
+  private volatile boolean sleeping;
+  private volatile int waiters;
+  private volatile boolean running = true;
+  private volatile Throwable error;
+  private long lastTerm;
+  private long epoch;
+
+  /**
+   * @throws NullPointerException if {@code segments}, {@code storage}, or {@code backPressure} is null
+   */
+  LogWriter(SegmentManager segments, Storage storage, long lastIndex, Runnable backPressure) {
+    this.segments = Assert.notNull(segments, "segments");
+    this.backPressure = Assert.notNull(backPressure, "backPressure");
+    this.serializer = segments.serializer();
+    this.checksumType = storage.checksumType();
+    this.flush = storage.flushPolicy().mode() != FlushPolicy.Mode.NEVER;
+    this.ring = new Record[(int) Memory.Util.toPow2(storage.appendBufferSize())];
+    for (int i = 0; i < ring.length; i++) {
+      ring[i] = new Record();
+    }
+    this.mask = ring.length - 1;
+    this.lastIndex = lastIndex;
+    this.writeIndex = lastIndex;
+    this.durableIndex = lastIndex;
+    this.thread = new CatalystThreadFactory("copycat-log-writer-%d").newThread(this::run);
+    thread.start();
+  }
+
+  /**
+   * Returns the index of the last entry appended to the log.
+   *
+   * @return The index of the last entry appended to the log.
+   */
+  long lastIndex() {
+    return lastIndex;
+  }
+
+  /**
+   * Returns the index of the last entry written to segments.
+   *
+   * @return The index of the last entry written to segments.
+   */
+  long writeIndex() {
+    return writeIndex;
+  }
+
+  /**
+   * Returns the index of the last entry written to segments and flushed according to the flush policy.
+   *
+   * @return The index of the last durable entry.
+   */
+  long durableIndex() {
+    return durableIndex;
+  }
+
+  /**
+   * Returns a boolean value indicating whether entries are waiting to be written.
+   *
+   * @return Indicates whether entries are waiting to be written.
+   */
+  boolean isPending() {
+    return tail != head;
+  }
+
+  /**
+   * Serializes the given entry and enqueues it to be written by the I/O thread.
+   *
+   * @param entry The entry to append.
+   * @return The index of the appended entry.
+   * @throws IndexOutOfBoundsException if the entry's index is not the next index in the log
+   * @throws IllegalArgumentException if the entry's term is less than the last appended term
+   * @throws StorageException if the I/O thread failed to write an entry
+   */
+  long append(Entry entry) {
+    checkError();
+    long index = entry.getIndex();
+    Assert.index(index == lastIndex + 1, "inconsistent index: %s", index);
+    long term = entry.getTerm();
+    Assert.arg(term > 0 && term >= lastTerm, "term must be monotonically increasing");
+
+    // Serialize and checksum the entry on the appending thread.
+    serializer.writeObject(entry, memory.clear());
+    memory.flip();
+    int length = (int) memory.limit();
+    long checksum = checksumType.checksum(memory.array(), 0, length);
+
+    // The entry's size is estimated from the last appended term since the I/O thread may roll over to a new segment,
+    // which writes the term with its first entry. The size of the written entry is recorded in the log's metrics by
+    // the I/O thread.
+    entry.setSize(INTEGER + LONG + BOOLEAN + (term == lastTerm ? 0 : LONG) + length);
+
+    // Wait for a free slot in the ring and publish the record to the I/O thread.
+    long sequence = head;
+    if (sequence - tail >= ring.length) {
+      backPressure.run();
+      await(() -> sequence - tail < ring.length);
+    }
+    ring[(int) (sequence & mask)].set(index, term, memory.array(), length, checksum);
+    head = sequence + 1;
+    lastIndex = index;
+    lastTerm = term;
+
+    if (sleeping) {
+      LockSupport.unpark(thread);
+    }
+    return index;
+  }
+
+  /**
+   * Blocks until the entry at the given index has been written to segments.
+   *
+   * @param index The index of the entry to await.
+   * @throws StorageException if the I/O thread failed to write an entry
+   */
+  void awaitWrite(long index) {
+    if (index > writeIndex && isPending()) {
+      await(() -> index <= writeIndex || !isPending());
+    }
+    checkError();
+  }
+
+  /**
+   * Blocks until all appended entries have been written to segments.
+   *
+   * @throws StorageException if the I/O thread failed to write an entry
+   */
+  void drain() {
+    if (isPending()) {
+      await(() -> !isPending());
+    }
+    checkError();
+  }
+
+  /**
+   * Resets the writer after the log has been truncated to the given index.
+   * <p>
+   * The ring must be {@link #drain() drained} before the log is truncated.
+   *
+   * @param index The index to which the log was truncated.
+   */
+  void truncate(long index) {
+    synchronized (this) {
+      epoch++;
+      durableIndex = Math.min(durableIndex, index);
+    }
+    lastIndex = index;
+    writeIndex = index;
+    lastTerm = 0;
+  }
+
+  /**
+   * Resets the last index after entries have been skipped.
+   * <p>
+   * The ring must be {@link #drain() drained} before entries are skipped.
+   *
+   * @param index The last index in the log.
+   */
+  void skip(long index) {
+    lastIndex = index;
+    writeIndex = index;
+  }
+
+  /**
+   * Records a synchronous flush of the log up to the given index.
+   *
+   * @param index The index up to which the log was flushed.
+   */
+  synchronized void flushed(long index) {
+    complete(index, epoch);
+  }
+
+  /**
+   * Returns a future to be completed once the given index has been written and flushed.
+   *
+   * @param index The index for which to await durability.
+   * @return A future to be completed with the durable index once the given index is durable.
+   */
+  CompletableFuture<Long> sync(long index) {
+    CompletableFuture<Long> future;
+    synchronized (this) {
+      if (error != null) {
+        return failedFuture(error);
+      }
+      if (index <= durableIndex) {
+        return CompletableFuture.completedFuture(durableIndex);
+      }
+      future = futures.computeIfAbsent(index, i -> new CompletableFuture<>());
+    }
+
+    ThreadContext context = ThreadContext.currentContext();
+    if (context == null) {
+      return future;
+    }
+
+    CompletableFuture<Long> contextFuture = new CompletableFuture<>();
+    future.whenComplete((result, error) -> context.executor().execute(() -> {
+      if (error == null) {
+        contextFuture.complete(result);
+      } else {
+        contextFuture.completeExceptionally(error);
+      }
+    }));
+    return contextFuture;
+  }
+
+  /**
+   * Runs the I/O thread, writing batches of entries from the ring to segments.
+   */
+  private void run() {
+    while (true) {
+      long tail = this.tail;
+      if (tail == head) {
+        if (!running) {
+          return;
+        }
+
+        // Park until the appending thread publishes a new entry. The head is checked again after the sleeping flag
+        // is set so that an entry published concurrently is not missed.
+        sleeping = true;
+        if (tail == head && running) {
+          LockSupport.parkNanos(this, WAIT_NANOS);
+        }
+        sleeping = false;
+        continue;
+      }
+
+      long epoch;
+      synchronized (this) {
+        epoch = this.epoch;
+      }
+
+      try {
+        long head = this.head;
+        long index = 0;
+        for (long sequence = tail; sequence < head; sequence++) {
+          index = write(ring[(int) (sequence & mask)]);
+          writeIndex = index;
+          this.tail = sequence + 1;
+        }
+        signal();
+
+        // Entries in prior segments are flushed when the log rolls over, so once those flushes have completed only
+        // the current segment needs to be flushed.
+        if (flush) {
+          segments.awaitSealed();
+          segments.currentSegment().flush();
+        } else {
+          // Entries buffered in a compressed block are lost if the process fails, so write the block before the
+          // batch is published as durable.
+          segments.currentSegment().writePending();
+        }
+
+        synchronized (this) {
+          complete(index, epoch);
+        }
+      } catch (Throwable e) {
+        LOGGER.error("Failed to write entries to the log", e);
+        fail(e);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Writes the given record to the current segment, rolling over to a new segment if the current segment is full,
+   * and records the size of the written entry in the log's metrics.
+   */
+  private long write(Record record) {
+    Segment segment = segments.currentSegment();
+    if (segment.isFull()) {
+      segment = segments.nextSegment();
+    }
+
+    // The checksum was computed with the configured checksum type, which may differ from that of a recovered segment.
+    long checksum = record.checksum;
+    ChecksumType checksumType = segment.descriptor().checksumType();
+    if (checksumType != this.checksumType) {
+      checksum = checksumType.checksum(record.bytes, 0, record.length);
+    }
+    int size = segment.append(record.index, record.term, record.bytes, record.length, checksum);
+    segments.metrics().recordAppend(size);
+    return record.index;
+  }
+
+  /**
+   * Updates the durable index and completes futures up to the given index.
+   */
+  private void complete(long index, long epoch) {
+    // If the log was truncated while the batch was being written, the written entries may no longer be in the log.
+    if (epoch != this.epoch || index <= durableIndex) {
+      return;
+    }
+
+    durableIndex = index;
+    Iterator<Map.Entry<Long, CompletableFuture<Long>>> iterator = futures.headMap(index, true).entrySet().iterator();
+    while (iterator.hasNext()) {
+      iterator.next().getValue().complete(index);
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Fails the writer, releasing waiting threads and failing futures awaiting durability.
+   */
+  private void fail(Throwable e) {
+    synchronized (this) {
+      error = e;
+      for (CompletableFuture<Long> future : futures.values()) {
+        future.completeExceptionally(new StorageException("failed to write entries to the log", e));
+      }
+      futures.clear();
+    }
+    signal();
+  }
+
+  /**
+   * Throws an exception if the I/O thread failed.
+   */
+  private void checkError() {
+    Throwable error = this.error;
+    if (error != null) {
+      throw new StorageException("failed to write entries to the log", error);
+    }
+  }
+
+  /**
+   * Blocks the appending thread until the given condition is met or the I/O thread fails.
+   */
+  private void await(Condition condition) {
+    synchronized (lock) {
+      waiters++;
+      try {
+        while (!condition.test() && error == null && thread.isAlive()) {
+          lock.wait(TimeUnit.NANOSECONDS.toMillis(WAIT_NANOS));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new StorageException("interrupted while waiting for entries to be written", e);
+      } finally {
+        waiters--;
+      }
+    }
+  }
+
+  /**
+   * Wakes up threads waiting for entries to be written.
+   */
+  private void signal() {
+    if (waiters > 0) {
+      synchronized (lock) {
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Returns a future failed with the given error.
+   */
+  private static CompletableFuture<Long> failedFuture(Throwable error) {
+    CompletableFuture<Long> future = new CompletableFuture<>();
+    future.completeExceptionally(new StorageException("failed to write entries to the log", error));
+    return future;
+  }
+
+  /**
+   * Stops the I/O thread once all appended entries have been written.
+   */
+  @Override
+  public void close() {
+    running = false;
+    LockSupport.unpark(thread);
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(30));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    synchronized (this) {
+      for (CompletableFuture<Long> future : futures.values()) {
+        future.completeExceptionally(new IllegalStateException("log closed"));
+      }
+      futures.clear();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s[lastIndex=%d, writeIndex=%d, durableIndex=%d]", getClass().getSimpleName(), lastIndex, writeIndex, durableIndex);
+  }
+
+  /**
+   * Condition awaited by the appending thread.
+   */
+  @FunctionalInterface
+  private interface Condition {
+    boolean test();
+  }
+
+  /**
+   * Serialized entry awaiting a write. Records are reused as the ring wraps around.
+   */
+  private static final class Record {
+    private long index;
+    private long term;
+    private byte[] bytes = new byte[0];
+    private int length;
+    private long checksum;
+
+    private void set(long index, long term, byte[] bytes, int length, long checksum) {
+      this.index = index;
+      this.term = term;
+      if (this.bytes.length < length) {
+        this.bytes = new byte[Math.max(length, this.bytes.length * 2)];
+      }
+      System.arraycopy(bytes, 0, this.bytes, 0, length);
+      this.length = length;
+      this.checksum = checksum;
+    }
+  }
+
+}
@@ -15,8 +15,17 @@
  */
 package io.atomix.copycat.server.storage;
 
-import java.util.zip.CRC32;
-import java.util.zip.Checksum;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import io.atomix.catalyst.buffer.*;
 import io.atomix.catalyst.serializer.Serializer;
@@ -25,6 +34,8 @@ import io.atomix.copycat.server.storage.entry.Entry;
 import io.atomix.copycat.server.storage.index.OffsetIndex;
 import io.atomix.copycat.server.storage.util.OffsetPredicate;
 import io.atomix.copycat.server.storage.util.TermIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import static io.atomix.catalyst.buffer.Bytes.BOOLEAN;
 import static io.atomix.catalyst.buffer.Bytes.INTEGER;
@@ -53,42 +64,166 @@ import static io.atomix.catalyst.buffer.Bytes.LONG;
  * Entry liveness is tracked in an internal {@link io.atomix.catalyst.buffer.util.BitArray} with a size equal
  * to the segment's entry {@link #count()}.
  * <p>
+ * Once a file-based segment has been {@link #seal() sealed}, the {@link SegmentManager} may unload the segment to
+ * bound the number of open segments. An unloaded segment releases its buffer, file handles, and in-memory indexes,
+ * retaining only its descriptor, liveness state, and enough metadata to answer range queries. The segment is
+ * transparently reopened from its persisted indexes the next time an entry is read from it.
+ * <p>
+ * Sealed segments stored on {@link StorageLevel#DISK disk} are no longer written, so the segment file is also
+ * mapped read-only once the segment is sealed. Reads from sealed segments are served from the mapped page cache
+ * rather than by a positional read system call, while the segment to which entries are being appended continues
+ * to be written via its {@link FileBuffer}.
+ * <p>
  * An entry in the log is written in binary format. The binary format of an entry is as follows:
  * <ul>
  *   <li>Required 32-bit signed entry length</li>
- *   <li>Required 32-bit unsigned entry checksum</li>
+ *   <li>Required 32-bit unsigned entry checksum computed using the descriptor's {@link ChecksumType}</li>
  *   <li>Required 64-bit signed offset</li>
  *   <li>Required 8-bit term flag</li>
  *   <li>Optional 64-bit term</li>
  * </ul>
+ * <p>
+ * If the segment's descriptor specifies a {@link CompressionType}, records are buffered in memory and written to the
+ * segment in compressed blocks. A block is written once the buffered records reach the configured block size or the
+ * segment is flushed. A compressed block is stored as a negative 32-bit length followed by the 32-bit length of the
+ * uncompressed records and the compressed records. The offset index maps the offset of each entry in a block to the
+ * position of the block, and records that are still buffered are indexed at the position at which their block will
+ * be written. The most recently decompressed block is cached to serve sequential reads.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public class Segment implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(Segment.class);
+  private static final ThreadLocal<HeapBuffer> READ_BUFFER = ThreadLocal.withInitial(HeapBuffer::allocate);
   private final SegmentFile file;
   private final SegmentDescriptor descriptor;
+  private final ChecksumType checksumType;
+  private final CompressionType compressionType;
+  private final boolean compressed;
+  private final int blockSize;
+  private final HeapBuffer batch;
   private final Serializer serializer;
-  private final Buffer buffer;
+  private final ThreadLocal<Serializer> serializers;
   private final HeapBuffer memory = HeapBuffer.allocate();
-  private final OffsetIndex offsetIndex;
   private final OffsetPredicate offsetPredicate;
-  private final TermIndex termIndex = new TermIndex();
   private final SegmentManager manager;
+  private final boolean mapped;
+  private final boolean offHeap;
+  private final File indexFile;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Object sealLock = new Object();
+  private Buffer buffer;
+  private FileChannel channel;
+  private volatile MappedByteBuffer readOnlyMap;
+  private OffsetIndex offsetIndex;
+  private TermIndex termIndex = new TermIndex();
+  private volatile boolean sealed;
+  private int sealedCount;
+  private long sealedLastOffset;
+  private long sealedSize;
+  private volatile long batchSize;
+  private volatile Block cachedBlock;
   private long skip = 0;
-  private boolean open = true;
+  private volatile boolean open = true;
 
   /**
    * @throws NullPointerException if any argument is null
    */
   Segment(SegmentFile file, Buffer buffer, SegmentDescriptor descriptor, OffsetIndex offsetIndex, OffsetPredicate offsetPredicate, Serializer serializer, SegmentManager manager) {
     this.serializer = Assert.notNull(serializer, "serializer");
+    this.serializers = ThreadLocal.withInitial(serializer::clone);
     this.file = Assert.notNull(file, "file");
     this.buffer = Assert.notNull(buffer, "buffer");
     this.descriptor = Assert.notNull(descriptor, "descriptor");
+    this.checksumType = descriptor.checksumType();
+    this.compressionType = descriptor.compressionType();
+    this.compressed = compressionType != CompressionType.NONE;
+    this.blockSize = manager.storage().compressionBlockSize();
+    this.batch = compressed ? HeapBuffer.allocate() : null;
     this.offsetIndex = Assert.notNull(offsetIndex, "offsetIndex");
     this.offsetPredicate = Assert.notNull(offsetPredicate, "offsetPredicate");
     this.manager = Assert.notNull(manager, "manager");
-    buildIndex();
+    this.mapped = buffer.bytes() instanceof MappedBytes;
+    this.offHeap = buffer.bytes() instanceof UnsafeDirectBytes;
+    this.channel = buffer.bytes() instanceof FileBytes ? openChannel(((FileBytes) buffer.bytes()).file()) : null;
+    this.indexFile = mapped || channel != null ? file.indexFile() : null;
+    if (!loadIndex()) {
+      buildIndex();
+    }
+  }
+
+  /**
+   * Opens a read-only channel for positional reads from the segment file.
+   */
+  private static FileChannel openChannel(java.io.File file) {
+    try {
+      return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    } catch (IOException e) {
+      throw new StorageException("failed to open segment file " + file, e);
+    }
+  }
+
+  /**
+   * Loads the index from the segment's index file if one exists.
+   * <p>
+   * The index file is only used if it was written for this version of the segment and the entries it describes
+   * end exactly where the segment's entries end. Otherwise, the index file is deleted and the index is rebuilt
+   * from the segment bytes.
+   *
+   * @return Indicates whether the index was loaded from the index file.
+   */
+  private boolean loadIndex() {
+    if (indexFile == null) {
+      return false;
+    }
+
+    SegmentIndexFile index = SegmentIndexFile.open(indexFile);
+    if (index == null) {
+      indexFile.delete();
+      return false;
+    }
+
+    if (!index.matches(descriptor) || !validateIndex(index)) {
+      LOGGER.debug("Discarding invalid index file: {}", indexFile);
+      indexFile.delete();
+      return false;
+    }
+
+    for (int i = 0; i < index.offsets(); i++) {
+      offsetIndex.index(index.offset(i), index.position(i));
+    }
+    for (int i = 0; i < index.terms(); i++) {
+      termIndex.index(index.termOffset(i), index.term(i));
+    }
+
+    buffer.position(index.position());
+    recordSealedState();
+    sealed = true;
+    mapReadOnly();
+    return true;
+  }
+
+  /**
+   * Verifies that the last entry described by the given index file ends at the end of the segment.
+   */
+  private boolean validateIndex(SegmentIndexFile index) {
+    try {
+      long position = index.position();
+      if (position < 0 || position + INTEGER > buffer.capacity() || buffer.readInt(position) != 0) {
+        return false;
+      }
+
+      if (index.offsets() == 0) {
+        return position == 0;
+      }
+
+      // The last offset may be stored in a compressed block, which is prefixed with a negative length.
+      long lastPosition = index.position(index.offsets() - 1);
+      int length = Math.abs(buffer.readInt(lastPosition));
+      return length > 0 && lastPosition + INTEGER + length == position;
+    } catch (IndexOutOfBoundsException e) {
+      return false;
+    }
   }
 
   /**
@@ -103,6 +238,16 @@ public class Segment implements AutoCloseable {
 
     // While the length is non-zero...
     while (length != 0) {
+      // If the length is negative, read and index a compressed block of entries.
+      if (length < 0) {
+        if (!buildBlockIndex(position, -length)) {
+          break;
+        }
+        position = buffer.position();
+        length = buffer.mark().readInt();
+        continue;
+      }
+
       // Read the full entry into memory.
       buffer.read(memory.clear().limit(length));
 
@@ -123,11 +268,10 @@ public class Segment implements AutoCloseable {
       int entryLength = length - entryPosition;
 
       // Compute the checksum for the entry bytes.
-      Checksum crc32 = new CRC32();
-      crc32.update(memory.array(), entryPosition, entryLength);
+      long computed = checksumType.checksum(memory.array(), entryPosition, entryLength);
 
       // If the computed checksum equals the stored checksum...
-      if (checksum == crc32.getValue()) {
+      if (checksum == computed) {
         // If the entry contained a term, index the term.
         if (term != null) {
           termIndex.index(offset, term);
@@ -150,6 +294,326 @@ public class Segment implements AutoCloseable {
     buffer.reset();
   }
 
+  /**
+   * Reads the compressed block at the current buffer position and indexes its entries.
+   * <p>
+   * Blocks are indexed only if the block can be decompressed and every entry in the block is valid, so a block
+   * that was partially written when the segment was last closed is discarded.
+   *
+   * @return Indicates whether the block was indexed.
+   */
+  private boolean buildBlockIndex(long position, int length) {
+    if (length < INTEGER || buffer.position() + length > buffer.capacity()) {
+      return false;
+    }
+
+    buffer.read(memory.clear().limit(length));
+    memory.flip();
+
+    Block block = decompress(position, memory.array(), length);
+    if (block == null) {
+      return false;
+    }
+
+    // Verify the checksums of all the entries before indexing them.
+    long recordPosition = 0;
+    while (recordPosition < block.length) {
+      int recordLength = block.buffer.readInt(recordPosition);
+      if (recordLength <= 0 || recordPosition + INTEGER + recordLength > block.length || !verify(block.buffer, recordPosition, recordLength)) {
+        return false;
+      }
+      recordPosition += INTEGER + recordLength;
+    }
+
+    recordPosition = 0;
+    while (recordPosition < block.length) {
+      int recordLength = block.buffer.readInt(recordPosition);
+      long offset = block.buffer.readLong(recordPosition + INTEGER + INTEGER);
+      if (block.buffer.readBoolean(recordPosition + INTEGER + INTEGER + LONG)) {
+        termIndex.index(offset, block.buffer.readLong(recordPosition + INTEGER + INTEGER + LONG + BOOLEAN));
+      }
+      offsetIndex.index(offset, position);
+      recordPosition += INTEGER + recordLength;
+    }
+    return true;
+  }
+
+  /**
+   * Flushes and seals the segment, persisting its offset and term indexes to the segment's index file.
+   * <p>
+   * Sealed segments that are reloaded from disk restore their indexes from the index file rather than by scanning
+   * the segment's entries. If the segment is subsequently modified by an append or truncation, the index file is
+   * deleted. Segments stored in memory are flushed but never sealed.
+   * <p>
+   * Segments may be sealed by a background thread once the log has rolled over to a new segment, so sealing is
+   * mutually exclusive with {@link #close() closing} the segment. Once sealed, the segment may be unloaded by the
+   * {@link SegmentManager}.
+   */
+  void seal() {
+    if (sealed || !open) {
+      return;
+    }
+
+    // Unsealed segments are never unloaded, so the segment is never reopened here. If the segment was closed or deleted
+    // before it could be sealed, there's nothing left to seal.
+    boolean newlySealed;
+    lock.readLock().lock();
+    try {
+      if (!open || buffer == null) {
+        return;
+      }
+
+      synchronized (sealLock) {
+        flushResources();
+        newlySealed = indexFile != null && !sealed && writeIndex();
+        if (newlySealed) {
+          sealed = true;
+          mapReadOnly();
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    if (newlySealed) {
+      manager.segmentOpened(this);
+    }
+  }
+
+  /**
+   * Writes the segment's index file, recording the segment metadata needed once the segment has been unloaded.
+   *
+   * @return Indicates whether the index file was written.
+   */
+  private boolean writeIndex() {
+    try {
+      SegmentIndexFile.write(indexFile, descriptor, buffer.position(), offsetIndex, termIndex);
+      recordSealedState();
+      return true;
+    } catch (IOException e) {
+      LOGGER.warn("Failed to write index file: {}", indexFile, e);
+      return false;
+    }
+  }
+
+  /**
+   * Records the segment metadata that remains available once the segment has been unloaded.
+   */
+  private void recordSealedState() {
+    sealedCount = offsetIndex.size();
+    sealedLastOffset = offsetIndex.lastOffset();
+    sealedSize = size(buffer);
+  }
+
+  /**
+   * Deletes the segment's index file if the segment has been sealed.
+   */
+  private void unseal() {
+    synchronized (sealLock) {
+      if (sealed) {
+        sealed = false;
+        unmapReadOnly();
+        indexFile.delete();
+      }
+    }
+  }
+
+  /**
+   * Maps the segment file read-only so entries in the sealed segment can be read without a system call per read.
+   * <p>
+   * Readers only read from the mapping while holding the segment's read lock, so the mapping is explicitly unmapped
+   * under the write lock once the segment is modified, unloaded, closed, or deleted rather than holding the mapping
+   * until it's collected. If the file can't be mapped, entries continue to be read via positional reads.
+   */
+  private void mapReadOnly() {
+    if (channel == null || readOnlyMap != null) {
+      return;
+    }
+
+    try {
+      long size = channel.size();
+      if (size <= Integer.MAX_VALUE) {
+        readOnlyMap = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      }
+    } catch (IOException e) {
+      LOGGER.debug("Failed to map segment file: {}", file.file(), e);
+    }
+  }
+
+  /**
+   * Unmaps the read-only mapping of the segment file.
+   * <p>
+   * This method must be called while holding the write lock.
+   */
+  private void unmapReadOnly() {
+    MappedByteBuffer map = readOnlyMap;
+    if (map != null) {
+      readOnlyMap = null;
+      unmap(map);
+    }
+  }
+
+  /**
+   * Unmaps the given mapping rather than waiting for the garbage collector to unmap it.
+   * <p>
+   * There's no public API for unmapping a file, so the mapping is unmapped via {@code Unsafe.invokeCleaner} on Java 9
+   * and later and via the mapping's cleaner on Java 8. If neither is accessible, the mapping is left to the garbage
+   * collector.
+   */
+  private static void unmap(MappedByteBuffer map) {
+    try {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Method invokeCleaner;
+      try {
+        invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      } catch (NoSuchMethodException e) {
+        Method cleanerMethod = map.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(map);
+        if (cleaner != null) {
+          cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+        return;
+      }
+      Field unsafe = unsafeClass.getDeclaredField("theUnsafe");
+      unsafe.setAccessible(true);
+      invokeCleaner.invoke(unsafe.get(null), map);
+    } catch (Exception e) {
+      LOGGER.debug("Failed to unmap segment file", e);
+    }
+  }
+
+  /**
+   * Returns a boolean value indicating whether the segment has been sealed.
+   *
+   * @return Indicates whether the segment has been sealed.
+   */
+  boolean isSealed() {
+    return sealed;
+  }
+
+  /**
+   * Returns a boolean value indicating whether the segment's buffer and indexes are loaded.
+   *
+   * @return Indicates whether the segment is loaded.
+   */
+  boolean isLoaded() {
+    return buffer != null;
+  }
+
+  /**
+   * Returns a boolean value indicating whether reads from the segment are served from a read-only mapping.
+   *
+   * @return Indicates whether the sealed segment file is mapped.
+   */
+  boolean isReadOnlyMapped() {
+    return readOnlyMap != null;
+  }
+
+  /**
+   * Acquires a read lock on the segment's resources, reopening the segment if it has been unloaded.
+   * <p>
+   * The read lock must be released by the caller once the segment's resources are no longer in use.
+   *
+   * @throws IllegalStateException if the segment is not open
+   */
+  private void acquire() {
+    lock.readLock().lock();
+    while (buffer == null) {
+      lock.readLock().unlock();
+      if (reopen()) {
+        manager.segmentOpened(this);
+      }
+      lock.readLock().lock();
+    }
+  }
+
+  /**
+   * Acquires a write lock on the segment's resources, reopening the segment if it has been unloaded.
+   * <p>
+   * The write lock must be held while modifying the segment's buffer or indexes and must be released by the caller.
+   *
+   * @throws IllegalStateException if the segment is not open
+   */
+  private void acquireWrite() {
+    lock.writeLock().lock();
+    while (buffer == null) {
+      lock.writeLock().unlock();
+      if (reopen()) {
+        manager.segmentOpened(this);
+      }
+      lock.writeLock().lock();
+    }
+  }
+
+  /**
+   * Reopens an unloaded segment, restoring its indexes from the segment's index file.
+   *
+   * @return Indicates whether the segment was reopened by this call.
+   */
+  private boolean reopen() {
+    lock.writeLock().lock();
+    try {
+      if (buffer != null) {
+        return false;
+      }
+      assertSegmentOpen();
+
+      Buffer root = manager.openBuffer(file.file(), mapped);
+      descriptor.attach(root);
+      buffer = root.position(SegmentDescriptor.BYTES).slice();
+      channel = mapped ? null : openChannel(file.file());
+      offsetIndex = manager.createIndex(descriptor);
+      termIndex = new TermIndex();
+
+      // If the index file was lost, rebuild the index and rewrite the index file. If the index file still
+      // can't be written, the segment is kept open to avoid rebuilding the index each time it's read.
+      if (!loadIndex()) {
+        buildIndex();
+        if (!writeIndex()) {
+          sealed = false;
+        }
+      }
+      LOGGER.trace("Reopened segment: {} ({})", descriptor.id(), file.file().getName());
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Unloads the segment, closing its buffer, file handles, and in-memory indexes.
+   * <p>
+   * Only sealed segments are unloaded. The segment's {@link OffsetPredicate} is retained since released entries
+   * cannot be recovered from disk. If the segment is in use by another thread, it is not unloaded.
+   *
+   * @return Indicates whether the segment is no longer loaded.
+   */
+  boolean unload() {
+    if (!sealed || !lock.writeLock().tryLock()) {
+      return false;
+    }
+
+    try {
+      if (!open || buffer == null) {
+        return true;
+      }
+      if (!sealed) {
+        return false;
+      }
+
+      closeResources();
+      cachedBlock = null;
+      buffer = null;
+      channel = null;
+      offsetIndex = null;
+      termIndex = null;
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
   /**
    * Returns the segment file.
    *
@@ -189,7 +653,7 @@ public class Segment implements AutoCloseable {
    * @return Indicates whether the segment is empty.
    */
   public boolean isEmpty() {
-    return offsetIndex.size() > 0 ? offsetIndex.lastOffset() + 1 + skip == 0 : skip == 0;
+    return entries() > 0 ? lastOffset() + 1 + skip == 0 : skip == 0;
   }
 
   /**
@@ -216,7 +680,7 @@ public class Segment implements AutoCloseable {
    */
   public boolean isFull() {
     return size() >= descriptor.maxSegmentSize()
-      || offsetIndex.size() >= descriptor.maxEntries();
+      || entries() >= descriptor.maxEntries();
   }
 
   /**
@@ -225,9 +689,36 @@ public class Segment implements AutoCloseable {
    * @return The size of the segment in bytes.
    */
   public long size() {
+    Buffer buffer = this.buffer;
+    return sealed || buffer == null ? sealedSize : size(buffer) + batchSize;
+  }
+
+  /**
+   * Returns the size of the given segment buffer.
+   */
+  private static long size(Buffer buffer) {
     return buffer.offset() + buffer.position();
   }
 
+  /**
+   * Returns the number of entries in the segment's offset index.
+   * <p>
+   * The offset index is immutable once the segment has been sealed, so sealed segments, which may be unloaded,
+   * return the count recorded when the segment was sealed.
+   */
+  private int entries() {
+    OffsetIndex offsetIndex = this.offsetIndex;
+    return sealed || offsetIndex == null ? sealedCount : offsetIndex.size();
+  }
+
+  /**
+   * Returns the last offset in the segment's offset index.
+   */
+  private long lastOffset() {
+    OffsetIndex offsetIndex = this.offsetIndex;
+    return sealed || offsetIndex == null ? sealedLastOffset : offsetIndex.lastOffset();
+  }
+
   /**
    * Returns the current range of the segment.
    * <p>
@@ -236,7 +727,7 @@ public class Segment implements AutoCloseable {
    * @return The current range of the segment.
    */
   public long length() {
-    return !isEmpty() ? offsetIndex.lastOffset() + 1 + skip : 0;
+    return !isEmpty() ? lastOffset() + 1 + skip : 0;
   }
 
   /**
@@ -248,7 +739,7 @@ public class Segment implements AutoCloseable {
    * @return The count of all entries in the segment.
    */
   public int count() {
-    return offsetIndex.size();
+    return entries();
   }
 
   /**
@@ -283,7 +774,7 @@ public class Segment implements AutoCloseable {
    */
   public long lastIndex() {
     assertSegmentOpen();
-    return !isEmpty() ? offsetIndex.lastOffset() + descriptor.index() + skip : descriptor.index() - 1;
+    return !isEmpty() ? lastOffset() + descriptor.index() + skip : descriptor.index() - 1;
   }
 
   /**
@@ -306,7 +797,12 @@ public class Segment implements AutoCloseable {
    * @return The offset of the given index.
    */
   public long offset(long index) {
-    return offsetIndex.find(relativeOffset(index));
+    acquire();
+    try {
+      return offsetIndex.find(relativeOffset(index));
+    } finally {
+      lock.readLock().unlock();
+    }
   }
 
   /**
@@ -341,49 +837,107 @@ public class Segment implements AutoCloseable {
     long index = nextIndex();
     Assert.index(index == entry.getIndex(), "inconsistent index: %s", entry.getIndex());
 
-    // Calculate the offset of the entry.
-    long offset = relativeOffset(index);
+    acquireWrite();
+    try {
+      // Get the term from the entry.
+      long term = entry.getTerm();
 
-    // Get the term from the entry.
-    long term = entry.getTerm();
+      // Calculate the length of the entry header bytes.
+      int headerLength = headerLength(term);
 
-    // Get the highest term in the index.
-    long lastTerm = termIndex.term();
+      // Clear the memory and skip the size and header.
+      memory.clear().skip(headerLength);
 
-    // The entry term must be positive and >= the last term in the segment.
-    Assert.arg(term > 0 && term >= lastTerm, "term must be monotonically increasing");
+      // Serialize the object into the in-memory buffer.
+      serializers.get().writeObject(entry, memory);
 
-    // Mark the starting position of the record and record the starting position of the new entry.
-    long position = buffer.position();
+      // Flip the in-memory buffer indexes.
+      memory.flip();
 
-    // Determine whether to skip writing the term to the segment.
-    boolean skipTerm = term == lastTerm;
+      // The total length of the entry is the in-memory buffer limit.
+      int totalLength = (int) memory.limit();
 
-    // Calculate the length of the entry header bytes.
-    int headerLength = INTEGER + LONG + BOOLEAN + (skipTerm ? 0 : LONG);
+      // Set the entry size.
+      entry.setSize(totalLength);
 
-    // Clear the memory and skip the size and header.
-    memory.clear().skip(headerLength);
+      // Compute the checksum for the entry.
+      long checksum = checksumType.checksum(memory.array(), headerLength, totalLength - headerLength);
 
-    // Serialize the object into the in-memory buffer.
-    serializer.writeObject(entry, memory);
+      appendRecord(index, term, totalLength, checksum);
+      return index;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
 
-    // Flip the in-memory buffer indexes.
-    memory.flip();
+  /**
+   * Appends an entry that has already been serialized to the segment.
+   * <p>
+   * The entry bytes must have been serialized with the segment's serializer and the checksum computed over the
+   * entry bytes with the segment's {@link ChecksumType}. This allows entries to be serialized on one thread and
+   * written to the segment on another.
+   *
+   * @param index The index of the entry.
+   * @param term The term of the entry.
+   * @param bytes The serialized entry bytes.
+   * @param length The number of serialized entry bytes.
+   * @param checksum The checksum of the serialized entry bytes.
+   * @return The size of the appended entry, including the entry header.
+   * @throws IllegalStateException if the segment is full
+   * @throws IndexOutOfBoundsException if the {@code index} is not the next index in the segment
+   */
+  int append(long index, long term, byte[] bytes, int length, long checksum) {
+    return append(index, term, bytes, 0, length, checksum);
+  }
+
+  /**
+   * Appends an entry that has already been serialized to the segment from the given position in the given bytes.
+   */
+  private int append(long index, long term, byte[] bytes, int offset, int length, long checksum) {
+    Assert.stateNot(isFull(), "segment is full");
+    Assert.index(index == nextIndex(), "inconsistent index: %s", index);
+
+    acquireWrite();
+    try {
+      int headerLength = headerLength(term);
+      memory.clear().skip(headerLength).write(bytes, offset, length).flip();
+      appendRecord(index, term, headerLength + length, checksum);
+      return headerLength + length;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the length of the record header for an entry with the given term.
+   */
+  private int headerLength(long term) {
+    // Skip writing the term to the segment if it's the same as the last indexed term.
+    return INTEGER + LONG + BOOLEAN + (term == termIndex.term() ? 0 : LONG);
+  }
+
+  /**
+   * Writes the record in the in-memory buffer to the segment.
+   * <p>
+   * The in-memory buffer must contain the serialized entry following space for the record header.
+   */
+  private void appendRecord(long index, long term, int totalLength, long checksum) {
+    // Calculate the offset of the entry.
+    long offset = relativeOffset(index);
 
-    // The total length of the entry is the in-memory buffer limit.
-    int totalLength = (int) memory.limit();
+    // Get the highest term in the index.
+    long lastTerm = termIndex.term();
 
-    // Calculate the length of the serialized bytes based on the in-memory buffer limit and header length.
-    int entryLength = totalLength - headerLength;
+    // The entry term must be positive and >= the last term in the segment.
+    Assert.arg(term > 0 && term >= lastTerm, "term must be monotonically increasing");
 
-    // Set the entry size.
-    entry.setSize(totalLength);
+    // If the segment was sealed, its index file no longer reflects the segment's entries.
+    if (sealed) {
+      unseal();
+    }
 
-    // Compute the checksum for the entry.
-    Checksum crc32 = new CRC32();
-    crc32.update(memory.array(), headerLength, entryLength);
-    long checksum = crc32.getValue();
+    // Mark the starting position of the record and record the starting position of the new entry.
+    long position = buffer.position();
 
     // Rewind the in-memory buffer and write the length, checksum, and offset.
     memory.rewind()
@@ -391,18 +945,23 @@ public class Segment implements AutoCloseable {
       .writeLong(offset);
 
     // If the term has not yet been written, write the term to this entry.
-    if (skipTerm) {
+    if (term == lastTerm) {
       memory.writeBoolean(false);
     } else {
       memory.writeBoolean(true).writeLong(term);
     }
 
-    // Write the entry length and entry to the segment.
-    buffer.writeInt(totalLength)
-      .write(memory.rewind());
+    if (compressed) {
+      // Buffer the entry in the current block and index the entry at the position of the block.
+      appendBatch(offset, totalLength);
+    } else {
+      // Write the entry length and entry to the segment.
+      buffer.writeInt(totalLength)
+        .write(memory.rewind());
 
-    // Index the offset, position, and length.
-    offsetIndex.index(offset, position);
+      // Index the offset, position, and length.
+      offsetIndex.index(offset, position);
+    }
 
     // If the entry term is greater than the last indexed term, index the term.
     if (term > lastTerm) {
@@ -411,8 +970,39 @@ public class Segment implements AutoCloseable {
 
     // Reset skip to zero since we wrote a new entry.
     skip = 0;
+  }
 
-    return index;
+  /**
+   * Appends the serialized entry in the in-memory buffer to the current block, writing the block once it's full.
+   */
+  private void appendBatch(long offset, int length) {
+    synchronized (batch) {
+      batch.writeInt(length)
+        .write(memory.rewind());
+      offsetIndex.index(offset, buffer.position());
+      if (batch.position() >= blockSize) {
+        writeBatch();
+      } else {
+        batchSize = batch.position();
+      }
+    }
+  }
+
+  /**
+   * Compresses the current block of entries and writes it to the segment.
+   * <p>
+   * This method must be called while holding the batch lock.
+   */
+  private void writeBatch() {
+    int length = (int) batch.position();
+    if (length > 0) {
+      byte[] bytes = compressionType.compress(batch.array(), 0, length);
+      buffer.writeInt(-(INTEGER + bytes.length))
+        .writeInt(length)
+        .write(bytes);
+      batch.clear();
+      batchSize = 0;
+    }
   }
 
   /**
@@ -426,65 +1016,438 @@ public class Segment implements AutoCloseable {
     assertSegmentOpen();
     checkRange(index);
 
-    // Get the offset of the index within this segment.
-    long offset = relativeOffset(index);
+    acquire();
+    try {
+      // Get the offset of the index within this segment.
+      long offset = relativeOffset(index);
 
-    // Look up the term for the offset in the term index.
-    return termIndex.lookup(offset);
+      // Look up the term for the offset in the term index.
+      return termIndex.lookup(offset);
+    } finally {
+      lock.readLock().unlock();
+    }
   }
 
   /**
    * Reads the entry at the given index.
+   * <p>
+   * Reads do not share any mutable state with one another, so entries may be read by multiple threads concurrently.
+   * Each reading thread deserializes entries from its own scratch buffer with its own copy of the segment's
+   * serializer, and entries in file-based segments are read via positional reads. Appends and truncations hold the
+   * segment's write lock and are therefore never observed partially applied by readers.
    *
    * @param index The index from which to read the entry.
    * @return The entry at the given index.
    * @throws IllegalStateException if the segment is not open or {@code index} is inconsistent with the entry
    */
-  public synchronized <T extends Entry> T get(long index) {
+  public <T extends Entry> T get(long index) {
+    assertSegmentOpen();
+    checkRange(index);
+
+    acquire();
+    try {
+      // Get the offset of the index within this segment.
+      long offset = relativeOffset(index);
+
+      // Get the start position of the entry from the memory index.
+      long position = offsetIndex.position(offset);
+
+      // If the index contained the entry, read the entry from the buffer.
+      if (position != -1) {
+
+        // If the segment is compressed, read the entry from the block at the indexed position.
+        if (compressed) {
+          return getCompressed(index, offset, position);
+        }
+
+        // If the segment is memory mapped, read the entry directly from the mapped bytes.
+        if (mapped) {
+          return getMapped(index, offset, position, buffer.readInt(position));
+        }
+
+        // Read the entry into this thread's scratch buffer.
+        HeapBuffer scratch = READ_BUFFER.get();
+        int length;
+        if (channel != null) {
+          length = readFile(position, scratch);
+        } else {
+          length = buffer.readInt(position);
+          try (Buffer slice = buffer.slice(position + INTEGER, length)) {
+            slice.read(scratch.clear().limit(length));
+            scratch.flip();
+          }
+        }
+
+        // Read the checksum of the entry.
+        long checksum = scratch.readUnsignedInt();
+
+        // Verify that the entry at the given offset matches.
+        long entryOffset = scratch.readLong();
+        Assert.state(entryOffset == offset, "inconsistent index: %s", index);
+
+        // Skip the term if necessary.
+        if (scratch.readBoolean()) {
+          scratch.skip(LONG);
+        }
+
+        // Calculate the entry position and length.
+        int entryPosition = (int) scratch.position();
+        int entryLength = length - entryPosition;
+
+        // Compute the checksum for the entry bytes.
+        long computed = checksumType.checksum(scratch.array(), entryPosition, entryLength);
+
+        // If the stored checksum equals the computed checksum, return the entry.
+        if (checksum == computed) {
+          T entry = serializers.get().readObject(scratch);
+          entry.setIndex(index).setTerm(termIndex.lookup(offset)).setSize(length);
+          return entry;
+        }
+      }
+      return null;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Copies the record of the entry at the given index to the end of the given segment without deserializing it.
+   * <p>
+   * The serialized entry bytes are copied as-is, and only the record header is rewritten with the entry's offset
+   * in the given segment and the term as necessary. The stored checksum is verified and reused unless the given
+   * segment uses a different {@link ChecksumType}. Records are copied between compressed and uncompressed segments
+   * by decompressing the record's block in this segment and buffering the record in the given segment's block.
+   *
+   * @param index The index of the entry to copy.
+   * @param segment The segment to which to append the entry.
+   * @return The size of the copied entry or {@code -1} if the entry is not present in the segment or is invalid.
+   * @throws IllegalStateException if the segment is not open or the given segment is full
+   * @throws IndexOutOfBoundsException if {@code index} is not the next index in the given segment
+   */
+  public int transfer(long index, Segment segment) {
+    Assert.notNull(segment, "segment");
+    assertSegmentOpen();
+    checkRange(index);
+
+    // Read the record into this thread's scratch buffer.
+    HeapBuffer scratch = READ_BUFFER.get();
+    int length;
+    long term;
+    acquire();
+    try {
+      long offset = relativeOffset(index);
+      long position = offsetIndex.position(offset);
+      if (position == -1) {
+        return -1;
+      }
+
+      length = compressed ? readCompressedRecord(position, offset, scratch) : readRecord(position, scratch);
+      if (length <= 0) {
+        return -1;
+      }
+      Assert.state(scratch.readLong(INTEGER) == offset, "inconsistent index: %s", index);
+      term = termIndex.lookup(offset);
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    // Verify the entry checksum, recomputing the checksum if the segments' checksum types differ.
+    int headerLength = INTEGER + LONG + BOOLEAN + (scratch.readBoolean(INTEGER + LONG) ? LONG : 0);
+    int entryLength = length - headerLength;
+    long checksum = scratch.readUnsignedInt(0);
+    if (checksum != checksumType.checksum(scratch.array(), headerLength, entryLength)) {
+      return -1;
+    }
+    if (segment.checksumType != checksumType) {
+      checksum = segment.checksumType.checksum(scratch.array(), headerLength, entryLength);
+    }
+
+    segment.append(index, term, scratch.array(), headerLength, entryLength, checksum);
+    return length;
+  }
+
+  /**
+   * Reads the record at the given position into the head of the given scratch buffer.
+   *
+   * @return The length of the record.
+   */
+  private int readRecord(long position, HeapBuffer scratch) {
+    if (channel != null) {
+      return readFile(position, scratch);
+    }
+
+    int length = buffer.readInt(position);
+    if (length > 0) {
+      try (Buffer slice = buffer.slice(position + INTEGER, length)) {
+        slice.read(scratch.clear().limit(length));
+        scratch.flip();
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Reads the record at the given offset from the compressed block at the given position into the head of the given
+   * scratch buffer.
+   *
+   * @return The length of the record or {@code -1} if the record was not found.
+   */
+  private int readCompressedRecord(long position, long offset, HeapBuffer scratch) {
+    synchronized (batch) {
+      if (position == buffer.position()) {
+        return copyRecord(batch, batch.position(), offset, scratch);
+      }
+    }
+
+    Block block = readBlock(position);
+    return block != null ? copyRecord(block.buffer, block.length, offset, scratch) : -1;
+  }
+
+  /**
+   * Copies the record at the given offset from the given block of uncompressed records into the head of the given
+   * scratch buffer.
+   *
+   * @return The length of the record or {@code -1} if the record was not found.
+   */
+  private int copyRecord(HeapBuffer records, long limit, long offset, HeapBuffer scratch) {
+    long position = 0;
+    while (position + INTEGER <= limit) {
+      int length = records.readInt(position);
+      if (length <= 0) {
+        break;
+      }
+
+      long entryOffset = records.readLong(position + INTEGER + INTEGER);
+      if (entryOffset == offset) {
+        scratch.clear().write(records.array(), (int) (position + INTEGER), length).flip();
+        return length;
+      } else if (entryOffset > offset) {
+        break;
+      }
+      position += INTEGER + length;
+    }
+    return -1;
+  }
+
+  /**
+   * Reads the entry at the given position from the segment file into the given scratch buffer.
+   * <p>
+   * The underlying {@link FileBytes} seek before each read or write and so cannot be shared by concurrent readers.
+   * Instead, the entry is read from a separate channel using positional reads which do not modify the channel state.
+   * Compressed blocks are read in the same way.
+   *
+   * @return The length of the entry, which is negative for compressed blocks.
+   */
+  private int readFile(long position, HeapBuffer scratch) {
+    long filePosition = buffer.offset() + position;
+    scratch.clear();
+    read(filePosition, scratch, INTEGER);
+    int length = scratch.readInt(0);
+    int bytes = Math.abs(length);
+    if (scratch.capacity() < bytes) {
+      scratch.capacity(bytes);
+    }
+    read(filePosition + INTEGER, scratch, bytes);
+    scratch.limit(bytes);
+    return length;
+  }
+
+  /**
+   * Reads the given number of bytes from the segment file into the head of the given scratch buffer.
+   * <p>
+   * If the segment is sealed, the bytes are copied from the read-only mapping of the segment file.
+   */
+  private void read(long position, HeapBuffer scratch, int length) {
+    MappedByteBuffer map = readOnlyMap;
+    if (map != null && position + length <= map.capacity()) {
+      ByteBuffer bytes = map.duplicate();
+      ((java.nio.Buffer) bytes).position((int) position);
+      bytes.get(scratch.array(), 0, length);
+      return;
+    }
+
+    ByteBuffer bytes = ByteBuffer.wrap(scratch.array(), 0, length);
+    try {
+      while (bytes.hasRemaining()) {
+        if (channel.read(bytes, position + bytes.position()) == -1) {
+          throw new StorageException("unexpected end of segment " + file.file());
+        }
+      }
+    } catch (IOException e) {
+      throw new StorageException("failed to read segment " + file.file(), e);
+    }
+  }
+
+  /**
+   * Reads entries sequentially from the given index up to and including {@code lastIndex}, adding them to the given list.
+   * <p>
+   * For segments read via positional reads, entries are prefetched by reading a block of consecutive entries into the
+   * given buffer with a single read and parsing entries from the block in order, avoiding an offset index lookup and
+   * read for each entry. Entries that have been removed from the segment or fail checksum validation are added as
+   * {@code null}. Other segments, including compressed segments which cache decompressed blocks, read a single entry.
+   * At least one entry is always read.
+   *
+   * @param index The index of the first entry to read.
+   * @param lastIndex The index of the last entry to read.
+   * @param block The buffer into which to prefetch entries or {@code null} to read a single entry.
+   * @param entries The list to which to add entries.
+   * @return The number of entries added to the list.
+   * @throws IllegalStateException if the segment is not open or {@code index} is inconsistent with the entry
+   */
+  int read(long index, long lastIndex, HeapBuffer block, List<Entry> entries) {
     assertSegmentOpen();
     checkRange(index);
 
-    // Get the offset of the index within this segment.
+    int count;
+    acquire();
+    try {
+      count = block != null && isBlockRead() ? readBlock(index, Math.min(lastIndex, lastIndex()), block, entries) : 0;
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    // If the segment isn't read via positional reads or the first entry didn't fit in the block, read a single entry.
+    if (count == 0) {
+      entries.add(get(index));
+      count = 1;
+    }
+    return count;
+  }
+
+  /**
+   * Returns a boolean indicating whether entries are read from the segment file in blocks.
+   *
+   * @return Indicates whether {@link #read(long, long, HeapBuffer, List)} prefetches blocks of entries.
+   */
+  boolean isBlockRead() {
+    return channel != null && !compressed;
+  }
+
+  /**
+   * Reads a block of entries from the segment file, returning the number of entries read.
+   */
+  private int readBlock(long index, long lastIndex, HeapBuffer block, List<Entry> entries) {
     long offset = relativeOffset(index);
+    long lastOffset = relativeOffset(lastIndex);
 
-    // Get the start position of the entry from the memory index.
+    // If the first entry was removed from the segment, skip it without reading.
     long position = offsetIndex.position(offset);
+    if (position == -1) {
+      entries.add(null);
+      return 1;
+    }
 
-    // If the index contained the entry, read the entry from the buffer.
-    if (position != -1) {
+    long limit = readAvailable(buffer.offset() + position, block);
 
-      // Read the length of the entry.
-      int length = buffer.readInt(position);
+    int count = 0;
+    long blockPosition = 0;
+    while (offset <= lastOffset && blockPosition + INTEGER <= limit) {
+      // Stop once the next entry is not complete in the block or the end of the segment is reached.
+      int length = block.readInt(blockPosition);
+      long entryStart = blockPosition + INTEGER;
+      if (length <= 0 || entryStart + length > limit) {
+        break;
+      }
 
-      // Read the entry into memory.
-      try (Buffer slice = buffer.slice(position + INTEGER, length)) {
-        slice.read(memory.clear().limit(length));
-        memory.flip();
+      long checksum = block.readUnsignedInt(entryStart);
+      long entryOffset = block.readLong(entryStart + INTEGER);
+      if (entryOffset > lastOffset) {
+        break;
+      }
+      Assert.state(entryOffset >= offset, "inconsistent index: %s", index + count);
+
+      // Add null entries for offsets that were removed from the segment by compaction.
+      while (offset < entryOffset) {
+        entries.add(null);
+        offset++;
+        count++;
+      }
+
+      int headerLength = INTEGER + LONG + BOOLEAN + (block.readBoolean(entryStart + INTEGER + LONG) ? LONG : 0);
+      int entryLength = length - headerLength;
+      long computed = checksumType.checksum(block.array(), (int) (entryStart + headerLength), entryLength);
+      if (checksum == computed) {
+        try (Buffer slice = block.slice(entryStart + headerLength, entryLength)) {
+          Entry entry = serializers.get().readObject(slice);
+          entry.setIndex(descriptor.index() + offset).setTerm(termIndex.lookup(offset)).setSize(length);
+          entries.add(entry);
+        }
+      } else {
+        entries.add(null);
+      }
+
+      offset++;
+      count++;
+      blockPosition = entryStart + length;
+    }
+    return count;
+  }
+
+  /**
+   * Reads as many bytes as are available from the segment file into the given block, up to the block capacity.
+   * <p>
+   * If the segment is sealed, the bytes are copied from the read-only mapping of the segment file.
+   *
+   * @return The number of bytes read.
+   */
+  private long readAvailable(long position, HeapBuffer block) {
+    MappedByteBuffer map = readOnlyMap;
+    if (map != null && position <= map.capacity()) {
+      int length = (int) Math.min(block.capacity(), map.capacity() - position);
+      ByteBuffer bytes = map.duplicate();
+      ((java.nio.Buffer) bytes).position((int) position);
+      bytes.get(block.array(), 0, length);
+      return length;
+    }
+
+    ByteBuffer bytes = ByteBuffer.wrap(block.array(), 0, (int) block.capacity());
+    try {
+      while (bytes.hasRemaining()) {
+        if (channel.read(bytes, position + bytes.position()) == -1) {
+          break;
+        }
       }
+    } catch (IOException e) {
+      throw new StorageException("failed to read segment " + file.file(), e);
+    }
+    return bytes.position();
+  }
 
+  /**
+   * Reads the entry at the given position directly from the underlying mapped bytes.
+   * <p>
+   * Rather than copying the entry into the shared in-memory buffer, the checksum is computed over a view of the
+   * mapped {@link ByteBuffer} and the entry is deserialized from a slice of the segment buffer.
+   */
+  private <T extends Entry> T getMapped(long index, long offset, long position, int length) {
+    try (Buffer slice = buffer.slice(position + INTEGER, length)) {
       // Read the checksum of the entry.
-      long checksum = memory.readUnsignedInt();
+      long checksum = slice.readUnsignedInt();
 
       // Verify that the entry at the given offset matches.
-      long entryOffset = memory.readLong();
+      long entryOffset = slice.readLong();
       Assert.state(entryOffset == offset, "inconsistent index: %s", index);
 
       // Skip the term if necessary.
-      if (memory.readBoolean()) {
-        memory.skip(LONG);
+      if (slice.readBoolean()) {
+        slice.skip(LONG);
       }
 
       // Calculate the entry position and length.
-      int entryPosition = (int) memory.position();
+      int entryPosition = (int) slice.position();
       int entryLength = length - entryPosition;
 
-      // Compute the checksum for the entry bytes.
-      Checksum crc32 = new CRC32();
-      crc32.update(memory.array(), entryPosition, entryLength);
-
-      // If the stored checksum equals the computed checksum, return the entry.
-      if (checksum == crc32.getValue()) {
-        T entry = serializer.readObject(memory);
+      // Compute the checksum over a view of the mapped bytes. The byte buffer must be read from the bytes
+      // on each read since mapped bytes are remapped when resized.
+      ByteBuffer bytes = ((MappedBytes) slice.bytes()).byteBuffer().duplicate();
+      int start = (int) (slice.offset() + entryPosition);
+      ((java.nio.Buffer) bytes).limit(start + entryLength);
+      ((java.nio.Buffer) bytes).position(start);
+      long computed = checksumType.checksum(bytes);
+
+      // If the stored checksum equals the computed checksum, deserialize the entry from the slice.
+      if (checksum == computed) {
+        T entry = serializers.get().readObject(slice);
         entry.setIndex(index).setTerm(termIndex.lookup(offset)).setSize(length);
         return entry;
       }
@@ -492,6 +1455,107 @@ public class Segment implements AutoCloseable {
     return null;
   }
 
+  /**
+   * Reads the entry at the given offset from the compressed block at the given position.
+   */
+  private <T extends Entry> T getCompressed(long index, long offset, long position) {
+    // If the entry has not yet been written to the segment, read it from the current block.
+    synchronized (batch) {
+      if (position == buffer.position()) {
+        return findRecord(batch, batch.position(), index, offset);
+      }
+    }
+
+    Block block = readBlock(position);
+    return block != null ? findRecord(block.buffer, block.length, index, offset) : null;
+  }
+
+  /**
+   * Reads and decompresses the block at the given position, returning the cached block if it's at the same position.
+   *
+   * @return The decompressed block or {@code null} if the block could not be decompressed.
+   */
+  private Block readBlock(long position) {
+    Block block = cachedBlock;
+    if (block != null && block.position == position) {
+      return block;
+    }
+
+    HeapBuffer scratch = READ_BUFFER.get();
+    int length;
+    if (channel != null) {
+      length = -readFile(position, scratch);
+    } else {
+      length = -buffer.readInt(position);
+      try (Buffer slice = buffer.slice(position + INTEGER, length)) {
+        slice.read(scratch.clear().limit(length));
+        scratch.flip();
+      }
+    }
+
+    block = decompress(position, scratch.array(), length);
+    if (block != null) {
+      cachedBlock = block;
+    }
+    return block;
+  }
+
+  /**
+   * Decompresses a block, returning {@code null} if the block is invalid.
+   *
+   * @param position The position of the block in the segment.
+   * @param bytes The uncompressed length of the block followed by the compressed block.
+   * @param length The number of bytes in the given array.
+   */
+  private Block decompress(long position, byte[] bytes, int length) {
+    int blockLength = HeapBuffer.wrap(bytes).readInt(0);
+    if (blockLength <= 0) {
+      return null;
+    }
+    byte[] records = new byte[blockLength];
+    return compressionType.decompress(bytes, INTEGER, length - INTEGER, records) ? new Block(position, records) : null;
+  }
+
+  /**
+   * Finds and reads the entry at the given offset from the given block of uncompressed records.
+   */
+  private <T extends Entry> T findRecord(HeapBuffer records, long limit, long index, long offset) {
+    long position = 0;
+    while (position + INTEGER <= limit) {
+      int length = records.readInt(position);
+      if (length <= 0) {
+        break;
+      }
+
+      long entryOffset = records.readLong(position + INTEGER + INTEGER);
+      if (entryOffset == offset) {
+        if (verify(records, position, length)) {
+          int headerLength = INTEGER + LONG + BOOLEAN + (records.readBoolean(position + INTEGER + INTEGER + LONG) ? LONG : 0);
+          try (Buffer slice = records.slice(position + INTEGER + headerLength, length - headerLength)) {
+            T entry = serializers.get().readObject(slice);
+            entry.setIndex(index).setTerm(termIndex.lookup(offset)).setSize(length);
+            return entry;
+          }
+        }
+        return null;
+      } else if (entryOffset > offset) {
+        break;
+      }
+      position += INTEGER + length;
+    }
+    return null;
+  }
+
+  /**
+   * Verifies the checksum of the record of the given length at the given position in a block of uncompressed records.
+   */
+  private boolean verify(HeapBuffer records, long position, int length) {
+    long entryStart = position + INTEGER;
+    long checksum = records.readUnsignedInt(entryStart);
+    int headerLength = INTEGER + LONG + BOOLEAN + (records.readBoolean(entryStart + INTEGER + LONG) ? LONG : 0);
+    return checksum == checksumType.checksum(records.array(), (int) (entryStart + headerLength), length - headerLength);
+  }
+
   /**
    * Returns a boolean value indicating whether the given index is within the range of the segment.
    *
@@ -519,7 +1583,12 @@ public class Segment implements AutoCloseable {
 
     // Check the memory index first for performance reasons.
     long offset = relativeOffset(index);
-    return offsetIndex.contains(offset);
+    acquire();
+    try {
+      return offsetIndex.contains(offset);
+    } finally {
+      lock.readLock().unlock();
+    }
   }
 
   /**
@@ -531,7 +1600,7 @@ public class Segment implements AutoCloseable {
    */
   public boolean release(long index) {
     assertSegmentOpen();
-    long offset = offsetIndex.find(relativeOffset(index));
+    long offset = offset(index);
     return offset != -1 && offsetPredicate.release(offset);
   }
 
@@ -544,7 +1613,7 @@ public class Segment implements AutoCloseable {
    */
   public boolean isLive(long index) {
     assertSegmentOpen();
-    return offsetPredicate.test(offsetIndex.find(relativeOffset(index)));
+    return offsetPredicate.test(offset(index));
   }
 
   /**
@@ -576,7 +1645,12 @@ public class Segment implements AutoCloseable {
    */
   public Segment skip(long entries) {
     assertSegmentOpen();
-    this.skip += entries;
+    lock.writeLock().lock();
+    try {
+      this.skip += entries;
+    } finally {
+      lock.writeLock().unlock();
+    }
     return this;
   }
 
@@ -592,53 +1666,224 @@ public class Segment implements AutoCloseable {
     Assert.index(index >= manager.commitIndex(), "cannot truncate committed index");
 
     long offset = relativeOffset(index);
-    long lastOffset = offsetIndex.lastOffset();
 
-    long diff = Math.abs(lastOffset - offset);
-    skip = Math.max(skip - diff, 0);
+    acquireWrite();
+    try {
+      long lastOffset = lastOffset();
+      long diff = Math.abs(lastOffset - offset);
+      skip = Math.max(skip - diff, 0);
+
+      if (offset < lastOffset) {
+        unseal();
+        if (compressed) {
+          truncateCompressed(offset);
+        } else {
+          long position = offsetIndex.truncate(offset);
+          if (position != -1) {
+            buffer.position(position)
+              .zero(position)
+              .flush();
+          }
+        }
+        termIndex.truncate(offset);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return this;
+  }
 
-    if (offset < lastOffset) {
+  /**
+   * Truncates a compressed segment after the given offset.
+   * <p>
+   * If the first truncated entry has already been written in a compressed block, the block and everything after it
+   * is removed from the segment and the block's retained entries are returned to the current block. Because the
+   * retained entries are indexed at the position of the removed block, which becomes the position at which the
+   * current block will be written, the offset index remains consistent.
+   */
+  private void truncateCompressed(long offset) {
+    synchronized (batch) {
       long position = offsetIndex.truncate(offset);
-      buffer.position(position)
-        .zero(position)
-        .flush();
-      termIndex.truncate(offset);
+      if (position == -1) {
+        return;
+      }
+
+      if (position != buffer.position()) {
+        Block block = readBlock(position);
+        batch.clear();
+        if (block != null) {
+          batch.write(block.buffer.array(), 0, block.length);
+        }
+        buffer.position(position)
+          .zero(position)
+          .flush();
+      }
+      cachedBlock = null;
+
+      // Remove the truncated entries from the current block.
+      long recordPosition = 0;
+      long limit = batch.position();
+      while (recordPosition + INTEGER <= limit) {
+        int length = batch.readInt(recordPosition);
+        if (length <= 0 || batch.readLong(recordPosition + INTEGER + INTEGER) > offset) {
+          break;
+        }
+        recordPosition += INTEGER + length;
+      }
+      batch.position(recordPosition);
+      batchSize = recordPosition;
     }
-    return this;
   }
 
   /**
    * Flushes the segment buffers to disk.
+   * <p>
+   * Segments may be flushed by a background thread while entries are appended to the log. Appends hold the segment's
+   * write lock, so they're excluded for the duration of the flush.
    *
    * @return The segment.
    */
   public Segment flush() {
-    buffer.flush();
-    offsetIndex.flush();
+    lock.readLock().lock();
+    try {
+      flushResources();
+    } finally {
+      lock.readLock().unlock();
+    }
+    return this;
+  }
+
+  /**
+   * Returns the index of the first entry buffered in the current compressed block.
+   * <p>
+   * Entries appended to a compressed segment are held in memory until the current block is written to the segment,
+   * so entries at or after the returned index are lost if the process fails before the block is written.
+   *
+   * @return The index of the first entry in the unwritten block, or {@code 0} if no entries are pending.
+   */
+  public long pendingIndex() {
+    if (!compressed || batchSize == 0) {
+      return 0;
+    }
+    synchronized (batch) {
+      return batch.position() > 0 ? descriptor.index() + batch.readLong(INTEGER + INTEGER) : 0;
+    }
+  }
+
+  /**
+   * Writes the current compressed block to the segment without flushing the segment to disk.
+   *
+   * @return The segment.
+   */
+  public Segment writePending() {
+    if (compressed) {
+      lock.readLock().lock();
+      try {
+        if (buffer != null) {
+          synchronized (batch) {
+            writeBatch();
+          }
+        }
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
     return this;
   }
 
+  /**
+   * Flushes the segment buffers to disk if the segment is loaded.
+   */
+  private void flushResources() {
+    if (buffer != null) {
+      long start = System.nanoTime();
+      if (compressed) {
+        synchronized (batch) {
+          writeBatch();
+        }
+      }
+      buffer.flush();
+      offsetIndex.flush();
+      manager.metrics().recordFlush(System.nanoTime() - start);
+    }
+  }
+
   @Override
   public void close() {
+    lock.writeLock().lock();
+    try {
+      if (buffer != null) {
+        if (compressed) {
+          synchronized (batch) {
+            writeBatch();
+          }
+        }
+        closeResources();
+
+        // Closing an off-heap segment frees its memory, so drop the buffer to ensure that readers waiting on the
+        // lock fail rather than reading from freed memory.
+        if (offHeap) {
+          buffer = null;
+        }
+      }
+      offsetPredicate.close();
+      open = false;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    manager.segmentClosed(this);
+  }
+
+  /**
+   * Closes the segment's buffers, file channel, and in-memory indexes.
+   */
+  private void closeResources() {
+    unmapReadOnly();
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+      }
+    }
     buffer.close();
     offsetIndex.close();
-    offsetPredicate.close();
     descriptor.close();
-    open = false;
   }
 
   /**
    * Deletes the segment.
    */
   public void delete() {
+    lock.writeLock().lock();
+    try {
+      unmapReadOnly();
+    } finally {
+      lock.writeLock().unlock();
+    }
+
     Buffer buffer = this.buffer instanceof SlicedBuffer ? ((SlicedBuffer) this.buffer).root() : this.buffer;
     if (buffer instanceof FileBuffer) {
       ((FileBuffer) buffer).delete();
     } else if (buffer instanceof MappedBuffer) {
       ((MappedBuffer) buffer).delete();
+    } else if (offHeap) {
+      // Off-heap memory is not reclaimed by the garbage collector, so free the segment's memory if it's still open.
+      if (open) {
+        close();
+      }
+    } else if (buffer == null) {
+      // The segment was unloaded, so delete the segment file directly.
+      file.file().delete();
     }
 
-    offsetIndex.delete();
+    OffsetIndex offsetIndex = this.offsetIndex;
+    if (offsetIndex != null) {
+      offsetIndex.delete();
+    }
+
+    if (indexFile != null) {
+      indexFile.delete();
+    }
   }
 
   @Override
@@ -649,4 +1894,19 @@ public class Segment implements AutoCloseable {
   private void assertSegmentOpen() {
     Assert.state(isOpen(), "segment not open");
   }
+  /**
+   * Decompressed block of records.
+   */
+  private static final class Block {
+    private final long position;
+    private final HeapBuffer buffer;
+    private final int length;
+
+    private Block(long position, byte[] records) {
+      this.position = position;
+      this.buffer = HeapBuffer.wrap(records);
+      this.length = records.length;
+    }
+  }
+
 }
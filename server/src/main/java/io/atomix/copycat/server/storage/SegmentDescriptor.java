@@ -42,6 +42,11 @@ import io.atomix.catalyst.util.Assert;
  *   <li>{@code locked} (8-bit boolean) - A boolean indicating whether the segment is locked. Segments will be locked once
  *   all entries have been committed to the segment. The lock state of each segment is used to determine log compaction
  *   and recovery behavior.</li>
+ *   <li>{@code checksum} (8-bit signed integer) - The {@link ChecksumType} used to compute entry checksums within the
+ *   segment. Segments written prior to the addition of this field store {@code 0}, indicating {@link ChecksumType#CRC32}.</li>
+ *   <li>{@code compression} (8-bit signed integer) - The {@link CompressionType} used to compress blocks of records within
+ *   the segment. Segments written prior to the addition of this field store {@code 0}, indicating
+ *   {@link CompressionType#NONE}.</li>
  * </ul>
  * The remainder of the 64 segment header bytes are reserved for future metadata.
  *
@@ -58,6 +63,8 @@ public final class SegmentDescriptor implements AutoCloseable {
   private static final int MAX_ENTRIES_LENGTH = Bytes.INTEGER; // 32-bit signed integer
   private static final int     UPDATED_LENGTH = Bytes.LONG;    // 64-bit signed integer
   private static final int      LOCKED_LENGTH = Bytes.BOOLEAN; // 8-bit boolean
+  private static final int    CHECKSUM_LENGTH = Bytes.BYTE;    // 8-bit signed integer
+  private static final int COMPRESSION_LENGTH = Bytes.BYTE;    // 8-bit signed integer
 
   // The positions of each field in the header.
   private static final long          ID_POSITION = 0;                                         // 0
@@ -67,6 +74,8 @@ public final class SegmentDescriptor implements AutoCloseable {
   private static final long MAX_ENTRIES_POSITION = MAX_SIZE_POSITION + MAX_SIZE_LENGTH;       // 28
   private static final long     UPDATED_POSITION = MAX_ENTRIES_POSITION + MAX_ENTRIES_LENGTH; // 32
   private static final long      LOCKED_POSITION = UPDATED_POSITION + UPDATED_LENGTH;         // 40
+  private static final long    CHECKSUM_POSITION = LOCKED_POSITION + LOCKED_LENGTH;           // 41
+  private static final long COMPRESSION_POSITION = CHECKSUM_POSITION + CHECKSUM_LENGTH;       // 42
 
   /**
    * Returns a descriptor builder.
@@ -98,6 +107,8 @@ public final class SegmentDescriptor implements AutoCloseable {
   private final int maxEntries;
   private volatile long updated;
   private volatile boolean locked;
+  private final ChecksumType checksumType;
+  private final CompressionType compressionType;
 
   /**
    * @throws NullPointerException if {@code buffer} is null
@@ -111,6 +122,8 @@ public final class SegmentDescriptor implements AutoCloseable {
     this.maxEntries = buffer.readInt();
     this.updated = buffer.readLong();
     this.locked = buffer.readBoolean();
+    this.checksumType = ChecksumType.forId(buffer.readByte());
+    this.compressionType = CompressionType.forId(buffer.readByte());
     buffer.skip(BYTES - buffer.position()); // 64 bytes reserved for the header
   }
 
@@ -168,6 +181,24 @@ public final class SegmentDescriptor implements AutoCloseable {
     return maxEntries;
   }
 
+  /**
+   * Returns the algorithm used to compute entry checksums within the segment.
+   *
+   * @return The segment checksum type.
+   */
+  public ChecksumType checksumType() {
+    return checksumType;
+  }
+
+  /**
+   * Returns the codec used to compress blocks of records within the segment.
+   *
+   * @return The segment compression type.
+   */
+  public CompressionType compressionType() {
+    return compressionType;
+  }
+
   /**
    * Returns last time the segment was updated.
    * <p>
@@ -215,6 +246,16 @@ public final class SegmentDescriptor implements AutoCloseable {
    * Copies the segment to a new buffer.
    */
   SegmentDescriptor copyTo(Buffer buffer) {
+    copyTo(buffer, true);
+    return this;
+  }
+
+  /**
+   * Copies the segment to a new buffer, optionally flushing the buffer.
+   * <p>
+   * If the buffer is not flushed, the descriptor will be persisted the next time the segment is flushed.
+   */
+  SegmentDescriptor copyTo(Buffer buffer, boolean flush) {
     this.buffer = buffer
       .writeLong(id)
       .writeLong(version)
@@ -223,8 +264,22 @@ public final class SegmentDescriptor implements AutoCloseable {
       .writeInt(maxEntries)
       .writeLong(updated)
       .writeBoolean(locked)
-      .skip(BYTES - buffer.position())
-      .flush();
+      .writeByte(checksumType.id())
+      .writeByte(compressionType.id())
+      .skip(BYTES - buffer.position());
+    if (flush) {
+      buffer.flush();
+    }
+    return this;
+  }
+
+  /**
+   * Attaches the descriptor to the given buffer after its segment has been reopened.
+   * <p>
+   * The buffer must already contain this descriptor, so unlike {@link #copyTo(Buffer)} nothing is written.
+   */
+  SegmentDescriptor attach(Buffer buffer) {
+    this.buffer = Assert.notNull(buffer, "buffer");
     return this;
   }
 
@@ -246,7 +301,7 @@ public final class SegmentDescriptor implements AutoCloseable {
 
   @Override
   public String toString() {
-    return String.format("%s[id=%d, version=%d, index=%d, updated=%d, locked=%b]", getClass().getSimpleName(), id, version, index, updated, locked);
+    return String.format("%s[id=%d, version=%d, index=%d, updated=%d, locked=%b, checksum=%s, compression=%s]", getClass().getSimpleName(), id, version, index, updated, locked, checksumType, compressionType);
   }
 
   /**
@@ -314,6 +369,30 @@ public final class SegmentDescriptor implements AutoCloseable {
       return this;
     }
 
+    /**
+     * Sets the algorithm used to compute entry checksums within the segment.
+     *
+     * @param checksumType The segment checksum type.
+     * @return The segment descriptor builder.
+     * @throws NullPointerException if {@code checksumType} is null
+     */
+    public Builder withChecksumType(ChecksumType checksumType) {
+      buffer.writeByte(41, Assert.notNull(checksumType, "checksumType").id());
+      return this;
+    }
+
+    /**
+     * Sets the codec used to compress blocks of records within the segment.
+     *
+     * @param compressionType The segment compression type.
+     * @return The segment descriptor builder.
+     * @throws NullPointerException if {@code compressionType} is null
+     */
+    public Builder withCompressionType(CompressionType compressionType) {
+      buffer.writeByte(42, Assert.notNull(compressionType, "compressionType").id());
+      return this;
+    }
+
     /**
      * Builds the segment descriptor.
      *
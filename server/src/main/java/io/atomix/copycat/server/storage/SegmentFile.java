@@ -28,6 +28,7 @@ public final class SegmentFile {
   private static final char PART_SEPARATOR = '-';
   private static final char EXTENSION_SEPARATOR = '.';
   private static final String EXTENSION = "log";
+  private static final String INDEX_EXTENSION = "index";
   private final File file;
 
   /**
@@ -36,10 +37,26 @@ public final class SegmentFile {
    * @throws NullPointerException if {@code file} is null
    */
   public static boolean isSegmentFile(String name, File file) {
+    return isFile(name, file, EXTENSION);
+  }
+
+  /**
+   * Returns a boolean value indicating whether the given file appears to be a parsable segment index file.
+   *
+   * @throws NullPointerException if {@code file} is null
+   */
+  public static boolean isIndexFile(String name, File file) {
+    return isFile(name, file, INDEX_EXTENSION);
+  }
+
+  /**
+   * Returns a boolean value indicating whether the given file appears to be a parsable file with the given extension.
+   */
+  private static boolean isFile(String name, File file, String extension) {
     Assert.notNull(name, "name");
     Assert.notNull(file, "file");
     String fileName = file.getName();
-    if (fileName.lastIndexOf(EXTENSION_SEPARATOR) == -1 || fileName.lastIndexOf(PART_SEPARATOR) == -1 || fileName.lastIndexOf(EXTENSION_SEPARATOR) < fileName.lastIndexOf(PART_SEPARATOR) || !fileName.endsWith(EXTENSION))
+    if (fileName.lastIndexOf(EXTENSION_SEPARATOR) == -1 || fileName.lastIndexOf(PART_SEPARATOR) == -1 || fileName.lastIndexOf(EXTENSION_SEPARATOR) < fileName.lastIndexOf(PART_SEPARATOR) || !fileName.endsWith(EXTENSION_SEPARATOR + extension))
       return false;
 
     for (int i = fileName.lastIndexOf(PART_SEPARATOR) + 1; i < fileName.lastIndexOf(EXTENSION_SEPARATOR); i++) {
@@ -83,6 +100,18 @@ public final class SegmentFile {
     return file;
   }
 
+  /**
+   * Returns the index file for the segment.
+   * <p>
+   * The index file is stored alongside the segment file with the same name and an {@code .index} extension.
+   *
+   * @return The segment index file.
+   */
+  public File indexFile() {
+    String name = file.getName();
+    return new File(file.getParentFile(), name.substring(0, name.lastIndexOf(EXTENSION_SEPARATOR) + 1) + INDEX_EXTENSION);
+  }
+
   /**
    * Returns the segment identifier.
    */
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.storage;
+
+import io.atomix.copycat.server.storage.index.OffsetIndex;
+import io.atomix.copycat.server.storage.util.TermIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent offset and term index for a sealed {@link Segment}.
+ * <p>
+ * When a segment is sealed, its offset and term indexes are written to an index file stored alongside the segment
+ * file. When the segment is reloaded, the index file is memory mapped and validated against the segment's
+ * {@link SegmentDescriptor}, allowing the segment's in-memory indexes to be restored without reading and
+ * checksumming every entry in the segment. Index files are stored in the following format:
+ * <ul>
+ *   <li>{@code magic} (32-bit signed integer) - Identifies the file as a segment index file</li>
+ *   <li>{@code format} (32-bit signed integer) - The index file format version</li>
+ *   <li>{@code checksum} (32-bit unsigned integer) - A CRC32 checksum of all bytes following the checksum</li>
+ *   <li>{@code id} (64-bit signed integer) - The segment identifier</li>
+ *   <li>{@code version} (64-bit signed integer) - The segment version</li>
+ *   <li>{@code index} (64-bit signed integer) - The segment's first index</li>
+ *   <li>{@code position} (64-bit signed integer) - The position following the last entry in the segment</li>
+ *   <li>{@code offsets} (32-bit signed integer) - The number of indexed offsets</li>
+ *   <li>{@code terms} (32-bit signed integer) - The number of indexed terms</li>
+ *   <li>A 64-bit offset and 32-bit unsigned position for each indexed offset</li>
+ *   <li>A 64-bit offset and 64-bit term for each indexed term</li>
+ * </ul>
+ * Index files are written to a temporary file and atomically moved into place, so a partially written index file
+ * is never read. Nevertheless, index files that fail validation are ignored and the segment is rebuilt by scanning.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+final class SegmentIndexFile {
+  private static final int MAGIC = 0x43435849;
+  private static final int FORMAT = 1;
+  private static final int CHECKSUM_POSITION = 8;
+  private static final int HEADER_BYTES = 52;
+  private static final int OFFSET_BYTES = 12;
+  private static final int TERM_BYTES = 16;
+
+  /**
+   * Writes the index of the given segment to the given file.
+   *
+   * @param file The file to which to write the index.
+   * @param descriptor The segment descriptor.
+   * @param position The position following the last entry in the segment.
+   * @param offsetIndex The segment offset index.
+   * @param termIndex The segment term index.
+   * @throws IOException if the index file cannot be written
+   */
+  static void write(File file, SegmentDescriptor descriptor, long position, OffsetIndex offsetIndex, TermIndex termIndex) throws IOException {
+    int offsets = offsetIndex.size();
+    int terms = termIndex.size();
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + offsets * OFFSET_BYTES + terms * TERM_BYTES);
+    buffer.putInt(MAGIC)
+      .putInt(FORMAT)
+      .putInt(0)
+      .putLong(descriptor.id())
+      .putLong(descriptor.version())
+      .putLong(descriptor.index())
+      .putLong(position)
+      .putInt(offsets)
+      .putInt(terms);
+
+    // Offsets may be missing from the offset index if entries were removed from the segment by compaction.
+    int count = 0;
+    for (long offset = 0; count < offsets && offset <= offsetIndex.lastOffset(); offset++) {
+      long entryPosition = offsetIndex.position(offset);
+      if (entryPosition != -1) {
+        buffer.putLong(offset).putInt((int) entryPosition);
+        count++;
+      }
+    }
+
+    if (count != offsets) {
+      throw new IOException("inconsistent offset index");
+    }
+
+    for (int i = 0; i < terms; i++) {
+      buffer.putLong(termIndex.offset(i)).putLong(termIndex.term(i));
+    }
+
+    ((java.nio.Buffer) buffer).flip();
+    buffer.putInt(CHECKSUM_POSITION, (int) checksum(buffer));
+
+    File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Memory maps the given index file.
+   *
+   * @param file The index file to open.
+   * @return The index file or {@code null} if the file does not exist or is invalid.
+   */
+  static SegmentIndexFile open(File file) {
+    if (!file.exists()) {
+      return null;
+    }
+
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (IOException e) {
+      return null;
+    }
+
+    if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+      return null;
+    }
+
+    SegmentIndexFile index = new SegmentIndexFile(buffer);
+    if (index.offsets < 0 || index.terms < 0
+      || buffer.limit() != HEADER_BYTES + (long) index.offsets * OFFSET_BYTES + (long) index.terms * TERM_BYTES
+      || (buffer.getInt(CHECKSUM_POSITION) & 0xFFFFFFFFL) != checksum(buffer.duplicate())) {
+      return null;
+    }
+    return index;
+  }
+
+  /**
+   * Computes the checksum of the bytes following the checksum in the given buffer.
+   */
+  private static long checksum(ByteBuffer buffer) {
+    ByteBuffer bytes = buffer.duplicate();
+    ((java.nio.Buffer) bytes).position(CHECKSUM_POSITION + 4);
+    CRC32 crc32 = new CRC32();
+    crc32.update(bytes);
+    return crc32.getValue();
+  }
+
+  private final ByteBuffer buffer;
+  private final long id;
+  private final long version;
+  private final long index;
+  private final long position;
+  private final int offsets;
+  private final int terms;
+
+  private SegmentIndexFile(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.id = buffer.getLong(12);
+    this.version = buffer.getLong(20);
+    this.index = buffer.getLong(28);
+    this.position = buffer.getLong(36);
+    this.offsets = buffer.getInt(44);
+    this.terms = buffer.getInt(48);
+  }
+
+  /**
+   * Returns a boolean indicating whether the index file was written for the segment with the given descriptor.
+   *
+   * @param descriptor The segment descriptor.
+   * @return Indicates whether the index file matches the given descriptor.
+   */
+  boolean matches(SegmentDescriptor descriptor) {
+    return id == descriptor.id() && version == descriptor.version() && index == descriptor.index();
+  }
+
+  /**
+   * Returns the position following the last entry in the segment.
+   *
+   * @return The position following the last entry in the segment.
+   */
+  long position() {
+    return position;
+  }
+
+  /**
+   * Returns the number of indexed offsets.
+   *
+   * @return The number of indexed offsets.
+   */
+  int offsets() {
+    return offsets;
+  }
+
+  /**
+   * Returns the offset at the given index.
+   */
+  long offset(int i) {
+    return buffer.getLong(HEADER_BYTES + i * OFFSET_BYTES);
+  }
+
+  /**
+   * Returns the position of the offset at the given index.
+   */
+  long position(int i) {
+    return buffer.getInt(HEADER_BYTES + i * OFFSET_BYTES + 8) & 0xFFFFFFFFL;
+  }
+
+  /**
+   * Returns the number of indexed terms.
+   *
+   * @return The number of indexed terms.
+   */
+  int terms() {
+    return terms;
+  }
+
+  /**
+   * Returns the first offset of the term at the given index.
+   */
+  long termOffset(int i) {
+    return buffer.getLong(HEADER_BYTES + offsets * OFFSET_BYTES + i * TERM_BYTES);
+  }
+
+  /**
+   * Returns the term at the given index.
+   */
+  long term(int i) {
+    return buffer.getLong(HEADER_BYTES + offsets * OFFSET_BYTES + i * TERM_BYTES + 8);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s[id=%d, version=%d, index=%d, offsets=%d, terms=%d]", getClass().getSimpleName(), id, version, index, offsets, terms);
+  }
+
+}
@@ -19,21 +19,32 @@ import io.atomix.catalyst.buffer.Buffer;
 import io.atomix.catalyst.buffer.FileBuffer;
 import io.atomix.catalyst.buffer.HeapBuffer;
 import io.atomix.catalyst.buffer.MappedBuffer;
+import io.atomix.catalyst.concurrent.CatalystThreadFactory;
 import io.atomix.catalyst.serializer.Serializer;
 import io.atomix.catalyst.util.Assert;
 import io.atomix.copycat.server.storage.index.DelegatingOffsetIndex;
 import io.atomix.copycat.server.storage.index.OffsetIndex;
+import io.atomix.copycat.server.storage.util.OffHeapBuffer;
 import io.atomix.copycat.server.storage.util.OffsetPredicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Manages creation and deletion of {@link Segment}s of the {@link Log}.
@@ -51,8 +62,16 @@ public class SegmentManager implements AutoCloseable {
   private final Storage storage;
   private final Serializer serializer;
   private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+  private final Map<Segment, Boolean> openSegments = new LinkedHashMap<>(16, 0.75f, true);
+  private final ExecutorService rolloverExecutor = Executors.newSingleThreadExecutor(new CatalystThreadFactory("copycat-segment-rollover-%d"));
+  private final LogMetrics metrics = new LogMetrics(this);
+  private CompletableFuture<Void> sealFuture = CompletableFuture.completedFuture(null);
+  private CompletableFuture<Buffer> nextBuffer;
+  private long nextBufferId;
   private Segment currentSegment;
   private long commitIndex;
+  private long inactiveSize = -1;
+  private volatile boolean sizeChanged;
 
   /**
    * @throws NullPointerException if {@code segments} is null
@@ -82,6 +101,15 @@ public class SegmentManager implements AutoCloseable {
     return serializer;
   }
 
+  /**
+   * Returns the log metrics.
+   *
+   * @return The log metrics.
+   */
+  public LogMetrics metrics() {
+    return metrics;
+  }
+
   /**
    * Sets the log commit index.
    *
@@ -111,6 +139,13 @@ public class SegmentManager implements AutoCloseable {
       segments.put(segment.descriptor().index(), segment);
     }
 
+    // Track sealed segments in index order, closing the oldest segments if too many segments are open.
+    for (Segment segment : segments.values()) {
+      if (segment.isSealed()) {
+        segmentOpened(segment);
+      }
+    }
+
     // If a segment doesn't already exist, create an initial segment starting at index 1.
     if (!segments.isEmpty()) {
       currentSegment = segments.lastEntry().getValue();
@@ -121,6 +156,8 @@ public class SegmentManager implements AutoCloseable {
         .withIndex(1)
         .withMaxSegmentSize(storage.maxSegmentSize())
         .withMaxEntries(storage.maxEntriesPerSegment())
+        .withChecksumType(storage.checksumType())
+        .withCompressionType(storage.compressionType())
         .build();
 
       descriptor.lock();
@@ -131,6 +168,17 @@ public class SegmentManager implements AutoCloseable {
 
       segments.put(1L, currentSegment);
     }
+
+    // Count the entries stored in the loaded segments. Released entries are not persisted, so no loaded entries
+    // are released.
+    long entries = 0;
+    for (Segment segment : segments.values()) {
+      entries += segment.count();
+    }
+    metrics.reset(entries, 0);
+
+    // Pre-allocate the segment to which the log will roll over once the current segment is full.
+    preallocateSegment();
   }
 
   /**
@@ -155,6 +203,7 @@ public class SegmentManager implements AutoCloseable {
    * Resets the current segment, creating a new segment if necessary.
    */
   private synchronized void resetCurrentSegment() {
+    inactiveSize = -1;
     Segment lastSegment = lastSegment();
     if (lastSegment != null) {
       currentSegment = lastSegment;
@@ -165,6 +214,8 @@ public class SegmentManager implements AutoCloseable {
         .withIndex(1)
         .withMaxSegmentSize(storage.maxSegmentSize())
         .withMaxEntries(storage.maxEntriesPerSegment())
+        .withChecksumType(storage.checksumType())
+        .withCompressionType(storage.compressionType())
         .build();
       descriptor.lock();
 
@@ -198,6 +249,11 @@ public class SegmentManager implements AutoCloseable {
 
   /**
    * Creates and returns the next segment.
+   * <p>
+   * The file for the next segment is pre-allocated by a background thread, so rolling over to the next segment
+   * typically only requires writing the segment descriptor. The previous segment is flushed and
+   * {@link Segment#seal() sealed} asynchronously by the same background thread. Callers that require entries in
+   * prior segments to be persisted should {@link #awaitSealed() await} sealing of the previous segments.
    *
    * @return The next segment.
    * @throws IllegalStateException if the segment manager is not open
@@ -211,15 +267,169 @@ public class SegmentManager implements AutoCloseable {
       .withIndex(currentSegment.lastIndex() + 1)
       .withMaxSegmentSize(storage.maxSegmentSize())
       .withMaxEntries(storage.maxEntriesPerSegment())
+      .withChecksumType(storage.checksumType())
+      .withCompressionType(storage.compressionType())
       .build();
     descriptor.lock();
 
-    currentSegment = createSegment(descriptor);
+    // Write the pending block of a compressed segment before rolling over so that entries in the previous segment
+    // aren't held in memory until the segment is sealed.
+    currentSegment.writePending();
+
+    // Flush and seal the previous segment in the background so its index can be loaded without scanning the segment.
+    // Segments stored in memory have no files to flush or index, so they're never sealed.
+    if (storage.level() == StorageLevel.DISK || storage.level() == StorageLevel.MAPPED) {
+      Segment previousSegment = currentSegment;
+      sealFuture = sealFuture.thenRunAsync(() -> {
+        try {
+          previousSegment.seal();
+        } catch (Exception e) {
+          LOGGER.warn("Failed to seal segment: {}", previousSegment, e);
+        }
+
+        // Writing the buffered block of a compressed segment changes its size once it's sealed. The manager can't be
+        // locked here since the next segment may be waiting for the segment to be sealed while holding the lock.
+        sizeChanged = true;
+      }, rolloverExecutor);
+    }
+
+    currentSegment = createNextSegment(descriptor);
+    inactiveSize = -1;
 
     segments.put(descriptor.index(), currentSegment);
+
+    // Pre-allocate the segment that will follow the new segment.
+    preallocateSegment();
     return currentSegment;
   }
 
+  /**
+   * Waits for segments that preceded the current segment to be flushed and sealed.
+   * <p>
+   * When the log rolls over to a new segment, the previous segment is flushed by a background thread. This method
+   * blocks until all such segments have been flushed.
+   */
+  public void awaitSealed() {
+    CompletableFuture<Void> sealFuture;
+    synchronized (this) {
+      sealFuture = this.sealFuture;
+    }
+    sealFuture.join();
+  }
+
+  /**
+   * Creates the next segment using the pre-allocated segment buffer if possible.
+   */
+  private Segment createNextSegment(SegmentDescriptor descriptor) {
+    CompletableFuture<Buffer> nextBuffer = this.nextBuffer;
+    this.nextBuffer = null;
+    if (nextBuffer == null) {
+      return createSegment(descriptor);
+    }
+
+    // If the log was truncated since the buffer was pre-allocated, the pre-allocated segment ID may differ.
+    if (nextBufferId != descriptor.id()) {
+      discardBuffer(nextBuffer);
+      return createSegment(descriptor);
+    }
+
+    Buffer buffer;
+    try {
+      buffer = nextBuffer.join();
+    } catch (CompletionException e) {
+      LOGGER.debug("Failed to pre-allocate segment", e.getCause());
+      return createSegment(descriptor);
+    }
+
+    // The descriptor is persisted the next time the segment is flushed. Until then, the segment is treated as an
+    // unlocked segment and deleted when the log is recovered.
+    descriptor.copyTo(buffer, false);
+    Segment segment = new Segment(new SegmentFile(SegmentFile.createSegmentFile(name, storage.directory(), descriptor.id(), descriptor.version())), buffer.slice(), descriptor, createIndex(descriptor), new OffsetPredicate(), serializer.clone(), this);
+    LOGGER.debug("Created segment: {}", segment);
+    return segment;
+  }
+
+  /**
+   * Pre-allocates the buffer for the segment following the current segment in the background.
+   */
+  private void preallocateSegment() {
+    if (storage.level() == StorageLevel.MEMORY || storage.level() == StorageLevel.OFFHEAP) {
+      return;
+    }
+
+    long id = lastSegment().descriptor().id() + 1;
+    nextBufferId = id;
+    nextBuffer = CompletableFuture.supplyAsync(() -> {
+      File segmentFile = SegmentFile.createSegmentFile(name, storage.directory(), id, 1);
+      int size = Math.min(DEFAULT_BUFFER_SIZE, storage.maxSegmentSize());
+      Buffer buffer = storage.level() == StorageLevel.MAPPED
+        ? MappedBuffer.allocate(segmentFile, size, Integer.MAX_VALUE)
+        : FileBuffer.allocate(segmentFile, size, Integer.MAX_VALUE);
+      LOGGER.trace("Pre-allocated segment file: {}", segmentFile.getName());
+      return buffer;
+    }, rolloverExecutor);
+  }
+
+  /**
+   * Closes and deletes a pre-allocated segment buffer.
+   */
+  private void discardBuffer(CompletableFuture<Buffer> future) {
+    Buffer buffer;
+    try {
+      buffer = future.join();
+    } catch (CompletionException e) {
+      return;
+    }
+
+    buffer.close();
+    if (buffer instanceof FileBuffer) {
+      ((FileBuffer) buffer).delete();
+    } else if (buffer instanceof MappedBuffer) {
+      ((MappedBuffer) buffer).delete();
+    }
+  }
+
+  /**
+   * Returns the total size of all segments in bytes.
+   * <p>
+   * Only the size of the current segment changes as entries are appended, so the combined size of the remaining
+   * segments is cached until segments are added, removed, or replaced.
+   *
+   * @return The total size of all segments in bytes.
+   */
+  public synchronized long size() {
+    Segment currentSegment = this.currentSegment;
+    if (currentSegment == null) {
+      return 0;
+    }
+
+    if (inactiveSize == -1 || sizeChanged) {
+      sizeChanged = false;
+      long size = 0;
+      for (Segment segment : segments.values()) {
+        if (segment != currentSegment) {
+          size += segment.size();
+        }
+      }
+      inactiveSize = size;
+    }
+    return inactiveSize + currentSegment.size();
+  }
+
+  /**
+   * Returns the number of indexes covered by all segments.
+   * <p>
+   * Segments cover contiguous ranges of indexes, including entries that have been compacted or skipped, so the
+   * length is the range between the first segment's base index and the last segment's last index.
+   *
+   * @return The number of indexes covered by all segments.
+   */
+  public synchronized long length() {
+    Segment firstSegment = firstSegment();
+    Segment lastSegment = lastSegment();
+    return Math.max(lastSegment.lastIndex() - firstSegment.index() + 1, 0);
+  }
+
   /**
    * Returns the collection of segments.
    *
@@ -252,7 +462,48 @@ public class SegmentManager implements AutoCloseable {
 
     // If the index is in another segment, get the entry with the next lowest first index.
     Map.Entry<Long, Segment> segment = segments.floorEntry(index);
-    return segment != null ? segment.getValue() : null;
+    if (segment == null) {
+      return null;
+    }
+
+    // Record the access to the segment so that recently read segments remain open.
+    synchronized (openSegments) {
+      openSegments.get(segment.getValue());
+    }
+    return segment.getValue();
+  }
+
+  /**
+   * Records that the given sealed segment was opened, closing the least recently used sealed segments if more than
+   * {@link Storage#maxOpenSegments()} are open.
+   * <p>
+   * Segments that are in use are not closed. The segment to which entries are being appended is never closed.
+   *
+   * @param segment The segment that was opened.
+   */
+  void segmentOpened(Segment segment) {
+    synchronized (openSegments) {
+      openSegments.put(segment, Boolean.TRUE);
+      Iterator<Segment> iterator = openSegments.keySet().iterator();
+      while (openSegments.size() > storage.maxOpenSegments() && iterator.hasNext()) {
+        Segment openSegment = iterator.next();
+        if (openSegment != currentSegment && openSegment != segment && openSegment.unload()) {
+          LOGGER.trace("Closed cold segment: {}", openSegment.descriptor().id());
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Records that the given segment was closed.
+   *
+   * @param segment The segment that was closed.
+   */
+  void segmentClosed(Segment segment) {
+    synchronized (openSegments) {
+      openSegments.remove(segment);
+    }
   }
 
   /**
@@ -267,17 +518,27 @@ public class SegmentManager implements AutoCloseable {
     segment.descriptor().lock();
 
     // Iterate through old segments and remove them from the segments list.
+    long entries = segment.count();
+    long released = segment.releaseCount();
     for (Segment oldSegment : segments) {
       if (!this.segments.containsKey(oldSegment.index())) {
         throw new IllegalArgumentException("unknown segment at index: " + oldSegment.index());
       }
       this.segments.remove(oldSegment.index());
+      entries -= oldSegment.count();
+      released -= oldSegment.releaseCount();
     }
+    metrics.recordCompaction(entries, released);
 
     // Put the new segment in the segments list.
     this.segments.put(segment.index(), segment);
 
     resetCurrentSegment();
+
+    // If the compacted segment is not the segment to which entries are being appended, seal the segment.
+    if (segment != currentSegment) {
+      segment.seal();
+    }
   }
 
   /**
@@ -287,6 +548,7 @@ public class SegmentManager implements AutoCloseable {
    */
   public synchronized void removeSegment(Segment segment) {
     segments.remove(segment.index());
+    metrics.recordChange(-segment.count(), -segment.releaseCount());
     segment.close();
     segment.delete();
     resetCurrentSegment();
@@ -299,6 +561,8 @@ public class SegmentManager implements AutoCloseable {
     switch (storage.level()) {
       case MEMORY:
         return createMemorySegment(descriptor);
+      case OFFHEAP:
+        return createOffHeapSegment(descriptor);
       case MAPPED:
         if (descriptor.version() == 1) {
           return createMappedSegment(descriptor);
@@ -348,6 +612,18 @@ public class SegmentManager implements AutoCloseable {
     return segment;
   }
 
+  /**
+   * Creates a new segment.
+   */
+  private Segment createOffHeapSegment(SegmentDescriptor descriptor) {
+    File segmentFile = SegmentFile.createSegmentFile(name, storage.directory(), descriptor.id(), descriptor.version());
+    Buffer buffer = OffHeapBuffer.allocate(Math.min(DEFAULT_BUFFER_SIZE, descriptor.maxSegmentSize()), Integer.MAX_VALUE);
+    descriptor.copyTo(buffer);
+    Segment segment = new Segment(new SegmentFile(segmentFile), buffer.slice(), descriptor, createIndex(descriptor), new OffsetPredicate(), serializer.clone(), this);
+    LOGGER.debug("Created segment: {}", segment);
+    return segment;
+  }
+
   /**
    * Loads a segment.
    */
@@ -355,6 +631,8 @@ public class SegmentManager implements AutoCloseable {
     switch (storage.level()) {
       case MEMORY:
         return loadMemorySegment(segmentId, segmentVersion);
+      case OFFHEAP:
+        return loadOffHeapSegment(segmentId, segmentVersion);
       case MAPPED:
         return loadMappedSegment(segmentId, segmentVersion);
       case DISK:
@@ -369,7 +647,7 @@ public class SegmentManager implements AutoCloseable {
    */
   private Segment loadDiskSegment(long segmentId, long segmentVersion) {
     File file = SegmentFile.createSegmentFile(name, storage.directory(), segmentId, segmentVersion);
-    Buffer buffer = FileBuffer.allocate(file, Math.min(DEFAULT_BUFFER_SIZE, storage.maxSegmentSize()), Integer.MAX_VALUE);
+    Buffer buffer = openBuffer(file, false);
     SegmentDescriptor descriptor = new SegmentDescriptor(buffer);
     Segment segment = new Segment(new SegmentFile(file), buffer.position(SegmentDescriptor.BYTES).slice(), descriptor, createIndex(descriptor), new OffsetPredicate(), serializer.clone(), this);
     LOGGER.debug("Loaded file segment: {} ({})", descriptor.id(), file.getName());
@@ -381,7 +659,7 @@ public class SegmentManager implements AutoCloseable {
    */
   private Segment loadMappedSegment(long segmentId, long segmentVersion) {
     File file = SegmentFile.createSegmentFile(name, storage.directory(), segmentId, segmentVersion);
-    Buffer buffer = MappedBuffer.allocate(file, Math.min(DEFAULT_BUFFER_SIZE, storage.maxSegmentSize()), Integer.MAX_VALUE);
+    Buffer buffer = openBuffer(file, true);
     SegmentDescriptor descriptor = new SegmentDescriptor(buffer);
     Segment segment = new Segment(new SegmentFile(file), buffer.position(SegmentDescriptor.BYTES).slice(), descriptor, createIndex(descriptor), new OffsetPredicate(), serializer.clone(), this);
     LOGGER.debug("Loaded mapped segment: {} ({})", descriptor.id(), file.getName());
@@ -400,15 +678,48 @@ public class SegmentManager implements AutoCloseable {
     return segment;
   }
 
+  /**
+   * Loads a segment.
+   */
+  private Segment loadOffHeapSegment(long segmentId, long segmentVersion) {
+    File file = SegmentFile.createSegmentFile(name, storage.directory(), segmentId, segmentVersion);
+    Buffer buffer = OffHeapBuffer.allocate(Math.min(DEFAULT_BUFFER_SIZE, storage.maxSegmentSize()), Integer.MAX_VALUE);
+    SegmentDescriptor descriptor = new SegmentDescriptor(buffer);
+    Segment segment = new Segment(new SegmentFile(file), buffer.position(SegmentDescriptor.BYTES).slice(), descriptor, createIndex(descriptor), new OffsetPredicate(), serializer.clone(), this);
+    LOGGER.debug("Loaded off-heap segment: {}", descriptor.id());
+    return segment;
+  }
+
+  /**
+   * Opens the buffer for an existing segment file.
+   */
+  Buffer openBuffer(File file, boolean mapped) {
+    if (mapped) {
+      return MappedBuffer.allocate(file, Math.min(DEFAULT_BUFFER_SIZE, storage.maxSegmentSize()), Integer.MAX_VALUE);
+    }
+    return FileBuffer.allocate(file, Math.min(DEFAULT_BUFFER_SIZE, storage.maxSegmentSize()), Integer.MAX_VALUE);
+  }
+
   /**
    * Creates an in memory segment index.
+   * <p>
+   * Indexes for {@link StorageLevel#OFFHEAP off-heap} segments are allocated off-heap and are freed when the index is closed.
    */
-  private OffsetIndex createIndex(SegmentDescriptor descriptor) {
-    return new DelegatingOffsetIndex(HeapBuffer.allocate(Math.min(DEFAULT_BUFFER_SIZE, descriptor.maxEntries()), OffsetIndex.size(descriptor.maxEntries())));
+  OffsetIndex createIndex(SegmentDescriptor descriptor) {
+    long initialCapacity = Math.min(DEFAULT_BUFFER_SIZE, descriptor.maxEntries());
+    long maxCapacity = OffsetIndex.size(descriptor.maxEntries());
+    Buffer buffer = storage.level() == StorageLevel.OFFHEAP
+      ? OffHeapBuffer.allocate(initialCapacity, maxCapacity)
+      : HeapBuffer.allocate(initialCapacity, maxCapacity);
+    return new DelegatingOffsetIndex(buffer, storage.offsetIndexInterval());
   }
 
   /**
    * Loads all segments from disk.
+   * <p>
+   * Segment descriptors are read and unlocked segments deleted on the calling thread. Locked segments are then loaded
+   * and indexed concurrently on a bounded pool of threads. Once all segments have been loaded, segment versions and
+   * overlapping segments are resolved in a single pass over the segments in index order.
    *
    * @return A collection of segments for the log.
    */
@@ -416,79 +727,61 @@ public class SegmentManager implements AutoCloseable {
     // Ensure log directories are created.
     storage.directory().mkdirs();
 
-    TreeMap<Long, Segment> segments = new TreeMap<>();
-
-    // Iterate through all files in the log directory.
+    // Iterate through all files in the log directory and read the descriptors of segment files.
+    List<SegmentDescriptor> descriptors = new ArrayList<>();
     for (File file : storage.directory().listFiles(File::isFile)) {
 
-      // If the file looks like a segment file, attempt to load the segment.
+      // If the file looks like a segment file, read the segment descriptor.
       if (SegmentFile.isSegmentFile(name, file)) {
-        SegmentFile segmentFile = new SegmentFile(file);
         SegmentDescriptor descriptor = new SegmentDescriptor(FileBuffer.allocate(file, SegmentDescriptor.BYTES));
+        descriptor.close();
 
         // Valid segments will have been locked. Segments that resulting from failures during log cleaning will be
         // unlocked and should ultimately be deleted from disk.
         if (descriptor.locked()) {
+          descriptors.add(descriptor);
+        }
+        // If the segment descriptor wasn't locked, delete the descriptor.
+        else {
+          LOGGER.debug("Deleting unlocked segment: {}-{} ({})", descriptor.id(), descriptor.version(), file.getName());
+          descriptor.delete();
+        }
+      }
+    }
 
-          // Load the segment.
-          Segment segment = loadSegment(descriptor.id(), descriptor.version());
-
-          // If a segment with an equal or lower index has already been loaded, ensure this segment is not superseded
-          // by the earlier segment. This can occur due to segments being combined during log compaction.
-          Map.Entry<Long, Segment> previousEntry = segments.floorEntry(segment.index());
-          if (previousEntry != null) {
-
-            // If an existing descriptor exists with a lower index than this segment's first index, check to determine
-            // whether this segment's first index is contained in that existing index. If it is, determine which segment
-            // should take precedence based on segment versions.
-            Segment previousSegment = previousEntry.getValue();
-
-            // If the two segments start at the same index, the segment with the higher version number is used.
-            if (previousSegment.index() == segment.index()) {
-              if (segment.descriptor().version() > previousSegment.descriptor().version()) {
-                LOGGER.debug("Replaced segment {} with newer version: {} ({})", previousSegment.descriptor().id(), segment.descriptor().version(), segmentFile.file().getName());
-                segments.remove(previousEntry.getKey());
-                previousSegment.close();
-                previousSegment.delete();
-              } else {
-                segment.close();
-                segment.delete();
-                continue;
-              }
-            }
-            // If the existing segment's entries overlap with the loaded segment's entries, the existing segment always
-            // supersedes the loaded segment. Log compaction processes ensure this is always the case.
-            else if (previousSegment.index() + previousSegment.length() > segment.index()) {
-              segment.close();
-              segment.delete();
-              continue;
-            }
-          }
+    // Load the locked segments concurrently. Each segment is loaded and indexed independently of other segments.
+    List<Segment> loadedSegments = loadSegments(descriptors);
 
-          // Add the segment to the segments list.
-          LOGGER.debug("Found segment: {} ({})", segment.descriptor().id(), segmentFile.file().getName());
-          segments.put(segment.index(), segment);
-
-          // Ensure any segments later in the log with which this segment overlaps are removed.
-          Map.Entry<Long, Segment> nextEntry = segments.higherEntry(segment.index());
-          while (nextEntry != null) {
-            if (nextEntry.getValue().index() < segment.index() + segment.length()) {
-              segments.remove(nextEntry.getKey());
-              nextEntry = segments.higherEntry(segment.index());
-            } else {
-              break;
-            }
-          }
+    // Resolve segment versions and overlapping segments in index order. Segments starting at the same index are
+    // ordered by descending version so the newest version of each segment is encountered first.
+    loadedSegments.sort(Comparator.comparingLong(Segment::index)
+      .thenComparing(Comparator.comparingLong((Segment segment) -> segment.descriptor().version()).reversed()));
+
+    TreeMap<Long, Segment> segments = new TreeMap<>();
+    for (Segment segment : loadedSegments) {
+      Map.Entry<Long, Segment> previousEntry = segments.floorEntry(segment.index());
+      if (previousEntry != null) {
+        Segment previousSegment = previousEntry.getValue();
 
-          descriptor.close();
+        // If the two segments start at the same index, the segment with the higher version number is used.
+        if (previousSegment.index() == segment.index()) {
+          LOGGER.debug("Discarding segment {} with older version: {} ({})", segment.descriptor().id(), segment.descriptor().version(), segment.file().file().getName());
+          segment.close();
+          segment.delete();
+          continue;
         }
-        // If the segment descriptor wasn't locked, close and delete the descriptor.
-        else {
-          LOGGER.debug("Deleting unlocked segment: {}-{} ({})", descriptor.id(), descriptor.version(), segmentFile.file().getName());
-          descriptor.close();
-          descriptor.delete();
+        // If the existing segment's entries overlap with the loaded segment's entries, the existing segment always
+        // supersedes the loaded segment. Log compaction processes ensure this is always the case.
+        else if (previousSegment.index() + previousSegment.length() > segment.index()) {
+          segment.close();
+          segment.delete();
+          continue;
         }
       }
+
+      // Add the segment to the segments list.
+      LOGGER.debug("Found segment: {} ({})", segment.descriptor().id(), segment.file().file().getName());
+      segments.put(segment.index(), segment);
     }
 
     for (Long segmentId : segments.keySet()) {
@@ -502,15 +795,77 @@ public class SegmentManager implements AutoCloseable {
       }
     }
 
+    // Seal all but the last segment, persisting indexes for segments that were loaded by scanning their entries.
+    if (!segments.isEmpty()) {
+      Segment lastSegment = segments.lastEntry().getValue();
+      for (Segment segment : segments.values()) {
+        if (segment != lastSegment) {
+          segment.seal();
+        }
+      }
+    }
+
     return segments.values();
   }
 
+  /**
+   * Loads the segments for the given descriptors on a bounded pool of threads.
+   */
+  private List<Segment> loadSegments(List<SegmentDescriptor> descriptors) {
+    List<Segment> segments = new ArrayList<>(descriptors.size());
+    if (descriptors.isEmpty()) {
+      return segments;
+    }
+
+    int threads = Math.min(descriptors.size(), Runtime.getRuntime().availableProcessors());
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new CatalystThreadFactory("copycat-segment-loader-%d"));
+    try {
+      List<CompletableFuture<Segment>> futures = new ArrayList<>(descriptors.size());
+      for (SegmentDescriptor descriptor : descriptors) {
+        futures.add(CompletableFuture.supplyAsync(() -> loadSegment(descriptor.id(), descriptor.version()), executor));
+      }
+
+      // Wait for all segments to be loaded before failing so that successfully loaded segments can be closed.
+      StorageException error = null;
+      for (CompletableFuture<Segment> future : futures) {
+        try {
+          segments.add(future.join());
+        } catch (CompletionException e) {
+          if (error == null) {
+            error = new StorageException("failed to load segment", e.getCause());
+          }
+        }
+      }
+
+      if (error != null) {
+        segments.forEach(Segment::close);
+        throw error;
+      }
+      return segments;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Override
   public void close() {
+    // Wait for previous segments to be sealed and discard the pre-allocated segment.
+    awaitSealed();
+    synchronized (this) {
+      if (nextBuffer != null) {
+        discardBuffer(nextBuffer);
+        nextBuffer = null;
+      }
+    }
+    rolloverExecutor.shutdown();
+
     segments.values().forEach(s -> {
       LOGGER.trace("Closing segment: {}", s.descriptor().id());
       s.close();
     });
+    synchronized (openSegments) {
+      openSegments.clear();
+    }
     currentSegment = null;
   }
 
@@ -17,6 +17,7 @@ package io.atomix.copycat.server.storage;
 
 import io.atomix.catalyst.concurrent.ThreadContext;
 import io.atomix.catalyst.util.Assert;
+import io.atomix.copycat.server.storage.index.SearchableOffsetIndex;
 import io.atomix.copycat.server.storage.snapshot.SnapshotFile;
 import io.atomix.copycat.server.storage.snapshot.SnapshotStore;
 import io.atomix.copycat.server.storage.system.MetaStore;
@@ -64,24 +65,52 @@ public class Storage {
   private static final int DEFAULT_MAX_SEGMENT_SIZE = 1024 * 1024 * 32;
   private static final int DEFAULT_MAX_ENTRIES_PER_SEGMENT = 1024 * 1024;
   private static final int DEFAULT_ENTRY_BUFFER_SIZE = 1024;
-  private static final boolean DEFAULT_FLUSH_ON_COMMIT = false;
+  private static final int DEFAULT_ENTRY_CACHE_SIZE = 1024 * 1024 * 4;
+  private static final FlushPolicy DEFAULT_FLUSH_POLICY = FlushPolicy.never();
+  private static final boolean DEFAULT_ASYNC_APPEND = false;
+  private static final int DEFAULT_APPEND_BUFFER_SIZE = 1024;
+  private static final ChecksumType DEFAULT_CHECKSUM_TYPE = ChecksumType.CRC32;
+  private static final CompressionType DEFAULT_COMPRESSION_TYPE = CompressionType.NONE;
+  private static final int DEFAULT_COMPRESSION_BLOCK_SIZE = 1024 * 64;
+  private static final int DEFAULT_MAX_OPEN_SEGMENTS = Integer.MAX_VALUE;
+  private static final int DEFAULT_OFFSET_INDEX_INTERVAL = SearchableOffsetIndex.DEFAULT_INTERVAL;
   private static final boolean DEFAULT_RETAIN_STALE_SNAPSHOTS = false;
+  private static final int DEFAULT_MAX_SNAPSHOT_DELTAS = 16;
+  private static final boolean DEFAULT_JMX_ENABLED = false;
   private static final int DEFAULT_COMPACTION_THREADS = max(1, Runtime.getRuntime().availableProcessors() / 2);
   private static final Duration DEFAULT_MINOR_COMPACTION_INTERVAL = Duration.ofMinutes(1);
   private static final Duration DEFAULT_MAJOR_COMPACTION_INTERVAL = Duration.ofHours(1);
   private static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+  private static final long DEFAULT_COMPACTION_RATE_LIMIT = 0;
+  private static final boolean DEFAULT_ADAPTIVE_COMPACTION_RATE = false;
+  private static final boolean DEFAULT_ADAPTIVE_COMPACTION = false;
+  private static final long DEFAULT_MAX_COMPACTION_BYTES = 0;
 
   private StorageLevel storageLevel = StorageLevel.DISK;
   private File directory = new File(DEFAULT_DIRECTORY);
   private int maxSegmentSize = DEFAULT_MAX_SEGMENT_SIZE;
   private int maxEntriesPerSegment = DEFAULT_MAX_ENTRIES_PER_SEGMENT;
   private int entryBufferSize = DEFAULT_ENTRY_BUFFER_SIZE;
-  private boolean flushOnCommit = DEFAULT_FLUSH_ON_COMMIT;
+  private int entryCacheSize = DEFAULT_ENTRY_CACHE_SIZE;
+  private FlushPolicy flushPolicy = DEFAULT_FLUSH_POLICY;
+  private boolean asyncAppend = DEFAULT_ASYNC_APPEND;
+  private int appendBufferSize = DEFAULT_APPEND_BUFFER_SIZE;
+  private ChecksumType checksumType = DEFAULT_CHECKSUM_TYPE;
+  private CompressionType compressionType = DEFAULT_COMPRESSION_TYPE;
+  private int compressionBlockSize = DEFAULT_COMPRESSION_BLOCK_SIZE;
+  private int maxOpenSegments = DEFAULT_MAX_OPEN_SEGMENTS;
+  private int offsetIndexInterval = DEFAULT_OFFSET_INDEX_INTERVAL;
   private boolean retainStaleSnapshots = DEFAULT_RETAIN_STALE_SNAPSHOTS;
+  private int maxSnapshotDeltas = DEFAULT_MAX_SNAPSHOT_DELTAS;
+  private boolean jmxEnabled = DEFAULT_JMX_ENABLED;
   private int compactionThreads = DEFAULT_COMPACTION_THREADS;
   private Duration minorCompactionInterval = DEFAULT_MINOR_COMPACTION_INTERVAL;
   private Duration majorCompactionInterval = DEFAULT_MAJOR_COMPACTION_INTERVAL;
   private double compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+  private long compactionRateLimit = DEFAULT_COMPACTION_RATE_LIMIT;
+  private boolean adaptiveCompactionRate = DEFAULT_ADAPTIVE_COMPACTION_RATE;
+  private boolean adaptiveCompaction = DEFAULT_ADAPTIVE_COMPACTION;
+  private long maxCompactionBytes = DEFAULT_MAX_COMPACTION_BYTES;
 
   public Storage() {
   }
@@ -174,11 +203,25 @@ public class Storage {
    * at the tail of the log.
    *
    * @return The entry buffer size.
+   * @deprecated The entries held in memory at the tail of the log are bounded in bytes by {@link #entryCacheSize()}.
    */
+  @Deprecated
   public int entryBufferSize() {
     return entryBufferSize;
   }
 
+  /**
+   * Returns the entry cache size in bytes.
+   * <p>
+   * The entry cache size dictates the total serialized size of the entries that will be held in memory for read
+   * operations at the tail of the log. By default, the entry cache size is {@code 4MB}.
+   *
+   * @return The entry cache size in bytes.
+   */
+  public int entryCacheSize() {
+    return entryCacheSize;
+  }
+
   /**
    *
    * Returns whether to flush buffers to disk when entries are committed.
@@ -186,7 +229,105 @@ public class Storage {
    * @return Whether to flush buffers to disk when entries are committed.
    */
   public boolean flushOnCommit() {
-    return flushOnCommit;
+    return flushPolicy.mode() == FlushPolicy.Mode.COMMIT;
+  }
+
+  /**
+   * Returns the log flush policy.
+   * <p>
+   * The flush policy dictates when entries written to {@link Segment}s are flushed to disk. By default, segments
+   * are flushed only when the log rolls over to a new segment. See {@link FlushPolicy} for more information.
+   *
+   * @return The log flush policy.
+   */
+  public FlushPolicy flushPolicy() {
+    return flushPolicy;
+  }
+
+  /**
+   * Returns a boolean value indicating whether entries are written to the log asynchronously.
+   * <p>
+   * When asynchronous appends are enabled, entries are serialized on the thread that appends them to the
+   * {@link Log} and written to {@link Segment}s by a dedicated I/O thread. The index up to which entries have been
+   * written and flushed according to the {@link #flushPolicy()} is published via {@link Log#durableIndex()}.
+   *
+   * @return Indicates whether entries are written to the log asynchronously.
+   */
+  public boolean asyncAppend() {
+    return asyncAppend;
+  }
+
+  /**
+   * Returns the maximum number of entries awaiting an asynchronous write.
+   * <p>
+   * When {@link #asyncAppend() asynchronous appends} are enabled, appends to the log block once this many entries
+   * are waiting to be written by the I/O thread. By default, the append buffer size is {@code 1024}.
+   *
+   * @return The maximum number of entries awaiting an asynchronous write.
+   */
+  public int appendBufferSize() {
+    return appendBufferSize;
+  }
+
+  /**
+   * Returns the algorithm used to compute entry checksums in new segments.
+   * <p>
+   * The checksum type is recorded in the {@link SegmentDescriptor} of each segment, so changing the checksum type
+   * applies only to segments created thereafter. By default, entry checksums are computed using {@link ChecksumType#CRC32}.
+   *
+   * @return The entry checksum type.
+   */
+  public ChecksumType checksumType() {
+    return checksumType;
+  }
+
+  /**
+   * Returns the codec used to compress blocks of entries in new segments.
+   * <p>
+   * The compression type is recorded in the {@link SegmentDescriptor} of each segment, so changing the compression type
+   * applies only to segments created thereafter. By default, entries are stored uncompressed.
+   *
+   * @return The entry compression type.
+   */
+  public CompressionType compressionType() {
+    return compressionType;
+  }
+
+  /**
+   * Returns the number of uncompressed bytes at which a block of entries is compressed and written to a segment.
+   * <p>
+   * The block size applies only to segments written with a {@link #compressionType()} other than
+   * {@link CompressionType#NONE}. By default, blocks are compressed once they reach {@code 64KB}.
+   *
+   * @return The compression block size in bytes.
+   */
+  public int compressionBlockSize() {
+    return compressionBlockSize;
+  }
+
+  /**
+   * Returns the maximum number of sealed segments to hold open at once.
+   * <p>
+   * Segments that have been sealed are opened lazily when read and closed again once they become the least recently
+   * used of more than the maximum number of open segments. By default, the number of open segments is unbounded.
+   *
+   * @return The maximum number of open sealed segments.
+   */
+  public int maxOpenSegments() {
+    return maxOpenSegments;
+  }
+
+  /**
+   * Returns the number of entries between sampled offsets in the offset index of compacted segments.
+   * <p>
+   * Once a segment contains gaps, its offset index stores the offset and position of every {@code interval}th entry
+   * and encodes the remaining entries as compact deltas. Larger intervals reduce the memory used by the index at
+   * the cost of decoding more deltas on each lookup.
+   *
+   * @return The number of entries between sampled offsets.
+   */
+  public int offsetIndexInterval() {
+    return offsetIndexInterval;
   }
 
   /**
@@ -202,6 +343,30 @@ public class Storage {
     return retainStaleSnapshots;
   }
 
+  /**
+   * Returns the maximum number of delta snapshots chained to a full snapshot.
+   * <p>
+   * Once a chain of {@link io.atomix.copycat.server.storage.snapshot.SnapshotStore#createDeltaSnapshot(long) delta
+   * snapshots} grows beyond this length, the chain is consolidated into a single full snapshot in the background.
+   *
+   * @return The maximum number of delta snapshots chained to a full snapshot.
+   */
+  public int maxSnapshotDeltas() {
+    return maxSnapshotDeltas;
+  }
+
+  /**
+   * Returns a boolean value indicating whether to register {@link LogMetrics log metrics} as JMX MBeans.
+   * <p>
+   * If this option is enabled, each {@link Log} registers its {@link Log#metrics() metrics} with the platform
+   * MBean server when the log is opened and unregisters them when the log is closed.
+   *
+   * @return Indicates whether to register log metrics as JMX MBeans.
+   */
+  public boolean jmxEnabled() {
+    return jmxEnabled;
+  }
+
   /**
    * Returns the number of log compaction threads.
    * <p>
@@ -252,6 +417,56 @@ public class Storage {
     return compactionThreshold;
   }
 
+  /**
+   * Returns the maximum rate at which compaction rewrites entries in bytes per second.
+   * <p>
+   * The rate limit bounds the disk bandwidth consumed by {@link io.atomix.copycat.server.storage.compaction.Compaction#MINOR minor}
+   * and {@link io.atomix.copycat.server.storage.compaction.Compaction#MAJOR major} compaction so compaction does not
+   * starve foreground appends. By default, the rate limit is {@code 0} and compaction is not rate limited.
+   *
+   * @return The compaction rate limit in bytes per second or {@code 0} if compaction is not rate limited.
+   */
+  public long compactionRateLimit() {
+    return compactionRateLimit;
+  }
+
+  /**
+   * Returns a boolean value indicating whether the compaction rate limit adapts to the log's flush latency.
+   * <p>
+   * When the compaction rate is adaptive, the {@link #compactionRateLimit() rate limit} is reduced in proportion to
+   * the degradation of the latency of recent flushes relative to the average flush latency.
+   *
+   * @return Indicates whether the compaction rate limit adapts to the log's flush latency.
+   */
+  public boolean adaptiveCompactionRate() {
+    return adaptiveCompactionRate;
+  }
+
+  /**
+   * Returns a boolean value indicating whether compaction is scheduled adaptively.
+   * <p>
+   * When compaction is adaptive, compaction is not run at the fixed {@link #minorCompactionInterval()} and
+   * {@link #majorCompactionInterval()}. Instead, the log is frequently evaluated and segments are compacted once
+   * the disk space reclaimed by compacting them outweighs the cost of rewriting them.
+   *
+   * @see io.atomix.copycat.server.storage.compaction.Compactor
+   *
+   * @return Indicates whether compaction is scheduled adaptively.
+   */
+  public boolean adaptiveCompaction() {
+    return adaptiveCompaction;
+  }
+
+  /**
+   * Returns the maximum number of bytes rewritten by a single adaptively scheduled compaction.
+   *
+   * @return The maximum number of bytes rewritten by a single adaptively scheduled compaction or {@code 0} if the
+   *         number of bytes is unbounded.
+   */
+  public long maxCompactionBytes() {
+    return maxCompactionBytes;
+  }
+
   /**
    * Opens a new {@link MetaStore}, recovering metadata from disk if it exists.
    * <p>
@@ -332,7 +547,7 @@ public class Storage {
    */
   public void deleteLog(String name) {
     StorageCleaner cleaner = new StorageCleaner(this);
-    cleaner.cleanFiles(f -> SegmentFile.isSegmentFile(name, f));
+    cleaner.cleanFiles(f -> SegmentFile.isSegmentFile(name, f) || SegmentFile.isIndexFile(name, f));
   }
 
   @Override
@@ -456,12 +671,35 @@ public class Storage {
      * @param entryBufferSize The entry buffer size.
      * @return The storage builder.
      * @throws IllegalArgumentException if the buffer size is not positive
+     * @deprecated The entries held in memory at the tail of the log are bounded in bytes. Use
+     * {@link #withEntryCacheSize(int)} instead.
      */
+    @Deprecated
     public Builder withEntryBufferSize(int entryBufferSize) {
       storage.entryBufferSize = Assert.arg(entryBufferSize, entryBufferSize > 0, "entryBufferSize must be positive");
       return this;
     }
 
+    /**
+     * Sets the entry cache size in bytes, returning the builder for method chaining.
+     * <p>
+     * The entry cache holds the most recently appended entries in memory so that entries at the tail of the log can
+     * be replicated and applied without being read from disk. Once the total serialized size of cached entries
+     * exceeds the entry cache size, the oldest entries are evicted. Increasing the cache size implies greater memory
+     * consumption, but allows the leader to serve followers that lag further behind from memory. A cache size of
+     * {@code 0} disables the cache.
+     * <p>
+     * By default, the entry cache size is {@code 4MB}.
+     *
+     * @param entryCacheSize The entry cache size in bytes.
+     * @return The storage builder.
+     * @throws IllegalArgumentException if the cache size is negative
+     */
+    public Builder withEntryCacheSize(int entryCacheSize) {
+      storage.entryCacheSize = Assert.arg(entryCacheSize, entryCacheSize >= 0, "entryCacheSize cannot be negative");
+      return this;
+    }
+
     /**
      * Enables flushing buffers to disk when entries are committed to a segment, returning the builder
      * for method chaining.
@@ -486,7 +724,172 @@ public class Storage {
      * @return The storage builder.
      */
     public Builder withFlushOnCommit(boolean flushOnCommit) {
-      storage.flushOnCommit = flushOnCommit;
+      storage.flushPolicy = flushOnCommit ? FlushPolicy.onCommit() : FlushPolicy.never();
+      return this;
+    }
+
+    /**
+     * Enables asynchronous appends, returning the builder for method chaining.
+     * <p>
+     * When asynchronous appends are enabled, entries are serialized on the thread that appends them to the
+     * {@link Log} and handed to a dedicated I/O thread that writes them to disk, so file writes and flushes are
+     * not performed on the Raft thread. Servers acknowledge and commit entries only once the I/O thread has written
+     * them and flushed them according to the {@link #withFlushPolicy(FlushPolicy) flush policy}.
+     *
+     * @return The storage builder.
+     */
+    public Builder withAsyncAppend() {
+      return withAsyncAppend(true);
+    }
+
+    /**
+     * Sets whether to append entries asynchronously, returning the builder for method chaining.
+     * <p>
+     * When asynchronous appends are enabled, entries are serialized on the thread that appends them to the
+     * {@link Log} and handed to a dedicated I/O thread that writes them to disk, so file writes and flushes are
+     * not performed on the Raft thread. Servers acknowledge and commit entries only once the I/O thread has written
+     * them and flushed them according to the {@link #withFlushPolicy(FlushPolicy) flush policy}. By default,
+     * entries are appended synchronously.
+     *
+     * @param asyncAppend Whether to append entries asynchronously.
+     * @return The storage builder.
+     */
+    public Builder withAsyncAppend(boolean asyncAppend) {
+      storage.asyncAppend = asyncAppend;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of entries awaiting an asynchronous write, returning the builder for method chaining.
+     * <p>
+     * When {@link #withAsyncAppend() asynchronous appends} are enabled, appends to the log block once this many
+     * entries are waiting to be written by the I/O thread. By default, the append buffer size is {@code 1024}.
+     *
+     * @param appendBufferSize The maximum number of entries awaiting an asynchronous write.
+     * @return The storage builder.
+     * @throws IllegalArgumentException if the buffer size is not positive
+     */
+    public Builder withAppendBufferSize(int appendBufferSize) {
+      storage.appendBufferSize = Assert.arg(appendBufferSize, appendBufferSize > 0, "appendBufferSize must be positive");
+      return this;
+    }
+
+    /**
+     * Sets the log flush policy, returning the builder for method chaining.
+     * <p>
+     * The flush policy dictates when entries written to the log are flushed to disk. In addition to never flushing
+     * and {@link #withFlushOnCommit() flushing on commit}, a group commit policy can be configured to flush appended
+     * entries in batches from a background thread once a time, byte, or entry count threshold has been crossed.
+     * <pre>
+     *   {@code
+     *   Storage storage = Storage.builder()
+     *     .withFlushPolicy(FlushPolicy.builder()
+     *       .withInterval(Duration.ofMillis(10))
+     *       .withMaxEntries(1024)
+     *       .build())
+     *     .build();
+     *   }
+     * </pre>
+     *
+     * @param flushPolicy The log flush policy.
+     * @return The storage builder.
+     * @throws NullPointerException if the flush policy is {@code null}
+     */
+    public Builder withFlushPolicy(FlushPolicy flushPolicy) {
+      storage.flushPolicy = Assert.notNull(flushPolicy, "flushPolicy");
+      return this;
+    }
+
+    /**
+     * Sets the algorithm used to compute entry checksums, returning the builder for method chaining.
+     * <p>
+     * The checksum type is recorded in the {@link SegmentDescriptor} of each new segment, and existing segments
+     * continue to be read using the checksum type with which they were written. Segments rewritten by log compaction
+     * use the configured checksum type.
+     *
+     * @param checksumType The entry checksum type.
+     * @return The storage builder.
+     * @throws NullPointerException if the checksum type is {@code null}
+     */
+    public Builder withChecksumType(ChecksumType checksumType) {
+      storage.checksumType = Assert.notNull(checksumType, "checksumType");
+      return this;
+    }
+
+    /**
+     * Sets the codec used to compress blocks of entries, returning the builder for method chaining.
+     * <p>
+     * When compression is enabled, consecutive entries are buffered in memory and written to the segment as a single
+     * compressed block once the block reaches the {@link #withCompressionBlockSize(int) block size} or the log is
+     * flushed. Entries that have not yet been written in a block are excluded from the {@link Log#durableIndex()
+     * durable index}, so servers write the pending block before acknowledging them. Compression should still be
+     * combined with a {@link FlushPolicy} or {@link #withFlushOnCommit() flush on commit} that meets the application's
+     * durability requirements. Decompressed blocks are cached to serve sequential reads.
+     * <p>
+     * The compression type is recorded in the {@link SegmentDescriptor} of each new segment, and existing segments
+     * continue to be read using the compression type with which they were written. Segments rewritten by log compaction
+     * use the configured compression type.
+     *
+     * @param compressionType The entry compression type.
+     * @return The storage builder.
+     * @throws NullPointerException if the compression type is {@code null}
+     */
+    public Builder withCompressionType(CompressionType compressionType) {
+      storage.compressionType = Assert.notNull(compressionType, "compressionType");
+      return this;
+    }
+
+    /**
+     * Sets the number of uncompressed bytes at which a block of entries is compressed, returning the builder for
+     * method chaining.
+     * <p>
+     * Larger blocks compress better but must be decompressed in full to read any entry in the block.
+     *
+     * @param compressionBlockSize The compression block size in bytes.
+     * @return The storage builder.
+     * @throws IllegalArgumentException if the block size is not positive
+     */
+    public Builder withCompressionBlockSize(int compressionBlockSize) {
+      storage.compressionBlockSize = Assert.arg(compressionBlockSize, compressionBlockSize > 0, "compressionBlockSize must be positive");
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of sealed segments to hold open at once, returning the builder for method chaining.
+     * <p>
+     * Once the log rolls over to a new segment, the previous segment is sealed and its offset and term indexes are
+     * persisted to disk. Sealed segments hold a file handle, a buffer, and in-memory indexes only while open. When more
+     * than the maximum number of sealed segments are open, the least recently used segment is closed and is reopened
+     * from its persisted indexes the next time it's read. The segment to which entries are being appended is always
+     * held open. Segments stored in {@link StorageLevel#MEMORY heap} or
+     * {@link StorageLevel#OFFHEAP off-heap} memory are never closed.
+     * <p>
+     * By default, the number of open segments is unbounded.
+     *
+     * @param maxOpenSegments The maximum number of open sealed segments.
+     * @return The storage builder.
+     * @throws IllegalArgumentException if the maximum number of open segments is not positive
+     */
+    public Builder withMaxOpenSegments(int maxOpenSegments) {
+      storage.maxOpenSegments = Assert.arg(maxOpenSegments, maxOpenSegments > 0, "maxOpenSegments must be positive");
+      return this;
+    }
+
+    /**
+     * Sets the number of entries between sampled offsets in the offset index of compacted segments, returning the
+     * builder for method chaining.
+     * <p>
+     * Segments without gaps index positions by offset directly. Once entries are removed from a segment by compaction,
+     * the segment is indexed by sampling the offset and position of every {@code interval}th entry and encoding the
+     * entries between samples as small deltas. Lookups decode at most {@code interval - 1} deltas, so larger intervals
+     * trade lookup time for a smaller heap footprint. Defaults to {@code 16}.
+     *
+     * @param offsetIndexInterval The number of entries between sampled offsets.
+     * @return The storage builder.
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public Builder withOffsetIndexInterval(int offsetIndexInterval) {
+      storage.offsetIndexInterval = Assert.arg(offsetIndexInterval, offsetIndexInterval > 0, "offsetIndexInterval must be positive");
       return this;
     }
 
@@ -522,6 +925,53 @@ public class Storage {
       return this;
     }
 
+    /**
+     * Sets the maximum number of delta snapshots chained to a full snapshot, returning the builder for method chaining.
+     * <p>
+     * Delta snapshots record only the state changed since the previous snapshot, so reading a snapshot requires
+     * merging the chain of deltas with the full snapshot at its base. Once a chain grows beyond the configured
+     * number of deltas, it is consolidated into a single full snapshot in the background. By default, chains are
+     * consolidated after {@code 16} deltas.
+     *
+     * @param maxSnapshotDeltas The maximum number of delta snapshots chained to a full snapshot.
+     * @return The storage builder.
+     * @throws IllegalArgumentException if the number of deltas is not positive
+     */
+    public Builder withMaxSnapshotDeltas(int maxSnapshotDeltas) {
+      storage.maxSnapshotDeltas = Assert.arg(maxSnapshotDeltas, maxSnapshotDeltas > 0, "maxSnapshotDeltas must be positive");
+      return this;
+    }
+
+    /**
+     * Enables registering log metrics as JMX MBeans, returning the builder for method chaining.
+     * <p>
+     * Each {@link Log} maintains {@link LogMetrics} describing the log's size, entry liveness, compaction backlog,
+     * flush latency, and append throughput. Metrics are always available via {@link Log#metrics()}. When JMX is
+     * enabled, the metrics are also registered with the platform MBean server under the
+     * {@code io.atomix.copycat.server.storage:type=Log} domain. By default, metrics are not registered.
+     *
+     * @return The storage builder.
+     */
+    public Builder withJmxEnabled() {
+      return withJmxEnabled(true);
+    }
+
+    /**
+     * Sets whether to register log metrics as JMX MBeans, returning the builder for method chaining.
+     * <p>
+     * Each {@link Log} maintains {@link LogMetrics} describing the log's size, entry liveness, compaction backlog,
+     * flush latency, and append throughput. Metrics are always available via {@link Log#metrics()}. When JMX is
+     * enabled, the metrics are also registered with the platform MBean server under the
+     * {@code io.atomix.copycat.server.storage:type=Log} domain. By default, metrics are not registered.
+     *
+     * @param jmxEnabled Whether to register log metrics as JMX MBeans.
+     * @return The storage builder.
+     */
+    public Builder withJmxEnabled(boolean jmxEnabled) {
+      storage.jmxEnabled = jmxEnabled;
+      return this;
+    }
+
     /**
      * Sets the number of log compaction threads, returning the builder for method chaining.
      * <p>
@@ -600,6 +1050,99 @@ public class Storage {
       return this;
     }
 
+    /**
+     * Sets the maximum rate at which compaction rewrites entries, returning the builder for method chaining.
+     * <p>
+     * The rate limit bounds the disk bandwidth consumed by compaction tasks so that rewriting segments does not
+     * starve foreground appends. Compaction tasks sleep once they've rewritten more than the configured number of
+     * bytes in a second. By default, the rate limit is {@code 0} and compaction is not rate limited.
+     *
+     * @param bytesPerSecond The compaction rate limit in bytes per second or {@code 0} to disable rate limiting.
+     * @return The storage builder.
+     * @throws IllegalArgumentException if the rate limit is negative
+     */
+    public Builder withCompactionRateLimit(long bytesPerSecond) {
+      storage.compactionRateLimit = Assert.argNot(bytesPerSecond, bytesPerSecond < 0, "compactionRateLimit cannot be negative");
+      return this;
+    }
+
+    /**
+     * Enables adapting the compaction rate limit to the log's flush latency, returning the builder for method chaining.
+     * <p>
+     * When the compaction rate is adaptive, the {@link #withCompactionRateLimit(long) rate limit} is reduced in
+     * proportion to the degradation of the latency of recent flushes relative to the average flush latency, down to
+     * a tenth of the configured rate limit.
+     *
+     * @return The storage builder.
+     */
+    public Builder withAdaptiveCompactionRate() {
+      return withAdaptiveCompactionRate(true);
+    }
+
+    /**
+     * Sets whether to adapt the compaction rate limit to the log's flush latency, returning the builder for method
+     * chaining.
+     * <p>
+     * When the compaction rate is adaptive, the {@link #withCompactionRateLimit(long) rate limit} is reduced in
+     * proportion to the degradation of the latency of recent flushes relative to the average flush latency, down to
+     * a tenth of the configured rate limit. By default, the compaction rate is not adaptive.
+     *
+     * @param adaptiveCompactionRate Whether to adapt the compaction rate limit to the log's flush latency.
+     * @return The storage builder.
+     */
+    public Builder withAdaptiveCompactionRate(boolean adaptiveCompactionRate) {
+      storage.adaptiveCompactionRate = adaptiveCompactionRate;
+      return this;
+    }
+
+    /**
+     * Enables adaptive compaction scheduling, returning the builder for method chaining.
+     *
+     * @see #withAdaptiveCompaction(boolean)
+     *
+     * @return The storage builder.
+     */
+    public Builder withAdaptiveCompaction() {
+      return withAdaptiveCompaction(true);
+    }
+
+    /**
+     * Sets whether to schedule compaction adaptively, returning the builder for method chaining.
+     * <p>
+     * When compaction is adaptive, the log is evaluated for compaction at least once per second. Segments are
+     * compacted once the fraction of their entries released since they were last compacted reaches the
+     * {@link #withCompactionThreshold(double) compaction threshold}, which is lowered as the log's projected disk usage
+     * grows with the append rate. Segments are compacted in order of the ratio of the disk space reclaimed by
+     * compacting them to the bytes read and written to compact them. Major compaction is run at the
+     * {@link #withMajorCompactionInterval(Duration) major compaction interval} only if entries have been released or
+     * the compaction indexes have advanced since segments were last compacted. By default, compaction is run at fixed
+     * intervals.
+     *
+     * @param adaptiveCompaction Whether to schedule compaction adaptively.
+     * @return The storage builder.
+     */
+    public Builder withAdaptiveCompaction(boolean adaptiveCompaction) {
+      storage.adaptiveCompaction = adaptiveCompaction;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of bytes rewritten by a single adaptively scheduled compaction, returning the builder
+     * for method chaining.
+     * <p>
+     * When compaction is {@link #withAdaptiveCompaction() adaptive}, the segments most worth compacting are compacted
+     * first, and no more segments are compacted at once than the configured number of bytes. At least one segment is
+     * always compacted. By default, the number of bytes is {@code 0} and is unbounded.
+     *
+     * @param maxCompactionBytes The maximum number of bytes rewritten by a single compaction or {@code 0} for no bound.
+     * @return The storage builder.
+     * @throws IllegalArgumentException if the number of bytes is negative
+     */
+    public Builder withMaxCompactionBytes(long maxCompactionBytes) {
+      storage.maxCompactionBytes = Assert.argNot(maxCompactionBytes, maxCompactionBytes < 0, "maxCompactionBytes cannot be negative");
+      return this;
+    }
+
     /**
      * Builds the {@link Storage} object.
      *
@@ -20,7 +20,7 @@ package io.atomix.copycat.server.storage;
  * <p>
  * Storage levels represent the method used to store the individual {@link Segment segments} that make up a
  * {@link Log}. When configuring a {@link Storage} module, the storage can be configured to write
- * {@link io.atomix.copycat.server.storage.entry.Entry entries} to disk, memory, or memory-mapped files using the
+ * {@link io.atomix.copycat.server.storage.entry.Entry entries} to disk, heap or off-heap memory, or memory-mapped files using the
  * values provided by this enum. The {@code StorageLevel} configuration dictates the type of
  * {@link io.atomix.catalyst.buffer.Buffer} to which to write entries. See the specific storage levels for more
  * information.
@@ -41,6 +41,17 @@ public enum StorageLevel {
    */
   MEMORY,
 
+  /**
+   * Stores logs in off-heap memory only.
+   * <p>
+   * Off-heap logs will be written to {@link Segment segments} backed by {@link io.atomix.copycat.server.storage.util.OffHeapBuffer}.
+   * Segment buffers, in-memory offset indexes, and snapshots are allocated outside of the Java heap, so large logs do not
+   * add to garbage collection pressure. Off-heap memory is freed explicitly when a segment or snapshot is closed or
+   * deleted rather than when it's collected. As with {@link #MEMORY}, <em>entries written to off-heap logs are not
+   * recoverable after a crash.</em>
+   */
+  OFFHEAP,
+
   /**
    * Stores logs in memory mapped files.
    * <p>
@@ -15,6 +15,7 @@
  */
 package io.atomix.copycat.server.storage.compaction;
 
+import io.atomix.catalyst.util.Assert;
 import io.atomix.copycat.server.storage.SegmentManager;
 import io.atomix.copycat.server.storage.Storage;
 
@@ -24,23 +25,63 @@ import java.util.Collection;
  * Manages a single compaction process.
  * <p>
  * Compaction managers are responsible for providing a set of {@link CompactionTask}s to be executed
- * during log compaction. Each {@link Compaction} type is associated with a compaction manager.
+ * during log compaction. Each {@link Compaction} type is associated with a compaction manager. Tasks are built
+ * in two steps: the manager first {@link #plan(Storage, SegmentManager) plans} which segments to compact, and
+ * then builds tasks to execute the {@link CompactionPlan}. Plans can also be built without compacting the log.
+ * <p>
+ * Managers that don't plan compaction need only implement {@link #buildTasks(Storage, SegmentManager)}. Such
+ * managers produce {@link CompactionPlan#isOpaque() opaque} plans, and tasks are built for opaque plans via
+ * {@link #buildTasks(Storage, SegmentManager)}. Managers that plan compaction must implement both
+ * {@link #plan(Storage, SegmentManager)} and {@link #buildTasks(SegmentManager, CompactionPlan)}.
  *
  * @author <a href="http://github.com/kuujo>Jordan Halterman</a>
  */
 public interface CompactionManager {
 
   /**
-   * Builds compaction tasks for the given segments.
+   * Plans compaction of the given segments without compacting them.
+   * <p>
+   * By default, an {@link CompactionPlan#isOpaque() opaque} plan is returned.
+   *
+   * @param storage The storage configuration.
+   * @param segments The segments for which to plan compaction.
+   * @return The compaction plan.
+   */
+  default CompactionPlan plan(Storage storage, SegmentManager segments) {
+    return CompactionPlan.opaque(null, storage);
+  }
+
+  /**
+   * Builds compaction tasks to execute the given plan.
    * <p>
    * The collection of compaction tasks will be run in parallel in a pool of
    * {@link Storage#compactionThreads()} background threads. Implementations should ensure that
    * individual tasks can be run in parallel by operating on different segments in the log.
+   * <p>
+   * By default, tasks for {@link CompactionPlan#isOpaque() opaque} plans are built via
+   * {@link #buildTasks(Storage, SegmentManager)}.
+   *
+   * @param segments The segments for which to build compaction tasks.
+   * @param plan The compaction plan to execute.
+   * @return An iterable of compaction tasks.
+   * @throws IllegalStateException if the plan is not opaque and the manager does not implement this method
+   */
+  default Collection<CompactionTask> buildTasks(SegmentManager segments, CompactionPlan plan) {
+    Assert.state(plan.isOpaque(), "cannot build tasks for compaction plan: %s", plan);
+    return buildTasks(plan.storage(), segments);
+  }
+
+  /**
+   * Builds compaction tasks for the given segments.
    *
    * @param storage The storage configuration.
    * @param segments The segments for which to build compaction tasks.
    * @return An iterable of compaction tasks.
    */
-  Collection<CompactionTask> buildTasks(Storage storage, SegmentManager segments);
+  default Collection<CompactionTask> buildTasks(Storage storage, SegmentManager segments) {
+    CompactionPlan plan = plan(storage, segments);
+    Assert.state(!plan.isOpaque(), "compaction manager must implement buildTasks");
+    return buildTasks(segments, plan);
+  }
 
 }
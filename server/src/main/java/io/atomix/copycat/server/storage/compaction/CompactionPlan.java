@@ -0,0 +1,348 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.storage.compaction;
+
+import io.atomix.catalyst.util.Assert;
+import io.atomix.copycat.server.storage.Segment;
+import io.atomix.copycat.server.storage.Storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Describes the segments a {@link Compaction} selected for compaction and why.
+ * <p>
+ * A compaction plan is built by a {@link CompactionManager} each time the log is compacted and can also be built
+ * without compacting the log via {@link Compactor#plan(Compaction)} to evaluate how the
+ * {@link io.atomix.copycat.server.storage.Storage#compactionThreshold() compaction threshold} and segment sizes
+ * affect compaction. The plan lists each {@link Candidate candidate} segment that was evaluated along with its
+ * score and whether it was selected, the {@link #groups() groups} of segments that will be rewritten together, and
+ * the estimated number of bytes that compaction will {@link #reclaimableBytes() reclaim}.
+ * <p>
+ * Once the plan is executed, the plan's {@link #tasks()} provide the {@link CompactionTaskMetrics} of each task
+ * that executed the plan.
+ * <p>
+ * Compaction managers that don't plan compaction produce {@link #isOpaque() opaque} plans. Opaque plans have no
+ * candidates or groups, and the manager decides which segments to compact when it builds tasks.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public final class CompactionPlan {
+  private final Compaction compaction;
+  private final double threshold;
+  private final List<Candidate> candidates;
+  private final List<List<Segment>> groups;
+  private final Storage storage;
+  private final List<CompactionTaskMetrics> tasks = new CopyOnWriteArrayList<>();
+
+  CompactionPlan(Compaction compaction, double threshold, List<Candidate> candidates, List<List<Segment>> groups) {
+    this(Assert.notNull(compaction, "compaction"), threshold, candidates, groups, null);
+  }
+
+  private CompactionPlan(Compaction compaction, double threshold, List<Candidate> candidates, List<List<Segment>> groups, Storage storage) {
+    this.compaction = compaction;
+    this.threshold = threshold;
+    this.candidates = Collections.unmodifiableList(Assert.notNull(candidates, "candidates"));
+    this.groups = Collections.unmodifiableList(Assert.notNull(groups, "groups"));
+    this.storage = storage;
+  }
+
+  /**
+   * Returns an opaque plan for a compaction manager that doesn't plan compaction.
+   *
+   * @param compaction The planned compaction type or {@code null} if the compaction type is not known.
+   * @param storage The storage configuration with which to build compaction tasks.
+   * @return The opaque plan.
+   */
+  static CompactionPlan opaque(Compaction compaction, Storage storage) {
+    return new CompactionPlan(compaction, 0, Collections.emptyList(), Collections.emptyList(), Assert.notNull(storage, "storage"));
+  }
+
+  /**
+   * Returns the planned compaction type.
+   *
+   * @return The planned compaction type.
+   */
+  public Compaction compaction() {
+    return compaction;
+  }
+
+  /**
+   * Returns a boolean value indicating whether the plan is opaque.
+   * <p>
+   * Opaque plans are built for compaction managers that don't plan compaction. The segments that will be compacted
+   * are not known until the manager builds tasks, so opaque plans have no candidates or groups.
+   *
+   * @return Indicates whether the plan is opaque.
+   */
+  public boolean isOpaque() {
+    return storage != null;
+  }
+
+  /**
+   * Returns the storage configuration with which to build tasks for an opaque plan.
+   */
+  Storage storage() {
+    return storage;
+  }
+
+  /**
+   * Returns the score at or above which candidate segments were selected for compaction.
+   *
+   * @return The score at or above which candidate segments were selected for compaction.
+   */
+  public double threshold() {
+    return threshold;
+  }
+
+  /**
+   * Returns all the segments that were evaluated for compaction.
+   *
+   * @return The segments that were evaluated for compaction in log order.
+   */
+  public List<Candidate> candidates() {
+    return candidates;
+  }
+
+  /**
+   * Returns the segments that were selected for compaction.
+   *
+   * @return The segments that were selected for compaction in log order.
+   */
+  public List<Candidate> selected() {
+    return candidates.stream().filter(Candidate::isSelected).collect(Collectors.toList());
+  }
+
+  /**
+   * Returns the IDs of the segments to compact grouped by the compact segment to which they will be rewritten.
+   *
+   * @return The IDs of the segments to compact grouped by compact segment.
+   */
+  public List<List<Long>> groups() {
+    List<List<Long>> groups = new ArrayList<>(this.groups.size());
+    for (List<Segment> group : this.groups) {
+      groups.add(group.stream().map(segment -> segment.descriptor().id()).collect(Collectors.toList()));
+    }
+    return groups;
+  }
+
+  /**
+   * Returns the groups of segments to compact.
+   */
+  List<List<Segment>> segmentGroups() {
+    return groups;
+  }
+
+  /**
+   * Returns a boolean value indicating whether no segments were selected for compaction.
+   *
+   * @return Indicates whether no segments were selected for compaction.
+   */
+  public boolean isEmpty() {
+    return groups.isEmpty();
+  }
+
+  /**
+   * Returns the total size of the segments selected for compaction.
+   *
+   * @return The number of bytes that will be read to compact the selected segments.
+   */
+  public long compactBytes() {
+    return selected().stream().mapToLong(Candidate::size).sum();
+  }
+
+  /**
+   * Returns the estimated number of bytes that will be reclaimed by compacting the selected segments.
+   * <p>
+   * The estimate assumes that all released entries are removed from the selected segments and that entries are
+   * of uniform size.
+   *
+   * @return The estimated number of bytes reclaimed by compaction.
+   */
+  public long reclaimableBytes() {
+    return selected().stream().mapToLong(Candidate::reclaimableBytes).sum();
+  }
+
+  /**
+   * Returns metrics for the tasks that executed the plan.
+   *
+   * @return Metrics for the tasks that executed the plan. If the plan has not been executed, the list is empty.
+   */
+  public List<CompactionTaskMetrics> tasks() {
+    return Collections.unmodifiableList(tasks);
+  }
+
+  /**
+   * Adds metrics for a task executing the plan.
+   */
+  void addTask(CompactionTaskMetrics task) {
+    tasks.add(task);
+  }
+
+  /**
+   * Returns a human readable report of the plan and the tasks that executed it.
+   *
+   * @return A report describing the plan.
+   */
+  public String report() {
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%s compaction: %d of %d segment(s) selected, threshold=%.3f, compactBytes=%d, reclaimableBytes=%d%n",
+      compaction, selected().size(), candidates.size(), threshold, compactBytes(), reclaimableBytes()));
+    for (Candidate candidate : candidates) {
+      report.append("  ").append(candidate).append(String.format("%n"));
+    }
+    for (List<Long> group : groups()) {
+      report.append("  group ").append(group).append(String.format("%n"));
+    }
+    for (CompactionTaskMetrics task : tasks) {
+      report.append("  ").append(task).append(String.format("%n"));
+    }
+    return report.toString();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s[compaction=%s, candidates=%d, selected=%d, groups=%d, reclaimableBytes=%d]", getClass().getSimpleName(), compaction, candidates.size(), selected().size(), groups.size(), reclaimableBytes());
+  }
+
+  /**
+   * A segment evaluated for compaction.
+   * <p>
+   * Candidates describe the state of the segment at the time the plan was built.
+   */
+  public static final class Candidate {
+    private final long id;
+    private final long version;
+    private final long firstIndex;
+    private final long lastIndex;
+    private final long size;
+    private final int entries;
+    private final long releasedEntries;
+    private final double score;
+    private final boolean selected;
+
+    Candidate(Segment segment, double score, boolean selected) {
+      this.id = segment.descriptor().id();
+      this.version = segment.descriptor().version();
+      this.firstIndex = segment.firstIndex();
+      this.lastIndex = segment.lastIndex();
+      this.size = segment.size();
+      this.entries = segment.count();
+      this.releasedEntries = segment.releaseCount();
+      this.score = score;
+      this.selected = selected;
+    }
+
+    /**
+     * Returns the segment ID.
+     *
+     * @return The segment ID.
+     */
+    public long id() {
+      return id;
+    }
+
+    /**
+     * Returns the segment version.
+     *
+     * @return The segment version.
+     */
+    public long version() {
+      return version;
+    }
+
+    /**
+     * Returns the index of the first entry in the segment.
+     *
+     * @return The index of the first entry in the segment.
+     */
+    public long firstIndex() {
+      return firstIndex;
+    }
+
+    /**
+     * Returns the index of the last entry in the segment.
+     *
+     * @return The index of the last entry in the segment.
+     */
+    public long lastIndex() {
+      return lastIndex;
+    }
+
+    /**
+     * Returns the size of the segment in bytes.
+     *
+     * @return The size of the segment in bytes.
+     */
+    public long size() {
+      return size;
+    }
+
+    /**
+     * Returns the number of entries stored in the segment.
+     *
+     * @return The number of entries stored in the segment.
+     */
+    public int entries() {
+      return entries;
+    }
+
+    /**
+     * Returns the number of entries in the segment that have been released.
+     *
+     * @return The number of entries in the segment that have been released.
+     */
+    public long releasedEntries() {
+      return releasedEntries;
+    }
+
+    /**
+     * Returns the estimated number of bytes reclaimed by removing released entries from the segment.
+     *
+     * @return The estimated number of bytes reclaimed by compacting the segment.
+     */
+    public long reclaimableBytes() {
+      return entries > 0 ? (long) (size * (releasedEntries / (double) entries)) : 0;
+    }
+
+    /**
+     * Returns the score with which the segment was evaluated against the plan's threshold.
+     *
+     * @return The segment's compaction score.
+     */
+    public double score() {
+      return score;
+    }
+
+    /**
+     * Returns a boolean value indicating whether the segment was selected for compaction.
+     *
+     * @return Indicates whether the segment was selected for compaction.
+     */
+    public boolean isSelected() {
+      return selected;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s[id=%d, version=%d, firstIndex=%d, lastIndex=%d, size=%d, entries=%d, released=%d, score=%.3f, selected=%b]", getClass().getSimpleName(), id, version, firstIndex, lastIndex, size, entries, releasedEntries, score, selected);
+    }
+  }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.storage.compaction;
+
+import io.atomix.catalyst.util.Assert;
+import io.atomix.copycat.server.storage.Segment;
+import io.atomix.copycat.server.storage.SegmentManager;
+import io.atomix.copycat.server.storage.Storage;
+import io.atomix.copycat.server.storage.StorageLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Schedules compaction according to the liveness of entries in the log.
+ * <p>
+ * Rather than compacting the log at fixed intervals, the scheduler is {@link #run() run} frequently and only compacts
+ * segments when doing so is worthwhile. For each segment, the scheduler tracks the number of entries that had been
+ * {@link Segment#release(long) released} when the segment was last rewritten. Entries released since then are garbage
+ * that compacting the segment may reclaim:
+ * <pre>
+ *   {@code
+ *   garbage = (segment.releaseCount() - releaseCountAtLastCompaction) / (double) segment.count()
+ *   }
+ * </pre>
+ * A segment becomes a candidate for {@link Compaction#MINOR minor} compaction once the fraction of its entries that are
+ * garbage reaches the {@link Storage#compactionThreshold()}, matching the meaning of the threshold for fixed-interval
+ * compaction. Candidates are compacted in order of decreasing score, which weighs the benefit of compacting a segment
+ * against its cost as the number of bytes reclaimed per byte read and written by compaction:
+ * <pre>
+ *   {@code
+ *   score = garbage / (2 - garbage)
+ *   }
+ * </pre>
+ * The threshold is lowered in proportion to the log's projected disk
+ * usage, which is the fraction of the storage volume that the log will occupy after another
+ * {@link Storage#majorCompactionInterval()} of appends at the current append rate, so the busier the log and the less
+ * free space remains, the more aggressively segments are compacted. No more than {@link Storage#maxCompactionBytes()}
+ * of segments are rewritten by a single compaction.
+ * <p>
+ * {@link Compaction#MAJOR Major} compaction is run at the {@link Storage#majorCompactionInterval()}, but only groups
+ * of segments that would be combined or that contain entries released since they were last compacted, or released
+ * entries that may have become compactable because the compaction indexes have advanced, are rewritten. If no group
+ * needs to be rewritten, major compaction is skipped altogether.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+final class CompactionScheduler implements Runnable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CompactionScheduler.class);
+  static final Duration CHECK_INTERVAL = Duration.ofSeconds(1);
+  private final Compactor compactor;
+  private final Storage storage;
+  private final SegmentManager segments;
+  private final Map<Long, Long> releaseCounts = new HashMap<>();
+  private final List<Long> compacting = new ArrayList<>();
+  private long lastMajorTime = System.currentTimeMillis();
+  private long lastMajorIndex;
+  private long lastSnapshotIndex;
+
+  CompactionScheduler(Compactor compactor, Storage storage, SegmentManager segments) {
+    this.compactor = Assert.notNull(compactor, "compactor");
+    this.storage = Assert.notNull(storage, "storage");
+    this.segments = Assert.notNull(segments, "segments");
+  }
+
+  /**
+   * Evaluates the log and compacts it if compaction is worthwhile.
+   */
+  @Override
+  public void run() {
+    if (compactor.isCompacting() || compactor.isPaused()) {
+      return;
+    }
+
+    if (System.currentTimeMillis() - lastMajorTime >= storage.majorCompactionInterval().toMillis()) {
+      lastMajorTime = System.currentTimeMillis();
+      compactor.compact(Compaction.MAJOR, new Manager(this::planMajor, new MajorCompactionManager(compactor))).thenRun(this::completeCompaction);
+    } else {
+      compactor.compact(Compaction.MINOR, new Manager(this::planMinor, new MinorCompactionManager(compactor))).thenRun(this::completeCompaction);
+    }
+  }
+
+  /**
+   * Returns the threshold at which segments are compacted.
+   */
+  double threshold() {
+    return storage.compactionThreshold() * (1 - projectedDiskUsage());
+  }
+
+  /**
+   * Returns the fraction of the storage volume that the log is projected to occupy after the next major compaction
+   * interval at the current append rate.
+   */
+  private double projectedDiskUsage() {
+    if (storage.level() != StorageLevel.DISK && storage.level() != StorageLevel.MAPPED) {
+      return 0;
+    }
+
+    long size = segments.size();
+    long capacity = size + storage.directory().getUsableSpace();
+    if (capacity <= 0) {
+      return 0;
+    }
+    long projected = size + segments.metrics().getAppendRate() * storage.majorCompactionInterval().getSeconds();
+    return Math.min(projected / (double) capacity, 1);
+  }
+
+  /**
+   * Returns the number of entries released from the given segment since it was last compacted.
+   */
+  private long garbage(Segment segment) {
+    Long releaseCount = releaseCounts.get(segment.descriptor().index());
+    return Math.max(segment.releaseCount() - (releaseCount != null ? releaseCount : 0), 0);
+  }
+
+  /**
+   * Returns the fraction of entries in the given segment that have been released since it was last compacted.
+   */
+  double garbageRatio(Segment segment) {
+    int count = segment.count();
+    return count > 0 ? Math.min(garbage(segment) / (double) count, 1) : 0;
+  }
+
+  /**
+   * Returns the number of bytes reclaimed per byte read and written by compacting the given segment.
+   */
+  double score(Segment segment) {
+    double garbage = garbageRatio(segment);
+    return garbage / (2 - garbage);
+  }
+
+  /**
+   * Plans minor compaction of the segments most worth compacting.
+   */
+  private synchronized CompactionPlan planMinor(Storage storage, SegmentManager manager) {
+    pruneReleaseCounts(manager);
+
+    // Score segments once since entries may be released concurrently. Segments are selected by the fraction of their
+    // entries that are garbage, and the score only orders the selected segments.
+    double threshold = threshold();
+    List<Segment> segments = new MinorCompactionManager(compactor).getCandidateSegments(manager);
+    Map<Segment, Double> scores = new HashMap<>();
+    List<Segment> candidates = new ArrayList<>();
+    for (Segment segment : segments) {
+      double garbage = garbageRatio(segment);
+      scores.put(segment, garbage / (2 - garbage));
+      if (garbage > 0 && garbage >= threshold) {
+        candidates.add(segment);
+      }
+    }
+    candidates.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+
+    Set<Segment> selected = new HashSet<>();
+    List<List<Segment>> groups = new ArrayList<>(candidates.size());
+    long bytes = 0;
+    for (Segment segment : candidates) {
+      if (!withinBudget(bytes, segment.size())) {
+        break;
+      }
+      bytes += segment.size();
+      selected.add(segment);
+      groups.add(Collections.singletonList(segment));
+    }
+
+    List<CompactionPlan.Candidate> planned = new ArrayList<>(segments.size());
+    for (Segment segment : segments) {
+      planned.add(new CompactionPlan.Candidate(segment, scores.get(segment), selected.contains(segment)));
+    }
+    return new CompactionPlan(Compaction.MINOR, threshold, planned, groups);
+  }
+
+  /**
+   * Plans major compaction of the groups of segments that need to be rewritten.
+   */
+  private synchronized CompactionPlan planMajor(Storage storage, SegmentManager manager) {
+    pruneReleaseCounts(manager);
+
+    boolean indexesAdvanced = compactor.majorIndex() > lastMajorIndex || compactor.snapshotIndex() > lastSnapshotIndex;
+
+    // Major compaction must rewrite groups in sequential order, but groups that would not be changed by compaction
+    // can be skipped since rewriting them would not remove any entries.
+    List<CompactionPlan.Candidate> candidates = new ArrayList<>();
+    List<List<Segment>> groups = new ArrayList<>();
+    long bytes = 0;
+    boolean exhausted = false;
+    for (List<Segment> group : new MajorCompactionManager(compactor).getCompactableGroups(storage, manager)) {
+      boolean selected = false;
+      if (!exhausted && needsRewrite(group, indexesAdvanced)) {
+        long size = group.stream().mapToLong(Segment::size).sum();
+        if (withinBudget(bytes, size)) {
+          bytes += size;
+          selected = true;
+          groups.add(group);
+        } else {
+          exhausted = true;
+        }
+      }
+      for (Segment segment : group) {
+        candidates.add(new CompactionPlan.Candidate(segment, score(segment), selected));
+      }
+    }
+    return new CompactionPlan(Compaction.MAJOR, 0, candidates, groups);
+  }
+
+  /**
+   * Records the segments that are about to be compacted according to the given plan.
+   */
+  private synchronized void startCompaction(CompactionPlan plan) {
+    if (plan.compaction() == Compaction.MAJOR) {
+      lastMajorIndex = compactor.majorIndex();
+      lastSnapshotIndex = compactor.snapshotIndex();
+    }
+    for (List<Segment> group : plan.segmentGroups()) {
+      compacting.add(group.get(0).descriptor().index());
+    }
+    if (!plan.isEmpty()) {
+      LOGGER.debug("Scheduling {} compaction of {} segment group(s) with threshold {}", plan.compaction(), plan.segmentGroups().size(), plan.threshold());
+    }
+  }
+
+  /**
+   * Returns a boolean value indicating whether a group of segments must be rewritten by major compaction.
+   */
+  private boolean needsRewrite(List<Segment> group, boolean indexesAdvanced) {
+    if (group.size() > 1) {
+      return true;
+    }
+    Segment segment = group.get(0);
+    return garbage(segment) > 0 || (indexesAdvanced && segment.releaseCount() > 0);
+  }
+
+  /**
+   * Returns a boolean value indicating whether the given number of bytes can be added to a compaction.
+   */
+  private boolean withinBudget(long bytes, long size) {
+    long maxBytes = storage.maxCompactionBytes();
+    return maxBytes == 0 || bytes == 0 || bytes + size <= maxBytes;
+  }
+
+  /**
+   * Records the number of entries released from compacted segments once compaction is complete.
+   */
+  private synchronized void completeCompaction() {
+    for (long index : compacting) {
+      Segment segment = segments.segment(index);
+      if (segment != null && segment.descriptor().index() == index) {
+        releaseCounts.put(index, segment.releaseCount());
+      }
+    }
+    compacting.clear();
+  }
+
+  /**
+   * Removes release counts for segments that are no longer in the log.
+   */
+  private void pruneReleaseCounts(SegmentManager manager) {
+    Iterator<Long> iterator = releaseCounts.keySet().iterator();
+    while (iterator.hasNext()) {
+      long index = iterator.next();
+      Segment segment = manager.segment(index);
+      if (segment == null || segment.descriptor().index() != index) {
+        iterator.remove();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName();
+  }
+
+  /**
+   * Compaction manager that plans compaction according to the scheduler and builds tasks with the given manager.
+   */
+  private final class Manager implements CompactionManager {
+    private final BiFunction<Storage, SegmentManager, CompactionPlan> planner;
+    private final CompactionManager manager;
+
+    private Manager(BiFunction<Storage, SegmentManager, CompactionPlan> planner, CompactionManager manager) {
+      this.planner = planner;
+      this.manager = manager;
+    }
+
+    @Override
+    public CompactionPlan plan(Storage storage, SegmentManager segments) {
+      return planner.apply(storage, segments);
+    }
+
+    @Override
+    public Collection<CompactionTask> buildTasks(SegmentManager segments, CompactionPlan plan) {
+      startCompaction(plan);
+      return manager.buildTasks(segments, plan);
+    }
+  }
+
+}
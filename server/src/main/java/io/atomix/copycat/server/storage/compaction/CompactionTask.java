@@ -27,4 +27,16 @@ import io.atomix.copycat.server.storage.Storage;
  * @author <a href="http://github.com/kuujo>Jordan Halterman</a>
  */
 public interface CompactionTask extends Runnable {
+
+  /**
+   * Returns metrics describing the execution of the task.
+   * <p>
+   * By default, metrics that record no activity are returned.
+   *
+   * @return The task metrics.
+   */
+  default CompactionTaskMetrics metrics() {
+    return CompactionTaskMetrics.NONE;
+  }
+
 }
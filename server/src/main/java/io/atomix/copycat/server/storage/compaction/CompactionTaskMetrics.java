@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.storage.compaction;
+
+import io.atomix.catalyst.util.Assert;
+import io.atomix.copycat.server.storage.Segment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics describing the execution of a single {@link CompactionTask}.
+ * <p>
+ * Task metrics are updated as the task rewrites segments and can be read while the task is running. Entries that
+ * are retained by compaction are copied to the compact segment, so the {@link #bytesWritten() bytes written} by a
+ * task are the size of the retained entries, and {@link #bytesRead() bytes read} additionally include entries that
+ * had to be read to determine whether they could be removed.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public final class CompactionTaskMetrics {
+
+  /**
+   * Metrics for tasks that don't record metrics.
+   */
+  static final CompactionTaskMetrics NONE = new CompactionTaskMetrics("none", Collections.emptyList());
+
+  private final String task;
+  private final List<Long> segments;
+  private final LongAdder sourceEntries = new LongAdder();
+  private final LongAdder retainedEntries = new LongAdder();
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+  private volatile long startTime;
+  private volatile long endTime;
+
+  CompactionTaskMetrics(String task, List<Segment> segments) {
+    this.task = Assert.notNull(task, "task");
+    List<Long> ids = new ArrayList<>(segments.size());
+    for (Segment segment : segments) {
+      ids.add(segment.descriptor().id());
+      sourceEntries.add(segment.count());
+    }
+    this.segments = Collections.unmodifiableList(ids);
+  }
+
+  /**
+   * Records the start of the task.
+   */
+  void start() {
+    startTime = System.nanoTime();
+  }
+
+  /**
+   * Records an entry read to determine whether it can be removed.
+   */
+  void recordRead(int bytes) {
+    bytesRead.add(bytes);
+  }
+
+  /**
+   * Records an entry copied to a compact segment.
+   */
+  void recordTransfer(int bytes) {
+    retainedEntries.increment();
+    bytesRead.add(bytes);
+    bytesWritten.add(bytes);
+  }
+
+  /**
+   * Records the completion of the task.
+   */
+  void complete() {
+    endTime = System.nanoTime();
+  }
+
+  /**
+   * Returns the name of the task.
+   *
+   * @return The name of the task.
+   */
+  public String task() {
+    return task;
+  }
+
+  /**
+   * Returns the IDs of the segments compacted by the task.
+   *
+   * @return The IDs of the segments compacted by the task.
+   */
+  public List<Long> segments() {
+    return segments;
+  }
+
+  /**
+   * Returns a boolean value indicating whether the task has completed.
+   *
+   * @return Indicates whether the task has completed.
+   */
+  public boolean isComplete() {
+    return endTime != 0;
+  }
+
+  /**
+   * Returns the duration of the task.
+   *
+   * @return The duration of the task, or the time elapsed since the task started if it has not yet completed.
+   */
+  public Duration duration() {
+    long startTime = this.startTime;
+    if (startTime == 0) {
+      return Duration.ZERO;
+    }
+    long endTime = this.endTime;
+    return Duration.ofNanos((endTime != 0 ? endTime : System.nanoTime()) - startTime);
+  }
+
+  /**
+   * Returns the number of entries stored in the compacted segments when the task was built.
+   *
+   * @return The number of entries in the compacted segments.
+   */
+  public long sourceEntries() {
+    return sourceEntries.sum();
+  }
+
+  /**
+   * Returns the number of entries copied to compact segments.
+   *
+   * @return The number of entries retained by compaction.
+   */
+  public long retainedEntries() {
+    return retainedEntries.sum();
+  }
+
+  /**
+   * Returns the number of entries removed from the log by the task.
+   *
+   * @return The number of entries dropped by compaction.
+   */
+  public long droppedEntries() {
+    return isComplete() ? Math.max(sourceEntries() - retainedEntries(), 0) : 0;
+  }
+
+  /**
+   * Returns the number of entry bytes read by the task.
+   *
+   * @return The number of bytes read by the task.
+   */
+  public long bytesRead() {
+    return bytesRead.sum();
+  }
+
+  /**
+   * Returns the number of entry bytes written by the task.
+   *
+   * @return The number of bytes written by the task.
+   */
+  public long bytesWritten() {
+    return bytesWritten.sum();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s[task=%s, segments=%s, duration=%dms, bytesRead=%d, bytesWritten=%d, retained=%d, dropped=%d]", getClass().getSimpleName(), task, segments, duration().toMillis(), bytesRead(), bytesWritten(), retainedEntries(), droppedEntries());
+  }
+
+}
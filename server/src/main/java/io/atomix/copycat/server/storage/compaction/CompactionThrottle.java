@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.storage.compaction;
+
+import io.atomix.catalyst.util.Assert;
+import io.atomix.copycat.server.storage.LogMetrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Limits the rate at which {@link CompactionTask}s rewrite entries.
+ * <p>
+ * The throttle is a token bucket holding up to a tenth of a second's worth of the configured rate limit in bytes, so
+ * compaction is spread evenly over time rather than rewriting a second's worth of bytes in a burst. Compaction
+ * tasks {@link #acquire(long) acquire} the size of each entry before rewriting it, and if the bucket has been
+ * exhausted the task sleeps until enough bytes have accumulated. If the rate is adaptive, the rate limit is scaled by
+ * the ratio of the log's average flush latency to the latency of its most recent flush, so compaction slows down
+ * while disk writes for foreground appends are slower than usual.
+ * <p>
+ * The throttle can also be {@link #pause() paused}, in which case compaction tasks block at the next entry until the
+ * throttle is {@link #resume() resumed} or the pause expires.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+final class CompactionThrottle {
+  private static final double MIN_RATE_FACTOR = 0.1;
+  private static final long MAX_BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private final LogMetrics metrics;
+  private final boolean adaptive;
+  private volatile long rateLimit;
+  private boolean paused;
+  private long pausedUntil;
+  private boolean closed;
+  private double available;
+  private long refillTime = System.nanoTime();
+
+  CompactionThrottle(LogMetrics metrics, long rateLimit, boolean adaptive) {
+    this.metrics = Assert.notNull(metrics, "metrics");
+    this.rateLimit = rateLimit;
+    this.adaptive = adaptive;
+  }
+
+  /**
+   * Returns the configured rate limit in bytes per second.
+   *
+   * @return The configured rate limit in bytes per second or {@code 0} if compaction is not rate limited.
+   */
+  long rateLimit() {
+    return rateLimit;
+  }
+
+  /**
+   * Sets the rate limit in bytes per second.
+   *
+   * @param rateLimit The rate limit in bytes per second or {@code 0} to disable rate limiting.
+   */
+  void rateLimit(long rateLimit) {
+    this.rateLimit = rateLimit;
+  }
+
+  /**
+   * Returns the current rate limit, adapted to the log's flush latency if the throttle is adaptive.
+   */
+  private long rate() {
+    long rateLimit = this.rateLimit;
+    if (!adaptive || rateLimit <= 0) {
+      return rateLimit;
+    }
+
+    double lastLatency = metrics.getLastFlushLatency();
+    if (lastLatency <= 0) {
+      return rateLimit;
+    }
+    double factor = Math.max(Math.min(metrics.getAverageFlushLatency() / lastLatency, 1), MIN_RATE_FACTOR);
+    return (long) (rateLimit * factor);
+  }
+
+  /**
+   * Pauses compaction until the throttle is resumed.
+   */
+  synchronized void pause() {
+    paused = true;
+  }
+
+  /**
+   * Pauses compaction for the given number of nanoseconds.
+   *
+   * @param nanos The number of nanoseconds for which to pause compaction.
+   */
+  synchronized void pause(long nanos) {
+    pausedUntil = Math.max(pausedUntil, System.nanoTime() + nanos);
+  }
+
+  /**
+   * Resumes compaction.
+   */
+  synchronized void resume() {
+    paused = false;
+    pausedUntil = 0;
+    notifyAll();
+  }
+
+  /**
+   * Returns a boolean value indicating whether compaction is paused.
+   *
+   * @return Indicates whether compaction is paused.
+   */
+  synchronized boolean isPaused() {
+    return paused || pausedUntil - System.nanoTime() > 0;
+  }
+
+  /**
+   * Acquires the given number of bytes, blocking while compaction is paused or the rate limit has been exceeded.
+   *
+   * @param bytes The number of bytes to acquire.
+   */
+  void acquire(long bytes) {
+    long waitNanos;
+    synchronized (this) {
+      awaitResumed();
+      long rate = rate();
+      if (closed || rate <= 0) {
+        return;
+      }
+
+      long time = System.nanoTime();
+      double burst = rate * (double) MAX_BURST_NANOS / TimeUnit.SECONDS.toNanos(1);
+      available = Math.min(burst, available + (time - refillTime) * (double) rate / TimeUnit.SECONDS.toNanos(1));
+      refillTime = time;
+      available -= bytes;
+      if (available >= 0) {
+        return;
+      }
+      waitNanos = (long) (-available * TimeUnit.SECONDS.toNanos(1) / rate);
+    }
+    LockSupport.parkNanos(this, waitNanos);
+  }
+
+  /**
+   * Blocks until compaction is resumed or the throttle is closed.
+   */
+  private void awaitResumed() {
+    while (!closed && isPaused()) {
+      try {
+        long remaining = pausedUntil - System.nanoTime();
+        wait(paused ? 0 : Math.max(TimeUnit.NANOSECONDS.toMillis(remaining), 1));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Closes the throttle, releasing any blocked compaction tasks.
+   */
+  synchronized void close() {
+    closed = true;
+    notifyAll();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s[rateLimit=%d, adaptive=%b]", getClass().getSimpleName(), rateLimit, adaptive);
+  }
+
+}
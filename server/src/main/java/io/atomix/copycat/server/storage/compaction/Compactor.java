@@ -24,6 +24,7 @@ import io.atomix.copycat.server.storage.Storage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledExecutorService;
@@ -38,7 +39,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  * The compactor is responsible for managing log compaction processes. Log {@link Compaction} processes
  * are run in a pool of background threads of the configured number of {@link Storage#compactionThreads()}.
  * {@link Compaction#MINOR} and {@link Compaction#MAJOR} executions are scheduled according to the configured
- * {@link Storage#minorCompactionInterval()} and {@link Storage#majorCompactionInterval()} respectively.
+ * {@link Storage#minorCompactionInterval()} and {@link Storage#majorCompactionInterval()} respectively. Alternatively,
+ * if {@link Storage#adaptiveCompaction() adaptive compaction} is enabled, the log is evaluated at least once per second
+ * and segments are compacted only when the disk space reclaimed outweighs the cost of rewriting them.
  * Compaction can also be run synchronously via {@link Compactor#compact()} or {@link Compactor#compact(Compaction)}.
  * <p>
  * When a {@link Compaction} is executed either synchronously or asynchronously, the compaction's associated
@@ -46,6 +49,15 @@ import java.util.concurrent.atomic.AtomicInteger;
  * are run in parallel in the compaction thread pool. However, the compactor will not allow multiple compaction
  * executions to run in parallel. If a compaction is attempted while another compaction is already running,
  * it will be ignored.
+ * <p>
+ * The rate at which compaction tasks rewrite entries can be limited via {@link Storage#compactionRateLimit()} or
+ * {@link #withRateLimit(long)} to bound the disk bandwidth compaction competes for with foreground appends. The
+ * compactor can also be {@link #pause() paused}, e.g. when the server is under back-pressure. While paused, no new
+ * compactions are started and running compaction tasks block before rewriting their next entry.
+ * <p>
+ * Each compaction is executed according to a {@link CompactionPlan} describing the segments selected for compaction.
+ * The plan for a compaction can be built without compacting the log via {@link #plan(Compaction)}, and the plan of
+ * the most recent compaction along with metrics for the tasks that executed it is available via {@link #lastPlan()}.
  *
  * @author <a href="http://github.com/kuujo>Jordan Halterman</a>
  */
@@ -54,6 +66,7 @@ public class Compactor implements AutoCloseable {
   private final Storage storage;
   private final SegmentManager segments;
   private final ScheduledExecutorService executor;
+  private final CompactionThrottle throttle;
   private long minorIndex;
   private long majorIndex;
   private long snapshotIndex;
@@ -62,13 +75,20 @@ public class Compactor implements AutoCloseable {
   private ScheduledFuture<?> minor;
   private ScheduledFuture<?> major;
   private CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
+  private volatile CompactionPlan lastPlan;
 
   public Compactor(Storage storage, SegmentManager segments, ScheduledExecutorService executor) {
     this.storage = Assert.notNull(storage, "storage");
     this.segments = Assert.notNull(segments, "segments");
     this.executor = Assert.notNull(executor, "executor");
-    minor = executor.scheduleAtFixedRate(() -> compact(Compaction.MINOR), storage.minorCompactionInterval().toMillis(), storage.minorCompactionInterval().toMillis(), TimeUnit.MILLISECONDS);
-    major = executor.scheduleAtFixedRate(() -> compact(Compaction.MAJOR), storage.majorCompactionInterval().toMillis(), storage.majorCompactionInterval().toMillis(), TimeUnit.MILLISECONDS);
+    this.throttle = new CompactionThrottle(segments.metrics(), storage.compactionRateLimit(), storage.adaptiveCompactionRate());
+    if (storage.adaptiveCompaction()) {
+      long interval = Math.min(storage.minorCompactionInterval().toMillis(), CompactionScheduler.CHECK_INTERVAL.toMillis());
+      minor = executor.scheduleWithFixedDelay(new CompactionScheduler(this, storage, segments), interval, interval, TimeUnit.MILLISECONDS);
+    } else {
+      minor = executor.scheduleAtFixedRate(() -> compact(Compaction.MINOR), storage.minorCompactionInterval().toMillis(), storage.minorCompactionInterval().toMillis(), TimeUnit.MILLISECONDS);
+      major = executor.scheduleAtFixedRate(() -> compact(Compaction.MAJOR), storage.majorCompactionInterval().toMillis(), storage.majorCompactionInterval().toMillis(), TimeUnit.MILLISECONDS);
+    }
   }
 
   /**
@@ -95,6 +115,97 @@ public class Compactor implements AutoCloseable {
     return defaultCompactionMode;
   }
 
+  /**
+   * Sets the maximum rate at which compaction tasks rewrite entries.
+   * <p>
+   * The rate limit applies to compaction tasks that are already running as well as future compactions.
+   *
+   * @param bytesPerSecond The compaction rate limit in bytes per second or {@code 0} to disable rate limiting.
+   * @return The compactor.
+   * @throws IllegalArgumentException if the rate limit is negative
+   */
+  public Compactor withRateLimit(long bytesPerSecond) {
+    throttle.rateLimit(Assert.argNot(bytesPerSecond, bytesPerSecond < 0, "rate limit cannot be negative"));
+    return this;
+  }
+
+  /**
+   * Returns the maximum rate at which compaction tasks rewrite entries.
+   *
+   * @return The compaction rate limit in bytes per second or {@code 0} if compaction is not rate limited.
+   */
+  public long rateLimit() {
+    return throttle.rateLimit();
+  }
+
+  /**
+   * Pauses compaction until the compactor is {@link #resume() resumed}.
+   * <p>
+   * While compaction is paused, scheduled and requested compactions are skipped, and running compaction tasks block
+   * before rewriting their next entry.
+   *
+   * @return The compactor.
+   */
+  public Compactor pause() {
+    throttle.pause();
+    return this;
+  }
+
+  /**
+   * Pauses compaction for the given duration.
+   * <p>
+   * This method can be called repeatedly to extend the pause while back-pressure persists. Compaction resumes
+   * automatically once the pause has expired.
+   *
+   * @param duration The duration for which to pause compaction.
+   * @return The compactor.
+   * @throws NullPointerException if the duration is {@code null}
+   */
+  public Compactor pause(Duration duration) {
+    throttle.pause(Assert.notNull(duration, "duration").toNanos());
+    return this;
+  }
+
+  /**
+   * Resumes compaction.
+   *
+   * @return The compactor.
+   */
+  public Compactor resume() {
+    throttle.resume();
+    return this;
+  }
+
+  /**
+   * Returns a boolean value indicating whether compaction is paused.
+   *
+   * @return Indicates whether compaction is paused.
+   */
+  public boolean isPaused() {
+    return throttle.isPaused();
+  }
+
+  /**
+   * Returns a boolean value indicating whether a compaction is in progress.
+   */
+  synchronized boolean isCompacting() {
+    return !future.isDone();
+  }
+
+  /**
+   * Returns the compaction throttle.
+   */
+  CompactionThrottle throttle() {
+    return throttle;
+  }
+
+  /**
+   * Returns the compaction thread pool.
+   */
+  ScheduledExecutorService executor() {
+    return executor;
+  }
+
   /**
    * Sets the maximum compaction index for minor compaction.
    *
@@ -168,6 +279,39 @@ public class Compactor implements AutoCloseable {
     return compactIndex;
   }
 
+  /**
+   * Plans compaction of the log using the given {@link Compaction} without compacting the log.
+   * <p>
+   * The returned plan describes the segments that would be compacted if the log were compacted with the given
+   * compaction at this time. Since entries may be released and segments compacted concurrently, the plan is a
+   * point-in-time estimate.
+   *
+   * @param compaction The compaction strategy.
+   * @return The compaction plan.
+   */
+  public CompactionPlan plan(Compaction compaction) {
+    return plan(compaction, compaction.manager(this));
+  }
+
+  /**
+   * Plans compaction with the given manager, identifying the compaction type of opaque plans.
+   */
+  private CompactionPlan plan(Compaction compaction, CompactionManager manager) {
+    CompactionPlan plan = manager.plan(storage, segments);
+    return plan.isOpaque() && plan.compaction() == null ? CompactionPlan.opaque(compaction, storage) : plan;
+  }
+
+  /**
+   * Returns the plan of the most recent compaction.
+   * <p>
+   * The plan's {@link CompactionPlan#tasks() tasks} are updated as the compaction progresses.
+   *
+   * @return The plan of the most recent compaction or {@code null} if the log has not been compacted.
+   */
+  public CompactionPlan lastPlan() {
+    return lastPlan;
+  }
+
   /**
    * Compacts the log using the default {@link Compaction#MINOR} compaction strategy.
    *
@@ -187,10 +331,17 @@ public class Compactor implements AutoCloseable {
    * @param compaction The compaction strategy.
    * @return A completable future to be completed once the log has been compacted.
    */
-  public synchronized CompletableFuture<Void> compact(Compaction compaction) {
+  public CompletableFuture<Void> compact(Compaction compaction) {
+    return compact(compaction, compaction.manager(this));
+  }
+
+  /**
+   * Compacts the log using the given {@link Compaction} with tasks built by the given {@link CompactionManager}.
+   */
+  synchronized CompletableFuture<Void> compact(Compaction compaction, CompactionManager manager) {
     final CompletableFuture<Void> future = new CompletableFuture<>();
     ThreadContext context = ThreadContext.currentContext();
-    this.future.whenComplete((result, error) -> compact(compaction, future, context));
+    this.future.whenComplete((result, error) -> compact(compaction, manager, future, context));
     this.future = future;
     return this.future;
   }
@@ -198,20 +349,34 @@ public class Compactor implements AutoCloseable {
   /**
    * Compacts the log.
    */
-  private synchronized CompletableFuture<Void> compact(Compaction compaction, CompletableFuture<Void> future, ThreadContext context) {
-    CompactionManager manager = compaction.manager(this);
+  private synchronized CompletableFuture<Void> compact(Compaction compaction, CompactionManager manager, CompletableFuture<Void> future, ThreadContext context) {
+    // Skip compaction while the compactor is paused.
+    if (throttle.isPaused()) {
+      LOGGER.debug("Skipping {} compaction while compaction is paused", compaction);
+      future.complete(null);
+      return future;
+    }
+
     AtomicInteger counter = new AtomicInteger();
 
-    Collection<CompactionTask> tasks = manager.buildTasks(storage, segments);
+    CompactionPlan plan = plan(compaction, manager);
+    Collection<CompactionTask> tasks = manager.buildTasks(segments, plan);
     if (!tasks.isEmpty()) {
+      for (CompactionTask task : tasks) {
+        plan.addTask(task.metrics());
+      }
+      lastPlan = plan;
+
       LOGGER.info("Compacting log with compaction: {}", compaction);
-      LOGGER.debug("Executing {} compaction task(s)", tasks.size());
+      LOGGER.debug("Executing {} compaction task(s) for {}", tasks.size(), plan);
+      long start = System.nanoTime();
       for (CompactionTask task : tasks) {
         LOGGER.debug("Executing {}", task);
         ThreadContext taskThread = new ThreadPoolContext(executor, segments.serializer());
         taskThread.execute(task).whenComplete((result, error) -> {
-          LOGGER.debug("{} complete", task);
+          LOGGER.debug("{} complete: {}", task, task.metrics());
           if (counter.incrementAndGet() == tasks.size()) {
+            segments.metrics().recordCompaction(plan, System.nanoTime() - start);
             if (context != null) {
               context.executor().execute(() -> future.complete(null));
             } else {
@@ -234,6 +399,7 @@ public class Compactor implements AutoCloseable {
    */
   @Override
   public void close() {
+    throttle.close();
     if (minor != null)
       minor.cancel(true);
     if (major != null)
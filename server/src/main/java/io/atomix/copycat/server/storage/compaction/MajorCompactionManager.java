@@ -30,7 +30,8 @@ import java.util.List;
  * <p>
  * Major compaction works by iterating through all committed {@link Segment}s in the log and rewriting and
  * combining segments to compact them together. Because of the sequential nature of major compaction, the major
- * compaction manager builds only a single {@link MajorCompactionTask} which will rewrite the log sequentially.
+ * compaction manager builds only a single {@link MajorCompactionTask} which will replace segments sequentially,
+ * though the task may rewrite independent groups of segments in parallel.
  * Segments are provided to the major compaction task in groups that indicate which segments to combine. A set
  * of segments can be combined if they meet the following criteria:
  * <ul>
@@ -50,9 +51,21 @@ public final class MajorCompactionManager implements CompactionManager {
   }
 
   @Override
-  public List<CompactionTask> buildTasks(Storage storage, SegmentManager segments) {
+  public CompactionPlan plan(Storage storage, SegmentManager segments) {
     List<List<Segment>> groups = getCompactableGroups(storage, segments);
-    return !groups.isEmpty() ? Collections.singletonList(new MajorCompactionTask(segments, groups, compactor.snapshotIndex(), compactor.majorIndex(), compactor.getDefaultCompactionMode())) : Collections.emptyList();
+    List<CompactionPlan.Candidate> candidates = new ArrayList<>();
+    for (List<Segment> group : groups) {
+      for (Segment segment : group) {
+        double releasedPercentage = segment.count() > 0 ? segment.releaseCount() / (double) segment.count() : 0;
+        candidates.add(new CompactionPlan.Candidate(segment, releasedPercentage, true));
+      }
+    }
+    return new CompactionPlan(Compaction.MAJOR, 0, candidates, groups);
+  }
+
+  @Override
+  public List<CompactionTask> buildTasks(SegmentManager segments, CompactionPlan plan) {
+    return !plan.isEmpty() ? Collections.singletonList(new MajorCompactionTask(segments, plan.segmentGroups(), compactor.snapshotIndex(), compactor.majorIndex(), compactor.getDefaultCompactionMode(), compactor.throttle(), compactor.executor())) : Collections.emptyList();
   }
 
   /**
@@ -20,6 +20,7 @@ import io.atomix.copycat.server.Commit;
 import io.atomix.copycat.server.storage.Segment;
 import io.atomix.copycat.server.storage.SegmentDescriptor;
 import io.atomix.copycat.server.storage.SegmentManager;
+import io.atomix.copycat.server.storage.StorageException;
 import io.atomix.copycat.server.storage.entry.Entry;
 import io.atomix.copycat.server.storage.util.OffsetPredicate;
 import org.slf4j.Logger;
@@ -27,6 +28,11 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
 
 /**
  * Removes tombstones from the log and combines {@link Segment}s to reclaim disk space.
@@ -87,6 +93,15 @@ import java.util.List;
  * state of offsets underlying all the segments to be compacted prior to rewriting any entries. This ensures that any
  * entries released after the start of rewriting segments will not be considered for compaction during the execution
  * of this task.
+ * <p>
+ * <b>Parallel compaction</b>
+ * <p>
+ * Because each group of segments is rewritten to its own compact segment from immutable copies of the group's offsets,
+ * the rewriting of groups is independent and is forked across the compactor's thread pool. The task then joins the
+ * rewritten groups in index order, helping to rewrite any group not yet picked up by another thread, and replaces the
+ * segments in each group only once all prior groups have been replaced. Since compact segments are not
+ * {@link SegmentDescriptor#lock() locked} until they replace the old segments, a failure during compaction still
+ * results in only segments earlier in the log having been compacted.
  *
  * @author <a href="http://github.com/kuujo>Jordan Halterman</a>
  */
@@ -98,19 +113,35 @@ public final class MajorCompactionTask implements CompactionTask {
   private final long snapshotIndex;
   private final long compactIndex;
   private final Compaction.Mode defaultCompactionMode;
+  private final CompactionThrottle throttle;
+  private final Executor executor;
+  private final CompactionTaskMetrics metrics;
 
-  MajorCompactionTask(SegmentManager manager, List<List<Segment>> groups, long snapshotIndex, long compactIndex, Compaction.Mode defaultCompactionMode) {
+  MajorCompactionTask(SegmentManager manager, List<List<Segment>> groups, long snapshotIndex, long compactIndex, Compaction.Mode defaultCompactionMode, CompactionThrottle throttle, Executor executor) {
     this.manager = Assert.notNull(manager, "manager");
     this.groups = Assert.notNull(groups, "segments");
     this.snapshotIndex = snapshotIndex;
     this.compactIndex = compactIndex;
     this.defaultCompactionMode = Assert.notNull(defaultCompactionMode, "defaultCompactionMode");
+    this.throttle = Assert.notNull(throttle, "throttle");
+    this.executor = Assert.notNull(executor, "executor");
+    this.metrics = new CompactionTaskMetrics(toString(), groups.stream().flatMap(List::stream).collect(Collectors.toList()));
+  }
+
+  @Override
+  public CompactionTaskMetrics metrics() {
+    return metrics;
   }
 
   @Override
   public void run() {
-    copyPredicates();
-    compactGroups();
+    metrics.start();
+    try {
+      copyPredicates();
+      compactGroups();
+    } finally {
+      metrics.complete();
+    }
   }
 
   /**
@@ -131,17 +162,88 @@ public final class MajorCompactionTask implements CompactionTask {
    * Compacts all compactable segments.
    */
   private void compactGroups() {
+    // Fork the rewriting of all groups after the first to the compactor thread pool. The first group is always
+    // rewritten on this thread.
+    List<FutureTask<Segment>> rewrites = new ArrayList<>(groups.size());
     for (int i = 0; i < groups.size(); i++) {
       List<Segment> group = groups.get(i);
       List<OffsetPredicate> groupPredicates = predicates.get(i);
-      Segment segment = compactGroup(group, groupPredicates);
-      mergeReleased(group, groupPredicates, segment);
+      FutureTask<Segment> rewrite = new FutureTask<>(() -> compactGroup(group, groupPredicates));
+      if (i > 0) {
+        fork(rewrite);
+      }
+      rewrites.add(rewrite);
+    }
+
+    // Join the rewritten groups in index order, replacing the segments in each group with its compact segment.
+    for (int i = 0; i < groups.size(); i++) {
+      List<Segment> group = groups.get(i);
+      Segment segment;
+      try {
+        segment = join(rewrites.get(i));
+      } catch (StorageException e) {
+        discard(rewrites.subList(i + 1, rewrites.size()));
+        throw e;
+      }
+
+      // Replace the rewritten segments with the updated segment.
+      manager.replaceSegments(group, segment);
+      mergeReleased(group, predicates.get(i), segment);
       deleteGroup(group);
     }
   }
 
   /**
-   * Compacts a group.
+   * Submits a group rewrite to the compactor thread pool.
+   * <p>
+   * If the thread pool rejects the rewrite, the group will be rewritten by the compaction task when it's joined.
+   */
+  private void fork(FutureTask<Segment> rewrite) {
+    try {
+      executor.execute(rewrite);
+    } catch (RejectedExecutionException e) {
+      LOGGER.debug("Failed to fork group rewrite", e);
+    }
+  }
+
+  /**
+   * Waits for a group rewrite to complete, running the rewrite on the calling thread if it hasn't yet been started.
+   */
+  private Segment join(FutureTask<Segment> rewrite) {
+    // Running a future task that has already been started by another thread is a no-op.
+    rewrite.run();
+    try {
+      return rewrite.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException("interrupted while compacting segments", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof StorageException) {
+        throw (StorageException) e.getCause();
+      }
+      throw new StorageException("failed to compact segments", e.getCause());
+    }
+  }
+
+  /**
+   * Discards group rewrites following a failed rewrite, deleting any compact segments that have been written.
+   */
+  private void discard(List<FutureTask<Segment>> rewrites) {
+    for (FutureTask<Segment> rewrite : rewrites) {
+      if (!rewrite.cancel(false)) {
+        try {
+          Segment segment = join(rewrite);
+          segment.close();
+          segment.delete();
+        } catch (StorageException e) {
+          LOGGER.debug("Failed to compact segments", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Rewrites a group to a new compact segment.
    */
   private Segment compactGroup(List<Segment> segments, List<OffsetPredicate> predicates) {
     // Get the first segment which contains the first index being compacted. The compact segment will be written
@@ -155,13 +257,11 @@ public final class MajorCompactionTask implements CompactionTask {
       .withIndex(firstSegment.descriptor().index())
       .withMaxSegmentSize(Math.max(segments.stream().mapToLong(s -> s.descriptor().maxSegmentSize()).max().getAsLong(), manager.storage().maxSegmentSize()))
       .withMaxEntries(Math.max(segments.stream().mapToInt(s -> s.descriptor().maxEntries()).max().getAsInt(), manager.storage().maxEntriesPerSegment()))
+      .withChecksumType(manager.storage().checksumType())
+      .withCompressionType(manager.storage().compressionType())
       .build());
 
     compactGroup(segments, predicates, compactSegment);
-
-    // Replace the rewritten segments with the updated segment.
-    manager.replaceSegments(segments, compactSegment);
-
     return compactSegment;
   }
 
@@ -198,12 +298,26 @@ public final class MajorCompactionTask implements CompactionTask {
    * @param compactSegment The segment to which to write the uncompacted segment.
    */
   private void checkEntry(long index, Segment segment, OffsetPredicate predicate, Segment compactSegment) {
-    try (Entry entry = segment.get(index)) {
-      // If an entry was found, remove the entry from the segment.
-      if (entry != null) {
-        checkEntry(index, entry, segment, predicate, compactSegment);
-      } else {
-        compactSegment.skip(1);
+    // Live entries are retained regardless of their compaction mode, so their records can be copied to the
+    // compact segment without deserializing the entry.
+    if (isLive(index, segment, predicate)) {
+      transferEntry(index, segment, compactSegment);
+    }
+    // Released entries are compacted regardless of their compaction mode if both the snapshot and major compaction
+    // indexes are greater than the entry index.
+    else if (index <= snapshotIndex && index <= compactIndex) {
+      compactEntry(index, segment, compactSegment);
+    }
+    // Otherwise, the entry must be read to determine its compaction mode.
+    else {
+      try (Entry entry = segment.get(index)) {
+        // If an entry was found, remove the entry from the segment.
+        if (entry != null) {
+          metrics.recordRead(entry.size());
+          checkEntry(index, entry, segment, predicate, compactSegment);
+        } else {
+          compactSegment.skip(1);
+        }
       }
     }
   }
@@ -228,7 +342,7 @@ public final class MajorCompactionTask implements CompactionTask {
         if (index <= snapshotIndex && !isLive(index, segment, predicate)) {
           compactEntry(index, segment, compactSegment);
         } else {
-          transferEntry(entry, compactSegment);
+          transferEntry(index, segment, compactSegment);
         }
         break;
       // RELEASE and QUORUM entries are compacted if the entry has been released from the segment.
@@ -237,7 +351,7 @@ public final class MajorCompactionTask implements CompactionTask {
         if (!isLive(index, segment, predicate)) {
           compactEntry(index, segment, compactSegment);
         } else {
-          transferEntry(entry, compactSegment);
+          transferEntry(index, segment, compactSegment);
         }
         break;
       // FULL entries are compacted if the major compact index is greater than the entry index and
@@ -251,7 +365,7 @@ public final class MajorCompactionTask implements CompactionTask {
         if (index <= compactIndex && !isLive(index, segment, predicate)) {
           compactEntry(index, segment, compactSegment);
         } else {
-          transferEntry(entry, compactSegment);
+          transferEntry(index, segment, compactSegment);
         }
         break;
       // UNKNOWN entries are compacted if the index is less than both the snapshot and major
@@ -260,7 +374,7 @@ public final class MajorCompactionTask implements CompactionTask {
         if (index <= snapshotIndex && index <= compactIndex && !isLive(index, segment, predicate)) {
           compactEntry(index, segment, compactSegment);
         } else {
-          transferEntry(entry, compactSegment);
+          transferEntry(index, segment, compactSegment);
         }
         break;
       default:
@@ -277,10 +391,16 @@ public final class MajorCompactionTask implements CompactionTask {
   }
 
   /**
-   * Transfers an entry to the given segment.
+   * Transfers an entry to the given segment, copying the entry's record without deserializing it.
    */
-  private void transferEntry(Entry entry, Segment compactSegment) {
-    compactSegment.append(entry);
+  private void transferEntry(long index, Segment segment, Segment compactSegment) {
+    int size = segment.transfer(index, compactSegment);
+    if (size != -1) {
+      throttle.acquire(size);
+      metrics.recordTransfer(size);
+    } else {
+      compactSegment.skip(1);
+    }
   }
 
   /**
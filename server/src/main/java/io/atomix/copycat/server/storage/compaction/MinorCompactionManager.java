@@ -22,6 +22,7 @@ import io.atomix.copycat.server.storage.Storage;
 import io.atomix.copycat.server.storage.entry.Entry;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -64,20 +65,43 @@ public final class MinorCompactionManager implements CompactionManager {
   }
 
   @Override
-  public List<CompactionTask> buildTasks(Storage storage, SegmentManager segments) {
-    List<CompactionTask> tasks = new ArrayList<>(segments.segments().size());
-    for (Segment segment : getCompactableSegments(storage, segments)) {
-      tasks.add(new MinorCompactionTask(segments, segment, compactor.snapshotIndex(), compactor.majorIndex(), compactor.getDefaultCompactionMode()));
+  public CompactionPlan plan(Storage storage, SegmentManager segments) {
+    List<CompactionPlan.Candidate> candidates = new ArrayList<>(segments.segments().size());
+    List<List<Segment>> groups = new ArrayList<>();
+    for (Segment segment : getCandidateSegments(segments)) {
+      // Calculate the percentage of entries that have been released in the segment.
+      double compactablePercentage = segment.count() > 0 ? segment.releaseCount() / (double) segment.count() : 0;
+
+      // If the percentage of entries released times the segment version meets the compaction threshold,
+      // select the segment for compaction.
+      double score = compactablePercentage * segment.descriptor().version();
+      boolean selected = score >= storage.compactionThreshold();
+      candidates.add(new CompactionPlan.Candidate(segment, score, selected));
+      if (selected) {
+        groups.add(Collections.singletonList(segment));
+      }
+    }
+    return new CompactionPlan(Compaction.MINOR, storage.compactionThreshold(), candidates, groups);
+  }
+
+  @Override
+  public List<CompactionTask> buildTasks(SegmentManager segments, CompactionPlan plan) {
+    List<CompactionTask> tasks = new ArrayList<>(plan.segmentGroups().size());
+    for (List<Segment> group : plan.segmentGroups()) {
+      for (Segment segment : group) {
+        tasks.add(new MinorCompactionTask(segments, segment, compactor.snapshotIndex(), compactor.majorIndex(), compactor.getDefaultCompactionMode(), compactor.throttle()));
+      }
     }
     return tasks;
   }
 
   /**
-   * Returns a list of compactable segments.
+   * Returns a list of segments that are eligible for minor compaction regardless of the number of entries released.
    *
-   * @return A list of compactable segments.
+   * @param manager The segment manager.
+   * @return A list of segments that are eligible for minor compaction.
    */
-  private Iterable<Segment> getCompactableSegments(Storage storage, SegmentManager manager) {
+  List<Segment> getCandidateSegments(SegmentManager manager) {
     List<Segment> segments = new ArrayList<>(manager.segments().size());
     Iterator<Segment> iterator = manager.segments().iterator();
     Segment segment = iterator.next();
@@ -88,14 +112,7 @@ public final class MinorCompactionManager implements CompactionManager {
       // of entries less than the minorIndex, and a later segment with at least one committed entry must exist in the log. This ensures that
       // a non-empty entry always remains at the end of the log.
       if (segment.isCompacted() || (segment.isFull() && segment.lastIndex() < compactor.minorIndex() && nextSegment.firstIndex() <= manager.commitIndex() && !nextSegment.isEmpty())) {
-        // Calculate the percentage of entries that have been released in the segment.
-        double compactablePercentage = segment.releaseCount() / (double) segment.count();
-
-        // If the percentage of entries released times the segment version meets the compaction threshold,
-        // add the segment to the segments list for compaction.
-        if (compactablePercentage * segment.descriptor().version() >= storage.compactionThreshold()) {
-          segments.add(segment);
-        }
+        segments.add(segment);
       }
 
       segment = nextSegment;
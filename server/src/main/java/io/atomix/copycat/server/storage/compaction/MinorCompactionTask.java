@@ -50,18 +50,32 @@ public final class MinorCompactionTask implements CompactionTask {
   private final long snapshotIndex;
   private final long compactIndex;
   private final Compaction.Mode defaultCompactionMode;
+  private final CompactionThrottle throttle;
+  private final CompactionTaskMetrics metrics;
 
-  MinorCompactionTask(SegmentManager manager, Segment segment, long snapshotIndex, long compactIndex, Compaction.Mode defaultCompactionMode) {
+  MinorCompactionTask(SegmentManager manager, Segment segment, long snapshotIndex, long compactIndex, Compaction.Mode defaultCompactionMode, CompactionThrottle throttle) {
     this.manager = Assert.notNull(manager, "manager");
     this.segment = Assert.notNull(segment, "segment");
     this.snapshotIndex = snapshotIndex;
     this.compactIndex = compactIndex;
     this.defaultCompactionMode = Assert.notNull(defaultCompactionMode, "defaultCompactionMode");
+    this.throttle = Assert.notNull(throttle, "throttle");
+    this.metrics = new CompactionTaskMetrics(toString(), Collections.singletonList(segment));
+  }
+
+  @Override
+  public CompactionTaskMetrics metrics() {
+    return metrics;
   }
 
   @Override
   public void run() {
-    compactSegments();
+    metrics.start();
+    try {
+      compactSegments();
+    } finally {
+      metrics.complete();
+    }
   }
 
   /**
@@ -75,6 +89,8 @@ public final class MinorCompactionTask implements CompactionTask {
       .withIndex(segment.descriptor().index())
       .withMaxSegmentSize(segment.descriptor().maxSegmentSize())
       .withMaxEntries(segment.descriptor().maxEntries())
+      .withChecksumType(manager.storage().checksumType())
+      .withCompressionType(manager.storage().compressionType())
       .build());
 
     compactEntries(segment, compactSegment);
@@ -110,9 +126,17 @@ public final class MinorCompactionTask implements CompactionTask {
    * @param compactSegment The segment to which to write the compacted segment.
    */
   private void checkEntry(long index, Segment segment, Segment compactSegment) {
+    // Live entries are retained regardless of their compaction mode, so their records can be copied to the
+    // compact segment without deserializing the entry.
+    if (segment.isLive(index)) {
+      transferEntry(index, compactSegment);
+      return;
+    }
+
     try (Entry entry = segment.get(index)) {
       // If an entry was found, only remove the entry from the segment if it's not a tombstone that has been released.
       if (entry != null) {
+        metrics.recordRead(entry.size());
         checkEntry(index, entry, segment, compactSegment);
       } else {
         compactSegment.skip(1);
@@ -140,7 +164,7 @@ public final class MinorCompactionTask implements CompactionTask {
         if (index <= snapshotIndex && !segment.isLive(index)) {
           compactEntry(index, segment, compactSegment);
         } else {
-          transferEntry(index, entry, compactSegment);
+          transferEntry(index, compactSegment);
         }
         break;
       // RELEASE and QUORUM entries are compacted if the entry has been released in the segment.
@@ -149,7 +173,7 @@ public final class MinorCompactionTask implements CompactionTask {
         if (!segment.isLive(index)) {
           compactEntry(index, segment, compactSegment);
         } else {
-          transferEntry(index, entry, compactSegment);
+          transferEntry(index, compactSegment);
         }
         break;
       // FULL entries are compacted if the major compact index is greater than the entry index
@@ -158,7 +182,7 @@ public final class MinorCompactionTask implements CompactionTask {
         if (index <= compactIndex && !segment.isLive(index)) {
           compactEntry(index, segment, compactSegment);
         } else {
-          transferEntry(index, entry, compactSegment);
+          transferEntry(index, compactSegment);
         }
         break;
       // SEQUENTIAL, EXPIRING, and TOMBSTONE entries can only be compacted during major compaction.
@@ -167,7 +191,7 @@ public final class MinorCompactionTask implements CompactionTask {
       case EXPIRING:
       case TOMBSTONE:
       case UNKNOWN:
-        transferEntry(index, entry, compactSegment);
+        transferEntry(index, compactSegment);
         break;
       default:
         break;
@@ -183,10 +207,16 @@ public final class MinorCompactionTask implements CompactionTask {
   }
 
   /**
-   * Transfers an entry to the given compact segment.
+   * Transfers an entry to the given compact segment, copying the entry's record without deserializing it.
    */
-  private void transferEntry(long index, Entry entry, Segment compactSegment) {
-    compactSegment.append(entry);
+  private void transferEntry(long index, Segment compactSegment) {
+    int size = segment.transfer(index, compactSegment);
+    if (size == -1) {
+      compactSegment.skip(1);
+      return;
+    }
+    throttle.acquire(size);
+    metrics.recordTransfer(size);
 
     // If the entry was released in the prior segment, mark it as released in the compact segment.
     if (!segment.isLive(index)) {
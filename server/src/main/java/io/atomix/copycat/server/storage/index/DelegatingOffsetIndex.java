@@ -23,10 +23,20 @@ import io.atomix.catalyst.buffer.Buffer;
  * @author <a href="http://github.com/kuujo>Jordan Halterman</a>
  */
 public class DelegatingOffsetIndex implements OffsetIndex {
+  private final int interval;
   private volatile OffsetIndex index;
 
   public DelegatingOffsetIndex(Buffer buffer) {
+    this(buffer, SearchableOffsetIndex.DEFAULT_INTERVAL);
+  }
+
+  /**
+   * @param buffer The buffer in which to store sequential offsets.
+   * @param interval The number of entries between sampled offsets once the index becomes sparse.
+   */
+  public DelegatingOffsetIndex(Buffer buffer, int interval) {
     this.index = new SequentialOffsetIndex(buffer);
+    this.interval = interval;
   }
 
   @Override
@@ -37,7 +47,9 @@ public class DelegatingOffsetIndex implements OffsetIndex {
   @Override
   public boolean index(long offset, long position) {
     if (!index.index(offset, position)) {
-      index = new SearchableOffsetIndex(index);
+      OffsetIndex sequentialIndex = index;
+      index = new SearchableOffsetIndex(sequentialIndex, interval);
+      sequentialIndex.close();
       return index.index(offset, position);
     }
     return true;
@@ -15,40 +15,98 @@
  */
 package io.atomix.copycat.server.storage.index;
 
-import io.atomix.catalyst.buffer.Buffer;
-import io.atomix.catalyst.buffer.FileBuffer;
-import io.atomix.catalyst.buffer.HeapBuffer;
-import io.atomix.catalyst.buffer.MappedBuffer;
 import io.atomix.catalyst.util.Assert;
 
+import java.util.Arrays;
+
 /**
  * Ordered offset index;
+ * <p>
+ * The searchable offset index indexes segments with gaps in their offsets, such as segments that have been compacted.
+ * Rather than storing the offset and position of every entry, the index samples every {@code interval}th entry.
+ * Sampled offsets and positions are stored in sorted primitive arrays, and the entries between samples are stored as
+ * variable-length deltas from the preceding entry. Because offsets and positions both increase monotonically and
+ * compacted segments tend to have small gaps, most entries require only a few bytes of heap.
+ * <p>
+ * To look up an offset, the index binary searches the samples and then decodes at most {@code interval - 1} deltas.
+ * The position of the most recent lookup is cached so that sequential lookups resume decoding where the previous
+ * lookup left off. Truncation locates the truncated entry in the same way and simply discards the samples and
+ * deltas that follow it.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
 public class SearchableOffsetIndex implements OffsetIndex {
-  private static final long MAX_POSITION = (long) Math.pow(2, 32) - 1;
-  private static final int OFFSET_SIZE = 8;
-  private static final int POSITION_SIZE = 4;
-  private static final int ENTRY_SIZE = OFFSET_SIZE + POSITION_SIZE;
 
-  private final Buffer buffer;
+  /**
+   * The default number of entries between sampled offsets.
+   */
+  public static final int DEFAULT_INTERVAL = 16;
+
+  private static final long MAX_POSITION = (long) Math.pow(2, 32) - 1;
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final int interval;
+  private long[] sampleOffsets = new long[INITIAL_CAPACITY];
+  private long[] samplePositions = new long[INITIAL_CAPACITY];
+  private int[] sampleDeltas = new int[INITIAL_CAPACITY];
+  private byte[] deltas = new byte[INITIAL_CAPACITY * 4];
+  private int samples;
+  private int deltasLength;
   private int size;
   private long lastOffset = -1;
-  private long currentOffset = -1;
-  private long currentMatch = -1;
+  private long tailOffset = -1;
+  private long tailPosition = -1;
+  private int readPosition;
+  private int currentMatch = -1;
+  private long currentOffset;
+  private long currentPosition;
+  private int currentDelta;
+
+  public SearchableOffsetIndex() {
+    this(DEFAULT_INTERVAL);
+  }
 
   /**
-   * @throws NullPointerException if {@code buffer} is null
+   * @param interval The number of entries between sampled offsets.
+   * @throws IllegalArgumentException if {@code interval} is not positive
+   */
+  public SearchableOffsetIndex(int interval) {
+    this.interval = Assert.arg(interval, interval > 0, "interval must be positive");
+  }
+
+  /**
+   * @throws NullPointerException if {@code index} is null
    */
   public SearchableOffsetIndex(OffsetIndex index) {
-    this.buffer = HeapBuffer.allocate();
-    for (long i = 0; i < index.size(); i++) {
-      this.buffer.writeLong(i).writeUnsignedInt(index.position(i));
-      size++;
+    this(index, DEFAULT_INTERVAL);
+  }
+
+  /**
+   * @param index The index from which to copy offsets.
+   * @param interval The number of entries between sampled offsets.
+   * @throws NullPointerException if {@code index} is null
+   * @throws IllegalArgumentException if {@code interval} is not positive
+   */
+  public SearchableOffsetIndex(OffsetIndex index, int interval) {
+    this(interval);
+    Assert.notNull(index, "index");
+    for (long offset = 0; size < index.size() && offset <= index.lastOffset(); offset++) {
+      long position = index.position(offset);
+      if (position != -1) {
+        index(offset, position);
+      }
     }
   }
 
+  /**
+   * Returns the number of entries between sampled offsets.
+   *
+   * @return The number of entries between sampled offsets.
+   */
+  public int interval() {
+    return interval;
+  }
+
   @Override
   public long lastOffset() {
     return lastOffset;
@@ -58,10 +116,27 @@ public class SearchableOffsetIndex implements OffsetIndex {
   public synchronized boolean index(long offset, long position) {
     Assert.argNot(offset, lastOffset > -1 && offset <= lastOffset, "offset cannot be less than or equal to the last offset in the index");
     Assert.argNot(position > MAX_POSITION, "position cannot be greater than " + MAX_POSITION);
-
-    buffer.writeLong(offset).writeUnsignedInt(position);
+    Assert.argNot(position, position < tailPosition, "position cannot be less than the last position in the index");
+
+    if (size % interval == 0) {
+      if (samples == sampleOffsets.length) {
+        int capacity = samples * 2;
+        sampleOffsets = Arrays.copyOf(sampleOffsets, capacity);
+        samplePositions = Arrays.copyOf(samplePositions, capacity);
+        sampleDeltas = Arrays.copyOf(sampleDeltas, capacity);
+      }
+      sampleOffsets[samples] = offset;
+      samplePositions[samples] = position;
+      sampleDeltas[samples] = deltasLength;
+      samples++;
+    } else {
+      writeDelta(offset - tailOffset);
+      writeDelta(position - tailPosition);
+    }
 
     size++;
+    tailOffset = offset;
+    tailPosition = position;
     lastOffset = offset;
     return true;
   }
@@ -83,135 +158,152 @@ public class SearchableOffsetIndex implements OffsetIndex {
 
   @Override
   public synchronized long position(long offset) {
-    long relativeOffset = find(offset);
-    return relativeOffset != -1 ? buffer.readUnsignedInt(relativeOffset * ENTRY_SIZE + OFFSET_SIZE) : -1;
+    return floor(offset) != -1 && currentOffset == offset ? currentPosition : -1;
   }
 
   @Override
   public synchronized long find(long offset) {
-    if (size == 0) {
-      return -1;
-    }
-
-    if (offset == currentOffset) {
-      return currentMatch;
-    } else if (currentOffset != -1 && currentMatch + 1 < size && buffer.readLong((currentMatch + 1) * ENTRY_SIZE) == offset) {
-      currentOffset = offset;
-      return ++currentMatch;
-    }
-
-    int lo = 0;
-    int hi = size - 1;
-
-    while (lo < hi) {
-      int mid = lo + (hi - lo) / 2;
-      long i = buffer.readLong(mid * ENTRY_SIZE);
-      if (i == offset) {
-        currentOffset = offset;
-        currentMatch = mid;
-        return mid;
-      } else if (lo == mid) {
-        i = buffer.readLong(hi * ENTRY_SIZE);
-        if (i == offset) {
-          currentOffset = offset;
-          currentMatch = hi;
-          return hi;
-        }
-        return -1;
-      } else if (i < offset) {
-        lo = mid;
-      } else {
-        hi = mid - 1;
-      }
-    }
-
-    if (buffer.readLong(hi * ENTRY_SIZE) == offset) {
-      currentOffset = offset;
-      currentMatch = hi;
-      return hi;
-    }
-    return -1;
+    int match = floor(offset);
+    return match != -1 && currentOffset == offset ? match : -1;
   }
 
   /**
-   * Returns the real offset for the given relative offset.
+   * Positions the lookup cursor at the last entry with an offset less than or equal to the given offset.
+   *
+   * @return The ordinal of the entry or {@code -1} if no entry precedes the given offset.
    */
-  private long findAfter(long offset) {
-    if (size == 0) {
+  private int floor(long offset) {
+    if (size == 0 || offset < sampleOffsets[0]) {
       return -1;
     }
 
-    int low  = 0;
-    int high = size-1;
+    int sample = Arrays.binarySearch(sampleOffsets, 0, samples, offset);
+    if (sample < 0) {
+      sample = -sample - 2;
+    }
 
-    while (low <= high) {
-      int mid = low + ((high - low) / 2);
+    // Resume decoding from the previous lookup if it's in the same sample and precedes the offset.
+    int match;
+    long matchOffset;
+    long matchPosition;
+    int matchDelta;
+    if (currentMatch != -1 && currentMatch / interval == sample && currentOffset <= offset) {
+      match = currentMatch;
+      matchOffset = currentOffset;
+      matchPosition = currentPosition;
+      matchDelta = currentDelta;
+    } else {
+      match = sample * interval;
+      matchOffset = sampleOffsets[sample];
+      matchPosition = samplePositions[sample];
+      matchDelta = sampleDeltas[sample];
+    }
 
-      long i = buffer.readLong(mid * ENTRY_SIZE);
-      if (i < offset) {
-        low = mid + 1;
-      } else if (i > offset) {
-        high = mid - 1;
-      } else {
-        return mid;
+    int end = Math.min(size, (sample + 1) * interval);
+    while (match + 1 < end) {
+      readPosition = matchDelta;
+      long nextOffset = matchOffset + readDelta();
+      if (nextOffset > offset) {
+        break;
       }
+      matchOffset = nextOffset;
+      matchPosition += readDelta();
+      matchDelta = readPosition;
+      match++;
     }
 
-    return (low < high) ? low + 1 : high + 1;
+    currentMatch = match;
+    currentOffset = matchOffset;
+    currentPosition = matchPosition;
+    currentDelta = matchDelta;
+    return match;
   }
 
   @Override
-  public long truncate(long offset) {
+  public synchronized long truncate(long offset) {
     if (offset == lastOffset)
       return -1;
 
     if (offset == -1) {
-      buffer.position(0).zero();
-      currentOffset = currentMatch = lastOffset = -1;
+      samples = 0;
+      deltasLength = 0;
+      size = 0;
+      currentMatch = -1;
+      lastOffset = tailOffset = tailPosition = -1;
       return 0;
     }
 
-    long nearestOffset = findAfter(offset + 1);
-
-    if (nearestOffset == -1)
+    // Find the last entry to retain and the position of the first entry following it.
+    int match = floor(offset);
+    int next = match + 1;
+    if (next >= size) {
+      lastOffset = offset;
       return -1;
+    }
 
-    long nearestIndex = nearestOffset * ENTRY_SIZE;
-
-    long lastOffset = lastOffset();
-    for (long i = lastOffset; i > offset; i--) {
-      if (position(i) != -1) {
-        size--;
-      }
+    long position;
+    if (next % interval == 0) {
+      position = samplePositions[next / interval];
+    } else {
+      readPosition = currentDelta;
+      readDelta();
+      position = currentPosition + readDelta();
     }
 
-    long position = buffer.readUnsignedInt(nearestIndex + OFFSET_SIZE);
+    size = next;
+    samples = (size + interval - 1) / interval;
+    if (match == -1) {
+      deltasLength = 0;
+      currentMatch = -1;
+      tailOffset = tailPosition = -1;
+    } else {
+      deltasLength = currentDelta;
+      tailOffset = currentOffset;
+      tailPosition = currentPosition;
+    }
+    lastOffset = offset;
+    return position;
+  }
 
-    buffer.position(nearestIndex)
-      .zero(nearestIndex);
-    this.lastOffset = offset;
-    currentOffset = currentMatch = -1;
+  /**
+   * Writes an unsigned variable-length delta to the deltas array.
+   */
+  private void writeDelta(long value) {
+    if (deltasLength + 10 > deltas.length) {
+      deltas = Arrays.copyOf(deltas, deltas.length * 2);
+    }
+    while ((value & ~0x7FL) != 0) {
+      deltas[deltasLength++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    deltas[deltasLength++] = (byte) value;
+  }
 
-    return position;
+  /**
+   * Reads an unsigned variable-length delta from the deltas array at the read position.
+   */
+  private long readDelta() {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = deltas[readPosition++];
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
   }
 
   @Override
   public void flush() {
-    buffer.flush();
   }
 
   @Override
   public void close() {
-    buffer.close();
   }
 
   @Override
   public void delete() {
-    if (buffer instanceof FileBuffer) {
-      ((FileBuffer) buffer).delete();
-    } else if (buffer instanceof MappedBuffer) {
-      ((MappedBuffer) buffer).delete();
-    }
   }
 
 }
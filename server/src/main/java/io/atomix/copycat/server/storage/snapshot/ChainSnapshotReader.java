@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package io.atomix.copycat.server.storage.snapshot;
+
+import io.atomix.catalyst.buffer.HeapBuffer;
+import io.atomix.catalyst.serializer.Serializer;
+import io.atomix.catalyst.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Snapshot reader that merges the records of a chain of delta snapshots.
+ * <p>
+ * The chain reader performs a k-way merge over readers of each snapshot in the chain. Records are written to each
+ * snapshot in ascending key order, so the reader only holds the next record of each snapshot in memory. For records
+ * with the same key, the record from the latest snapshot in the chain supersedes the others, and removed records
+ * are omitted. Merged records are written to a small buffer as the reader is read, so the merged chain is never
+ * materialized in memory.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+final class ChainSnapshotReader extends SnapshotReader {
+  private final HeapBuffer window;
+  private final Snapshot snapshot;
+  private final Serializer serializer;
+  private final List<Snapshot> chain;
+  private final List<Cursor> cursors;
+  private final PriorityQueue<Cursor> queue;
+  private byte[] key;
+  private byte[] value;
+  private long produced;
+
+  ChainSnapshotReader(List<Snapshot> chain, Snapshot snapshot, Serializer serializer) {
+    this(HeapBuffer.allocate(1024, Integer.MAX_VALUE), chain, snapshot, serializer);
+  }
+
+  private ChainSnapshotReader(HeapBuffer window, List<Snapshot> chain, Snapshot snapshot, Serializer serializer) {
+    super(window.flip(), snapshot, serializer);
+    this.window = window;
+    this.snapshot = snapshot;
+    this.serializer = serializer;
+    this.chain = chain;
+    this.cursors = new ArrayList<>(chain.size());
+    this.queue = new PriorityQueue<>(Math.max(chain.size(), 1), (a, b) -> {
+      int compare = SnapshotWriter.compareKeys(a.key, b.key);
+      return compare != 0 ? compare : Integer.compare(b.rank, a.rank);
+    });
+
+    try {
+      for (int i = 0; i < chain.size(); i++) {
+        Cursor cursor = new Cursor(chain.get(i).readSnapshot(), i);
+        cursors.add(cursor);
+        cursor.advance();
+      }
+    } catch (RuntimeException e) {
+      cursors.forEach(c -> c.reader.close());
+      throw e;
+    }
+  }
+
+  /**
+   * Advances the reader to the next merged record.
+   *
+   * @return Indicates whether a record was read. If {@code true}, the record is available via {@link #key()} and
+   * {@link #value()}.
+   */
+  boolean nextRecord() {
+    while (!queue.isEmpty()) {
+      // Records with equal keys are ordered from the latest snapshot to the earliest, so the first record wins.
+      Cursor cursor = queue.poll();
+      byte[] key = cursor.key;
+      byte[] value = cursor.value;
+      cursor.advance();
+      while (!queue.isEmpty() && SnapshotWriter.compareKeys(queue.peek().key, key) == 0) {
+        queue.poll().advance();
+      }
+
+      if (value != null) {
+        this.key = key;
+        this.value = value;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the key of the current merged record.
+   */
+  byte[] key() {
+    return key;
+  }
+
+  /**
+   * Returns the value of the current merged record.
+   */
+  byte[] value() {
+    return value;
+  }
+
+  @Override
+  void fill(long bytes) {
+    if (window.remaining() >= bytes || queue.isEmpty()) {
+      return;
+    }
+
+    byte[] remaining = new byte[(int) window.remaining()];
+    window.read(remaining);
+    window.clear().write(remaining);
+
+    long size = remaining.length;
+    while (size < bytes && nextRecord()) {
+      window.writeInt(key.length).write(key).writeInt(value.length).write(value);
+      long length = Integer.BYTES * 2 + key.length + value.length;
+      size += length;
+      produced += length;
+    }
+    window.flip();
+  }
+
+  @Override
+  public long remaining() {
+    return length() - (produced - window.remaining());
+  }
+
+  @Override
+  public SnapshotReader skip(long bytes) {
+    // Skip through the merged records without buffering all skipped bytes.
+    while (bytes > 0) {
+      fill(1);
+      long skip = Math.min(bytes, window.remaining());
+      Assert.index(skip > 0, "cannot skip beyond the end of the snapshot");
+      window.skip(skip);
+      bytes -= skip;
+    }
+    return this;
+  }
+
+  /**
+   * Returns the total length of the merged records, computing it with a separate merge if necessary.
+   */
+  private long length() {
+    long length = snapshot.chainLength;
+    if (length == -1) {
+      length = 0;
+      try (ChainSnapshotReader reader = new ChainSnapshotReader(HeapBuffer.allocate(1), chain, snapshot, serializer)) {
+        while (reader.nextRecord()) {
+          length += Integer.BYTES * 2 + reader.key.length + reader.value.length;
+        }
+      }
+      snapshot.chainLength = length;
+    }
+    return length;
+  }
+
+  @Override
+  public void close() {
+    cursors.forEach(cursor -> cursor.reader.close());
+    super.close();
+  }
+
+  /**
+   * Cursor over the records of a single snapshot in the chain.
+   */
+  private final class Cursor {
+    private final SnapshotReader reader;
+    private final int rank;
+    private byte[] key;
+    private byte[] value;
+
+    private Cursor(SnapshotReader reader, int rank) {
+      this.reader = reader;
+      this.rank = rank;
+    }
+
+    /**
+     * Reads the next record from the snapshot and enqueues the cursor if a record remains.
+     */
+    private void advance() {
+      if (reader.hasRemaining()) {
+        key = reader.readRecordBytes();
+        value = reader.readRecordBytes();
+        queue.add(this);
+      }
+    }
+  }
+
+}
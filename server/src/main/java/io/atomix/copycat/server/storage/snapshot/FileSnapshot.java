@@ -30,11 +30,13 @@ import java.nio.file.Path;
  */
 final class FileSnapshot extends Snapshot {
   private final SnapshotFile file;
+  private final long previousIndex;
   private final SnapshotStore store;
 
-  FileSnapshot(SnapshotFile file, SnapshotStore store) {
+  FileSnapshot(SnapshotFile file, long previousIndex, SnapshotStore store) {
     super(store);
     this.file = Assert.notNull(file, "file");
+    this.previousIndex = previousIndex;
     this.store = Assert.notNull(store, "store");
   }
 
@@ -48,12 +50,18 @@ final class FileSnapshot extends Snapshot {
     return file.timestamp();
   }
 
+  @Override
+  public long previousIndex() {
+    return previousIndex;
+  }
+
   @Override
   public synchronized SnapshotWriter writer() {
     checkWriter();
     SnapshotDescriptor descriptor = SnapshotDescriptor.builder()
       .withIndex(file.index())
       .withTimestamp(file.timestamp())
+      .withPreviousIndex(previousIndex)
       .build();
 
     Buffer buffer = FileBuffer.allocate(file.file(), SnapshotDescriptor.BYTES);
@@ -71,7 +79,12 @@ final class FileSnapshot extends Snapshot {
   }
 
   @Override
-  public synchronized SnapshotReader reader() {
+  public SnapshotReader reader() {
+    return isDelta() ? store.openChainReader(this) : readSnapshot();
+  }
+
+  @Override
+  synchronized SnapshotReader readSnapshot() {
     Assert.state(file.file().exists(), "missing snapshot file: %s", file.file());
     Buffer buffer = FileBuffer.allocate(file.file(), SnapshotDescriptor.BYTES);
     SnapshotDescriptor descriptor = new SnapshotDescriptor(buffer);
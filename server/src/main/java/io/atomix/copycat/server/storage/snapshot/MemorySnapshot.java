@@ -15,20 +15,25 @@
  */
 package io.atomix.copycat.server.storage.snapshot;
 
-import io.atomix.catalyst.buffer.HeapBuffer;
+import io.atomix.catalyst.buffer.Buffer;
 import io.atomix.catalyst.util.Assert;
 
 /**
- * In-memory snapshot backed by a {@link HeapBuffer}.
+ * In-memory snapshot backed by a {@link io.atomix.catalyst.buffer.HeapBuffer} or, for
+ * {@link io.atomix.copycat.server.storage.StorageLevel#OFFHEAP off-heap} storage, an
+ * {@link io.atomix.copycat.server.storage.util.OffHeapBuffer}.
+ * <p>
+ * Readers and writers hold a reference to the snapshot buffer, so closing the snapshot while a reader is open
+ * defers freeing off-heap memory until the reader is closed.
  *
  * @author <a href="http://github.com/kuujo>Jordan Halterman</a>
  */
 final class MemorySnapshot extends Snapshot {
-  private final HeapBuffer buffer;
+  private final Buffer buffer;
   private final SnapshotDescriptor descriptor;
   private final SnapshotStore store;
 
-  MemorySnapshot(HeapBuffer buffer, SnapshotDescriptor descriptor, SnapshotStore store) {
+  MemorySnapshot(Buffer buffer, SnapshotDescriptor descriptor, SnapshotStore store) {
     super(store);
     buffer.mark();
     this.buffer = Assert.notNull(buffer, "buffer");
@@ -47,6 +52,11 @@ final class MemorySnapshot extends Snapshot {
     return descriptor.timestamp();
   }
 
+  @Override
+  public long previousIndex() {
+    return descriptor.previousIndex();
+  }
+
   @Override
   public SnapshotWriter writer() {
     checkWriter();
@@ -60,7 +70,12 @@ final class MemorySnapshot extends Snapshot {
   }
 
   @Override
-  public synchronized SnapshotReader reader() {
+  public SnapshotReader reader() {
+    return isDelta() ? store.openChainReader(this) : readSnapshot();
+  }
+
+  @Override
+  synchronized SnapshotReader readSnapshot() {
     return openReader(new SnapshotReader(buffer.reset().slice(), this, store.serializer()), descriptor);
   }
 
@@ -73,7 +88,7 @@ final class MemorySnapshot extends Snapshot {
 
   @Override
   public void close() {
-    buffer.close();
+    buffer.release();
   }
 
   @Override
@@ -27,8 +27,9 @@ import io.atomix.catalyst.util.Assert;
  * {@link io.atomix.copycat.server.storage.StorageLevel} configuration. Snapshots for file-based storage
  * levels like {@link io.atomix.copycat.server.storage.StorageLevel#DISK DISK} and
  * {@link io.atomix.copycat.server.storage.StorageLevel#MAPPED MAPPED} will be stored in a {@link java.io.RandomAccessFile}
- * backed buffer, and {@link io.atomix.copycat.server.storage.StorageLevel#MEMORY MEMORY} snapshots will
- * be stored in an on-heap buffer.
+ * backed buffer, {@link io.atomix.copycat.server.storage.StorageLevel#MEMORY MEMORY} snapshots will
+ * be stored in an on-heap buffer, and {@link io.atomix.copycat.server.storage.StorageLevel#OFFHEAP OFFHEAP}
+ * snapshots will be stored in an off-heap buffer.
  * <p>
  * Snapshots are read and written by a {@link SnapshotReader} and {@link SnapshotWriter} respectively.
  * To create a reader or writer, use the {@link #reader()} and {@link #writer()} methods.
@@ -48,6 +49,11 @@ import io.atomix.catalyst.util.Assert;
  * are met. Prior to the completion of a snapshot, a failure and recovery of the parent {@link SnapshotStore}
  * will <em>not</em> recover an incomplete snapshot. Once a snapshot is complete, the snapshot becomes immutable,
  * can be recovered after a failure, and can be read by multiple readers concurrently.
+ * <p>
+ * A {@link #isDelta() delta} snapshot created via {@link SnapshotStore#createDeltaSnapshot(long)} records only the
+ * state changed since the {@link #previousIndex() previous} snapshot as {@link SnapshotWriter#writeRecord(Object, Object) records}.
+ * Readers of a delta snapshot present the records of the full snapshot at the base of the chain merged with the
+ * records of each delta in the chain.
  *
  * @author <a href="http://github.com/kuujo>Jordan Halterman</a>
  */
@@ -78,6 +84,24 @@ public abstract class Snapshot implements AutoCloseable {
    */
   public abstract long timestamp();
 
+  /**
+   * Returns the index of the snapshot on which this snapshot is based.
+   *
+   * @return The index of the previous snapshot in the snapshot's chain or {@code 0} if the snapshot is a full snapshot.
+   */
+  public long previousIndex() {
+    return 0;
+  }
+
+  /**
+   * Returns a boolean value indicating whether the snapshot is a delta of a previous snapshot.
+   *
+   * @return Indicates whether the snapshot is a delta snapshot.
+   */
+  public boolean isDelta() {
+    return previousIndex() != 0;
+  }
+
   /**
    * Returns a new snapshot writer.
    * <p>
@@ -126,6 +150,21 @@ public abstract class Snapshot implements AutoCloseable {
    */
   public abstract SnapshotReader reader();
 
+  /**
+   * The length of the merged records of a delta snapshot's chain, computed the first time it's required by a reader.
+   */
+  volatile long chainLength = -1;
+
+  /**
+   * Returns a new reader for the contents of this snapshot alone.
+   * <p>
+   * Unlike {@link #reader()}, the returned reader does not merge delta snapshots with the snapshots on which
+   * they're based.
+   */
+  SnapshotReader readSnapshot() {
+    return reader();
+  }
+
   /**
    * Opens the given snapshot reader.
    */
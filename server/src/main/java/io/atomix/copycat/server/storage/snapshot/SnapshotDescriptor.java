@@ -26,6 +26,9 @@ import io.atomix.catalyst.util.Assert;
  * Snapshot descriptors represent the header of a snapshot file which stores metadata about
  * the snapshot contents. This API provides methods for reading and a builder for writing
  * snapshot headers/descriptors.
+ * <p>
+ * Descriptors of delta snapshots additionally store the {@link #previousIndex() index} of the snapshot on which the
+ * delta is based. Full snapshots have a previous index of {@code 0}.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
@@ -58,6 +61,7 @@ public final class SnapshotDescriptor implements AutoCloseable {
   private final long index;
   private final long timestamp;
   private boolean locked;
+  private final long previousIndex;
 
   /**
    * @throws NullPointerException if {@code buffer} is null
@@ -67,6 +71,7 @@ public final class SnapshotDescriptor implements AutoCloseable {
     this.index = buffer.readLong();
     this.timestamp = buffer.readLong();
     this.locked = buffer.readBoolean();
+    this.previousIndex = buffer.readLong();
     buffer.skip(BYTES - buffer.position());
   }
 
@@ -88,6 +93,15 @@ public final class SnapshotDescriptor implements AutoCloseable {
     return timestamp;
   }
 
+  /**
+   * Returns the index of the snapshot on which the snapshot is based.
+   *
+   * @return The index of the previous snapshot in the snapshot's chain or {@code 0} if the snapshot is a full snapshot.
+   */
+  public long previousIndex() {
+    return previousIndex;
+  }
+
   /**
    * Returns whether the snapshot has been locked by commitment.
    * <p>
@@ -117,6 +131,7 @@ public final class SnapshotDescriptor implements AutoCloseable {
       .writeLong(index)
       .writeLong(timestamp)
       .writeBoolean(locked)
+      .writeLong(previousIndex)
       .skip(BYTES - buffer.position())
       .flush();
     return this;
@@ -167,6 +182,17 @@ public final class SnapshotDescriptor implements AutoCloseable {
       return this;
     }
 
+    /**
+     * Sets the index of the snapshot on which a delta snapshot is based.
+     *
+     * @param previousIndex The index of the previous snapshot or {@code 0} for a full snapshot.
+     * @return The snapshot builder.
+     */
+    public Builder withPreviousIndex(long previousIndex) {
+      buffer.writeLong(17, previousIndex);
+      return this;
+    }
+
     /**
      * Builds the segment descriptor.
      *
@@ -16,10 +16,12 @@
 package io.atomix.copycat.server.storage.snapshot;
 
 import java.nio.charset.Charset;
+import java.util.function.BiConsumer;
 
 import io.atomix.catalyst.buffer.Buffer;
 import io.atomix.catalyst.buffer.BufferInput;
 import io.atomix.catalyst.buffer.Bytes;
+import io.atomix.catalyst.buffer.HeapBuffer;
 import io.atomix.catalyst.serializer.Serializer;
 import io.atomix.catalyst.util.Assert;
 
@@ -33,6 +35,11 @@ import io.atomix.catalyst.util.Assert;
  * In addition to standard {@link BufferInput} methods, snapshot readers support reading serializable objects
  * from the snapshot via the {@link #readObject()} method. Serializable types must be registered on the
  * {@link io.atomix.copycat.server.CopycatServer} serializer to be supported in snapshots.
+ * <p>
+ * Snapshots written as keyed {@link SnapshotWriter#writeRecord(Object, Object) records} are read via
+ * {@link #readRecords(BiConsumer)}. When reading a {@link Snapshot#isDelta() delta} snapshot, the reader presents
+ * the merged records of the full snapshot at the base of the delta's chain and each delta in the chain. Merged
+ * records are produced incrementally as they're read, in ascending order of their serialized keys.
  *
  * @author <a href="http://github.com/kuujo>Jordan Halterman</a>
  */
@@ -47,6 +54,17 @@ public class SnapshotReader implements BufferInput<SnapshotReader> {
     this.serializer = Assert.notNull(serializer, "serializer");
   }
 
+  /**
+   * Ensures that at least the given number of bytes can be read from the buffer if they remain in the snapshot.
+   * <p>
+   * Readers that produce snapshot bytes incrementally override this method to fill the buffer as it's read. Bytes
+   * are always produced in whole records, so once any byte of a record is readable the entire record is readable.
+   *
+   * @param bytes The number of bytes to make readable.
+   */
+  void fill(long bytes) {
+  }
+
   @Override
   public long remaining() {
     return buffer.remaining();
@@ -54,6 +72,7 @@ public class SnapshotReader implements BufferInput<SnapshotReader> {
 
   @Override
   public boolean hasRemaining() {
+    fill(1);
     return buffer.hasRemaining();
   }
 
@@ -70,116 +89,170 @@ public class SnapshotReader implements BufferInput<SnapshotReader> {
    * @return The read object.
    */
   public <T> T readObject() {
+    fill(1);
     return serializer.readObject(buffer);
   }
 
+  /**
+   * Reads the remaining keyed records from the snapshot.
+   *
+   * @param consumer The consumer to which to pass each record's key and value.
+   * @param <K> The record key type.
+   * @param <V> The record value type.
+   * @return The snapshot reader.
+   */
+  public <K, V> SnapshotReader readRecords(BiConsumer<K, V> consumer) {
+    while (hasRemaining()) {
+      byte[] key = readRecordBytes();
+      byte[] value = readRecordBytes();
+      consumer.accept(serializer.readObject(HeapBuffer.wrap(key)), value != null ? serializer.readObject(HeapBuffer.wrap(value)) : null);
+    }
+    return this;
+  }
+
+  /**
+   * Reads a length-prefixed record key or value.
+   *
+   * @return The record bytes or {@code null} if the record was removed.
+   */
+  byte[] readRecordBytes() {
+    int length = readInt();
+    if (length == -1) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    read(bytes);
+    return bytes;
+  }
+
   @Override
   public SnapshotReader read(Bytes bytes) {
+    fill(bytes.size());
     buffer.read(bytes);
     return this;
   }
 
   @Override
   public SnapshotReader read(byte[] bytes) {
+    fill(bytes.length);
     buffer.read(bytes);
     return this;
   }
 
   @Override
   public SnapshotReader read(Bytes bytes, long offset, long length) {
+    fill(length);
     buffer.read(bytes, offset, length);
     return this;
   }
 
   @Override
   public SnapshotReader read(byte[] bytes, long offset, long length) {
+    fill(length);
     buffer.read(bytes, offset, length);
     return this;
   }
 
   @Override
   public SnapshotReader read(Buffer buffer) {
+    fill(buffer.remaining());
     this.buffer.read(buffer);
     return this;
   }
 
   @Override
   public int readByte() {
+    fill(Byte.BYTES);
     return buffer.readByte();
   }
 
   @Override
   public int readUnsignedByte() {
+    fill(Byte.BYTES);
     return buffer.readUnsignedByte();
   }
 
   @Override
   public char readChar() {
+    fill(Character.BYTES);
     return buffer.readChar();
   }
 
   @Override
   public short readShort() {
+    fill(Short.BYTES);
     return buffer.readShort();
   }
 
   @Override
   public int readUnsignedShort() {
+    fill(Short.BYTES);
     return buffer.readUnsignedShort();
   }
 
   @Override
   public int readMedium() {
+    fill(3);
     return buffer.readMedium();
   }
 
   @Override
   public int readUnsignedMedium() {
+    fill(3);
     return buffer.readUnsignedMedium();
   }
 
   @Override
   public int readInt() {
+    fill(Integer.BYTES);
     return buffer.readInt();
   }
 
   @Override
   public long readUnsignedInt() {
+    fill(Integer.BYTES);
     return buffer.readUnsignedInt();
   }
 
   @Override
   public long readLong() {
+    fill(Long.BYTES);
     return buffer.readLong();
   }
 
   @Override
   public float readFloat() {
+    fill(Float.BYTES);
     return buffer.readFloat();
   }
 
   @Override
   public double readDouble() {
+    fill(Double.BYTES);
     return buffer.readDouble();
   }
 
   @Override
   public boolean readBoolean() {
+    fill(1);
     return buffer.readBoolean();
   }
 
   @Override
   public String readString() {
+    fill(1);
     return buffer.readString();
   }
 
   @Override
   public String readString(Charset charset) {
+    fill(1);
     return buffer.readString(charset);
   }
 
   @Override
   public String readUTF8() {
+    fill(1);
     return buffer.readUTF8();
   }
 
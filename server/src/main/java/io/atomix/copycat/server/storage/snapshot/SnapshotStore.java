@@ -17,16 +17,22 @@ package io.atomix.copycat.server.storage.snapshot;
 
 import io.atomix.catalyst.buffer.FileBuffer;
 import io.atomix.catalyst.buffer.HeapBuffer;
+import io.atomix.catalyst.concurrent.CatalystThreadFactory;
 import io.atomix.catalyst.serializer.Serializer;
 import io.atomix.catalyst.util.Assert;
 import io.atomix.copycat.Command;
 import io.atomix.copycat.server.storage.Storage;
 import io.atomix.copycat.server.storage.StorageLevel;
+import io.atomix.copycat.server.storage.util.OffHeapBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Persists server snapshots via the {@link Storage} module.
@@ -67,6 +73,26 @@ import java.util.*;
  * the state machine state, only prior entries that contributed to the state stored in the snapshot -
  * commands marked with the {@link Command.CompactionMode#SNAPSHOT SNAPSHOT}
  * compaction mode - are removed from the log prior to the snapshot.
+ * <p>
+ * For large state that changes slowly, rewriting the full state on each snapshot is wasteful. Snapshots written as
+ * keyed {@link SnapshotWriter#writeRecord(Object, Object) records} can be followed by delta snapshots, created via
+ * {@link #createDeltaSnapshot(long)}, that write only the records changed since the {@link #currentSnapshot() current}
+ * snapshot. The store tracks the chain of deltas back to the full snapshot on which they're based, and
+ * {@link Snapshot#reader() readers} of a delta snapshot present the merged records of the chain by streaming a
+ * merge of the records of each snapshot in the chain. Once a chain grows
+ * beyond {@link Storage#maxSnapshotDeltas()} deltas, it's {@link #consolidateSnapshot() consolidated} into a full
+ * snapshot at the same index in a background thread.
+ * <p>
+ * <pre>
+ *   {@code
+ *   Snapshot snapshot = snapshots.createDeltaSnapshot(20);
+ *   try (SnapshotWriter writer = snapshot.writer()) {
+ *     writer.removeRecord("bar");
+ *     writer.writeRecord("foo", "baz");
+ *   }
+ *   snapshot.complete();
+ *   }
+ * </pre>
  *
  * @author <a href="http://github.com/kuujo>Jordan Halterman</a>
  */
@@ -77,6 +103,8 @@ public class SnapshotStore implements AutoCloseable {
   private final Serializer serializer;
   private final TreeMap<Long, Snapshot> snapshots = new TreeMap<>();
   private Snapshot currentSnapshot;
+  private ExecutorService consolidator;
+  private boolean consolidating;
 
   public SnapshotStore(String name, Storage storage, Serializer serializer) {
     this.name = Assert.notNull(name, "name");
@@ -90,7 +118,30 @@ public class SnapshotStore implements AutoCloseable {
    */
   private void open() {
     for (Snapshot snapshot : loadSnapshots()) {
-      snapshots.put(snapshot.index(), snapshot);
+      // If a chain was consolidated but the delta it replaced was not deleted before a failure, prefer the full snapshot.
+      Snapshot existing = snapshots.get(snapshot.index());
+      if (existing != null && !existing.isDelta()) {
+        snapshot.close();
+        snapshot.delete();
+      } else {
+        if (existing != null) {
+          existing.close();
+          existing.delete();
+        }
+        snapshots.put(snapshot.index(), snapshot);
+      }
+    }
+
+    // Delete delta snapshots whose chains can no longer be read.
+    Iterator<Snapshot> iterator = snapshots.values().iterator();
+    while (iterator.hasNext()) {
+      Snapshot snapshot = iterator.next();
+      if (snapshot.isDelta() && !snapshots.containsKey(snapshot.previousIndex())) {
+        LOGGER.debug("Deleting delta snapshot with missing previous snapshot: {}", snapshot.index());
+        iterator.remove();
+        snapshot.close();
+        snapshot.delete();
+      }
     }
 
     if (!snapshots.isEmpty()) {
@@ -116,7 +167,7 @@ public class SnapshotStore implements AutoCloseable {
    *
    * @return The most recent completed snapshot.
    */
-  public Snapshot currentSnapshot() {
+  public synchronized Snapshot currentSnapshot() {
     return currentSnapshot;
   }
 
@@ -129,8 +180,8 @@ public class SnapshotStore implements AutoCloseable {
    *
    * @return A collection of all snapshots.
    */
-  public Collection<Snapshot> snapshots() {
-    return snapshots.values();
+  public synchronized Collection<Snapshot> snapshots() {
+    return new ArrayList<>(snapshots.values());
   }
 
   /**
@@ -139,7 +190,7 @@ public class SnapshotStore implements AutoCloseable {
    * @param index The snapshot index.
    * @return The snapshot.
    */
-  public Snapshot snapshot(long index) {
+  public synchronized Snapshot snapshot(long index) {
     return snapshots.get(index);
   }
 
@@ -166,7 +217,7 @@ public class SnapshotStore implements AutoCloseable {
         // unlocked and should ultimately be deleted from disk.
         if (descriptor.locked()) {
           LOGGER.debug("Loaded disk snapshot: {} ({})", snapshotFile.index(), snapshotFile.file().getName());
-          snapshots.add(new FileSnapshot(snapshotFile, this));
+          snapshots.add(new FileSnapshot(snapshotFile, descriptor.previousIndex(), this));
           descriptor.close();
         }
         // If the segment descriptor wasn't locked, close and delete the descriptor.
@@ -195,12 +246,38 @@ public class SnapshotStore implements AutoCloseable {
     return createSnapshot(descriptor);
   }
 
+  /**
+   * Creates a new delta snapshot based on the {@link #currentSnapshot() current} snapshot.
+   * <p>
+   * The delta snapshot should be written as {@link SnapshotWriter#writeRecord(Object, Object) records} changed or
+   * {@link SnapshotWriter#removeRecord(Object) removed} since the current snapshot, which must itself have been
+   * written as records. Once completed, readers of the delta snapshot present the records of the current snapshot
+   * merged with the records written to the delta.
+   *
+   * @param index The snapshot index.
+   * @return The delta snapshot.
+   * @throws IllegalStateException if no snapshot has been completed
+   * @throws IllegalArgumentException if {@code index} is not greater than the current snapshot index
+   */
+  public synchronized Snapshot createDeltaSnapshot(long index) {
+    Assert.state(currentSnapshot != null, "no snapshot on which to base delta snapshot");
+    Assert.arg(index > currentSnapshot.index(), "delta snapshot index must be greater than current snapshot index");
+    SnapshotDescriptor descriptor = SnapshotDescriptor.builder()
+      .withIndex(index)
+      .withTimestamp(System.currentTimeMillis())
+      .withPreviousIndex(currentSnapshot.index())
+      .build();
+    return createSnapshot(descriptor);
+  }
+
   /**
    * Creates a new snapshot buffer.
    */
   private Snapshot createSnapshot(SnapshotDescriptor descriptor) {
     if (storage.level() == StorageLevel.MEMORY) {
       return createMemorySnapshot(descriptor);
+    } else if (storage.level() == StorageLevel.OFFHEAP) {
+      return createOffHeapSnapshot(descriptor);
     } else {
       return createDiskSnapshot(descriptor);
     }
@@ -216,43 +293,181 @@ public class SnapshotStore implements AutoCloseable {
     return snapshot;
   }
 
+  /**
+   * Creates an off-heap memory snapshot.
+   */
+  private Snapshot createOffHeapSnapshot(SnapshotDescriptor descriptor) {
+    OffHeapBuffer buffer = OffHeapBuffer.allocate(SnapshotDescriptor.BYTES, Integer.MAX_VALUE);
+    Snapshot snapshot = new MemorySnapshot(buffer, descriptor.copyTo(buffer), this);
+    LOGGER.debug("Created off-heap snapshot: {}", snapshot);
+    return snapshot;
+  }
+
   /**
    * Creates a disk snapshot.
    */
   private Snapshot createDiskSnapshot(SnapshotDescriptor descriptor) {
     SnapshotFile file = new SnapshotFile(SnapshotFile.createSnapshotFile(name, storage.directory(), descriptor.index(), descriptor.timestamp()));
-    Snapshot snapshot = new FileSnapshot(file, this);
+    Snapshot snapshot = new FileSnapshot(file, descriptor.previousIndex(), this);
     LOGGER.debug("Created disk snapshot: {}", snapshot);
     return snapshot;
   }
 
+  /**
+   * Returns the chain of snapshots on which the given snapshot is based, starting with the full snapshot.
+   */
+  private synchronized List<Snapshot> chain(Snapshot snapshot) {
+    LinkedList<Snapshot> chain = new LinkedList<>();
+    chain.addFirst(snapshot);
+    while (snapshot.isDelta()) {
+      Snapshot previous = snapshots.get(snapshot.previousIndex());
+      Assert.state(previous != null, "missing snapshot %d on which snapshot %d is based", snapshot.previousIndex(), snapshot.index());
+      chain.addFirst(previous);
+      snapshot = previous;
+    }
+    return chain;
+  }
+
+  /**
+   * Opens a reader presenting the merged records of the chain of snapshots ending with the given delta snapshot.
+   */
+  SnapshotReader openChainReader(Snapshot snapshot) {
+    return new ChainSnapshotReader(chain(snapshot), snapshot, serializer);
+  }
+
+  /**
+   * Consolidates the chain of the current snapshot into a full snapshot in a background thread.
+   * <p>
+   * The consolidated snapshot is written at the same index as the current snapshot and replaces it once complete.
+   * Snapshots in the consolidated chain are deleted unless {@link Storage#retainStaleSnapshots() stale snapshots}
+   * are retained. If the current snapshot is not a delta snapshot, the returned future is completed immediately.
+   *
+   * @return A completable future to be completed with the consolidated snapshot.
+   */
+  public synchronized CompletableFuture<Snapshot> consolidateSnapshot() {
+    Snapshot snapshot = currentSnapshot;
+    if (snapshot == null || !snapshot.isDelta()) {
+      return CompletableFuture.completedFuture(snapshot);
+    }
+
+    if (consolidator == null) {
+      consolidator = Executors.newSingleThreadExecutor(new CatalystThreadFactory("copycat-snapshot-consolidator-%d"));
+    }
+
+    consolidating = true;
+    CompletableFuture<Snapshot> future = new CompletableFuture<>();
+    consolidator.execute(() -> {
+      try {
+        future.complete(consolidate(snapshot));
+      } catch (Exception e) {
+        LOGGER.warn("Failed to consolidate snapshot {}", snapshot.index(), e);
+        future.completeExceptionally(e);
+      } finally {
+        synchronized (this) {
+          consolidating = false;
+        }
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Writes the merged records of the given snapshot's chain to a full snapshot at the same index.
+   */
+  private Snapshot consolidate(Snapshot snapshot) {
+    List<Snapshot> chain = chain(snapshot);
+
+    // The consolidated snapshot has the same index as the snapshot it replaces, so ensure its file name is unique.
+    long timestamp = System.currentTimeMillis();
+    if (storage.level() == StorageLevel.DISK || storage.level() == StorageLevel.MAPPED) {
+      while (SnapshotFile.createSnapshotFile(name, storage.directory(), snapshot.index(), timestamp).exists()) {
+        timestamp += 1000;
+      }
+    }
+
+    Snapshot consolidated = createSnapshot(SnapshotDescriptor.builder()
+      .withIndex(snapshot.index())
+      .withTimestamp(timestamp)
+      .build());
+    try (ChainSnapshotReader reader = new ChainSnapshotReader(chain, snapshot, serializer);
+         SnapshotWriter writer = consolidated.writer()) {
+      while (reader.nextRecord()) {
+        writer.writeRecordBytes(reader.key());
+        writer.writeRecordBytes(reader.value());
+      }
+    }
+    LOGGER.debug("Consolidated {} snapshot(s) into snapshot {}", chain.size(), snapshot.index());
+    return consolidated.complete();
+  }
+
   /**
    * Completes writing a snapshot.
    */
-  protected void completeSnapshot(Snapshot snapshot) {
+  protected synchronized void completeSnapshot(Snapshot snapshot) {
     Assert.notNull(snapshot, "snapshot");
-    snapshots.put(snapshot.index(), snapshot);
+    Assert.state(!snapshot.isDelta() || snapshots.containsKey(snapshot.previousIndex()), "missing snapshot %d on which snapshot %d is based", snapshot.previousIndex(), snapshot.index());
+    Snapshot replaced = snapshots.put(snapshot.index(), snapshot);
 
-    if (currentSnapshot == null || snapshot.index() > currentSnapshot.index()) {
+    if (currentSnapshot == null || snapshot.index() > currentSnapshot.index() || replaced == currentSnapshot) {
       currentSnapshot = snapshot;
     }
 
-    // Delete old snapshots if necessary.
+    // Delete a snapshot replaced by consolidation. Deltas based on the replaced snapshot are based on its replacement.
+    if (replaced != null && replaced != snapshot) {
+      replaced.close();
+      replaced.delete();
+    }
+
+    // Delete old snapshots if necessary, retaining the snapshots on which the current snapshot is based.
     if (!storage.retainStaleSnapshots()) {
+      Set<Long> chain = new HashSet<>();
+      for (Snapshot chainSnapshot : chain(currentSnapshot)) {
+        chain.add(chainSnapshot.index());
+      }
+
       Iterator<Map.Entry<Long, Snapshot>> iterator = snapshots.entrySet().iterator();
       while (iterator.hasNext()) {
         Snapshot oldSnapshot = iterator.next().getValue();
-        if (oldSnapshot.index() < currentSnapshot.index()) {
+        if (oldSnapshot.index() < currentSnapshot.index() && !chain.contains(oldSnapshot.index())) {
           iterator.remove();
           oldSnapshot.close();
           oldSnapshot.delete();
         }
       }
     }
+
+    // If the current snapshot's chain has grown too long, consolidate it in the background.
+    if (!consolidating && currentSnapshot.isDelta() && chain(currentSnapshot).size() - 1 > storage.maxSnapshotDeltas()) {
+      consolidateSnapshot();
+    }
   }
 
   @Override
   public void close() {
+    // Allow a running consolidation to complete before closing snapshots.
+    ExecutorService consolidator;
+    synchronized (this) {
+      consolidator = this.consolidator;
+    }
+    if (consolidator != null) {
+      consolidator.shutdown();
+      try {
+        consolidator.awaitTermination(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    // Off-heap snapshots are not reclaimed by the garbage collector, so free their memory when the store is closed.
+    synchronized (this) {
+      if (storage.level() == StorageLevel.OFFHEAP) {
+        for (Snapshot snapshot : snapshots.values()) {
+          snapshot.close();
+        }
+        snapshots.clear();
+        currentSnapshot = null;
+      }
+    }
   }
 
   @Override
@@ -16,10 +16,14 @@
 package io.atomix.copycat.server.storage.snapshot;
 
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import io.atomix.catalyst.buffer.Buffer;
 import io.atomix.catalyst.buffer.BufferOutput;
 import io.atomix.catalyst.buffer.Bytes;
+import io.atomix.catalyst.buffer.HeapBuffer;
 import io.atomix.catalyst.serializer.Serializer;
 import io.atomix.catalyst.util.Assert;
 
@@ -33,6 +37,13 @@ import io.atomix.catalyst.util.Assert;
  * In addition to standard {@link BufferOutput} methods, snapshot readers support writing serializable objects
  * to the snapshot via the {@link #writeObject(Object)} method. Serializable types must be registered on the
  * {@link io.atomix.copycat.server.CopycatServer} serializer to be supported in snapshots.
+ * <p>
+ * Alternatively, snapshots can be written as a set of keyed {@link #writeRecord(Object, Object) records}. Snapshots
+ * written as records can be followed by {@link SnapshotStore#createDeltaSnapshot(long) delta snapshots} that write
+ * only the records changed since the previous snapshot. A snapshot must be written either entirely as records or
+ * entirely via the other write methods. Records must be written in ascending order of their serialized keys, which
+ * allows the records of a chain of snapshots to be merged by streaming each snapshot in order. Records that are
+ * not already sorted can be written via {@link #writeRecords(Map)}.
  *
  * @author <a href="http://github.com/kuujo>Jordan Halterman</a>
  */
@@ -40,6 +51,7 @@ public class SnapshotWriter implements BufferOutput<SnapshotWriter> {
   final Buffer buffer;
   private final Snapshot snapshot;
   private final Serializer serializer;
+  private byte[] lastKey;
 
   SnapshotWriter(Buffer buffer, Snapshot snapshot, Serializer serializer) {
     this.buffer = Assert.notNull(buffer, "buffer");
@@ -58,6 +70,108 @@ public class SnapshotWriter implements BufferOutput<SnapshotWriter> {
     return this;
   }
 
+  /**
+   * Writes a keyed record to the snapshot.
+   * <p>
+   * When the snapshot is read, a record supersedes any record with the same key in the snapshots on which the
+   * snapshot is based. Keys are compared by their serialized form, and each record's serialized key must be greater
+   * than the key of the previous record written to the snapshot.
+   *
+   * @param key The record key.
+   * @param value The record value or {@code null} to remove the record.
+   * @return The snapshot writer.
+   * @throws NullPointerException if {@code key} is null
+   * @throws IllegalArgumentException if the key is not greater than the previous record's key
+   */
+  public SnapshotWriter writeRecord(Object key, Object value) {
+    return writeRecord(serialize(Assert.notNull(key, "key")), value != null ? serialize(value) : null);
+  }
+
+  /**
+   * Writes a map of keyed records to the snapshot.
+   * <p>
+   * The records are sorted by their serialized keys before being written, so the map can be written in any order.
+   * Sorting requires the serialized records to be held in memory, so large snapshots should be written in order via
+   * {@link #writeRecord(Object, Object)} where possible.
+   *
+   * @param records The records to write. Records with a {@code null} value are written as removals.
+   * @return The snapshot writer.
+   * @throws NullPointerException if {@code records} is null
+   * @throws IllegalArgumentException if a key is not greater than the key of a record previously written
+   */
+  public SnapshotWriter writeRecords(Map<?, ?> records) {
+    List<byte[][]> serialized = new ArrayList<>(Assert.notNull(records, "records").size());
+    for (Map.Entry<?, ?> record : records.entrySet()) {
+      serialized.add(new byte[][]{serialize(Assert.notNull(record.getKey(), "key")), record.getValue() != null ? serialize(record.getValue()) : null});
+    }
+    serialized.sort((a, b) -> compareKeys(a[0], b[0]));
+    for (byte[][] record : serialized) {
+      writeRecord(record[0], record[1]);
+    }
+    return this;
+  }
+
+  /**
+   * Writes a serialized record, asserting that its key is greater than the key of the previous record.
+   */
+  private SnapshotWriter writeRecord(byte[] key, byte[] value) {
+    Assert.arg(lastKey == null || compareKeys(key, lastKey) > 0, "records must be written in ascending key order");
+    writeRecordBytes(key);
+    writeRecordBytes(value);
+    lastKey = key;
+    return this;
+  }
+
+  /**
+   * Compares two serialized record keys lexicographically by unsigned byte value.
+   */
+  static int compareKeys(byte[] a, byte[] b) {
+    int length = Math.min(a.length, b.length);
+    for (int i = 0; i < length; i++) {
+      int compare = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+      if (compare != 0) {
+        return compare;
+      }
+    }
+    return Integer.compare(a.length, b.length);
+  }
+
+  /**
+   * Removes a keyed record from the snapshot.
+   * <p>
+   * Removals are only meaningful in {@link Snapshot#isDelta() delta} snapshots, where they remove the record from
+   * the snapshots on which the delta is based.
+   *
+   * @param key The key of the record to remove.
+   * @return The snapshot writer.
+   * @throws NullPointerException if {@code key} is null
+   */
+  public SnapshotWriter removeRecord(Object key) {
+    return writeRecord(key, null);
+  }
+
+  /**
+   * Serializes the given object to a byte array.
+   */
+  private byte[] serialize(Object object) {
+    Buffer buffer = serializer.writeObject(object, HeapBuffer.allocate()).flip();
+    byte[] bytes = new byte[(int) buffer.remaining()];
+    buffer.read(bytes);
+    buffer.release();
+    return bytes;
+  }
+
+  /**
+   * Writes a length-prefixed record key or value, or a removed value if the bytes are {@code null}.
+   */
+  void writeRecordBytes(byte[] bytes) {
+    if (bytes != null) {
+      buffer.writeInt(bytes.length).write(bytes);
+    } else {
+      buffer.writeInt(-1);
+    }
+  }
+
   @Override
   public SnapshotWriter write(Bytes bytes) {
     buffer.write(bytes);
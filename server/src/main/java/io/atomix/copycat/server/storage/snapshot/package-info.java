@@ -22,7 +22,8 @@
  * Copycat interacts with snapshots primarily through the {@link io.atomix.copycat.server.storage.snapshot.SnapshotStore}
  * which is responsible for storing and loading snapshots. Each snapshot is stored as a separate file
  * on disk, and old snapshots may or may not be retained depending on the {@link io.atomix.copycat.server.storage.Storage}
- * configuration.
+ * configuration. Snapshots written as keyed records may be followed by chains of delta snapshots that record
+ * only the state changed since the previous snapshot.
  *
  * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
  */
@@ -60,7 +60,7 @@ public class MetaStore implements AutoCloseable {
     File metaFile = new File(storage.directory(), String.format("%s.meta", name));
     FileBuffer tmpMetadataBuffer = FileBuffer.allocate(metaFile, 12);
 
-    if (storage.level() == StorageLevel.MEMORY) {
+    if (storage.level() == StorageLevel.MEMORY || storage.level() == StorageLevel.OFFHEAP) {
       configurationBuffer = HeapBuffer.allocate(32);
     } else {
       File confFile = new File(storage.directory(), String.format("%s.conf", name));
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package io.atomix.copycat.server.storage.util;
+
+import io.atomix.catalyst.util.Assert;
+import io.atomix.copycat.server.storage.entry.Entry;
+
+/**
+ * Byte-bounded cache of the entries most recently appended to the log.
+ * <p>
+ * The entry cache holds a contiguous range of entries at the tail of the log in a ring buffer. As entries are
+ * appended, the oldest entries are evicted once the total {@link Entry#size() serialized size} of cached entries
+ * exceeds the maximum cache size. Because only the tail of the log is cached, lookups are constant time and
+ * entries read from older parts of the log never displace the entries that followers are most likely to need.
+ * <p>
+ * The cache retains a reference to each cached entry, so entries returned by {@link #get(long)} are
+ * {@link Entry#acquire() acquired} and must be released by the caller. The cache tracks hit, miss, and eviction
+ * counts for monitoring.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class EntryCache {
+  private static final int INITIAL_CAPACITY = 16;
+  private final long maxSize;
+  private Entry[] entries = new Entry[INITIAL_CAPACITY];
+  private int head;
+  private int count;
+  private long firstIndex;
+  private long size;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * @param maxSize The maximum total size of cached entries in bytes.
+   * @throws IllegalArgumentException if {@code maxSize} is negative
+   */
+  public EntryCache(long maxSize) {
+    this.maxSize = Assert.arg(maxSize, maxSize >= 0, "maxSize cannot be negative");
+  }
+
+  /**
+   * Appends an entry to the cache.
+   * <p>
+   * If the entry does not immediately follow the last cached entry, the cache is cleared before the entry is
+   * cached. Entries larger than the maximum cache size are not cached.
+   *
+   * @param entry The entry to append.
+   * @return The entry cache.
+   */
+  public synchronized EntryCache append(Entry entry) {
+    if (count > 0 && entry.getIndex() != firstIndex + count) {
+      clear();
+    }
+
+    if (entry.size() > maxSize) {
+      clear();
+      return this;
+    }
+
+    if (count == entries.length) {
+      grow();
+    }
+
+    if (count == 0) {
+      firstIndex = entry.getIndex();
+    }
+    entries[(head + count) % entries.length] = entry.acquire();
+    count++;
+    size += entry.size();
+
+    // Evict the oldest entries until the cache fits within the maximum size.
+    while (size > maxSize) {
+      evict();
+    }
+    return this;
+  }
+
+  /**
+   * Looks up an entry in the cache.
+   *
+   * @param index The entry index.
+   * @param <T> The entry type.
+   * @return The entry or {@code null} if the entry is not present in the cache.
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized <T extends Entry> T get(long index) {
+    if (index < firstIndex || index >= firstIndex + count) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return (T) entries[(head + (int) (index - firstIndex)) % entries.length].acquire();
+  }
+
+  /**
+   * Removes all entries with indexes greater than the given index from the cache.
+   *
+   * @param index The index after which to remove entries.
+   * @return The entry cache.
+   */
+  public synchronized EntryCache truncate(long index) {
+    while (count > 0 && firstIndex + count - 1 > index) {
+      int offset = (head + count - 1) % entries.length;
+      Entry entry = entries[offset];
+      entries[offset] = null;
+      size -= entry.size();
+      count--;
+      entry.release();
+    }
+    return this;
+  }
+
+  /**
+   * Clears the cache.
+   *
+   * @return The entry cache.
+   */
+  public synchronized EntryCache clear() {
+    while (count > 0) {
+      Entry entry = entries[head];
+      entries[head] = null;
+      head = (head + 1) % entries.length;
+      count--;
+      entry.release();
+    }
+    head = 0;
+    size = 0;
+    return this;
+  }
+
+  /**
+   * Evicts the oldest entry from the cache.
+   */
+  private void evict() {
+    Entry entry = entries[head];
+    entries[head] = null;
+    head = (head + 1) % entries.length;
+    count--;
+    firstIndex++;
+    size -= entry.size();
+    evictions++;
+    entry.release();
+  }
+
+  /**
+   * Doubles the capacity of the ring buffer.
+   */
+  private void grow() {
+    Entry[] entries = new Entry[this.entries.length * 2];
+    for (int i = 0; i < count; i++) {
+      entries[i] = this.entries[(head + i) % this.entries.length];
+    }
+    this.entries = entries;
+    this.head = 0;
+  }
+
+  /**
+   * Returns the maximum total size of cached entries in bytes.
+   *
+   * @return The maximum cache size in bytes.
+   */
+  public long maxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns the total size of cached entries in bytes.
+   *
+   * @return The cache size in bytes.
+   */
+  public synchronized long size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of cached entries.
+   *
+   * @return The number of cached entries.
+   */
+  public synchronized int count() {
+    return count;
+  }
+
+  /**
+   * Returns the number of lookups that found an entry in the cache.
+   *
+   * @return The number of cache hits.
+   */
+  public synchronized long hits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of lookups that did not find an entry in the cache.
+   *
+   * @return The number of cache misses.
+   */
+  public synchronized long misses() {
+    return misses;
+  }
+
+  /**
+   * Returns the number of entries evicted from the cache to make room for newer entries.
+   *
+   * @return The number of cache evictions.
+   */
+  public synchronized long evictions() {
+    return evictions;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%s[count=%d, size=%d, hits=%d, misses=%d, evictions=%d]", getClass().getSimpleName(), count, size, hits, misses, evictions);
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package io.atomix.copycat.server.storage.util;
+
+import io.atomix.catalyst.buffer.Bytes;
+import io.atomix.catalyst.buffer.UnsafeDirectBuffer;
+import io.atomix.catalyst.buffer.UnsafeDirectBytes;
+import io.atomix.catalyst.buffer.util.DirectMemory;
+import io.atomix.catalyst.buffer.util.DirectMemoryAllocator;
+import io.atomix.catalyst.buffer.util.Memory;
+import io.atomix.catalyst.buffer.util.NativeMemory;
+import io.atomix.catalyst.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Growable off-heap buffer.
+ * <p>
+ * Off-heap buffers are allocated outside of the Java heap via {@link sun.misc.Unsafe} and are freed explicitly when
+ * the buffer is {@link #close() closed} rather than by the garbage collector. This buffer differs from
+ * {@link UnsafeDirectBuffer#allocate(long, long)} only in how memory is reallocated as the buffer grows: the
+ * catalyst allocator zeroes the head of reallocated memory rather than the newly allocated tail, which corrupts the
+ * contents of buffers that grow beyond their initial capacity. Off-heap buffers instead allocate zeroed memory and
+ * copy the existing contents.
+ * <p>
+ * Memory that has been replaced by a reallocation is not freed until the buffer is closed, since other threads may
+ * still be reading from slices of the buffer or from the old memory address. Because buffers grow by doubling their
+ * capacity, the replaced memory never exceeds the current capacity of the buffer.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+public class OffHeapBuffer extends UnsafeDirectBuffer {
+  private static final Allocator ALLOCATOR = new Allocator();
+
+  /**
+   * Allocates a new off-heap buffer.
+   *
+   * @param initialCapacity The initial capacity of the buffer in bytes.
+   * @param maxCapacity The maximum capacity of the buffer in bytes.
+   * @return The off-heap buffer.
+   * @throws IllegalArgumentException if {@code initialCapacity} is greater than {@code maxCapacity}
+   */
+  public static OffHeapBuffer allocate(long initialCapacity, long maxCapacity) {
+    Assert.argNot(initialCapacity > maxCapacity, "initial capacity cannot be greater than maximum capacity");
+    return new OffHeapBuffer(new OffHeapBytes(ALLOCATOR.allocate(Memory.Util.toPow2(initialCapacity))), initialCapacity, maxCapacity);
+  }
+
+  private OffHeapBuffer(OffHeapBytes bytes, long initialCapacity, long maxCapacity) {
+    super(bytes, 0, initialCapacity, maxCapacity);
+  }
+
+  /**
+   * Off-heap bytes backed by memory from the off-heap allocator.
+   * <p>
+   * The bytes retain the memory replaced by each resize and free it along with the current memory once closed.
+   */
+  private static final class OffHeapBytes extends UnsafeDirectBytes {
+    private final List<NativeMemory> retired = new ArrayList<>();
+
+    private OffHeapBytes(DirectMemory memory) {
+      super(memory);
+    }
+
+    @Override
+    public Bytes resize(long newSize) {
+      NativeMemory memory = this.memory;
+      super.resize(newSize);
+      synchronized (retired) {
+        retired.add(memory);
+      }
+      return this;
+    }
+
+    @Override
+    public void close() {
+      super.close();
+      synchronized (retired) {
+        retired.forEach(NativeMemory::free);
+        retired.clear();
+      }
+    }
+  }
+
+  /**
+   * Direct memory allocator that preserves the contents of reallocated memory.
+   * <p>
+   * The reallocated memory is not freed by the allocator. It's instead retained by the {@link OffHeapBytes} until
+   * the bytes are closed.
+   */
+  private static final class Allocator extends DirectMemoryAllocator {
+    @Override
+    public DirectMemory reallocate(NativeMemory memory, long size) {
+      DirectMemory reallocated = allocate(size);
+      reallocated.unsafe().copyMemory(memory.address(), reallocated.address(), Math.min(memory.size(), size));
+      return reallocated;
+    }
+  }
+
+}
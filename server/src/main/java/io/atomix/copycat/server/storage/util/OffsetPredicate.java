@@ -15,31 +15,46 @@
  */
 package io.atomix.copycat.server.storage.util;
 
-import io.atomix.catalyst.buffer.util.BitArray;
 import io.atomix.catalyst.util.Assert;
 
+import java.util.Arrays;
 import java.util.function.Predicate;
 
 /**
  * Segment offset liveness predicate.
  * <p>
- * The offset predicate tracks the liveness of relative offsets within a segment. Liveness is tracked
- * in a {@link BitArray} that is resized to accommodate offsets as necessary. Each bit in the array
- * represents the liveness of a relative offset in the segment. When an offset is
- * {@link #release(long) released} from a segment, the bit at that offset is flipped in the bit array.
- * {@link #test(Long) Testing} the predicate indicates whether an offset is still live in the segment.
+ * The offset predicate tracks the liveness of relative offsets within a segment. When an offset is
+ * {@link #release(long) released} from a segment, the offset is added to a compressed bitmap of released
+ * offsets. {@link #test(Long) Testing} the predicate indicates whether an offset is still live in the segment.
+ * <p>
+ * Released offsets are partitioned into chunks of {@code 65536} offsets by the high bits of each offset. Each
+ * chunk is stored in a container suited to its density: chunks with few released offsets are stored as a sorted
+ * array of the low 16 bits of each offset, and chunks with more than {@code 4096} released offsets are stored as
+ * a fixed {@code 8KB} bitmap. A segment with sparse releases therefore uses a few bytes per released offset rather
+ * than a bit for every offset in the segment.
+ * <p>
+ * {@link #copy() Copies} share containers with the predicate from which they were copied. A shared container is
+ * never modified; the first release into a shared container copies the container. Copying a predicate therefore
+ * only copies the container references, and each chunk is copied at most once for each side that modifies it.
  *
  * @author <a href="http://github.com/kuujo>Jordan Halterman</a>
  */
 public final class OffsetPredicate implements Predicate<Long>, AutoCloseable {
-  private final BitArray bits;
+  private static final int INITIAL_CAPACITY = 4;
+  private int[] keys;
+  private Container[] containers;
+  private int size;
+  private long count;
 
   public OffsetPredicate() {
-    this(BitArray.allocate(1024));
+    this(new int[INITIAL_CAPACITY], new Container[INITIAL_CAPACITY], 0, 0);
   }
 
-  OffsetPredicate(BitArray bits) {
-    this.bits = Assert.notNull(bits, "bits");
+  private OffsetPredicate(int[] keys, Container[] containers, int size, long count) {
+    this.keys = keys;
+    this.containers = containers;
+    this.size = size;
+    this.count = count;
   }
 
   /**
@@ -49,8 +64,14 @@ public final class OffsetPredicate implements Predicate<Long>, AutoCloseable {
    * @return Indicates whether the given offset is live.
    */
   @Override
-  public boolean test(Long offset) {
-    return offset != -1 && (bits.size() <= offset || !bits.get(offset));
+  public synchronized boolean test(Long offset) {
+    if (offset == -1) {
+      return false;
+    } else if (offset < 0) {
+      return true;
+    }
+    int i = Arrays.binarySearch(keys, 0, size, key(offset));
+    return i < 0 || !containers[i].contains((char) (long) offset);
   }
 
   /**
@@ -59,14 +80,51 @@ public final class OffsetPredicate implements Predicate<Long>, AutoCloseable {
    * @param offset The offset to release.
    * @return Indicates whether the offset was newly released.
    */
-  public boolean release(long offset) {
+  public synchronized boolean release(long offset) {
     Assert.argNot(offset < 0, "offset must be positive");
-    if (bits.size() <= offset) {
-      while (bits.size() <= offset) {
-        bits.resize(bits.size() * 2);
-      }
+    int key = key(offset);
+    char low = (char) offset;
+
+    int i = Arrays.binarySearch(keys, 0, size, key);
+    if (i < 0) {
+      i = -i - 1;
+      insert(i, key);
+    }
+
+    Container container = containers[i];
+    if (container.contains(low)) {
+      return false;
     }
-    return bits.set(offset);
+
+    // Never modify a container that's shared with a copy of the predicate.
+    if (container.shared) {
+      container = container.copy();
+    }
+    containers[i] = container.add(low);
+    count++;
+    return true;
+  }
+
+  /**
+   * Inserts an empty container for the given key at the given position.
+   */
+  private void insert(int i, int key) {
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, size * 2);
+      containers = Arrays.copyOf(containers, size * 2);
+    }
+    System.arraycopy(keys, i, keys, i + 1, size - i);
+    System.arraycopy(containers, i, containers, i + 1, size - i);
+    keys[i] = key;
+    containers[i] = new ArrayContainer();
+    size++;
+  }
+
+  /**
+   * Returns the container key for the given offset.
+   */
+  private static int key(long offset) {
+    return (int) (offset >>> 16);
   }
 
   /**
@@ -74,22 +132,136 @@ public final class OffsetPredicate implements Predicate<Long>, AutoCloseable {
    *
    * @return The number of offsets released from the segment.
    */
-  public long count() {
-    return bits.count();
+  public synchronized long count() {
+    return count;
   }
 
   /**
    * Copies the offset predicate.
+   * <p>
+   * The copy shares the underlying containers with this predicate until either predicate is modified.
    *
    * @return The copied offset predicate.
    */
-  public OffsetPredicate copy() {
-    return new OffsetPredicate(bits.copy());
+  public synchronized OffsetPredicate copy() {
+    for (int i = 0; i < size; i++) {
+      containers[i].shared = true;
+    }
+    int capacity = Math.max(size, INITIAL_CAPACITY);
+    return new OffsetPredicate(Arrays.copyOf(keys, capacity), Arrays.copyOf(containers, capacity), size, count);
   }
 
   @Override
-  public void close() {
-    bits.close();
+  public synchronized void close() {
+    keys = new int[INITIAL_CAPACITY];
+    containers = new Container[INITIAL_CAPACITY];
+    size = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%s[count=%d, containers=%d]", getClass().getSimpleName(), count, size);
+  }
+
+  /**
+   * Container of the low 16 bits of released offsets in a chunk.
+   */
+  private static abstract class Container {
+    boolean shared;
+
+    /**
+     * Returns a boolean indicating whether the container contains the given value.
+     */
+    abstract boolean contains(char value);
+
+    /**
+     * Adds a value that's not present in the container, returning the container to use in place of this container.
+     */
+    abstract Container add(char value);
+
+    /**
+     * Returns an unshared copy of the container.
+     */
+    abstract Container copy();
+  }
+
+  /**
+   * Container that stores a sorted array of values.
+   */
+  private static final class ArrayContainer extends Container {
+    private static final int MAX_SIZE = 4096;
+    private char[] values;
+    private int size;
+
+    private ArrayContainer() {
+      this(new char[INITIAL_CAPACITY], 0);
+    }
+
+    private ArrayContainer(char[] values, int size) {
+      this.values = values;
+      this.size = size;
+    }
+
+    @Override
+    boolean contains(char value) {
+      return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    @Override
+    Container add(char value) {
+      if (size == MAX_SIZE) {
+        BitmapContainer bitmap = new BitmapContainer();
+        for (int i = 0; i < size; i++) {
+          bitmap.add(values[i]);
+        }
+        return bitmap.add(value);
+      }
+
+      int i = -Arrays.binarySearch(values, 0, size, value) - 1;
+      if (size == values.length) {
+        values = Arrays.copyOf(values, Math.min(size * 2, MAX_SIZE));
+      }
+      System.arraycopy(values, i, values, i + 1, size - i);
+      values[i] = value;
+      size++;
+      return this;
+    }
+
+    @Override
+    Container copy() {
+      return new ArrayContainer(Arrays.copyOf(values, values.length), size);
+    }
+  }
+
+  /**
+   * Container that stores values in a fixed size bitmap.
+   */
+  private static final class BitmapContainer extends Container {
+    private final long[] bits;
+
+    private BitmapContainer() {
+      this(new long[1024]);
+    }
+
+    private BitmapContainer(long[] bits) {
+      this.bits = bits;
+    }
+
+    @Override
+    boolean contains(char value) {
+      return (bits[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    Container add(char value) {
+      bits[value >>> 6] |= 1L << value;
+      return this;
+    }
+
+    @Override
+    Container copy() {
+      return new BitmapContainer(bits.clone());
+    }
   }
 
 }
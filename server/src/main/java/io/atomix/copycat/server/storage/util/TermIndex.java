@@ -15,8 +15,7 @@
  */
 package io.atomix.copycat.server.storage.util;
 
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 /**
  * Log entry term index.
@@ -26,25 +25,29 @@ import java.util.TreeMap;
  * we can assume that if entry {@code n}'s term is {@code t} then entry {@code n + 1}'s term
  * will be {@code t} or greater.
  * <p>
- * The implementation of the term index uses a {@link TreeMap} to store a map of offsets to
- * terms. To look up the term for any given offset, we use {@code map.floorEntry(offset)}
- * to loop up the term for the offset.
+ * The implementation of the term index stores the first offset of each term and the term itself
+ * in a pair of sorted primitive arrays. To look up the term for any given offset, we binary search
+ * the offsets for the greatest offset less than or equal to the given offset.
  * <p>
- * This class is thread safe.
+ * This class is thread safe. Terms change rarely relative to the number of lookups, so reads are
+ * lock-free: the arrays are published through a volatile reference to an immutable view of the
+ * index. Writers are serialized. Appending a new term writes into spare capacity beyond the end of
+ * every published view, while any other modification copies the arrays.
  *
  * @author <a href="http://github.com/kuujo>Jordan Halterman</a>
  */
 public final class TermIndex {
-  private final TreeMap<Long, Long> terms = new TreeMap<>();
+  private static final int INITIAL_CAPACITY = 8;
+  private volatile Terms terms = new Terms(new long[INITIAL_CAPACITY], new long[INITIAL_CAPACITY], 0);
 
   /**
    * Returns the highest term in the index.
    *
    * @return The highest term in the index.
    */
-  public synchronized long term() {
-    Map.Entry<Long, Long> entry = terms.lastEntry();
-    return entry != null ? entry.getValue() : 0;
+  public long term() {
+    Terms terms = this.terms;
+    return terms.size > 0 ? terms.terms[terms.size - 1] : 0;
   }
 
   /**
@@ -54,9 +57,40 @@ public final class TermIndex {
    * @param term The term to index.
    */
   public synchronized void index(long offset, long term) {
-    if (lookup(offset) != term) {
-      terms.put(offset, term);
+    Terms terms = this.terms;
+    int i = terms.floor(offset);
+    if ((i >= 0 ? terms.terms[i] : 0) == term) {
+      return;
     }
+
+    // Fast path: the offset follows the last indexed offset and there's spare capacity in the arrays.
+    if (i == terms.size - 1 && (i == -1 || terms.offsets[i] != offset) && terms.size < terms.offsets.length) {
+      terms.offsets[terms.size] = offset;
+      terms.terms[terms.size] = term;
+      this.terms = new Terms(terms.offsets, terms.terms, terms.size + 1);
+      return;
+    }
+
+    // Replace the term at an existing offset or insert a new offset after the floor offset.
+    boolean replace = i >= 0 && terms.offsets[i] == offset;
+    int size = replace ? terms.size : terms.size + 1;
+    int capacity = Math.max(terms.offsets.length, INITIAL_CAPACITY);
+    while (capacity < size) {
+      capacity *= 2;
+    }
+
+    long[] offsets = Arrays.copyOf(terms.offsets, capacity);
+    long[] values = Arrays.copyOf(terms.terms, capacity);
+    if (replace) {
+      values[i] = term;
+    } else {
+      int position = i + 1;
+      System.arraycopy(terms.offsets, position, offsets, position + 1, terms.size - position);
+      System.arraycopy(terms.terms, position, values, position + 1, terms.size - position);
+      offsets[position] = offset;
+      values[position] = term;
+    }
+    this.terms = new Terms(offsets, values, size);
   }
 
   /**
@@ -65,9 +99,51 @@ public final class TermIndex {
    * @param offset The offset for which to look up the term.
    * @return The term for the entry at the given offset.
    */
-  public synchronized long lookup(long offset) {
-    Map.Entry<Long, Long> entry = terms.floorEntry(offset);
-    return entry != null ? entry.getValue() : 0;
+  public long lookup(long offset) {
+    Terms terms = this.terms;
+    int i = terms.floor(offset);
+    return i >= 0 ? terms.terms[i] : 0;
+  }
+
+  /**
+   * Returns the number of terms in the index.
+   *
+   * @return The number of terms in the index.
+   */
+  public int size() {
+    return terms.size;
+  }
+
+  /**
+   * Returns the first offset of the term at the given position in the index.
+   * <p>
+   * Positional accessors do not provide a consistent view of the index while it's being modified.
+   *
+   * @param i The position of the term in the index.
+   * @return The first offset of the term at the given position.
+   */
+  public long offset(int i) {
+    Terms terms = this.terms;
+    if (i < 0 || i >= terms.size) {
+      throw new IndexOutOfBoundsException("invalid term position: " + i);
+    }
+    return terms.offsets[i];
+  }
+
+  /**
+   * Returns the term at the given position in the index.
+   * <p>
+   * Positional accessors do not provide a consistent view of the index while it's being modified.
+   *
+   * @param i The position of the term in the index.
+   * @return The term at the given position.
+   */
+  public long term(int i) {
+    Terms terms = this.terms;
+    if (i < 0 || i >= terms.size) {
+      throw new IndexOutOfBoundsException("invalid term position: " + i);
+    }
+    return terms.terms[i];
   }
 
   /**
@@ -76,12 +152,46 @@ public final class TermIndex {
    * @param offset The offset to which to truncate the index.
    */
   public synchronized void truncate(long offset) {
-    terms.tailMap(offset, false).clear();
+    Terms terms = this.terms;
+    int size = terms.floor(offset) + 1;
+    if (size < terms.size) {
+      // Copy the arrays so that concurrent readers of the previous view never observe overwritten terms.
+      this.terms = new Terms(Arrays.copyOf(terms.offsets, terms.offsets.length), Arrays.copyOf(terms.terms, terms.terms.length), size);
+    }
   }
 
   @Override
   public String toString() {
-    return getClass().getSimpleName();
+    return String.format("%s[terms=%d]", getClass().getSimpleName(), terms.size);
+  }
+
+  /**
+   * Immutable view of the term index arrays.
+   */
+  private static final class Terms {
+    private final long[] offsets;
+    private final long[] terms;
+    private final int size;
+
+    private Terms(long[] offsets, long[] terms, int size) {
+      this.offsets = offsets;
+      this.terms = terms;
+      this.size = size;
+    }
+
+    /**
+     * Returns the position of the greatest offset less than or equal to the given offset, or {@code -1}.
+     */
+    private int floor(long offset) {
+      // Most lookups are for entries in the last term.
+      if (size == 0) {
+        return -1;
+      } else if (offset >= offsets[size - 1]) {
+        return size - 1;
+      }
+      int i = Arrays.binarySearch(offsets, 0, size, offset);
+      return i >= 0 ? i : -i - 2;
+    }
   }
 
 }
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.state;
+
+import io.atomix.catalyst.concurrent.SingleThreadContext;
+import io.atomix.catalyst.concurrent.ThreadContext;
+import io.atomix.catalyst.serializer.Serializer;
+import io.atomix.catalyst.transport.Address;
+import io.atomix.catalyst.transport.local.LocalServerRegistry;
+import io.atomix.catalyst.transport.local.LocalTransport;
+import io.atomix.copycat.Command;
+import io.atomix.copycat.protocol.ClientRequestTypeResolver;
+import io.atomix.copycat.protocol.ClientResponseTypeResolver;
+import io.atomix.copycat.server.AsyncSnapshottable;
+import io.atomix.copycat.server.Commit;
+import io.atomix.copycat.server.StateMachine;
+import io.atomix.copycat.server.StateMachineExecutor;
+import io.atomix.copycat.server.cluster.Member;
+import io.atomix.copycat.server.session.ServerSession;
+import io.atomix.copycat.server.session.SessionListener;
+import io.atomix.copycat.server.storage.Storage;
+import io.atomix.copycat.server.storage.StorageLevel;
+import io.atomix.copycat.server.storage.entry.CommandEntry;
+import io.atomix.copycat.server.storage.entry.KeepAliveEntry;
+import io.atomix.copycat.server.storage.entry.RegisterEntry;
+import io.atomix.copycat.server.storage.snapshot.Snapshot;
+import io.atomix.copycat.server.storage.snapshot.SnapshotReader;
+import io.atomix.copycat.server.storage.snapshot.SnapshotWriter;
+import io.atomix.copycat.server.storage.util.StorageSerialization;
+import io.atomix.copycat.server.util.ServerSerialization;
+import io.atomix.copycat.util.ProtocolSerialization;
+import net.jodah.concurrentunit.ConcurrentTestCase;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.testng.Assert.*;
+
+/**
+ * Asynchronous state machine snapshot test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+@Test
+public class AsyncSnapshottableTest extends ConcurrentTestCase {
+  private ThreadContext callerContext;
+  private ServerContext state;
+  private long timestamp;
+  private volatile TestStateMachine stateMachine;
+  private volatile boolean failSnapshot;
+  private volatile Thread stateMachineThread;
+  private volatile Thread snapshotThread;
+  private CountDownLatch writeStarted;
+  private CountDownLatch writeReleased;
+  private CountDownLatch viewClosed;
+
+  @BeforeMethod
+  public void createStateMachine() throws Throwable {
+    Serializer serializer = new Serializer().resolve(
+      new ClientRequestTypeResolver(),
+      new ClientResponseTypeResolver(),
+      new ProtocolSerialization(),
+      new ServerSerialization(),
+      new StorageSerialization()
+    ).disableWhitelist();
+
+    failSnapshot = false;
+    stateMachineThread = null;
+    snapshotThread = null;
+    writeStarted = new CountDownLatch(1);
+    writeReleased = new CountDownLatch(1);
+    viewClosed = new CountDownLatch(1);
+
+    callerContext = new SingleThreadContext("caller", serializer.clone());
+    LocalServerRegistry registry = new LocalServerRegistry();
+    Storage storage = new Storage(StorageLevel.MEMORY);
+    ServerMember member = new ServerMember(Member.Type.ACTIVE, new Address("localhost", 5000), new Address("localhost", 6000), Instant.now());
+
+    new SingleThreadContext("test", serializer.clone()).executor().execute(() -> {
+      state = new ServerContext("test", member.type(), member.serverAddress(), member.clientAddress(), storage, serializer, TestStateMachine::new, new ConnectionManager(new LocalTransport(registry).client()), callerContext);
+      resume();
+    });
+    await(1000);
+    timestamp = System.currentTimeMillis();
+  }
+
+  /**
+   * Tests writing a snapshot in a snapshot thread while commands continue to be applied to the state machine.
+   */
+  public void testSnapshotWrittenConcurrentlyWithCommands() throws Throwable {
+    // Registering the first session takes a snapshot at the register entry's index.
+    register();
+    assertTrue(writeStarted.await(5, TimeUnit.SECONDS));
+    assertNotNull(snapshotThread);
+    assertNotEquals(snapshotThread, stateMachineThread);
+    assertTrue(snapshotThread.getName().startsWith("copycat-snapshot"));
+
+    // Apply commands to the state machine while the snapshot is blocked in the snapshot thread.
+    for (long sequence = 1; sequence <= 3; sequence++) {
+      long expected = sequence;
+      apply(sequence, result -> threadAssertEquals(result, expected));
+    }
+    assertEquals(stateMachine.value, 3);
+    keepAlive();
+    assertNull(state.getSnapshotStore().currentSnapshot());
+
+    // Once the write completes, the snapshot is completed with the state captured at the snapshot index.
+    writeReleased.countDown();
+    Snapshot snapshot = awaitSnapshot();
+    assertEquals(snapshot.index(), 1);
+    try (SnapshotReader reader = snapshot.reader()) {
+      assertEquals(reader.readInt(), 1);
+      assertEquals(reader.readLong(), 0);
+    }
+  }
+
+  /**
+   * Tests that a snapshot that fails to be written is discarded and a new snapshot taken.
+   */
+  public void testSnapshotFailure() throws Throwable {
+    failSnapshot = true;
+    writeReleased.countDown();
+    register();
+    assertTrue(viewClosed.await(5, TimeUnit.SECONDS));
+
+    // Applying a command after the failed snapshot is discarded takes a new snapshot including the command.
+    failSnapshot = false;
+    apply(1, result -> threadAssertEquals(result, 1L));
+    apply(2, result -> threadAssertEquals(result, 2L));
+    keepAlive();
+
+    Snapshot snapshot = awaitSnapshot();
+    assertEquals(snapshot.index(), 2);
+    try (SnapshotReader reader = snapshot.reader()) {
+      assertEquals(reader.readInt(), 1);
+      assertEquals(reader.readLong(), 1);
+    }
+  }
+
+  /**
+   * Registers a session and applies the register entry.
+   */
+  private void register() throws Throwable {
+    callerContext.execute(() -> {
+      long index;
+      try (RegisterEntry entry = state.getLog().create(RegisterEntry.class)) {
+        entry.setTerm(1)
+          .setTimestamp(timestamp)
+          .setTimeout(5000)
+          .setClient(UUID.randomUUID().toString());
+        index = state.getLog().append(entry);
+      }
+
+      state.getStateMachine().apply(index).whenComplete((result, error) -> {
+        threadAssertNull(error);
+        resume();
+      });
+    });
+    await(5000);
+  }
+
+  /**
+   * Applies a test command with the given sequence number.
+   */
+  private void apply(long sequence, Consumer<Object> callback) throws Throwable {
+    callerContext.execute(() -> {
+      long index;
+      try (CommandEntry entry = state.getLog().create(CommandEntry.class)) {
+        entry.setTerm(1)
+          .setSession(1)
+          .setSequence(sequence)
+          .setTimestamp(timestamp + sequence)
+          .setCommand(new TestCommand());
+        index = state.getLog().append(entry);
+      }
+
+      state.getStateMachine().<ServerStateMachine.Result>apply(index).whenComplete((result, error) -> {
+        threadAssertNull(error);
+        callback.accept(result.result);
+        resume();
+      });
+    });
+    await(5000);
+  }
+
+  /**
+   * Applies a keep-alive for the session, completing indexes up to the keep-alive.
+   */
+  private void keepAlive() throws Throwable {
+    callerContext.execute(() -> {
+      long index;
+      try (KeepAliveEntry entry = state.getLog().create(KeepAliveEntry.class)) {
+        entry.setTerm(1)
+          .setSession(1)
+          .setTimestamp(timestamp + 100)
+          .setCommandSequence(0)
+          .setEventIndex(0);
+        index = state.getLog().append(entry);
+      }
+
+      state.getStateMachine().apply(index).whenComplete((result, error) -> {
+        threadAssertNull(error);
+        resume();
+      });
+    });
+    await(5000);
+  }
+
+  /**
+   * Waits for a snapshot to be completed.
+   */
+  private Snapshot awaitSnapshot() throws InterruptedException {
+    for (int i = 0; i < 500 && state.getSnapshotStore().currentSnapshot() == null; i++) {
+      Thread.sleep(10);
+    }
+    Snapshot snapshot = state.getSnapshotStore().currentSnapshot();
+    assertNotNull(snapshot);
+    return snapshot;
+  }
+
+  @AfterMethod
+  public void closeStateMachine() {
+    writeReleased.countDown();
+    state.close();
+    callerContext.close();
+  }
+
+  /**
+   * Test state machine that writes a view of the number of sessions and applied commands.
+   */
+  private class TestStateMachine extends StateMachine implements AsyncSnapshottable, SessionListener {
+    private volatile int sessions;
+    private volatile long value;
+
+    private TestStateMachine() {
+      stateMachine = this;
+    }
+
+    @Override
+    public void configure(StateMachineExecutor executor) {
+      executor.register(TestCommand.class, this::command);
+    }
+
+    private long command(Commit<TestCommand> commit) {
+      try {
+        return ++value;
+      } finally {
+        commit.close();
+      }
+    }
+
+    @Override
+    public View snapshotView() {
+      stateMachineThread = Thread.currentThread();
+      int sessions = this.sessions;
+      long value = this.value;
+      return new View() {
+        @Override
+        public void write(SnapshotWriter writer) {
+          snapshotThread = Thread.currentThread();
+          writeStarted.countDown();
+          try {
+            writeReleased.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          if (failSnapshot) {
+            throw new IllegalStateException("snapshot failed");
+          }
+          writer.writeInt(sessions).writeLong(value);
+        }
+
+        @Override
+        public void close() {
+          viewClosed.countDown();
+        }
+      };
+    }
+
+    @Override
+    public void install(SnapshotReader reader) {
+      sessions = reader.readInt();
+      value = reader.readLong();
+    }
+
+    @Override
+    public void register(ServerSession session) {
+      sessions++;
+    }
+
+    @Override
+    public void expire(ServerSession session) {
+    }
+
+    @Override
+    public void unregister(ServerSession session) {
+    }
+
+    @Override
+    public void close(ServerSession session) {
+    }
+  }
+
+  /**
+   * Test command.
+   */
+  private static class TestCommand implements Command<Long> {
+  }
+
+}
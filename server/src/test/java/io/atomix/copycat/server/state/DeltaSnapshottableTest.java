@@ -0,0 +1,266 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.state;
+
+import io.atomix.catalyst.concurrent.SingleThreadContext;
+import io.atomix.catalyst.concurrent.ThreadContext;
+import io.atomix.catalyst.serializer.Serializer;
+import io.atomix.catalyst.transport.Address;
+import io.atomix.catalyst.transport.local.LocalServerRegistry;
+import io.atomix.catalyst.transport.local.LocalTransport;
+import io.atomix.copycat.Command;
+import io.atomix.copycat.protocol.ClientRequestTypeResolver;
+import io.atomix.copycat.protocol.ClientResponseTypeResolver;
+import io.atomix.copycat.server.Commit;
+import io.atomix.copycat.server.DeltaSnapshottable;
+import io.atomix.copycat.server.StateMachine;
+import io.atomix.copycat.server.StateMachineExecutor;
+import io.atomix.copycat.server.cluster.Member;
+import io.atomix.copycat.server.storage.Storage;
+import io.atomix.copycat.server.storage.StorageLevel;
+import io.atomix.copycat.server.storage.entry.CommandEntry;
+import io.atomix.copycat.server.storage.entry.KeepAliveEntry;
+import io.atomix.copycat.server.storage.entry.RegisterEntry;
+import io.atomix.copycat.server.storage.snapshot.Snapshot;
+import io.atomix.copycat.server.storage.snapshot.SnapshotReader;
+import io.atomix.copycat.server.storage.snapshot.SnapshotWriter;
+import io.atomix.copycat.server.storage.util.StorageSerialization;
+import io.atomix.copycat.server.util.ServerSerialization;
+import io.atomix.copycat.util.ProtocolSerialization;
+import net.jodah.concurrentunit.ConcurrentTestCase;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+/**
+ * Delta state machine snapshot test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+@Test
+public class DeltaSnapshottableTest extends ConcurrentTestCase {
+  private ThreadContext callerContext;
+  private ServerContext state;
+  private long timestamp;
+  private long sequence;
+
+  @BeforeMethod
+  public void createStateMachine() throws Throwable {
+    Serializer serializer = new Serializer().resolve(
+      new ClientRequestTypeResolver(),
+      new ClientResponseTypeResolver(),
+      new ProtocolSerialization(),
+      new ServerSerialization(),
+      new StorageSerialization()
+    ).disableWhitelist();
+
+    sequence = 0;
+    callerContext = new SingleThreadContext("caller", serializer.clone());
+    LocalServerRegistry registry = new LocalServerRegistry();
+    Storage storage = Storage.builder()
+      .withStorageLevel(StorageLevel.MEMORY)
+      .withMaxEntriesPerSegment(1)
+      .build();
+    ServerMember member = new ServerMember(Member.Type.ACTIVE, new Address("localhost", 5000), new Address("localhost", 6000), Instant.now());
+
+    new SingleThreadContext("test", serializer.clone()).executor().execute(() -> {
+      state = new ServerContext("test", member.type(), member.serverAddress(), member.clientAddress(), storage, serializer, TestStateMachine::new, new ConnectionManager(new LocalTransport(registry).client()), callerContext);
+      resume();
+    });
+    await(1000);
+    timestamp = System.currentTimeMillis();
+  }
+
+  /**
+   * Tests that a snapshot following a completed snapshot is written as a delta of the completed snapshot.
+   */
+  public void testDeltaSnapshot() throws Throwable {
+    // Registering the first session takes a full snapshot at the register entry's index.
+    register();
+    long first = apply();
+    keepAlive();
+    Snapshot full = awaitSnapshot(1);
+    assertFalse(full.isDelta());
+
+    // Once the log is compactable beyond the full snapshot, the next snapshot is a delta.
+    callerContext.execute(() -> {
+      state.getLog().compactor().minorIndex(state.getLog().lastIndex());
+      resume();
+    });
+    await(5000);
+
+    long second = apply();
+    keepAlive();
+    keepAlive();
+    Snapshot delta = awaitSnapshot(second);
+    assertTrue(delta.isDelta());
+    assertEquals(delta.previousIndex(), 1);
+
+    Map<Long, Long> records = new HashMap<>();
+    try (SnapshotReader reader = delta.reader()) {
+      reader.<Long, Long>readRecords(records::put);
+    }
+    assertEquals(records.get(first), Long.valueOf(1));
+    assertEquals(records.get(second), Long.valueOf(2));
+  }
+
+  /**
+   * Registers a session and applies the register entry.
+   */
+  private void register() throws Throwable {
+    callerContext.execute(() -> {
+      long index;
+      try (RegisterEntry entry = state.getLog().create(RegisterEntry.class)) {
+        entry.setTerm(1)
+          .setTimestamp(timestamp)
+          .setTimeout(5000)
+          .setClient(UUID.randomUUID().toString());
+        index = state.getLog().append(entry);
+      }
+
+      state.getStateMachine().apply(index).whenComplete((result, error) -> {
+        threadAssertNull(error);
+        resume();
+      });
+    });
+    await(5000);
+  }
+
+  /**
+   * Applies a test command, returning the command's index.
+   */
+  private long apply() throws Throwable {
+    long sequence = ++this.sequence;
+    long[] index = new long[1];
+    callerContext.execute(() -> {
+      try (CommandEntry entry = state.getLog().create(CommandEntry.class)) {
+        entry.setTerm(1)
+          .setSession(1)
+          .setSequence(sequence)
+          .setTimestamp(timestamp + sequence)
+          .setCommand(new TestCommand());
+        index[0] = state.getLog().append(entry);
+      }
+
+      state.getStateMachine().apply(index[0]).whenComplete((result, error) -> {
+        threadAssertNull(error);
+        resume();
+      });
+    });
+    await(5000);
+    return index[0];
+  }
+
+  /**
+   * Applies a keep-alive for the session, completing indexes up to the keep-alive.
+   */
+  private void keepAlive() throws Throwable {
+    callerContext.execute(() -> {
+      long index;
+      try (KeepAliveEntry entry = state.getLog().create(KeepAliveEntry.class)) {
+        entry.setTerm(1)
+          .setSession(1)
+          .setTimestamp(timestamp + 100)
+          .setCommandSequence(sequence)
+          .setEventIndex(0);
+        index = state.getLog().append(entry);
+      }
+
+      state.getStateMachine().apply(index).whenComplete((result, error) -> {
+        threadAssertNull(error);
+        resume();
+      });
+    });
+    await(5000);
+  }
+
+  /**
+   * Waits for a snapshot at or after the given index to be completed.
+   */
+  private Snapshot awaitSnapshot(long index) throws InterruptedException {
+    for (int i = 0; i < 500 && (state.getSnapshotStore().currentSnapshot() == null || state.getSnapshotStore().currentSnapshot().index() < index); i++) {
+      Thread.sleep(10);
+    }
+    Snapshot snapshot = state.getSnapshotStore().currentSnapshot();
+    assertNotNull(snapshot);
+    assertTrue(snapshot.index() >= index);
+    return snapshot;
+  }
+
+  @AfterMethod
+  public void closeStateMachine() {
+    state.close();
+    callerContext.close();
+  }
+
+  /**
+   * Test state machine that records the sequence number of each command by the command's index.
+   */
+  private static class TestStateMachine extends StateMachine implements DeltaSnapshottable {
+    private final Map<Long, Long> values = new HashMap<>();
+    private final Map<Long, Long> changes = new HashMap<>();
+    private long value;
+
+    @Override
+    public void configure(StateMachineExecutor executor) {
+      executor.register(TestCommand.class, this::command);
+    }
+
+    private long command(Commit<TestCommand> commit) {
+      try {
+        value++;
+        values.put(commit.index(), value);
+        changes.put(commit.index(), value);
+        return value;
+      } finally {
+        commit.close();
+      }
+    }
+
+    @Override
+    public void snapshot(SnapshotWriter writer) {
+      writer.writeRecords(values);
+      changes.clear();
+    }
+
+    @Override
+    public void snapshotDelta(SnapshotWriter writer) {
+      writer.writeRecords(changes);
+      changes.clear();
+    }
+
+    @Override
+    public void install(SnapshotReader reader) {
+      values.clear();
+      changes.clear();
+      reader.<Long, Long>readRecords(values::put);
+    }
+  }
+
+  /**
+   * Test command.
+   */
+  private static class TestCommand implements Command<Long> {
+  }
+
+}
@@ -21,6 +21,11 @@ import io.atomix.copycat.server.storage.snapshot.SnapshotStore;
 import io.atomix.copycat.server.storage.snapshot.SnapshotWriter;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import static org.testng.Assert.*;
 
 /**
@@ -74,4 +79,147 @@ public abstract class AbstractSnapshotStoreTest {
     }
   }
 
+  /**
+   * Tests reading the merged records of a delta snapshot and consolidating the chain.
+   */
+  public void testDeltaSnapshot() throws Exception {
+    SnapshotStore store = createSnapshotStore();
+    Snapshot base = store.createSnapshot(1);
+    try (SnapshotWriter writer = base.writer()) {
+      writer.writeRecord("a", 1L).writeRecord("b", 2L).writeRecord("c", 3L);
+    }
+    base.complete();
+
+    Snapshot delta = store.createDeltaSnapshot(2);
+    assertTrue(delta.isDelta());
+    assertEquals(delta.previousIndex(), 1);
+    try (SnapshotWriter writer = delta.writer()) {
+      writer.writeRecord("b", 20L).removeRecord("c").writeRecord("d", 4L);
+    }
+    delta.complete();
+
+    Map<String, Long> expected = new HashMap<>();
+    expected.put("a", 1L);
+    expected.put("b", 20L);
+    expected.put("d", 4L);
+    assertEquals(store.currentSnapshot().index(), 2);
+    assertNotNull(store.snapshot(1));
+    assertEquals(readRecords(store.currentSnapshot()), expected);
+
+    Snapshot consolidated = store.consolidateSnapshot().get(10, TimeUnit.SECONDS);
+    assertFalse(consolidated.isDelta());
+    assertEquals(consolidated.index(), 2);
+    assertSame(store.currentSnapshot(), consolidated);
+    assertNull(store.snapshot(1));
+    assertEquals(readRecords(consolidated), expected);
+  }
+
+  /**
+   * Tests that long chains of delta snapshots are consolidated in the background.
+   */
+  public void testDeltaSnapshotConsolidation() throws Exception {
+    SnapshotStore store = createSnapshotStore();
+    Snapshot base = store.createSnapshot(1);
+    try (SnapshotWriter writer = base.writer()) {
+      writer.writeRecord(0, 0L);
+    }
+    base.complete();
+
+    Map<Integer, Long> expected = new HashMap<>();
+    expected.put(0, 0L);
+    for (int i = 1; i <= 17; i++) {
+      Snapshot delta = store.createDeltaSnapshot(i + 1);
+      try (SnapshotWriter writer = delta.writer()) {
+        writer.writeRecord(i, (long) i);
+      }
+      delta.complete();
+      expected.put(i, (long) i);
+    }
+
+    for (int i = 0; i < 500 && store.currentSnapshot().isDelta(); i++) {
+      Thread.sleep(10);
+    }
+    assertFalse(store.currentSnapshot().isDelta());
+    assertEquals(store.currentSnapshot().index(), 18);
+    assertEquals(readRecords(store.currentSnapshot()), expected);
+  }
+
+  /**
+   * Tests that records written out of key order are rejected.
+   */
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testRecordsOutOfOrder() {
+    SnapshotStore store = createSnapshotStore();
+    Snapshot snapshot = store.createSnapshot(1);
+    try (SnapshotWriter writer = snapshot.writer()) {
+      writer.writeRecord("b", 2L).writeRecord("a", 1L);
+    }
+  }
+
+  /**
+   * Tests reading the merged bytes of a delta snapshot in chunks as they're read to install the snapshot on a member.
+   */
+  public void testDeltaSnapshotChunkedRead() throws Exception {
+    SnapshotStore store = createSnapshotStore();
+    Map<Integer, Long> records = new HashMap<>();
+    for (int i = 0; i < 100; i++) {
+      records.put(i, (long) i);
+    }
+
+    Snapshot base = store.createSnapshot(1);
+    try (SnapshotWriter writer = base.writer()) {
+      writer.writeRecords(records);
+    }
+    base.complete();
+
+    Map<Integer, Long> changes = new HashMap<>();
+    for (int i = 0; i < 100; i += 3) {
+      changes.put(i, i % 2 == 0 ? (long) i * 10 : null);
+    }
+    Snapshot delta = store.createDeltaSnapshot(2);
+    try (SnapshotWriter writer = delta.writer()) {
+      writer.writeRecords(changes);
+    }
+    delta.complete();
+
+    ByteArrayOutputStream merged = new ByteArrayOutputStream();
+    boolean complete = false;
+    for (int offset = 0; !complete; offset++) {
+      try (SnapshotReader reader = store.currentSnapshot().reader()) {
+        reader.skip(offset * 100);
+        byte[] chunk = new byte[Math.min(100, (int) reader.remaining())];
+        reader.read(chunk);
+        merged.write(chunk);
+        complete = !reader.hasRemaining();
+      }
+    }
+
+    Snapshot consolidated = store.consolidateSnapshot().get(10, TimeUnit.SECONDS);
+    try (SnapshotReader reader = consolidated.reader()) {
+      byte[] bytes = new byte[(int) reader.remaining()];
+      reader.read(bytes);
+      assertEquals(merged.toByteArray(), bytes);
+    }
+
+    changes.forEach((key, value) -> {
+      if (value != null) {
+        records.put(key, value);
+      } else {
+        records.remove(key);
+      }
+    });
+    assertEquals(readRecords(consolidated), records);
+  }
+
+  /**
+   * Reads the records of the given snapshot.
+   */
+  protected <K, V> Map<K, V> readRecords(Snapshot snapshot) {
+    Map<K, V> records = new HashMap<>();
+    try (SnapshotReader reader = snapshot.reader()) {
+      reader.<K, V>readRecords(records::put);
+    }
+    return records;
+  }
+
 }
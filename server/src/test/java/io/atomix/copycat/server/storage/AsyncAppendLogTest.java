@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.atomix.copycat.server.storage;
+
+import io.atomix.copycat.server.storage.entry.Entry;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+/**
+ * Asynchronous append log test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+@Test
+public class AsyncAppendLogTest extends AbstractLogTest {
+
+  @Override
+  protected Storage createStorage() {
+    return tempStorageBuilder()
+      .withMaxEntriesPerSegment(10)
+      .withStorageLevel(StorageLevel.DISK)
+      .withFlushOnCommit()
+      .withAsyncAppend()
+      .withAppendBufferSize(4)
+      .build();
+  }
+
+  /**
+   * Tests that the asynchronous append options are exposed by the storage configuration.
+   */
+  public void testAsyncAppend() {
+    assertTrue(storage.asyncAppend());
+    assertEquals(storage.appendBufferSize(), 4);
+    assertFalse(Storage.builder().build().asyncAppend());
+  }
+
+  /**
+   * Tests that entries are readable immediately after they're appended.
+   */
+  public void testReadAfterAppend() {
+    for (int i = 0; i < 25; i++) {
+      long index = appendEntries(1).get(0);
+      assertEquals(log.lastIndex(), index);
+      try (Entry entry = log.get(index)) {
+        assertEquals(entry.getIndex(), index);
+      }
+      assertEquals(log.term(index), 1);
+    }
+
+    try (LogReader reader = log.reader(1)) {
+      for (long i = 1; i <= 25; i++) {
+        try (Entry entry = reader.next()) {
+          assertEquals(entry.getIndex(), i);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that the sizes of entries written across segment rollovers are recorded in the log's metrics.
+   */
+  public void testAppendedBytes() {
+    appendEntries(25);
+    log.flush();
+
+    long bytes = 0;
+    for (long i = 1; i <= 25; i++) {
+      try (Entry entry = log.segments.segment(i).get(i)) {
+        bytes += entry.size();
+      }
+    }
+    assertEquals(log.metrics().getAppendedEntries(), 25);
+    assertEquals(log.metrics().getAppendedBytes(), bytes);
+  }
+
+  /**
+   * Tests that appended entries become durable once written and flushed by the I/O thread.
+   */
+  public void testSync() throws Exception {
+    List<Long> indexes = appendEntries(23);
+    long index = indexes.get(indexes.size() - 1);
+    assertEquals(log.sync(index).get(5, TimeUnit.SECONDS).longValue(), index);
+    assertEquals(log.durableIndex(), index);
+    assertEquals(log.segments.segments().size(), 3);
+  }
+
+  /**
+   * Tests truncating entries that may not yet have been written.
+   */
+  public void testTruncatePending() throws Exception {
+    appendEntries(15);
+    log.truncate(12);
+    assertEquals(log.lastIndex(), 12);
+    assertTrue(log.durableIndex() <= 12);
+
+    List<Long> indexes = appendEntries(5);
+    assertEquals(indexes.get(0).longValue(), 13);
+    assertEquals(log.sync(17).get(5, TimeUnit.SECONDS).longValue(), 17);
+    for (long i = 1; i <= 17; i++) {
+      try (Entry entry = log.get(i)) {
+        assertEquals(entry.getIndex(), i);
+      }
+    }
+  }
+
+  /**
+   * Tests skipping entries while entries are being written.
+   */
+  public void testSkipPending() throws Exception {
+    appendEntries(5);
+    log.skip(3);
+    assertEquals(log.lastIndex(), 8);
+    assertEquals(appendEntries(1).get(0).longValue(), 9);
+    assertEquals(log.sync(9).get(5, TimeUnit.SECONDS).longValue(), 9);
+    assertNull(log.get(7));
+    assertEquals(log.get(9).getIndex(), 9);
+  }
+
+  /**
+   * Tests that asynchronously written entries are recovered after the log is closed.
+   */
+  public void testRecoverAfterClose() {
+    appendEntries(37);
+    log.close();
+
+    log = createLog();
+    assertEquals(log.lastIndex(), 37);
+    assertEquals(log.durableIndex(), 37);
+    for (long i = log.firstIndex(); i <= log.lastIndex(); i++) {
+      try (Entry entry = log.get(i)) {
+        assertEquals(entry.getIndex(), i);
+      }
+    }
+    assertEquals(appendEntries(1).get(0).longValue(), 38);
+  }
+
+}
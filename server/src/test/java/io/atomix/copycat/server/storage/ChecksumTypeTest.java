@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package io.atomix.copycat.server.storage;
+
+import io.atomix.copycat.server.storage.entry.Entry;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checksum type test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+@Test
+public class ChecksumTypeTest extends AbstractLogTest {
+
+  @Override
+  protected Storage createStorage() {
+    return tempStorageBuilder()
+      .withMaxEntriesPerSegment(10)
+      .withStorageLevel(StorageLevel.DISK)
+      .withChecksumType(ChecksumType.CRC32C)
+      .build();
+  }
+
+  /**
+   * Tests the software CRC-32C implementation against the standard check value.
+   */
+  public void testCrc32cCheckValue() {
+    byte[] bytes = "123456789".getBytes(StandardCharsets.US_ASCII);
+    Checksum checksum = new Crc32c();
+    checksum.update(bytes, 0, bytes.length);
+    assertEquals(checksum.getValue(), 0xE3069283L);
+    assertEquals(ChecksumType.CRC32C.checksum(bytes, 0, bytes.length), 0xE3069283L);
+  }
+
+  /**
+   * Tests that array and buffer checksums agree for all checksum types.
+   */
+  public void testBufferChecksum() {
+    byte[] bytes = new byte[1031];
+    new Random(1).nextBytes(bytes);
+    for (ChecksumType type : ChecksumType.values()) {
+      long expected = type.checksum(bytes, 3, bytes.length - 3);
+      ByteBuffer heap = ByteBuffer.wrap(bytes);
+      heap.position(3);
+      assertEquals(type.checksum(heap), expected);
+      ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+      direct.put(bytes);
+      direct.position(3);
+      assertEquals(type.checksum(direct), expected);
+
+      Checksum software = new Crc32c();
+      software.update(bytes, 3, bytes.length - 3);
+      if (type == ChecksumType.CRC32C) {
+        assertEquals(software.getValue(), expected);
+      }
+    }
+  }
+
+  /**
+   * Tests that segments written with different checksum types can be read by the same log.
+   */
+  public void testMixedChecksumTypes() {
+    appendEntries(15);
+    log.close();
+
+    storage = tempStorageBuilder()
+      .withMaxEntriesPerSegment(10)
+      .withStorageLevel(StorageLevel.DISK)
+      .withChecksumType(ChecksumType.CRC32)
+      .build();
+
+    log = createLog();
+    assertEquals(log.segments.firstSegment().descriptor().checksumType(), ChecksumType.CRC32C);
+    appendEntries(10);
+    assertEquals(log.segments.lastSegment().descriptor().checksumType(), ChecksumType.CRC32);
+    for (long i = log.firstIndex(); i <= log.lastIndex(); i++) {
+      try (Entry entry = log.get(i)) {
+        assertEquals(entry.getIndex(), i);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package io.atomix.copycat.server.storage;
+
+import org.testng.annotations.Factory;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static org.testng.Assert.*;
+
+/**
+ * Compressed log test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+@Test
+public class CompressedLogTest extends LogTest {
+
+  @Factory
+  public Object[] createTests() throws Throwable {
+    return testsFor(CompressedLogTest.class);
+  }
+
+  @Override
+  protected Storage createStorage() {
+    return tempStorageBuilder().withDirectory(new File(String.format("target/test-logs/%s", logId)))
+      .withMaxSegmentSize(Integer.MAX_VALUE)
+      .withMaxEntriesPerSegment(entriesPerSegment)
+      .withStorageLevel(storageLevel())
+      .withEntryCacheSize(0)
+      .withCompressionType(CompressionType.DEFLATE)
+      .withCompressionBlockSize(entrySize() * 2)
+      .build();
+  }
+
+  @Override
+  protected StorageLevel storageLevel() {
+    return StorageLevel.DISK;
+  }
+
+  /**
+   * Tests that compressed blocks are recovered when the log is reopened.
+   */
+  public void testRecoverCompressedBlocks() {
+    log.close();
+    storage = tempStorageBuilder()
+      .withMaxEntriesPerSegment(100)
+      .withStorageLevel(StorageLevel.DISK)
+      .withEntryCacheSize(0)
+      .withCompressionType(CompressionType.DEFLATE)
+      .withCompressionBlockSize(entrySize() * 4)
+      .build();
+    log = createLog();
+    appendEntries(50);
+    log.flush();
+    Segment segment = log.segments.currentSegment();
+    assertEquals(segment.descriptor().compressionType(), CompressionType.DEFLATE);
+    assertTrue(segment.size() < 50 * entrySize());
+    for (long i = 1; i <= 50; i++) {
+      try (TestEntry entry = log.get(i)) {
+        assertEquals(entry.getIndex(), i);
+      }
+    }
+
+    log.close();
+    log = createLog();
+    assertEquals(log.lastIndex(), 50);
+    for (long i = 1; i <= 50; i++) {
+      try (TestEntry entry = log.get(i)) {
+        assertEquals(entry.getIndex(), i);
+        assertEquals(entry.getTerm(), 1);
+      }
+    }
+  }
+
+  /**
+   * Tests compacting uncompressed segments into compressed segments with a different checksum type.
+   */
+  public void testCompactIntoCompressedSegments() {
+    log.close();
+    storage = tempStorageBuilder()
+      .withMaxEntriesPerSegment(10)
+      .withStorageLevel(StorageLevel.DISK)
+      .withEntryCacheSize(0)
+      .withChecksumType(ChecksumType.CRC32)
+      .build();
+    log = createLog();
+    appendEntries(31);
+    log.close();
+
+    storage = tempStorageBuilder()
+      .withMaxEntriesPerSegment(10)
+      .withStorageLevel(StorageLevel.DISK)
+      .withEntryCacheSize(0)
+      .withChecksumType(ChecksumType.CRC32C)
+      .withCompressionType(CompressionType.DEFLATE)
+      .withCompressionBlockSize(entrySize() * 4)
+      .build();
+    log = createLog();
+    log.commit(31).compactor().minorIndex(31).majorIndex(31);
+    cleanAndCompact(3, 7);
+
+    Segment segment = log.segments.firstSegment();
+    assertEquals(segment.descriptor().compressionType(), CompressionType.DEFLATE);
+    assertEquals(segment.descriptor().checksumType(), ChecksumType.CRC32C);
+
+    log.close();
+    log = createLog();
+    assertEquals(log.lastIndex(), 31);
+    for (long i = 1; i <= 31; i++) {
+      try (TestEntry entry = log.get(i)) {
+        if (i >= 3 && i <= 7) {
+          assertNull(entry);
+        } else {
+          assertEquals(entry.getIndex(), i);
+          assertEquals(entry.getTerm(), 1);
+          assertEquals(entry.getPadding().length, entryPadding);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests truncating the log into a compressed block that has already been written.
+   */
+  public void testTruncateCompressedBlock() {
+    log.close();
+    storage = tempStorageBuilder()
+      .withMaxEntriesPerSegment(100)
+      .withStorageLevel(StorageLevel.DISK)
+      .withEntryCacheSize(0)
+      .withCompressionType(CompressionType.DEFLATE)
+      .withCompressionBlockSize(entrySize() * 4)
+      .build();
+    log = createLog();
+    appendEntries(20);
+    log.flush();
+    log.truncate(9);
+    assertEquals(log.lastIndex(), 9);
+    appendEntries(5);
+    assertEquals(log.lastIndex(), 14);
+
+    log.close();
+    log = createLog();
+    assertEquals(log.lastIndex(), 14);
+    for (long i = 1; i <= 14; i++) {
+      try (TestEntry entry = log.get(i)) {
+        assertEquals(entry.getIndex(), i);
+      }
+    }
+  }
+
+  /**
+   * Tests that entries buffered in the pending compressed block are not reported as durable until the block is written.
+   */
+  public void testPendingBlockNotDurable() throws Throwable {
+    log.close();
+    storage = tempStorageBuilder()
+      .withMaxEntriesPerSegment(100)
+      .withStorageLevel(StorageLevel.DISK)
+      .withEntryCacheSize(0)
+      .withCompressionType(CompressionType.DEFLATE)
+      .withCompressionBlockSize(entrySize() * 4)
+      .build();
+    log = createLog();
+    appendEntries(5);
+    log.flush();
+    appendEntries(1);
+    assertEquals(log.lastIndex(), 6);
+    assertEquals(log.segments.currentSegment().pendingIndex(), 6);
+    assertEquals(log.durableIndex(), 5);
+
+    assertEquals(log.sync(6).get().longValue(), 6);
+    assertEquals(log.segments.currentSegment().pendingIndex(), 0);
+    assertEquals(log.durableIndex(), 6);
+  }
+
+}
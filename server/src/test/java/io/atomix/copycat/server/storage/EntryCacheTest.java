@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package io.atomix.copycat.server.storage;
+
+import io.atomix.copycat.server.storage.util.EntryCache;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Entry cache test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+@Test
+public class EntryCacheTest {
+
+  /**
+   * Creates a test entry with the given index and size.
+   */
+  private TestEntry entry(long index, int size) {
+    TestEntry entry = new TestEntry();
+    entry.setIndex(index);
+    entry.setSize(size);
+    return entry;
+  }
+
+  /**
+   * Tests that entries are evicted once the cache exceeds its maximum size.
+   */
+  public void testEvictBySize() {
+    EntryCache cache = new EntryCache(100);
+    for (int i = 1; i <= 10; i++) {
+      cache.append(entry(i, 30));
+    }
+    assertEquals(cache.count(), 3);
+    assertEquals(cache.size(), 90);
+    assertEquals(cache.evictions(), 7);
+    assertNull(cache.get(7));
+    TestEntry entry = cache.get(8);
+    assertNotNull(entry);
+    assertEquals(entry.getIndex(), 8);
+    assertEquals(entry.references(), 2);
+    entry.release();
+    assertEquals(cache.hits(), 1);
+    assertEquals(cache.misses(), 1);
+  }
+
+  /**
+   * Tests that entries larger than the cache are not cached.
+   */
+  public void testSkipLargeEntries() {
+    EntryCache cache = new EntryCache(100);
+    cache.append(entry(1, 10));
+    cache.append(entry(2, 101));
+    assertEquals(cache.count(), 0);
+    assertEquals(cache.size(), 0);
+    assertNull(cache.get(1));
+    assertNull(cache.get(2));
+  }
+
+  /**
+   * Tests truncating the cache.
+   */
+  public void testTruncate() {
+    EntryCache cache = new EntryCache(1024);
+    TestEntry last = entry(5, 10);
+    for (int i = 1; i < 5; i++) {
+      cache.append(entry(i, 10));
+    }
+    cache.append(last);
+    assertEquals(last.references(), 1);
+    cache.truncate(3);
+    assertEquals(last.references(), 0);
+    assertEquals(cache.count(), 3);
+    assertEquals(cache.size(), 30);
+    assertNull(cache.get(4));
+    cache.append(entry(4, 10));
+    assertEquals(cache.count(), 4);
+  }
+
+  /**
+   * Tests that appending a non-contiguous entry clears the cache.
+   */
+  public void testNonContiguousAppend() {
+    EntryCache cache = new EntryCache(1024);
+    for (int i = 1; i <= 20; i++) {
+      cache.append(entry(i, 10));
+    }
+    cache.append(entry(30, 10));
+    assertEquals(cache.count(), 1);
+    assertEquals(cache.size(), 10);
+    assertNull(cache.get(20));
+    assertNotNull(cache.get(30));
+  }
+
+}
@@ -19,6 +19,9 @@ import io.atomix.copycat.server.storage.entry.Entry;
 import org.testng.annotations.Factory;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.io.RandomAccessFile;
+
 import static org.testng.Assert.*;
 
 /**
@@ -116,4 +119,203 @@ public class FileLogTest extends LogTest {
     }
   }
 
+  /**
+   * Tests that sealed segments persist their indexes and are recovered from the index files.
+   */
+  public void testRecoverFromIndexFiles() {
+    appendEntries(entriesPerSegment * 5);
+    log.segments.awaitSealed();
+    Segment lastSegment = log.segments.lastSegment();
+    for (Segment segment : log.segments.segments()) {
+      assertEquals(segment.file().indexFile().exists(), segment != lastSegment);
+    }
+    log.close();
+
+    try (Log log = createLog()) {
+      assertEquals(log.length(), entriesPerSegment * 5);
+      for (long i = log.firstIndex(); i <= log.lastIndex(); i++) {
+        try (Entry entry = log.get(i)) {
+          assertEquals(entry.getIndex(), i);
+          assertEquals(entry.getTerm(), 1);
+        }
+      }
+
+      try (TestEntry entry = log.create(TestEntry.class)) {
+        entry.setTerm(1);
+        assertEquals(log.append(entry), entriesPerSegment * 5 + 1);
+      }
+      assertEquals(log.get(entriesPerSegment * 5 + 1).getIndex(), entriesPerSegment * 5 + 1);
+    }
+  }
+
+  /**
+   * Tests that an invalid index file is discarded and the segment index rebuilt.
+   */
+  public void testRecoverInvalidIndexFile() throws Throwable {
+    appendEntries(entriesPerSegment * 3);
+    File indexFile = log.segments.firstSegment().file().indexFile();
+    log.close();
+
+    assertTrue(indexFile.exists());
+    try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+      file.seek(file.length() - 1);
+      file.write(file.read() + 1);
+    }
+
+    try (Log log = createLog()) {
+      assertEquals(log.length(), entriesPerSegment * 3);
+      for (long i = log.firstIndex(); i <= log.lastIndex(); i++) {
+        try (Entry entry = log.get(i)) {
+          assertEquals(entry.getIndex(), i);
+        }
+      }
+      assertTrue(indexFile.exists());
+    }
+  }
+
+  /**
+   * Tests that truncating a sealed segment deletes the segment's index file.
+   */
+  public void testTruncateSealedSegment() throws Throwable {
+    appendEntries(entriesPerSegment * 3);
+    log.segments.awaitSealed();
+    Segment firstSegment = log.segments.firstSegment();
+    assertTrue(firstSegment.file().indexFile().exists());
+    log.truncate(firstSegment.lastIndex() - 1);
+    assertFalse(firstSegment.file().indexFile().exists());
+  }
+
+  /**
+   * Tests that sealed disk segments are read from a read-only mapping while the current segment is not mapped.
+   */
+  public void testMapSealedSegments() throws Throwable {
+    boolean disk = storageLevel() == StorageLevel.DISK;
+    appendEntries(entriesPerSegment * 3);
+    log.segments.awaitSealed();
+    Segment firstSegment = log.segments.firstSegment();
+    assertEquals(firstSegment.isReadOnlyMapped(), disk);
+    assertFalse(log.segments.currentSegment().isReadOnlyMapped());
+
+    for (long i = log.firstIndex(); i <= log.lastIndex(); i++) {
+      try (Entry entry = log.get(i)) {
+        assertEquals(entry.getIndex(), i);
+      }
+    }
+
+    try (LogReader reader = log.reader(1)) {
+      for (long i = 1; i <= firstSegment.lastIndex(); i++) {
+        try (Entry entry = reader.next()) {
+          assertEquals(entry.getIndex(), i);
+        }
+      }
+    }
+
+    log.close();
+    log = createLog();
+    assertEquals(log.segments.firstSegment().isReadOnlyMapped(), disk);
+    try (Entry entry = log.get(1)) {
+      assertEquals(entry.getIndex(), 1);
+    }
+
+    log.truncate(log.segments.firstSegment().lastIndex() - 1);
+    assertFalse(log.segments.firstSegment().isReadOnlyMapped());
+  }
+
+  /**
+   * Tests that the read-only mapping of a sealed segment is unmapped when the segment is removed from the log.
+   */
+  public void testUnmapRemovedSegments() throws Throwable {
+    appendEntries(entriesPerSegment * 3);
+    log.segments.awaitSealed();
+    Segment firstSegment = log.segments.firstSegment();
+    assertEquals(firstSegment.isReadOnlyMapped(), storageLevel() == StorageLevel.DISK);
+
+    log.segments.removeSegment(firstSegment);
+    assertFalse(firstSegment.isReadOnlyMapped());
+    assertFalse(firstSegment.file().file().exists());
+
+    Segment secondSegment = log.segments.firstSegment();
+    assertNotSame(secondSegment, firstSegment);
+    for (long i = secondSegment.firstIndex(); i <= log.lastIndex(); i++) {
+      try (Entry entry = log.get(i)) {
+        assertEquals(entry.getIndex(), i);
+      }
+    }
+  }
+
+  /**
+   * Tests that cold sealed segments are unloaded and transparently reopened when read.
+   */
+  public void testUnloadColdSegments() throws Throwable {
+    log.close();
+    storage = tempStorageBuilder()
+      .withMaxSegmentSize(Integer.MAX_VALUE)
+      .withMaxEntriesPerSegment(entriesPerSegment)
+      .withStorageLevel(storageLevel())
+      .withMaxOpenSegments(2)
+      .build();
+    log = createLog();
+
+    appendEntries(entriesPerSegment * 6);
+    log.segments.awaitSealed();
+    assertTrue(loadedSegments() <= 2);
+    assertFalse(log.segments.firstSegment().isLoaded());
+
+    log.commit(entriesPerSegment * 6);
+    log.release(1);
+    for (long i = log.firstIndex(); i <= log.lastIndex(); i++) {
+      try (Entry entry = log.segments.segment(i).get(i)) {
+        assertEquals(entry.getIndex(), i);
+        assertEquals(entry.getTerm(), 1);
+      }
+      assertTrue(loadedSegments() <= 2);
+    }
+    assertFalse(log.segments.firstSegment().isLoaded());
+    assertFalse(log.segments.firstSegment().isLive(1));
+    assertEquals(log.length(), entriesPerSegment * 6);
+    log.close();
+
+    log = createLog();
+    assertTrue(loadedSegments() <= 2);
+    for (long i = log.firstIndex(); i <= log.lastIndex(); i++) {
+      try (Entry entry = log.get(i)) {
+        assertEquals(entry.getIndex(), i);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of sealed segments that are loaded.
+   */
+  private int loadedSegments() {
+    int count = 0;
+    for (Segment segment : log.segments.segments()) {
+      if (segment.isSealed() && segment.isLoaded()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Tests that the next segment is pre-allocated and discarded when the log is closed.
+   */
+  public void testPreallocateNextSegment() throws Throwable {
+    File nextFile = SegmentFile.createSegmentFile(logId, storage.directory(), 2, 1);
+    for (int i = 0; i < 50 && !nextFile.exists(); i++) {
+      Thread.sleep(10);
+    }
+    assertTrue(nextFile.exists());
+
+    appendEntries(entriesPerSegment + 1);
+    assertEquals(log.segments.lastSegment().file().file(), nextFile);
+    assertEquals(log.segments.lastSegment().firstIndex(), entriesPerSegment + 1);
+    log.close();
+
+    assertFalse(SegmentFile.createSegmentFile(logId, storage.directory(), 3, 1).exists());
+    try (Log log = createLog()) {
+      assertEquals(log.lastIndex(), entriesPerSegment + 1);
+    }
+  }
+
 }
@@ -27,10 +27,12 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
 import java.util.UUID;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
 
 /**
  * File snapshot store test.
@@ -71,6 +73,32 @@ public class FileSnapshotStoreTest extends AbstractSnapshotStoreTest {
     assertEquals(store.currentSnapshot().index(), 1);
   }
 
+  /**
+   * Tests loading a chain of delta snapshots.
+   */
+  public void testStoreLoadDeltaSnapshot() {
+    SnapshotStore store = createSnapshotStore();
+
+    Snapshot base = store.createSnapshot(1);
+    try (SnapshotWriter writer = base.writer()) {
+      writer.writeRecord("a", 1L).writeRecord("b", 2L);
+    }
+    base.complete();
+
+    Snapshot delta = store.createDeltaSnapshot(2);
+    try (SnapshotWriter writer = delta.writer()) {
+      writer.writeRecord("a", 10L).removeRecord("b");
+    }
+    delta.complete();
+    store.close();
+
+    store = createSnapshotStore();
+    assertEquals(store.currentSnapshot().index(), 2);
+    assertTrue(store.currentSnapshot().isDelta());
+    assertEquals(store.currentSnapshot().previousIndex(), 1);
+    assertEquals(readRecords(store.currentSnapshot()), Collections.singletonMap("a", 10L));
+  }
+
   @BeforeMethod
   @AfterMethod
   protected void cleanupStorage() throws IOException {
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package io.atomix.copycat.server.storage;
+
+import io.atomix.copycat.server.storage.entry.Entry;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+/**
+ * Group commit log test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+@Test
+public class GroupCommitLogTest extends AbstractLogTest {
+
+  @Override
+  protected Storage createStorage() {
+    return tempStorageBuilder()
+      .withMaxEntriesPerSegment(10)
+      .withStorageLevel(StorageLevel.DISK)
+      .withFlushPolicy(FlushPolicy.builder()
+        .withInterval(Duration.ofMillis(50))
+        .withMaxEntries(5)
+        .build())
+      .build();
+  }
+
+  /**
+   * Tests that the flush policy is exposed by the storage configuration.
+   */
+  public void testFlushPolicy() {
+    assertEquals(storage.flushPolicy().mode(), FlushPolicy.Mode.GROUP);
+    assertFalse(storage.flushOnCommit());
+    assertEquals(Storage.builder().withFlushOnCommit().build().flushPolicy().mode(), FlushPolicy.Mode.COMMIT);
+    assertEquals(Storage.builder().build().flushPolicy().mode(), FlushPolicy.Mode.NEVER);
+  }
+
+  /**
+   * Tests that appended entries are flushed in batches once the entry threshold is crossed.
+   */
+  public void testSyncOnEntryThreshold() throws Exception {
+    List<Long> indexes = appendEntries(5);
+    long index = indexes.get(indexes.size() - 1);
+    assertTrue(log.sync(index).get(5, TimeUnit.SECONDS) >= index);
+  }
+
+  /**
+   * Tests that appended entries are flushed once the flush interval has elapsed.
+   */
+  public void testSyncOnInterval() throws Exception {
+    List<Long> indexes = appendEntries(2);
+    CompletableFuture<Long> first = log.sync(indexes.get(0));
+    CompletableFuture<Long> second = log.sync(indexes.get(1));
+    assertEquals(second.get(5, TimeUnit.SECONDS).longValue(), indexes.get(1).longValue());
+    assertTrue(first.isDone());
+  }
+
+  /**
+   * Tests that an explicit flush completes pending sync futures.
+   */
+  public void testSyncAfterFlush() throws Exception {
+    List<Long> indexes = appendEntries(1);
+    log.flush();
+    assertTrue(log.sync(indexes.get(0)).isDone());
+  }
+
+  /**
+   * Tests that committing entries does not flush the log, leaving durability to the background flusher.
+   */
+  public void testCommitDoesNotFlush() throws Exception {
+    log.close();
+    storage.deleteLog(logId);
+    storage = tempStorageBuilder()
+      .withStorageLevel(StorageLevel.DISK)
+      .withFlushPolicy(FlushPolicy.builder()
+        .withInterval(Duration.ofHours(1))
+        .withMaxEntries(100)
+        .build())
+      .build();
+    log = createLog();
+
+    appendEntries(2);
+    log.commit(2);
+    assertEquals(log.durableIndex(), 0);
+    CompletableFuture<Long> future = log.sync(2);
+    assertFalse(future.isDone());
+    log.flush();
+    assertEquals(future.get(5, TimeUnit.SECONDS).longValue(), 2);
+  }
+
+  /**
+   * Tests that entries remain readable after group flushes and reopening the log.
+   */
+  public void testRecoverAfterGroupFlush() throws Exception {
+    appendEntries(23);
+    log.sync(23).get(5, TimeUnit.SECONDS);
+    log.close();
+
+    try (Log log = createLog()) {
+      assertEquals(log.lastIndex(), 23);
+      for (long i = log.firstIndex(); i <= log.lastIndex(); i++) {
+        try (Entry entry = log.get(i)) {
+          assertEquals(entry.getIndex(), i);
+        }
+      }
+    }
+  }
+
+}
@@ -16,10 +16,18 @@
 package io.atomix.copycat.server.storage;
 
 import io.atomix.copycat.server.storage.compaction.Compaction;
+import io.atomix.copycat.server.storage.entry.Entry;
 import org.testng.annotations.Test;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.testng.Assert.*;
 
@@ -202,6 +210,185 @@ public abstract class LogTest extends AbstractLogTest {
     assertCompacted(entriesPerSegment + 1, entriesPerSegment * 2);
   }
 
+  /**
+   * Tests reading entries sequentially with a {@link LogReader} across segments.
+   */
+  public void testReader() {
+    appendEntries(entriesPerSegment * 3);
+    reopenLog();
+
+    try (LogReader reader = log.reader(1)) {
+      for (long i = 1; i <= entriesPerSegment * 3; i++) {
+        assertTrue(reader.hasNext());
+        assertEquals(reader.nextIndex(), i);
+        try (TestEntry entry = reader.next()) {
+          assertEquals(entry.getIndex(), i);
+          assertEquals(entry.getTerm(), 1);
+          assertEquals(entry.getPadding().length, entryPadding);
+        }
+      }
+      assertFalse(reader.hasNext());
+
+      appendEntries(entriesPerSegment);
+      assertTrue(reader.hasNext());
+      try (Entry entry = reader.next()) {
+        assertEquals(entry.getIndex(), entriesPerSegment * 3 + 1);
+      }
+
+      reader.reset(2);
+      try (Entry entry = reader.next()) {
+        assertEquals(entry.getIndex(), 2);
+      }
+    }
+  }
+
+  /**
+   * Tests returning an entry to a {@link LogReader} with a prefetch size smaller than a single entry.
+   */
+  public void testReaderUnread() {
+    appendEntries(entriesPerSegment * 3);
+    reopenLog();
+
+    try (LogReader reader = log.reader(1, 1)) {
+      for (long i = 1; i <= entriesPerSegment * 3; i++) {
+        TestEntry entry = reader.next();
+        assertEquals(entry.getIndex(), i);
+        reader.unread(entry);
+        assertEquals(reader.nextIndex(), i);
+        try (TestEntry next = reader.next()) {
+          assertEquals(next.getIndex(), i);
+          assertEquals(next.getPadding().length, entryPadding);
+        }
+      }
+      assertFalse(reader.hasNext());
+    }
+  }
+
+  /**
+   * Reopens persistent logs to clear the in-memory entry cache so entries are read from segments.
+   */
+  private void reopenLog() {
+    if (storageLevel() != StorageLevel.MEMORY && storageLevel() != StorageLevel.OFFHEAP) {
+      log.close();
+      log = createLog();
+    }
+  }
+
+  /**
+   * Tests that a {@link LogReader} discards prefetched entries when the log is truncated.
+   */
+  public void testReaderTruncate() {
+    appendEntries(entriesPerSegment * 3);
+    reopenLog();
+
+    try (LogReader reader = log.reader(1)) {
+      reader.next().release();
+      log.truncate(1);
+      assertFalse(reader.hasNext());
+
+      appendEntries(1);
+      try (TestEntry entry = reader.next()) {
+        assertEquals(entry.getIndex(), 2);
+      }
+    }
+  }
+
+  /**
+   * Tests that a {@link LogReader} applies the same visibility rules as {@link Log#get(long)} after compaction.
+   */
+  public void testReaderAfterCompaction() {
+    appendEntries(entriesPerSegment * 3);
+    log.commit(entriesPerSegment * 3).compactor().minorIndex(entriesPerSegment * 3).majorIndex(entriesPerSegment * 3);
+    cleanAndCompact(entriesPerSegment + 1, entriesPerSegment * 2 + 1);
+
+    try (LogReader reader = log.reader(1)) {
+      for (long i = 1; i <= log.lastIndex(); i++) {
+        try (Entry expected = log.get(i); Entry entry = reader.next()) {
+          if (expected == null) {
+            assertNull(entry);
+          } else {
+            assertEquals(entry.getIndex(), expected.getIndex());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests reading entries from segments on multiple threads while entries are appended to the log.
+   */
+  public void testConcurrentSegmentReads() throws Throwable {
+    appendEntries(entriesPerSegment * 3);
+    long lastIndex = log.lastIndex();
+
+    List<CompletableFuture<Void>> readers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      readers.add(CompletableFuture.runAsync(() -> {
+        for (int j = 0; j < 10; j++) {
+          for (long index = 1; index <= lastIndex; index++) {
+            try (TestEntry entry = log.segments.segment(index).get(index)) {
+              assertEquals(entry.getIndex(), index);
+              assertEquals(entry.getPadding().length, entryPadding);
+            }
+          }
+        }
+      }));
+    }
+
+    appendEntries(entriesPerSegment * 3);
+    CompletableFuture.allOf(readers.toArray(new CompletableFuture[readers.size()])).get(10, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Tests reading entries from a segment on multiple threads while entries are appended to and truncated from it.
+   */
+  public void testConcurrentSegmentReadsWithTruncation() throws Throwable {
+    log.close();
+    storage.deleteLog(logId);
+    storage = tempStorageBuilder()
+      .withMaxEntriesPerSegment(1024)
+      .withStorageLevel(storageLevel())
+      .build();
+    log = createLog();
+
+    appendEntries(10);
+    Segment segment = log.segments.currentSegment();
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    List<CompletableFuture<Void>> readers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      readers.add(CompletableFuture.runAsync(() -> {
+        while (running.get()) {
+          for (long index = 1; index <= 20; index++) {
+            try (TestEntry entry = segment.get(index)) {
+              if (index <= 10) {
+                assertNotNull(entry);
+              }
+              if (entry != null) {
+                assertEquals(entry.getIndex(), index);
+                assertEquals(entry.getTerm(), 1);
+                assertEquals(entry.getPadding().length, entryPadding);
+              }
+            } catch (IndexOutOfBoundsException e) {
+              // The entry has been truncated or not yet appended.
+            }
+          }
+        }
+      }));
+    }
+
+    try {
+      for (int i = 0; i < 500; i++) {
+        appendEntries(10);
+        log.truncate(10);
+      }
+    } finally {
+      running.set(false);
+    }
+    CompletableFuture.allOf(readers.toArray(new CompletableFuture[readers.size()])).get(10, TimeUnit.SECONDS);
+    assertEquals(log.lastIndex(), 10);
+  }
+
   /**
    * Tests {@link Log#isClosed()}.
    */
@@ -268,6 +455,73 @@ public abstract class LogTest extends AbstractLogTest {
     assertEquals(log.length(), entriesPerSegment * 5);
   }
 
+  /**
+   * Tests that log metrics are maintained as the log is appended, released, truncated, flushed, and compacted.
+   */
+  public void testMetrics() throws Throwable {
+    LogMetrics metrics = log.metrics();
+    assertEquals(metrics.getEntryCount(), 0);
+    assertEquals(metrics.getLength(), 0);
+
+    appendEntries(entriesPerSegment * 3 + 5);
+    assertEquals(metrics.getAppendedEntries(), entriesPerSegment * 3 + 5);
+    assertTrue(metrics.getAppendedBytes() > 0);
+    assertEquals(metrics.getEntryCount(), entriesPerSegment * 3 + 5);
+
+    log.truncate(entriesPerSegment * 3);
+    assertEquals(metrics.getEntryCount(), entriesPerSegment * 3);
+    assertEquals(metrics.getLength(), entriesPerSegment * 3);
+    assertEquals(metrics.getSegmentCount(), 3);
+    assertEquals(log.size(), log.segments.segments().stream().mapToLong(Segment::size).sum());
+
+    for (long i = entriesPerSegment + 1; i <= entriesPerSegment * 2; i++) {
+      log.release(i);
+      log.release(i);
+    }
+    assertEquals(metrics.getReleasedEntryCount(), entriesPerSegment);
+    assertEquals(metrics.getLiveEntryCount(), entriesPerSegment * 2);
+    assertEquals(metrics.getReleasedRatio(), 1 / 3d, 0.0001);
+
+    log.flush();
+    assertTrue(metrics.getFlushCount() > 0);
+
+    log.commit(entriesPerSegment * 3).compactor().minorIndex(entriesPerSegment * 3).majorIndex(entriesPerSegment * 3);
+    log.compactor().compact(Compaction.MAJOR).join();
+    assertEquals(metrics.getMajorCompactionCount(), 1);
+    assertEquals(metrics.getCompactedEntries(), entriesPerSegment);
+    assertEquals(metrics.getEntryCount(), entriesPerSegment * 2);
+    assertEquals(metrics.getReleasedEntryCount(), 0);
+    assertEquals(metrics.getLength(), entriesPerSegment * 3);
+    assertEquals(log.size(), log.segments.segments().stream().mapToLong(Segment::size).sum());
+  }
+
+  /**
+   * Tests that log metrics are registered with the platform MBean server when JMX is enabled.
+   */
+  public void testMetricsMBean() throws Throwable {
+    assertNull(log.metrics().objectName());
+    log.close();
+
+    storage = tempStorageBuilder()
+      .withMaxSegmentSize(Integer.MAX_VALUE)
+      .withMaxEntriesPerSegment(entriesPerSegment)
+      .withStorageLevel(storageLevel())
+      .withJmxEnabled()
+      .build();
+    log = createLog();
+    appendEntries(10);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName objectName = log.metrics().objectName();
+    assertNotNull(objectName);
+    assertTrue(server.isRegistered(objectName));
+    assertEquals(server.getAttribute(objectName, "EntryCount"), 10L);
+
+    log.close();
+    assertFalse(server.isRegistered(objectName));
+    log = createLog();
+  }
+
   /**
    * Tests skipping entries in the log across segments.
    */
@@ -18,7 +18,9 @@ package io.atomix.copycat.server.storage;
 import io.atomix.copycat.server.storage.compaction.Compaction;
 import org.testng.annotations.Test;
 
+import java.time.Duration;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.testng.Assert.*;
 
@@ -65,6 +67,105 @@ public class MajorCompactionTest extends AbstractLogTest {
     }
   }
 
+  /**
+   * Tests compacting independent groups of segments in parallel.
+   */
+  public void testParallelCompaction() throws Throwable {
+    log.close();
+    storage = tempStorageBuilder()
+      .withMaxEntriesPerSegment(10)
+      .withCompactionThreads(4)
+      .build();
+    log = createLog();
+
+    writeEntries(101);
+    for (long index = 3; index <= 90; index += 3) {
+      log.release(index);
+    }
+    log.commit(101).compactor().minorIndex(101).majorIndex(101);
+    log.compactor().compact(Compaction.MAJOR).get(10, TimeUnit.SECONDS);
+
+    assertEquals(log.firstIndex(), 1);
+    assertEquals(log.lastIndex(), 101);
+    for (long index = 1; index <= 101; index++) {
+      try (TestEntry entry = log.get(index)) {
+        if (index <= 90 && index % 3 == 0) {
+          assertNull(entry);
+        } else {
+          assertEquals(entry.getIndex(), index);
+        }
+      }
+    }
+
+    // Ensure the compacted segments are recovered in order.
+    log.close();
+    log = createLog();
+    assertEquals(log.lastIndex(), 101);
+    for (long index = 1; index <= 101; index++) {
+      assertEquals(log.contains(index), index > 90 || index % 3 != 0);
+    }
+  }
+
+  /**
+   * Tests rate limiting major compaction.
+   */
+  public void testRateLimitedCompaction() throws Throwable {
+    assertEquals(log.compactor().rateLimit(), storage.compactionRateLimit());
+    writeEntries(31);
+
+    for (long index = 21; index < 28; index++) {
+      log.release(index);
+    }
+    log.commit(31).compactor().minorIndex(31).majorIndex(31);
+
+    // Limit compaction to the size of a single entry per 10 milliseconds. Compaction of the 23 live entries must
+    // exceed the throttle's burst of 10 entries.
+    int entrySize;
+    try (TestEntry entry = log.get(31)) {
+      entrySize = entry.size();
+    }
+    log.compactor().withRateLimit(entrySize * 100);
+    assertEquals(log.compactor().rateLimit(), entrySize * 100);
+
+    long startTime = System.nanoTime();
+    log.compactor().compact(Compaction.MAJOR).get(10, TimeUnit.SECONDS);
+    assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(100));
+
+    for (long index = 21; index < 28; index++) {
+      assertFalse(log.contains(index));
+    }
+    try (TestEntry entry = log.get(31)) {
+      assertEquals(entry.getIndex(), 31);
+    }
+  }
+
+  /**
+   * Tests that compaction is skipped while the compactor is paused.
+   */
+  public void testPausedCompaction() throws Throwable {
+    writeEntries(31);
+
+    for (long index = 21; index < 28; index++) {
+      log.release(index);
+    }
+    log.commit(31).compactor().minorIndex(31).majorIndex(31);
+
+    log.compactor().pause();
+    assertTrue(log.compactor().isPaused());
+    log.compactor().compact(Compaction.MAJOR).get(10, TimeUnit.SECONDS);
+    assertTrue(log.contains(21));
+
+    log.compactor().resume();
+    assertFalse(log.compactor().isPaused());
+    log.compactor().pause(Duration.ofMillis(50));
+    assertTrue(log.compactor().isPaused());
+    Thread.sleep(100);
+    assertFalse(log.compactor().isPaused());
+
+    log.compactor().compact(Compaction.MAJOR).get(10, TimeUnit.SECONDS);
+    assertFalse(log.contains(21));
+  }
+
   /**
    * Writes a set of session entries to the log.
    */
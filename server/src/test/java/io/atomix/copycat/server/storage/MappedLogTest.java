@@ -15,9 +15,12 @@
  */
 package io.atomix.copycat.server.storage;
 
+import io.atomix.copycat.server.storage.compaction.Compaction;
 import org.testng.annotations.Factory;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.*;
+
 /**
  * Memory mapped file log test.
  *
@@ -35,4 +38,46 @@ public class MappedLogTest extends FileLogTest {
     return StorageLevel.MAPPED;
   }
 
+  /**
+   * Tests reading entries directly from the mapped bytes of sealed segments and of the segment being appended to.
+   */
+  public void testMappedReads() throws Throwable {
+    int entries = entriesPerSegment * 2 + 1;
+    long[] sizes = new long[entries + 1];
+    for (int i = 1; i <= entries; i++) {
+      long index;
+      try (TestEntry entry = log.create(TestEntry.class)) {
+        entry.setTerm(i).setCompactionMode(i % 2 == 0 ? Compaction.Mode.SEQUENTIAL : Compaction.Mode.QUORUM).setPadding(i);
+        index = log.append(entry);
+        sizes[i] = entry.size();
+      }
+
+      // Read the entry from the segment it was just appended to.
+      Segment segment = log.segments.currentSegment();
+      assertFalse(segment.isSealed());
+      assertMappedEntry(segment, index, sizes[i]);
+    }
+
+    log.segments.awaitSealed();
+    assertTrue(log.segments.firstSegment().isSealed());
+    assertFalse(log.segments.currentSegment().isSealed());
+    for (long index = 1; index <= entries; index++) {
+      assertMappedEntry(log.segments.segment(index), index, sizes[(int) index]);
+    }
+  }
+
+  /**
+   * Asserts that the entry read from the given segment matches the entry written at the given index.
+   */
+  private void assertMappedEntry(Segment segment, long index, long size) {
+    try (TestEntry entry = segment.get(index)) {
+      assertNotNull(entry);
+      assertEquals(entry.getIndex(), index);
+      assertEquals(entry.getTerm(), index);
+      assertEquals(entry.getCompactionMode(), index % 2 == 0 ? Compaction.Mode.SEQUENTIAL : Compaction.Mode.QUORUM);
+      assertEquals(entry.getPadding().length, index);
+      assertEquals(entry.size(), size);
+    }
+  }
+
 }
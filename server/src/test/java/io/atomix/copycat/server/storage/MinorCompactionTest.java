@@ -16,8 +16,15 @@
 package io.atomix.copycat.server.storage;
 
 import io.atomix.copycat.server.storage.compaction.Compaction;
+import io.atomix.copycat.server.storage.compaction.CompactionManager;
+import io.atomix.copycat.server.storage.compaction.CompactionPlan;
+import io.atomix.copycat.server.storage.compaction.CompactionTask;
+import io.atomix.copycat.server.storage.compaction.CompactionTaskMetrics;
 import org.testng.annotations.Test;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.CountDownLatch;
 
 import static org.testng.Assert.*;
@@ -72,6 +79,117 @@ public class MinorCompactionTest extends AbstractLogTest {
     }
   }
 
+  /**
+   * Tests planning compaction without compacting the log and recording metrics for the executed plan.
+   */
+  public void testCompactionPlan() throws Throwable {
+    writeEntries(31);
+    for (long index = 21; index < 28; index++) {
+      log.release(index);
+    }
+    log.commit(31).compactor().minorIndex(31);
+
+    CompactionPlan plan = log.compactor().plan(Compaction.MINOR);
+    assertEquals(plan.compaction(), Compaction.MINOR);
+    assertEquals(plan.candidates().size(), 3);
+    assertEquals(plan.selected().size(), 1);
+    assertEquals(plan.selected().get(0).firstIndex(), 21);
+    assertEquals(plan.selected().get(0).releasedEntries(), 7);
+    assertEquals(plan.groups().size(), 1);
+    assertTrue(plan.reclaimableBytes() > 0);
+    assertTrue(plan.tasks().isEmpty());
+    assertEquals(log.segments.segment(21).descriptor().version(), 1);
+    assertNull(log.compactor().lastPlan());
+
+    CountDownLatch latch = new CountDownLatch(1);
+    log.compactor().compact(Compaction.MINOR).thenRun(latch::countDown);
+    latch.await();
+
+    CompactionPlan lastPlan = log.compactor().lastPlan();
+    assertNotNull(lastPlan);
+    assertEquals(lastPlan.tasks().size(), 1);
+    CompactionTaskMetrics task = lastPlan.tasks().get(0);
+    assertTrue(task.isComplete());
+    assertEquals(task.sourceEntries(), 10);
+    assertEquals(task.retainedEntries(), 6);
+    assertEquals(task.droppedEntries(), 4);
+    assertTrue(task.bytesWritten() > 0);
+    assertTrue(task.bytesRead() > task.bytesWritten());
+    assertEquals(log.metrics().getCompactionBytesWritten(), task.bytesWritten());
+    assertTrue(log.metrics().getLastCompactionPlan().startsWith("MINOR"));
+  }
+
+  /**
+   * Tests building tasks with a compaction manager that doesn't plan compaction.
+   */
+  public void testOpaqueCompactionPlan() throws Throwable {
+    writeEntries(31);
+    CompactionTask task = () -> {};
+    CompactionManager manager = new CompactionManager() {
+      @Override
+      public Collection<CompactionTask> buildTasks(Storage storage, SegmentManager segments) {
+        return Collections.singletonList(task);
+      }
+    };
+
+    CompactionPlan plan = manager.plan(storage, log.segments);
+    assertTrue(plan.isOpaque());
+    assertTrue(plan.isEmpty());
+    assertEquals(manager.buildTasks(log.segments, plan), Collections.singletonList(task));
+    assertEquals(manager.buildTasks(storage, log.segments), Collections.singletonList(task));
+    assertNotNull(task.metrics());
+    assertFalse(task.metrics().isComplete());
+  }
+
+  /**
+   * Tests adaptively scheduling minor compaction according to the number of entries released from segments.
+   */
+  public void testAdaptiveCompaction() throws Throwable {
+    log.close();
+    storage = tempStorageBuilder()
+      .withMaxEntriesPerSegment(10)
+      .withMinorCompactionInterval(Duration.ofMillis(10))
+      .withAdaptiveCompaction()
+      .withMaxCompactionBytes(1)
+      .build();
+    log = createLog();
+    assertTrue(storage.adaptiveCompaction());
+    assertEquals(storage.maxCompactionBytes(), 1);
+
+    writeEntries(41);
+    log.commit(41).compactor().minorIndex(41);
+
+    // Segments without released entries are not compacted.
+    Thread.sleep(100);
+    assertEquals(log.segments.segment(1).descriptor().version(), 1);
+
+    // Segments are compacted once the fraction of their entries that have been released reaches the threshold.
+    for (long index = 1; index <= 16; index++) {
+      log.release(index);
+    }
+    log.release(21);
+    awaitVersion(1, 2);
+    awaitVersion(11, 2);
+    assertEquals(log.segments.segment(21).descriptor().version(), 1);
+    assertFalse(log.contains(1));
+    assertTrue(log.contains(2));
+
+    // Compacted segments are not rewritten again until more entries have been released.
+    Thread.sleep(100);
+    assertEquals(log.segments.segment(1).descriptor().version(), 2);
+    assertEquals(log.segments.segment(11).descriptor().version(), 2);
+  }
+
+  /**
+   * Waits for the segment containing the given index to be compacted to the given version.
+   */
+  private void awaitVersion(long index, long version) throws InterruptedException {
+    for (int i = 0; i < 500 && log.segments.segment(index).descriptor().version() < version; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(log.segments.segment(index).descriptor().version(), version);
+  }
+
   /**
    * Writes a set of session entries to the log.
    */
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package io.atomix.copycat.server.storage;
+
+import org.testng.annotations.Factory;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Off-heap log test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+@Test
+public class OffHeapLogTest extends LogTest {
+  @Factory
+  public Object[] createTests() throws Throwable {
+    return testsFor(OffHeapLogTest.class);
+  }
+
+  @Override
+  protected StorageLevel storageLevel() {
+    return StorageLevel.OFFHEAP;
+  }
+
+  /**
+   * Tests that a deleted off-heap segment can no longer be read once its memory has been freed.
+   */
+  public void testDeletedSegmentNotReadable() {
+    appendEntries(entriesPerSegment * 2);
+    Segment segment = log.segments.firstSegment();
+    assertTrue(segment.isOpen());
+    segment.delete();
+    assertFalse(segment.isOpen());
+    try {
+      segment.get(1);
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException e) {
+    }
+  }
+
+}
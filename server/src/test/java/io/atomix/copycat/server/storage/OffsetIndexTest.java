@@ -18,6 +18,7 @@ package io.atomix.copycat.server.storage;
 import io.atomix.catalyst.buffer.HeapBuffer;
 import io.atomix.copycat.server.storage.index.DelegatingOffsetIndex;
 import io.atomix.copycat.server.storage.index.OffsetIndex;
+import io.atomix.copycat.server.storage.index.SearchableOffsetIndex;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.*;
@@ -136,4 +137,69 @@ public class OffsetIndexTest {
     assertEquals(index.truncate(1), 30);
   }
 
+  /**
+   * Tests looking up sparse offsets across sampling intervals.
+   */
+  public void testSearchableIndexLookup() {
+    SearchableOffsetIndex index = new SearchableOffsetIndex(4);
+    for (int i = 0; i < 100; i++) {
+      index.index(i * 3, i * 1000);
+    }
+    assertEquals(index.size(), 100);
+    assertEquals(index.lastOffset(), 297);
+    for (int i = 99; i >= 0; i--) {
+      assertEquals(index.position(i * 3), i * 1000);
+      assertEquals(index.find(i * 3), i);
+      assertFalse(index.contains(i * 3 + 1));
+    }
+    for (int i = 0; i < 100; i++) {
+      assertEquals(index.find(i * 3), i);
+    }
+    assertEquals(index.position(298), -1);
+    assertEquals(index.position(-1), -1);
+  }
+
+  /**
+   * Tests truncating a sparse index within and at the boundaries of sampling intervals.
+   */
+  public void testSearchableIndexTruncate() {
+    SearchableOffsetIndex index = new SearchableOffsetIndex(4);
+    for (int i = 0; i < 20; i++) {
+      index.index(i * 2, i * 10);
+    }
+    assertEquals(index.truncate(21), 110);
+    assertEquals(index.size(), 11);
+    assertEquals(index.lastOffset(), 21);
+    assertEquals(index.position(20), 100);
+    assertEquals(index.position(22), -1);
+    assertEquals(index.truncate(14), 80);
+    assertEquals(index.size(), 8);
+    assertEquals(index.position(14), 70);
+    index.index(15, 75);
+    index.index(17, 85);
+    assertEquals(index.size(), 10);
+    assertEquals(index.find(15), 8);
+    assertEquals(index.position(17), 85);
+    assertEquals(index.truncate(-1), 0);
+    assertTrue(index.isEmpty());
+    assertEquals(index.position(0), -1);
+  }
+
+  /**
+   * Tests converting a sequential index to a sparse index.
+   */
+  public void testConvertToSearchableIndex() {
+    OffsetIndex index = new DelegatingOffsetIndex(HeapBuffer.allocate(1024 * 8), 2);
+    for (int i = 0; i < 10; i++) {
+      index.index(i, i * 10);
+    }
+    index.index(20, 200);
+    assertEquals(index.size(), 11);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(index.position(i), i * 10);
+    }
+    assertEquals(index.position(20), 200);
+    assertEquals(index.find(20), 10);
+  }
+
 }
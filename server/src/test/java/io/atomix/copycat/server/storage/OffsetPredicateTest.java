@@ -44,4 +44,47 @@ public class OffsetPredicateTest {
     assertFalse(cleaner.test(2048L));
   }
 
+  /**
+   * Tests releasing dense ranges of offsets across containers.
+   */
+  public void testReleaseDense() {
+    OffsetPredicate predicate = new OffsetPredicate();
+    for (long i = 0; i < 200000; i += 2) {
+      assertTrue(predicate.release(i));
+    }
+    assertFalse(predicate.release(1000));
+    assertEquals(predicate.count(), 100000);
+    for (long i = 0; i < 200000; i++) {
+      assertEquals(predicate.test(i), i % 2 == 1);
+    }
+    assertTrue(predicate.test(200000L));
+  }
+
+  /**
+   * Tests that copies of the predicate are independent of the original.
+   */
+  public void testCopyOnWrite() {
+    OffsetPredicate predicate = new OffsetPredicate();
+    for (long i = 0; i < 10000; i += 3) {
+      predicate.release(i);
+    }
+    predicate.release(100000);
+
+    OffsetPredicate copy = predicate.copy();
+    assertEquals(copy.count(), predicate.count());
+    predicate.release(1);
+    predicate.release(100001);
+    copy.release(2);
+
+    assertFalse(predicate.test(1L));
+    assertTrue(copy.test(1L));
+    assertFalse(predicate.test(100001L));
+    assertTrue(copy.test(100001L));
+    assertFalse(copy.test(2L));
+    assertTrue(predicate.test(2L));
+    assertFalse(predicate.test(3L));
+    assertFalse(copy.test(3L));
+    assertFalse(copy.test(100000L));
+  }
+
 }
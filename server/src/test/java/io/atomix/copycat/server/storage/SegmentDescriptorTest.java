@@ -52,6 +52,7 @@ public class SegmentDescriptorTest {
     assertEquals(descriptor.index(), 1025);
     assertEquals(descriptor.maxSegmentSize(), 1024 * 1024);
     assertEquals(descriptor.maxEntries(), 2048);
+    assertEquals(descriptor.checksumType(), ChecksumType.CRC32);
 
     assertEquals(descriptor.updated(), 0);
     long time = System.currentTimeMillis();
@@ -116,6 +117,7 @@ public class SegmentDescriptorTest {
       .withIndex(1025)
       .withMaxSegmentSize(1024 * 1024)
       .withMaxEntries(2048)
+      .withChecksumType(ChecksumType.CRC32C)
       .build();
 
     long time = System.currentTimeMillis();
@@ -131,6 +133,28 @@ public class SegmentDescriptorTest {
     assertEquals(descriptor.maxEntries(), 2048);
     assertEquals(descriptor.updated(), time);
     assertTrue(descriptor.locked());
+    assertEquals(descriptor.checksumType(), ChecksumType.CRC32C);
+  }
+
+  /**
+   * Tests persisting the segment checksum type.
+   */
+  public void testDescriptorChecksumType() {
+    Buffer buffer = FileBuffer.allocate(file, SegmentDescriptor.BYTES);
+    SegmentDescriptor descriptor = SegmentDescriptor.builder(buffer)
+      .withId(2)
+      .withVersion(3)
+      .withIndex(1025)
+      .withMaxSegmentSize(1024 * 1024)
+      .withMaxEntries(2048)
+      .withChecksumType(ChecksumType.CRC32C)
+      .build();
+    assertEquals(descriptor.checksumType(), ChecksumType.CRC32C);
+    descriptor.close();
+
+    descriptor = new SegmentDescriptor(FileBuffer.allocate(file, SegmentDescriptor.BYTES));
+    assertEquals(descriptor.checksumType(), ChecksumType.CRC32C);
+    descriptor.close();
   }
 
   /**
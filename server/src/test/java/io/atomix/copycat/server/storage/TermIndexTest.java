@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License
+ */
+package io.atomix.copycat.server.storage;
+
+import io.atomix.copycat.server.storage.util.TermIndex;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * Term index test.
+ *
+ * @author <a href="http://github.com/kuujo">Jordan Halterman</a>
+ */
+@Test
+public class TermIndexTest {
+
+  /**
+   * Tests indexing and looking up terms.
+   */
+  public void testIndexLookup() {
+    TermIndex index = new TermIndex();
+    assertEquals(index.term(), 0);
+    assertEquals(index.lookup(0), 0);
+    for (int i = 0; i < 100; i++) {
+      index.index(i * 10, i / 3 + 1);
+    }
+    assertEquals(index.size(), 34);
+    assertEquals(index.term(), 34);
+    assertEquals(index.lookup(0), 1);
+    assertEquals(index.lookup(29), 1);
+    assertEquals(index.lookup(30), 2);
+    assertEquals(index.lookup(5000), 34);
+    assertEquals(index.offset(1), 30);
+    assertEquals(index.term(1), 2);
+  }
+
+  /**
+   * Tests indexing terms out of order.
+   */
+  public void testIndexOutOfOrder() {
+    TermIndex index = new TermIndex();
+    index.index(10, 2);
+    index.index(20, 3);
+    index.index(5, 1);
+    index.index(10, 4);
+    assertEquals(index.size(), 3);
+    assertEquals(index.lookup(4), 0);
+    assertEquals(index.lookup(5), 1);
+    assertEquals(index.lookup(15), 4);
+    assertEquals(index.lookup(25), 3);
+  }
+
+  /**
+   * Tests truncating the index.
+   */
+  public void testTruncate() {
+    TermIndex index = new TermIndex();
+    index.index(0, 1);
+    index.index(10, 2);
+    index.index(20, 3);
+    index.truncate(15);
+    assertEquals(index.size(), 2);
+    assertEquals(index.term(), 2);
+    assertEquals(index.lookup(25), 2);
+    index.truncate(10);
+    assertEquals(index.size(), 2);
+    index.truncate(9);
+    assertEquals(index.size(), 1);
+    assertEquals(index.lookup(10), 1);
+    index.index(10, 4);
+    assertEquals(index.lookup(10), 4);
+  }
+
+}